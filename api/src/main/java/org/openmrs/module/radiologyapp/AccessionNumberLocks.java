@@ -0,0 +1,142 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.radiologyapp;
+
+import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks keyed by accession number, used to serialize saves of the same accession number within this JVM
+ * while letting unrelated accession numbers proceed in parallel.
+ * <p>
+ * This only narrows the window for duplicates; across nodes sharing a database the unique constraint on
+ * emr_radiology_accession.study_accession_number is what actually guarantees a single study per accession number.
+ */
+class AccessionNumberLocks {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private static final long DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private final ReentrantLock[] locks;
+
+    private final long timeoutSeconds;
+
+    AccessionNumberLocks() {
+        this(DEFAULT_STRIPES, DEFAULT_TIMEOUT_SECONDS);
+    }
+
+    AccessionNumberLocks(int stripes, long timeoutSeconds) {
+        // round up to a power of two so that we can mask rather than mod
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    Lease acquire(String... accessionNumbers) {
+        return acquire(Arrays.asList(accessionNumbers));
+    }
+
+    /**
+     * Locks the stripes for all the given accession numbers. Stripes are always taken in index order, so two callers
+     * locking overlapping sets can't deadlock each other; a caller that already holds other stripes could, so we
+     * give up with an exception rather than waiting forever.
+     */
+    Lease acquire(Collection<String> accessionNumbers) {
+        TreeSet<Integer> stripes = new TreeSet<Integer>();
+        for (String accessionNumber : accessionNumbers) {
+            if (accessionNumber != null) {
+                stripes.add(stripeFor(accessionNumber));
+            }
+        }
+
+        List<ReentrantLock> acquired = new ArrayList<ReentrantLock>(stripes.size());
+        try {
+            for (Integer stripe : stripes) {
+                ReentrantLock lock = locks[stripe];
+                if (!lock.tryLock(timeoutSeconds, TimeUnit.SECONDS)) {
+                    throw new RadiologyAPIException("Timed out waiting to save radiology accession numbers " + accessionNumbers);
+                }
+                acquired.add(lock);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unlock(acquired);
+            throw new RadiologyAPIException("Interrupted while waiting to save radiology accession numbers " + accessionNumbers, e);
+        }
+        catch (RuntimeException e) {
+            unlock(acquired);
+            throw e;
+        }
+        return new Lease(acquired);
+    }
+
+    private int stripeFor(String accessionNumber) {
+        int h = accessionNumber.hashCode();
+        h ^= (h >>> 16);
+        return h & (locks.length - 1);
+    }
+
+    private static void unlock(List<ReentrantLock> acquired) {
+        for (int i = acquired.size() - 1; i >= 0; i--) {
+            acquired.get(i).unlock();
+        }
+    }
+
+    /**
+     * The stripes held by one caller
+     */
+    static class Lease {
+
+        private final List<ReentrantLock> acquired;
+
+        private Lease(List<ReentrantLock> acquired) {
+            this.acquired = acquired;
+        }
+
+        /**
+         * Releases the locks once the current transaction has committed or rolled back, so that a concurrent save
+         * of the same accession number can't run its duplicate check before our insert is visible. If there is no
+         * transaction the locks are released immediately. Must be called on the thread that acquired the lease.
+         */
+        void releaseAfterTransaction() {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        unlock(acquired);
+                    }
+                });
+            }
+            else {
+                unlock(acquired);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.radiologyapp;
+
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+
+import java.util.Date;
+
+/**
+ * Index entry linking an accession (order) number to the radiology study or report encounter that records it, so that
+ * lookups by accession number don't have to scan the value_text of the obs table
+ */
+public class RadiologyAccession {
+
+    public enum Kind { STUDY, REPORT }
+
+    private Integer id;
+
+    private String accessionNumber;
+
+    // only set for studies, and unique, so that the database prevents two studies with the same accession number;
+    // reports share the accession number of their study, so they leave this null
+    private String studyAccessionNumber;
+
+    private Kind kind;
+
+    private Encounter encounter;
+
+    private Patient patient;
+
+    private Date accessionDate;
+
+    public RadiologyAccession() {
+    }
+
+    public RadiologyAccession(String accessionNumber, Kind kind, Encounter encounter) {
+        this.accessionNumber = accessionNumber;
+        this.studyAccessionNumber = kind == Kind.STUDY ? accessionNumber : null;
+        this.kind = kind;
+        this.encounter = encounter;
+        this.patient = encounter.getPatient();
+        this.accessionDate = encounter.getEncounterDatetime();
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getAccessionNumber() {
+        return accessionNumber;
+    }
+
+    public void setAccessionNumber(String accessionNumber) {
+        this.accessionNumber = accessionNumber;
+    }
+
+    public String getStudyAccessionNumber() {
+        return studyAccessionNumber;
+    }
+
+    public void setStudyAccessionNumber(String studyAccessionNumber) {
+        this.studyAccessionNumber = studyAccessionNumber;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public Encounter getEncounter() {
+        return encounter;
+    }
+
+    public void setEncounter(Encounter encounter) {
+        this.encounter = encounter;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public void setPatient(Patient patient) {
+        this.patient = patient;
+    }
+
+    public Date getAccessionDate() {
+        return accessionDate;
+    }
+
+    public void setAccessionDate(Date accessionDate) {
+        this.accessionDate = accessionDate;
+    }
+}
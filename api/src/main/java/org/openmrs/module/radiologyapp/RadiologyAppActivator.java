@@ -15,10 +15,122 @@
 package org.openmrs.module.radiologyapp;
 
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.BaseModuleActivator;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.DaemonTokenAware;
+import org.openmrs.module.radiologyapp.cluster.RadiologyChangePoller;
+import org.openmrs.module.radiologyapp.hl7.RadiologyHl7Listener;
+
+import java.util.List;
 
 /**
  * This class contains the logic that is run every time this module is either started or stopped.
  */
-public class RadiologyAppActivator extends BaseModuleActivator {
+public class RadiologyAppActivator extends BaseModuleActivator implements DaemonTokenAware {
+
+    private static final Log log = LogFactory.getLog(RadiologyAppActivator.class);
+
+    private DaemonToken daemonToken;
+
+    @Override
+    public void setDaemonToken(DaemonToken daemonToken) {
+        this.daemonToken = daemonToken;
+    }
+
+    @Override
+    public void started() {
+        RadiologyProperties radiologyProperties = getRadiologyProperties();
+        Context.getAdministrationService().addGlobalPropertyListener(radiologyProperties);
+
+        // we only report misconfiguration here rather than refusing to start: the metadata is frequently installed
+        // by an implementation module that is started after this one
+        List<String> problems = radiologyProperties.refresh();
+        if (!problems.isEmpty()) {
+            log.error("Radiology module is not fully configured:\n  " + StringUtils.join(problems, "\n  "));
+        }
+
+        // resolve the concept sets up front; if the concepts aren't installed yet they will be resolved on first use instead
+        try {
+            Context.getRegisteredComponent("radiologyConceptSetRegistry", RadiologyConceptSetRegistry.class).refresh();
+        }
+        catch (Exception e) {
+            log.warn("Unable to resolve radiology concept sets at startup, will retry on first use: " + e.getMessage());
+        }
+        try {
+            Context.getRegisteredComponent("radiologyOrderablesCatalog", RadiologyOrderablesCatalog.class).refresh();
+        }
+        catch (Exception e) {
+            log.warn("Unable to load radiology orderables at startup, will retry on first use: " + e.getMessage());
+        }
+        try {
+            Context.getRegisteredComponent("radiologyProviderIndex", RadiologyProviderIndex.class).refresh();
+        }
+        catch (Exception e) {
+            log.warn("Unable to index providers at startup, will retry on first search: " + e.getMessage());
+        }
+
+        Integer hl7ListenerPort = radiologyProperties.getHl7ListenerPort();
+        if (hl7ListenerPort != null) {
+            try {
+                getRadiologyHl7Listener().start(radiologyProperties.getHl7ListenerAddress(), hl7ListenerPort, daemonToken);
+            }
+            catch (Exception e) {
+                log.error("Unable to start the radiology HL7 listener on port " + hl7ListenerPort, e);
+            }
+        }
+
+        if (radiologyProperties.isChangeLogEnabled()) {
+            try {
+                getRadiologyChangePoller().start(radiologyProperties.getChangePollIntervalSeconds(), daemonToken);
+            }
+            catch (Exception e) {
+                log.error("Unable to start the radiology change poller", e);
+            }
+        }
+    }
+
+    @Override
+    public void stopped() {
+        try {
+            getRadiologyChangePoller().stop();
+        }
+        catch (Exception e) {
+            log.warn("Unable to stop the radiology change poller", e);
+        }
+        try {
+            getRadiologyHl7Listener().stop();
+        }
+        catch (Exception e) {
+            log.warn("Unable to stop the radiology HL7 listener", e);
+        }
+        try {
+            Context.getRegisteredComponent("radiologyQueryExecutor", RadiologyQueryExecutor.class).shutdown();
+        }
+        catch (Exception e) {
+            log.warn("Unable to stop the radiology query threads", e);
+        }
+        try {
+            Context.getAdministrationService().removeGlobalPropertyListener(getRadiologyProperties());
+        }
+        catch (Exception e) {
+            log.warn("Unable to remove radiology global property listener", e);
+        }
+    }
+
+    private RadiologyHl7Listener getRadiologyHl7Listener() {
+        return Context.getRegisteredComponent("radiologyHl7Listener", RadiologyHl7Listener.class);
+    }
+
+    private RadiologyChangePoller getRadiologyChangePoller() {
+        return Context.getRegisteredComponent("radiologyChangePoller", RadiologyChangePoller.class);
+    }
+
+    private RadiologyProperties getRadiologyProperties() {
+        return Context.getRegisteredComponent("radiologyProperties", RadiologyProperties.class);
+    }
+
 }
@@ -0,0 +1,112 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A row of the change log that lets the servers sharing the database discard what they have cached about the radiology
+ * data that another server changed; see {@link org.openmrs.module.radiologyapp.cluster.RadiologyChangePoller}
+ */
+public class RadiologyChange {
+
+    /**
+     * What changed: the orders, studies or reports of a patient, the encounters or radiology obs of a patient that were
+     * changed outside the radiology service, or the metadata that the module caches
+     */
+    public enum Kind { ORDER, STUDY, REPORT, ENCOUNTER, CONCEPT_SETS, PROPERTIES, ORDERABLES, PROVIDERS }
+
+    /**
+     * Identifies this server in the change log, so that it can skip the changes that it made itself
+     */
+    public static final String LOCAL_ORIGIN = UUID.randomUUID().toString();
+
+    private Integer id;
+
+    private Kind kind;
+
+    private Integer patientId;
+
+    private String accessionNumber;
+
+    private String origin;
+
+    private Date dateCreated;
+
+    public RadiologyChange() {
+    }
+
+    public RadiologyChange(Kind kind, Integer patientId, String accessionNumber) {
+        this.kind = kind;
+        this.patientId = patientId;
+        this.accessionNumber = accessionNumber;
+        this.origin = LOCAL_ORIGIN;
+        this.dateCreated = new Date();
+    }
+
+    public boolean isLocal() {
+        return LOCAL_ORIGIN.equals(origin);
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getAccessionNumber() {
+        return accessionNumber;
+    }
+
+    public void setAccessionNumber(String accessionNumber) {
+        this.accessionNumber = accessionNumber;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public Date getDateCreated() {
+        return dateCreated;
+    }
+
+    public void setDateCreated(Date dateCreated) {
+        this.dateCreated = dateCreated;
+    }
+}
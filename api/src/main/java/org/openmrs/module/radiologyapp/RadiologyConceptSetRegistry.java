@@ -0,0 +1,161 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.radiologyapp;
+
+import lombok.Setter;
+import org.hibernate.Hibernate;
+import org.openmrs.Concept;
+import org.openmrs.api.ConceptService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the radiology study and report concept set descriptors so that they are resolved once and shared, rather
+ * than running the concept-by-mapping lookups of {@link org.openmrs.module.emrapi.descriptor.ConceptSetDescriptor#setup}
+ * every time an encounter is converted.
+ * <p>
+ * The descriptors are resolved on first use (or eagerly when the module starts) and are never modified once
+ * published. They are discarded by {@link #invalidate()}, which is called when one of the referenced concepts or
+ * their mappings change (see {@link org.openmrs.module.radiologyapp.db.RadiologyMetadataInterceptor}), and are
+ * rebuilt on the next access.
+ */
+public class RadiologyConceptSetRegistry {
+
+    private static final Set<String> CONCEPT_CODES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            RadiologyConstants.CONCEPT_CODE_RADIOLOGY_STUDY_SET,
+            RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_SET,
+            RadiologyConstants.CONCEPT_CODE_RADIOLOGY_ORDER_NUMBER,
+            RadiologyConstants.CONCEPT_CODE_RADIOLOGY_IMAGES_AVAILABLE,
+            RadiologyConstants.CONCEPT_CODE_RADIOLOGY_PROCEDURE,
+            RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_BODY,
+            RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_TYPE)));
+
+    @Setter
+    private ConceptService conceptService;
+
+    private volatile ResolvedConceptSets resolved;
+
+    // bumped on every invalidation, so that a resolution that raced with an invalidation is not published
+    private final AtomicLong generation = new AtomicLong();
+
+    public RadiologyStudyConceptSet getRadiologyStudyConceptSet() {
+        return getResolved().radiologyStudyConceptSet;
+    }
+
+    public RadiologyReportConceptSet getRadiologyReportConceptSet() {
+        return getResolved().radiologyReportConceptSet;
+    }
+
+    /**
+     * Resolves the descriptors immediately, replacing any that are currently held
+     */
+    public synchronized void refresh() {
+        long expectedGeneration = generation.get();
+        ResolvedConceptSets fresh = resolve();
+        if (generation.get() == expectedGeneration) {
+            resolved = fresh;
+        }
+    }
+
+    /**
+     * Discards the current descriptors; they will be resolved again on next access
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        resolved = null;
+    }
+
+    /**
+     * @return true if the given concept is one of the concepts referenced by the current descriptors; while the
+     * descriptors are not resolved (possibly concurrently with this call) we can't tell, so any concept counts
+     */
+    public boolean isReferencedConcept(Concept concept) {
+        if (concept == null) {
+            return false;
+        }
+        ResolvedConceptSets current = resolved;
+        return current == null || current.conceptIds.contains(concept.getConceptId());
+    }
+
+    /**
+     * @return true if the given reference term code is one of the codes the descriptors are resolved from
+     */
+    public boolean isReferencedCode(String code) {
+        return code != null && CONCEPT_CODES.contains(code);
+    }
+
+    private ResolvedConceptSets getResolved() {
+        ResolvedConceptSets current = resolved;
+        if (current == null) {
+            synchronized (this) {
+                current = resolved;
+                if (current == null) {
+                    long expectedGeneration = generation.get();
+                    current = resolve();
+                    if (generation.get() == expectedGeneration) {
+                        resolved = current;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    private ResolvedConceptSets resolve() {
+        return new ResolvedConceptSets(new RadiologyStudyConceptSet(conceptService), new RadiologyReportConceptSet(conceptService));
+    }
+
+    private static class ResolvedConceptSets {
+
+        private final RadiologyStudyConceptSet radiologyStudyConceptSet;
+
+        private final RadiologyReportConceptSet radiologyReportConceptSet;
+
+        private final Set<Integer> conceptIds;
+
+        private ResolvedConceptSets(RadiologyStudyConceptSet radiologyStudyConceptSet,
+                                    RadiologyReportConceptSet radiologyReportConceptSet) {
+            this.radiologyStudyConceptSet = radiologyStudyConceptSet;
+            this.radiologyReportConceptSet = radiologyReportConceptSet;
+
+            List<Concept> concepts = Arrays.asList(
+                    radiologyStudyConceptSet.getRadiologyStudySetConcept(),
+                    radiologyStudyConceptSet.getOrderNumberConcept(),
+                    radiologyStudyConceptSet.getImagesAvailableConcept(),
+                    radiologyStudyConceptSet.getProcedureConcept(),
+                    radiologyReportConceptSet.getRadiologyReportSetConcept(),
+                    radiologyReportConceptSet.getOrderNumberConcept(),
+                    radiologyReportConceptSet.getReportBodyConcept(),
+                    radiologyReportConceptSet.getReportTypeConcept(),
+                    radiologyReportConceptSet.getProcedureConcept());
+
+            Set<Integer> ids = new HashSet<Integer>();
+            for (Concept concept : concepts) {
+                // these concepts outlive the session they were loaded in, so make sure anything we read from them
+                // later on (e.g. the datatype when building boolean obs) is already initialized
+                Hibernate.initialize(concept.getDatatype());
+                if (concept.getConceptId() != null) {
+                    ids.add(concept.getConceptId());
+                }
+            }
+            this.conceptIds = Collections.unmodifiableSet(ids);
+        }
+    }
+}
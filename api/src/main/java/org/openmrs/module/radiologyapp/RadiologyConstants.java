@@ -53,6 +53,39 @@ public class RadiologyConstants {
 
     public static final String GP_CREATININE_LEVEL_CONCEPT = "radiologyapp.creatinineLevelConcept";
 
+    public static final String GP_SAVE_BATCH_CHUNK_SIZE = "radiologyapp.saveBatchChunkSize";
+
+    public static final int DEFAULT_SAVE_BATCH_CHUNK_SIZE = 100;
+
+    public static final String GP_HL7_LISTENER_PORT = "radiologyapp.hl7ListenerPort";
+
+    public static final String GP_HL7_LISTENER_ADDRESS = "radiologyapp.hl7ListenerAddress";
+
+    public static final String DEFAULT_HL7_LISTENER_ADDRESS = "127.0.0.1";
+
+    public static final String GP_READ_FROM_STUDY_TABLES = "radiologyapp.readFromStudyTables";
+
+    public static final String GP_TIMELINE_CACHE_SIZE_KB = "radiologyapp.timelineCacheSizeKb";
+
+    public static final int DEFAULT_TIMELINE_CACHE_SIZE_KB = 16384;
+
+    public static final String GP_TIMELINE_CACHE_TTL_SECONDS = "radiologyapp.timelineCacheTtlSeconds";
+
+    public static final int DEFAULT_TIMELINE_CACHE_TTL_SECONDS = 300;
+
+    public static final String GP_CHANGE_POLL_INTERVAL_SECONDS = "radiologyapp.changePollIntervalSeconds";
+
+    public static final String GP_TIMELINE_QUERY_THREADS = "radiologyapp.timelineQueryThreads";
+
+    public static final String GP_ORDER_NUMBER_FORMAT = "radiologyapp.orderNumberFormat";
+
+    // the modality code followed by the number, e.g. CT0000123
+    public static final String DEFAULT_ORDER_NUMBER_FORMAT = "%s%07d";
+
+    public static final String GP_ORDER_NUMBER_BLOCK_SIZE = "radiologyapp.orderNumberBlockSize";
+
+    public static final int DEFAULT_ORDER_NUMBER_BLOCK_SIZE = 50;
+
 
     // concept codes used by radiology
 
@@ -76,4 +109,14 @@ public class RadiologyConstants {
 
     public static final String CONCEPT_CODE_RADIOLOGY_REPORT_CORRECTION = "Radiology report correction";
 
+    // privileges
+
+    public static final String PRIVILEGE_VIEW_METRICS = "Task: org.openmrs.module.radiologyapp.viewMetrics";
+
+    public static final String PRIVILEGE_WORKLIST = "Task: org.openmrs.module.radiologyapp.worklist";
+
+    public static final String PRIVILEGE_SEARCH_REPORTS = "Task: org.openmrs.module.radiologyapp.searchReports";
+
+    public static final String PRIVILEGE_EXPORT = "Task: org.openmrs.module.radiologyapp.export";
+
 }
@@ -0,0 +1,109 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.openmrs.Concept;
+import org.openmrs.Location;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.ProviderService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Looks up the concepts, locations and providers of one radiology timeline by id in the current session, each only
+ * once, for studies and reports that were cached or read in a session of their own
+ */
+class RadiologyEntityResolver {
+
+    private final ConceptService conceptService;
+
+    private final LocationService locationService;
+
+    private final ProviderService providerService;
+
+    private final Map<Integer, Concept> concepts = new HashMap<Integer, Concept>();
+
+    private final Map<Integer, Location> locations = new HashMap<Integer, Location>();
+
+    private final Map<Integer, Provider> providers = new HashMap<Integer, Provider>();
+
+    RadiologyEntityResolver(ConceptService conceptService, LocationService locationService,
+                            ProviderService providerService) {
+        this.conceptService = conceptService;
+        this.locationService = locationService;
+        this.providerService = providerService;
+    }
+
+    Concept getConcept(Integer conceptId) {
+        if (conceptId == null) {
+            return null;
+        }
+        if (!concepts.containsKey(conceptId)) {
+            concepts.put(conceptId, conceptService.getConcept(conceptId));
+        }
+        return concepts.get(conceptId);
+    }
+
+    Location getLocation(Integer locationId) {
+        if (locationId == null) {
+            return null;
+        }
+        if (!locations.containsKey(locationId)) {
+            locations.put(locationId, locationService.getLocation(locationId));
+        }
+        return locations.get(locationId);
+    }
+
+    Provider getProvider(Integer providerId) {
+        if (providerId == null) {
+            return null;
+        }
+        if (!providers.containsKey(providerId)) {
+            providers.put(providerId, providerService.getProvider(providerId));
+        }
+        return providers.get(providerId);
+    }
+
+    /**
+     * Replaces the entities that the study (without its reports) refers to with those of the current session
+     */
+    void reattach(RadiologyStudy radiologyStudy, Patient patient) {
+        radiologyStudy.setPatient(patient);
+        radiologyStudy.setProcedure(getConcept(getId(radiologyStudy.getProcedure())));
+        radiologyStudy.setTechnician(getProvider(getId(radiologyStudy.getTechnician())));
+        radiologyStudy.setStudyLocation(getLocation(getId(radiologyStudy.getStudyLocation())));
+    }
+
+    /**
+     * Replaces the entities that the report refers to with those of the current session
+     */
+    void reattach(RadiologyReport radiologyReport, Patient patient) {
+        radiologyReport.setPatient(patient);
+        radiologyReport.setPrincipalResultsInterpreter(getProvider(getId(radiologyReport.getPrincipalResultsInterpreter())));
+        radiologyReport.setProcedure(getConcept(getId(radiologyReport.getProcedure())));
+        radiologyReport.setReportLocation(getLocation(getId(radiologyReport.getReportLocation())));
+        radiologyReport.setReportType(getConcept(getId(radiologyReport.getReportType())));
+    }
+
+    private static Integer getId(OpenmrsObject object) {
+        return object != null ? object.getId() : null;
+    }
+}
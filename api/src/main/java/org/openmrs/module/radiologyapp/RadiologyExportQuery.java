@@ -0,0 +1,131 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.openmrs.Concept;
+import org.openmrs.Location;
+
+import java.util.Date;
+
+/**
+ * The format and filters of an export of radiology studies and reports (see
+ * {@link RadiologyService#exportRadiologyStudiesAndReports(RadiologyExportQuery, java.io.OutputStream)}); every filter
+ * is optional.
+ * <p>
+ * For an incremental export, set {@link #setChangedSince(Date)} to the time the previous export started: the export
+ * then includes the studies and reports created, changed or voided since, with voided ones flagged as such.
+ */
+public class RadiologyExportQuery {
+
+    public enum Format {
+
+        NDJSON("application/x-ndjson", "ndjson"), CSV("text/csv", "csv");
+
+        private final String contentType;
+
+        private final String fileExtension;
+
+        Format(String contentType, String fileExtension) {
+            this.contentType = contentType;
+            this.fileExtension = fileExtension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+    }
+
+    private Format format = Format.NDJSON;
+
+    private Date fromDate;
+
+    private Date toDate;
+
+    private Concept modality;
+
+    private Location location;
+
+    private Date changedSince;
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * @return the earliest date (inclusive) a study was performed or a report written to include
+     */
+    public Date getFromDate() {
+        return fromDate;
+    }
+
+    public void setFromDate(Date fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    /**
+     * @return the latest date (exclusive) a study was performed or a report written to include
+     */
+    public Date getToDate() {
+        return toDate;
+    }
+
+    public void setToDate(Date toDate) {
+        this.toDate = toDate;
+    }
+
+    /**
+     * @return the orderables concept set (e.g. the CT scan orderables) whose procedures to restrict the export to
+     */
+    public Concept getModality() {
+        return modality;
+    }
+
+    public void setModality(Concept modality) {
+        this.modality = modality;
+    }
+
+    /**
+     * @return the location where the studies were performed or the reports written
+     */
+    public Location getLocation() {
+        return location;
+    }
+
+    public void setLocation(Location location) {
+        this.location = location;
+    }
+
+    /**
+     * @return if set, only export the studies and reports whose encounters were created, changed or voided at or
+     * after this time (including the voided ones); otherwise export all those that aren't voided
+     */
+    public Date getChangedSince() {
+        return changedSince;
+    }
+
+    public void setChangedSince(Date changedSince) {
+        this.changedSince = changedSince;
+    }
+
+}
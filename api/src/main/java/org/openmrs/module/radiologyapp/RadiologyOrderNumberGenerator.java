@@ -0,0 +1,116 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import lombok.Setter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.OrderContext;
+import org.openmrs.api.OrderNumberGenerator;
+import org.openmrs.api.OrderService;
+
+import java.util.IllegalFormatException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Numbers radiology orders from blocks of numbers that each server reserves from the database, rather than from the
+ * core order number sequence that every order goes through one at a time.
+ * <p>
+ * A block is reserved in a transaction of its own, and its numbers are then handed out from memory without locking,
+ * so the numbers are unique across the servers sharing the database but not in the order the orders were placed;
+ * the numbers left in a block when the server stops are never used. The modality code of the order and the number
+ * are formatted according to radiologyapp.orderNumberFormat, e.g. CT0000123.
+ * <p>
+ * Core uses a single generator for all orders, so this only takes effect once the order.orderNumberGeneratorBeanId
+ * global property is set to radiologyOrderNumberGenerator. Orders that were not placed through
+ * {@link RadiologyService#placeRadiologyRequisition} are then numbered as core does by default.
+ */
+public class RadiologyOrderNumberGenerator implements OrderNumberGenerator {
+
+    private static final Log log = LogFactory.getLog(RadiologyOrderNumberGenerator.class);
+
+    /**
+     * The {@link OrderContext} attribute that holds the modality code of radiology orders
+     */
+    public static final String MODALITY_ATTRIBUTE = "radiologyapp.modality";
+
+    static final String SEQUENCE_NAME = "radiology_order_number";
+
+    // as core numbers orders by default
+    static final String DEFAULT_ORDER_NUMBER_PREFIX = "ORD-";
+
+    @Setter
+    private RadiologyService radiologyService;
+
+    @Setter
+    private OrderService orderService;
+
+    @Setter
+    private RadiologyProperties radiologyProperties;
+
+    private volatile Block block;
+
+    @Override
+    public String getNewOrderNumber(OrderContext orderContext) {
+        Object modality = orderContext != null ? orderContext.getAttribute(MODALITY_ATTRIBUTE) : null;
+        if (modality == null) {
+            return DEFAULT_ORDER_NUMBER_PREFIX + orderService.getNextOrderNumberSeedSequenceValue();
+        }
+
+        long number = nextNumber();
+        try {
+            return String.format(Locale.ROOT, radiologyProperties.getOrderNumberFormat(), modality, number);
+        }
+        catch (IllegalFormatException e) {
+            log.warn("Invalid " + RadiologyConstants.GP_ORDER_NUMBER_FORMAT + ", using the default: " + e.getMessage());
+            return String.format(Locale.ROOT, RadiologyConstants.DEFAULT_ORDER_NUMBER_FORMAT, modality, number);
+        }
+    }
+
+    long nextNumber() {
+        while (true) {
+            Block current = block;
+            if (current != null) {
+                long number = current.next.getAndIncrement();
+                if (number < current.end) {
+                    return number;
+                }
+            }
+            synchronized (this) {
+                // unless another thread already replaced the exhausted block meanwhile
+                if (block == current) {
+                    int count = radiologyProperties.getOrderNumberBlockSize();
+                    long first = radiologyService.reserveRadiologyOrderNumbers(count);
+                    block = new Block(first, first + count);
+                }
+            }
+        }
+    }
+
+    private static class Block {
+
+        private final AtomicLong next;
+
+        // the first number after the block
+        private final long end;
+
+        private Block(long first, long end) {
+            this.next = new AtomicLong(first);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.Concept;
+import org.openmrs.api.AdministrationService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the orderables of each modality, rendered as the JSON that the Order Radiology page offers, so that the page
+ * doesn't walk the members of the orderables concept sets and look up their names on every load.
+ * <p>
+ * The orderables are rendered per modality and locale, on first use or for all allowed locales when the module starts,
+ * and the contrast studies are looked up once for all of them. Everything is discarded by {@link #invalidate()}, which
+ * is called when one of the orderables concept sets or their members change (see
+ * {@link org.openmrs.module.radiologyapp.db.RadiologyMetadataInterceptor}), or when the configuration changes.
+ */
+public class RadiologyOrderablesCatalog {
+
+    private static final List<String> MODALITY_CODES = Arrays.asList(RadiologyConstants.XRAY_MODALITY_CODE,
+            RadiologyConstants.CT_SCAN_MODALITY_CODE, RadiologyConstants.ULTRASOUND_MODALITY_CODE);
+
+    // thread-safe once configured
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Setter
+    private RadiologyProperties radiologyProperties;
+
+    @Setter
+    private AdministrationService administrationService;
+
+    private volatile Catalog catalog;
+
+    // bumped on every invalidation, so that a catalog that raced with an invalidation is not published
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param modality a modality code, e.g. {@link RadiologyConstants#CT_SCAN_MODALITY_CODE}
+     * @param locale the locale to name the orderables in
+     * @return the orderables of the modality
+     * @throws IllegalArgumentException if the modality isn't one of the supported ones
+     */
+    public Orderables getOrderables(String modality, Locale locale) {
+        if (StringUtils.isBlank(modality)) {
+            throw new IllegalArgumentException("Invalid Modality: " + modality);
+        }
+
+        Catalog current = getCatalog();
+        String key = modality.toUpperCase() + "|" + locale;
+        Orderables orderables = current.orderables.get(key);
+        if (orderables == null) {
+            orderables = render(current, radiologyProperties.getOrderablesConcept(modality), locale);
+            // if the catalog was invalidated meanwhile this only ends up in the discarded one
+            Orderables raced = current.orderables.putIfAbsent(key, orderables);
+            if (raced != null) {
+                orderables = raced;
+            }
+        }
+        return orderables;
+    }
+
+    /**
+     * @return the ids of the orderables that require contrast, as a JSON array, or null if no contrast orderables
+     * concept is configured
+     */
+    public String getContrastStudiesJson() {
+        return getCatalog().contrastStudiesJson;
+    }
+
+    /**
+     * Renders the orderables of all modalities in all allowed locales immediately, replacing any that are currently held
+     */
+    public synchronized void refresh() {
+        // looked up before building, as looking up a modality that isn't configured bumps the configuration version
+        Map<String, Concept> orderablesConcepts = new LinkedHashMap<String, Concept>();
+        for (String modality : MODALITY_CODES) {
+            try {
+                orderablesConcepts.put(modality, radiologyProperties.getOrderablesConcept(modality));
+            }
+            catch (IllegalStateException e) {
+                // not every implementation offers every modality; the page will report it if it is asked for
+            }
+        }
+
+        long expectedGeneration = generation.get();
+        Catalog fresh = build();
+        for (Map.Entry<String, Concept> orderablesConcept : orderablesConcepts.entrySet()) {
+            for (Locale locale : administrationService.getAllowedLocales()) {
+                fresh.orderables.put(orderablesConcept.getKey() + "|" + locale,
+                        render(fresh, orderablesConcept.getValue(), locale));
+            }
+        }
+        if (generation.get() == expectedGeneration) {
+            catalog = fresh;
+        }
+    }
+
+    /**
+     * Discards all the rendered orderables; they will be rendered again on next access
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        catalog = null;
+    }
+
+    /**
+     * @return true if the given concept is one of the orderables concept sets rendered so far, one of their members, or
+     * one of the contrast orderables; while nothing is rendered (possibly concurrently with this call) we can't tell,
+     * so any concept counts
+     */
+    public boolean isCatalogedConcept(Concept concept) {
+        if (concept == null) {
+            return false;
+        }
+        Catalog current = catalog;
+        return current == null || current.conceptIds.contains(concept.getConceptId());
+    }
+
+    private Catalog getCatalog() {
+        Catalog current = catalog;
+        if (current == null || current.configurationVersion != radiologyProperties.getVersion()) {
+            synchronized (this) {
+                current = catalog;
+                if (current == null || current.configurationVersion != radiologyProperties.getVersion()) {
+                    long expectedGeneration = generation.get();
+                    current = build();
+                    if (generation.get() == expectedGeneration) {
+                        catalog = current;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    private Catalog build() {
+        // read before the concepts, so that a configuration change made meanwhile makes us build again
+        long configurationVersion = radiologyProperties.getVersion();
+
+        Set<Integer> contrastConceptIds = null;
+        String contrastStudiesJson = null;
+        Concept contrastOrderablesConcept = radiologyProperties.getContrastOrderablesConcept();
+        if (contrastOrderablesConcept != null) {
+            contrastConceptIds = new HashSet<Integer>();
+            contrastConceptIds.add(contrastOrderablesConcept.getConceptId());
+            List<Integer> contrastStudies = new ArrayList<Integer>();
+            for (Concept member : contrastOrderablesConcept.getSetMembers()) {
+                if (contrastConceptIds.add(member.getConceptId())) {
+                    contrastStudies.add(member.getConceptId());
+                }
+            }
+            contrastStudiesJson = toJson(contrastStudies);
+        }
+
+        return new Catalog(configurationVersion, contrastConceptIds, contrastStudiesJson);
+    }
+
+    private Orderables render(Catalog catalog, Concept orderablesConcept, Locale locale) {
+        // noted before reading the members, so that a change made meanwhile invalidates what we render
+        catalog.conceptIds.add(orderablesConcept.getConceptId());
+
+        List<Map<String, Object>> items = new ArrayList<Map<String, Object>>();
+        List<Map<String, Object>> itemsWithoutContrastStudies = new ArrayList<Map<String, Object>>();
+        for (Concept concept : orderablesConcept.getSetMembers()) {
+            catalog.conceptIds.add(concept.getConceptId());
+
+            Map<String, Object> item = new LinkedHashMap<String, Object>();
+            item.put("value", concept.getConceptId());
+            // TODO: this should really be fully specified name based on local
+            item.put("label", concept.getName(locale).getName());
+
+            items.add(item);
+            if (catalog.contrastConceptIds == null || !catalog.contrastConceptIds.contains(concept.getConceptId())) {
+                itemsWithoutContrastStudies.add(item);
+            }
+        }
+        return new Orderables(toJson(items), toJson(itemsWithoutContrastStudies));
+    }
+
+    private String toJson(Object value) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(value);
+        }
+        catch (JsonProcessingException e) {
+            // lists of maps of numbers and strings always serialize
+            throw new IllegalStateException("Unable to render radiology orderables as JSON", e);
+        }
+    }
+
+    /**
+     * The orderables of a modality in a locale, as a JSON array of {"value": concept id, "label": name} objects
+     */
+    public static class Orderables {
+
+        private final String json;
+
+        private final String jsonWithoutContrastStudies;
+
+        private Orderables(String json, String jsonWithoutContrastStudies) {
+            this.json = json;
+            this.jsonWithoutContrastStudies = jsonWithoutContrastStudies;
+        }
+
+        public String getJson() {
+            return json;
+        }
+
+        /**
+         * @return the orderables that don't require contrast; all of them if no contrast orderables concept is configured
+         */
+        public String getJsonWithoutContrastStudies() {
+            return jsonWithoutContrastStudies;
+        }
+    }
+
+    private static class Catalog {
+
+        private final long configurationVersion;
+
+        // the concepts that the orderables were rendered from
+        private final Set<Integer> conceptIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+        private final Set<Integer> contrastConceptIds;
+
+        private final String contrastStudiesJson;
+
+        private final ConcurrentMap<String, Orderables> orderables = new ConcurrentHashMap<String, Orderables>();
+
+        private Catalog(long configurationVersion, Set<Integer> contrastConceptIds, String contrastStudiesJson) {
+            this.configurationVersion = configurationVersion;
+            this.contrastConceptIds = contrastConceptIds;
+            this.contrastStudiesJson = contrastStudiesJson;
+            if (contrastConceptIds != null) {
+                conceptIds.addAll(contrastConceptIds);
+            }
+        }
+    }
+}
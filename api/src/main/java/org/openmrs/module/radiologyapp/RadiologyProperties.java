@@ -16,10 +16,12 @@ package org.openmrs.module.radiologyapp;
 
 import lombok.Setter;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.openmrs.CareSetting;
 import org.openmrs.Concept;
 import org.openmrs.EncounterRole;
 import org.openmrs.EncounterType;
+import org.openmrs.GlobalProperty;
 import org.openmrs.Location;
 import org.openmrs.OpenmrsMetadata;
 import org.openmrs.OrderType;
@@ -27,13 +29,36 @@ import org.openmrs.Provider;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.EncounterService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.LocationService;
 import org.openmrs.api.OrderService;
 import org.openmrs.api.ProviderService;
 import org.openmrs.module.emrapi.EmrApiConstants;
 import org.openmrs.module.metadatamapping.MetadataTermMapping;
 import org.openmrs.module.metadatamapping.api.MetadataMappingService;
 
-public class RadiologyProperties {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Radiology configuration, read from global properties and emrapi metadata mappings.
+ * <p>
+ * The settings are resolved together into an immutable snapshot which is reused until a relevant global property or
+ * metadata mapping changes (see {@link #globalPropertyChanged} and
+ * {@link org.openmrs.module.radiologyapp.db.RadiologyMetadataInterceptor}). The snapshot only holds primary keys, so
+ * the getters still return entities attached to the caller's session, but fetching them by id avoids the global
+ * property read and uuid query per call.
+ */
+public class RadiologyProperties implements GlobalPropertyListener {
+
+    private static final String EMRAPI_METADATA_SOURCE = "org.openmrs.module.emrapi";
 
     @Setter
     private AdministrationService administrationService;
@@ -53,148 +78,433 @@ public class RadiologyProperties {
     @Setter
     private ProviderService providerService;
 
+    @Setter
+    private LocationService locationService;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+
+    private final AtomicLong version = new AtomicLong();
+
     public Concept getXrayOrderablesConcept() {
-        return getConceptByGlobalProperty(RadiologyConstants.GP_XRAY_ORDERABLES_CONCEPT);
+        return getRequired(conceptService.getConcept(getRequiredId(RadiologyConstants.GP_XRAY_ORDERABLES_CONCEPT)),
+                RadiologyConstants.GP_XRAY_ORDERABLES_CONCEPT);
     }
 
     public Concept getCTScanOrderablesConcept() {
-        return getConceptByGlobalProperty(RadiologyConstants.GP_CT_SCAN_ORDERABLES_CONCEPT);
+        return getRequired(conceptService.getConcept(getRequiredId(RadiologyConstants.GP_CT_SCAN_ORDERABLES_CONCEPT)),
+                RadiologyConstants.GP_CT_SCAN_ORDERABLES_CONCEPT);
     }
 
     public Concept getUltrasoundOrderablesConcept() {
-        return getConceptByGlobalProperty(RadiologyConstants.GP_ULTRASOUND_ORDERABLES_CONCEPT);
+        return getRequired(conceptService.getConcept(getRequiredId(RadiologyConstants.GP_ULTRASOUND_ORDERABLES_CONCEPT)),
+                RadiologyConstants.GP_ULTRASOUND_ORDERABLES_CONCEPT);
+    }
+
+    /**
+     * @param modality a modality code, e.g. {@link RadiologyConstants#CT_SCAN_MODALITY_CODE}
+     * @return the orderables concept set of the modality, or null if no modality is given
+     * @throws IllegalArgumentException if the modality isn't one of the supported ones
+     */
+    public Concept getOrderablesConcept(String modality) {
+        if (StringUtils.isBlank(modality)) {
+            return null;
+        }
+        else if (modality.equalsIgnoreCase(RadiologyConstants.XRAY_MODALITY_CODE)) {
+            return getXrayOrderablesConcept();
+        }
+        else if (modality.equalsIgnoreCase(RadiologyConstants.CT_SCAN_MODALITY_CODE)) {
+            return getCTScanOrderablesConcept();
+        }
+        else if (modality.equalsIgnoreCase(RadiologyConstants.ULTRASOUND_MODALITY_CODE)) {
+            return getUltrasoundOrderablesConcept();
+        }
+        else {
+            throw new IllegalArgumentException("Invalid Modality: " + modality);
+        }
     }
 
     public EncounterType getRadiologyOrderEncounterType() {
-        return getEncounterTypeByGlobalProperty(RadiologyConstants.GP_RADIOLOGY_ORDER_ENCOUNTER_TYPE, true);
+        return getEncounterType(RadiologyConstants.GP_RADIOLOGY_ORDER_ENCOUNTER_TYPE);
     }
 
     public EncounterType getRadiologyStudyEncounterType() {
-        return getEncounterTypeByGlobalProperty(RadiologyConstants.GP_RADIOLOGY_STUDY_ENCOUNTER_TYPE, true);
+        return getEncounterType(RadiologyConstants.GP_RADIOLOGY_STUDY_ENCOUNTER_TYPE);
     }
 
     public EncounterType getRadiologyReportEncounterType() {
-        return getEncounterTypeByGlobalProperty(RadiologyConstants.GP_RADIOLOGY_REPORT_ENCOUNTER_TYPE, true);
+        return getEncounterType(RadiologyConstants.GP_RADIOLOGY_REPORT_ENCOUNTER_TYPE);
     }
 
     public EncounterRole getRadiologyTechnicianEncounterRole() {
-        return getEncounterRoleByGlobalProperty(RadiologyConstants.GP_RADIOLOGY_TECHNICIAN_ENCOUNTER_ROLE);
+        return getEncounterRole(RadiologyConstants.GP_RADIOLOGY_TECHNICIAN_ENCOUNTER_ROLE);
     }
 
     public EncounterRole getPrincipalResultsInterpreterEncounterRole() {
-        return getEncounterRoleByGlobalProperty(RadiologyConstants.GP_PRINCIPAL_RESULTS_INTERPRETER_ENCOUNTER_ROLE);
+        return getEncounterRole(RadiologyConstants.GP_PRINCIPAL_RESULTS_INTERPRETER_ENCOUNTER_ROLE);
     }
 
     public OrderType getRadiologyTestOrderType() {
-        return getOrderTypeByGlobalProperty(RadiologyConstants.GP_RADIOLOGY_TEST_ORDER_TYPE);
+        return getRequired(orderService.getOrderType(getRequiredId(RadiologyConstants.GP_RADIOLOGY_TEST_ORDER_TYPE)),
+                RadiologyConstants.GP_RADIOLOGY_TEST_ORDER_TYPE);
     }
 
     public CareSetting getRadiologyCareSetting() {
-        String globalProperty = administrationService.getGlobalProperty(RadiologyConstants.GP_RADIOLOGY_CARE_SETTING);
-        CareSetting careSetting = orderService.getCareSettingByUuid(globalProperty);
-        if (careSetting == null) {
-            throw new IllegalStateException("Configuration required: " + RadiologyConstants.GP_RADIOLOGY_CARE_SETTING);
-        }
-        return careSetting;
+        return getRequired(orderService.getCareSetting(getRequiredId(RadiologyConstants.GP_RADIOLOGY_CARE_SETTING)),
+                RadiologyConstants.GP_RADIOLOGY_CARE_SETTING);
     }
 
     // used to specify the orderables that require contrast; not mandatory, but if this concept is set
     // then went ordering an study the procedure ordered will be tested against this set if it is a member
     // of the set specific contrast-related questions will be asked (currently just the creatinine level of the patient)
     public Concept getContrastOrderablesConcept() {
-        if (StringUtils.isNotBlank(administrationService.getGlobalProperty(RadiologyConstants.GP_CONTRAST_ORDERABLES_CONCEPT))) {
-            return getConceptByGlobalProperty(RadiologyConstants.GP_CONTRAST_ORDERABLES_CONCEPT);
-        }
-        else {
-            // allowed to be null
-            return null;
-        }
+        Integer conceptId = getOptionalId(RadiologyConstants.GP_CONTRAST_ORDERABLES_CONCEPT);
+        // allowed to be null
+        return conceptId != null ? getRequired(conceptService.getConcept(conceptId), RadiologyConstants.GP_CONTRAST_ORDERABLES_CONCEPT) : null;
     }
 
     // only mandatory when specifying contrast orderables
     public Concept getCreatinineLevelConcept() {
-       return getConceptByGlobalProperty(RadiologyConstants.GP_CREATININE_LEVEL_CONCEPT);
+        return getRequired(conceptService.getConcept(getRequiredId(RadiologyConstants.GP_CREATININE_LEVEL_CONCEPT)),
+                RadiologyConstants.GP_CREATININE_LEVEL_CONCEPT);
     }
 
     // not mandatory, only used to display contact info on some error messages
     public String getLeadRadiologyTechName() {
-        return administrationService.getGlobalProperty(RadiologyConstants.GP_LEAD_RADIOLOGY_TECH_NAME);
+        return getSnapshot().values.get(RadiologyConstants.GP_LEAD_RADIOLOGY_TECH_NAME);
     }
 
     // not mandatory, only used to display contact info on some error messages
     public String getLeadRadiologyTechContactInfo() {
-        return administrationService.getGlobalProperty(RadiologyConstants.GP_LEAD_RADIOLOGY_TECH_CONTACT_INFO);
+        return getSnapshot().values.get(RadiologyConstants.GP_LEAD_RADIOLOGY_TECH_CONTACT_INFO);
+    }
+
+    // not mandatory; the number of studies or reports that a batch save writes before flushing and clearing the session
+    public int getSaveBatchChunkSize() {
+        int chunkSize = NumberUtils.toInt(getSnapshot().values.get(RadiologyConstants.GP_SAVE_BATCH_CHUNK_SIZE),
+                RadiologyConstants.DEFAULT_SAVE_BATCH_CHUNK_SIZE);
+        return chunkSize > 0 ? chunkSize : RadiologyConstants.DEFAULT_SAVE_BATCH_CHUNK_SIZE;
+    }
+
+    // not mandatory; the HL7 listener is only started if a port is set
+    public Integer getHl7ListenerPort() {
+        int port = NumberUtils.toInt(StringUtils.trim(getSnapshot().values.get(RadiologyConstants.GP_HL7_LISTENER_PORT)), -1);
+        return port > 0 && port <= 65535 ? port : null;
+    }
+
+    // not mandatory; by default the HL7 listener only accepts connections from the same machine
+    public String getHl7ListenerAddress() {
+        String address = getSnapshot().values.get(RadiologyConstants.GP_HL7_LISTENER_ADDRESS);
+        return StringUtils.isNotBlank(address) ? address.trim() : RadiologyConstants.DEFAULT_HL7_LISTENER_ADDRESS;
+    }
+
+    // not mandatory; studies and reports are always written to both the obs and the emr_radiology_study and
+    // emr_radiology_report tables, but only read from the tables once they have been backfilled and this is switched on
+    public boolean isReadFromStudyTables() {
+        return "true".equalsIgnoreCase(StringUtils.trim(getSnapshot().values.get(RadiologyConstants.GP_READ_FROM_STUDY_TABLES)));
+    }
+
+    // not mandatory; the (estimated) memory that the cache of patients' radiology timelines may take up, 0 to switch it off
+    public long getTimelineCacheMaxBytes() {
+        int sizeKb = NumberUtils.toInt(StringUtils.trim(getSnapshot().values.get(RadiologyConstants.GP_TIMELINE_CACHE_SIZE_KB)),
+                RadiologyConstants.DEFAULT_TIMELINE_CACHE_SIZE_KB);
+        return sizeKb >= 0 ? sizeKb * 1024L : RadiologyConstants.DEFAULT_TIMELINE_CACHE_SIZE_KB * 1024L;
+    }
+
+    // not mandatory; how long a cached radiology timeline is used for, even if nothing invalidates it
+    public long getTimelineCacheTtlMillis() {
+        int ttlSeconds = NumberUtils.toInt(StringUtils.trim(getSnapshot().values.get(RadiologyConstants.GP_TIMELINE_CACHE_TTL_SECONDS)),
+                RadiologyConstants.DEFAULT_TIMELINE_CACHE_TTL_SECONDS);
+        return TimeUnit.SECONDS.toMillis(ttlSeconds > 0 ? ttlSeconds : RadiologyConstants.DEFAULT_TIMELINE_CACHE_TTL_SECONDS);
+    }
+
+    // not mandatory; how often each node reads the changes made by the other nodes from the change log, 0 (the
+    // default, for a single node) to neither write nor read the change log
+    public int getChangePollIntervalSeconds() {
+        int intervalSeconds = NumberUtils.toInt(StringUtils.trim(getSnapshot().values.get(RadiologyConstants.GP_CHANGE_POLL_INTERVAL_SECONDS)), 0);
+        return Math.max(intervalSeconds, 0);
+    }
+
+    public boolean isChangeLogEnabled() {
+        return getChangePollIntervalSeconds() > 0;
+    }
+
+    // not mandatory; how many of the queries that assemble patients' radiology timelines may run at the same time on
+    // threads of their own, 0 (the default) to run them one after the other
+    public int getTimelineQueryThreads() {
+        int threads = NumberUtils.toInt(StringUtils.trim(getSnapshot().values.get(RadiologyConstants.GP_TIMELINE_QUERY_THREADS)), 0);
+        return Math.max(threads, 0);
+    }
+
+    // not mandatory; how the radiology order number generator formats the modality code and the number of an order
+    public String getOrderNumberFormat() {
+        String format = getSnapshot().values.get(RadiologyConstants.GP_ORDER_NUMBER_FORMAT);
+        return StringUtils.isNotBlank(format) ? format.trim() : RadiologyConstants.DEFAULT_ORDER_NUMBER_FORMAT;
+    }
+
+    // not mandatory; how many order numbers each node reserves at a time
+    public int getOrderNumberBlockSize() {
+        int blockSize = NumberUtils.toInt(StringUtils.trim(getSnapshot().values.get(RadiologyConstants.GP_ORDER_NUMBER_BLOCK_SIZE)),
+                RadiologyConstants.DEFAULT_ORDER_NUMBER_BLOCK_SIZE);
+        return blockSize > 0 ? blockSize : RadiologyConstants.DEFAULT_ORDER_NUMBER_BLOCK_SIZE;
     }
 
     // Copied over from emrapiproperties
 
     public EncounterRole getOrderingProviderEncounterRole() {
-        return getEmrApiMetadataByCode(EncounterRole.class, EmrApiConstants.GP_ORDERING_PROVIDER_ENCOUNTER_ROLE, true);
+        return getEncounterRole(EmrApiConstants.GP_ORDERING_PROVIDER_ENCOUNTER_ROLE);
     }
 
     public Location getUnknownLocation() {
-        return getEmrApiMetadataByCode(Location.class, EmrApiConstants.GP_UNKNOWN_LOCATION, true);
+        return getRequired(locationService.getLocation(getRequiredId(EmrApiConstants.GP_UNKNOWN_LOCATION)),
+                EmrApiConstants.GP_UNKNOWN_LOCATION);
     }
 
     public Provider getUnknownProvider() {
-        return providerService.getProviderByUuid(getEmrApiMetadataUuidByCode(EmrApiConstants.GP_UNKNOWN_PROVIDER, true));
+        return getRequired(providerService.getProvider(getRequiredId(EmrApiConstants.GP_UNKNOWN_PROVIDER)),
+                EmrApiConstants.GP_UNKNOWN_PROVIDER);
+    }
+
+    /**
+     * Rebuilds the configuration snapshot from the current global properties and metadata mappings
+     *
+     * @return a description of each required setting that is missing or invalid; empty if the configuration is complete
+     */
+    public List<String> refresh() {
+        invalidate();
+        return getSnapshot().getProblems();
+    }
+
+    /**
+     * @return a number that changes whenever the configuration snapshot is discarded, so that what was built from an
+     * earlier configuration can be told apart
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Discards the current configuration snapshot; it will be rebuilt on next access
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    /**
+     * @return true if the global property with the given name is part of the radiology configuration
+     */
+    public boolean isRadiologyGlobalProperty(String propertyName) {
+        return propertyName != null && (propertyName.startsWith("emr.radiology") || propertyName.startsWith("radiologyapp.")
+                || propertyName.equals(RadiologyConstants.GP_PRINCIPAL_RESULTS_INTERPRETER_ENCOUNTER_ROLE)
+                || propertyName.equals(RadiologyConstants.GP_XRAY_ORDERABLES_CONCEPT)
+                || propertyName.equals(RadiologyConstants.GP_CT_SCAN_ORDERABLES_CONCEPT)
+                || propertyName.equals(RadiologyConstants.GP_ULTRASOUND_ORDERABLES_CONCEPT));
+    }
+
+    @Override
+    public boolean supportsPropertyName(String propertyName) {
+        return isRadiologyGlobalProperty(propertyName);
+    }
+
+    @Override
+    public void globalPropertyChanged(GlobalProperty newValue) {
+        invalidate();
+    }
+
+    @Override
+    public void globalPropertyDeleted(String propertyName) {
+        invalidate();
     }
 
     // Helper methods
 
-    protected Concept getConceptByGlobalProperty(String globalPropertyName) {
-        String globalProperty = administrationService.getGlobalProperty(globalPropertyName);
-        Concept concept = conceptService.getConceptByUuid(globalProperty);
-        if (concept == null) {
-            throw new IllegalStateException("Configuration required: " + globalPropertyName);
+    protected Snapshot getSnapshot() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            long expectedVersion = version.get();
+            Snapshot built = buildSnapshot(expectedVersion);
+            // if the configuration changed while we were building, we still use what we built for this call, but
+            // don't publish it; the next call will build from the new configuration
+            if (version.get() == expectedVersion) {
+                snapshot.compareAndSet(null, built);
+            }
+            current = built;
         }
-        return concept;
+        return current;
     }
 
-    protected EncounterType getEncounterTypeByGlobalProperty(String globalPropertyName, boolean required) {
-        String globalProperty = administrationService.getGlobalProperty(globalPropertyName);
-        EncounterType encounterType = encounterService.getEncounterTypeByUuid(globalProperty);
-        if (required && encounterType == null) {
-            throw new IllegalStateException("Configuration required: " + globalPropertyName);
+    private Snapshot buildSnapshot(long version) {
+        SnapshotBuilder builder = new SnapshotBuilder();
+
+        builder.put(RadiologyConstants.GP_XRAY_ORDERABLES_CONCEPT, getConceptIdByGlobalProperty(RadiologyConstants.GP_XRAY_ORDERABLES_CONCEPT));
+        builder.put(RadiologyConstants.GP_CT_SCAN_ORDERABLES_CONCEPT, getConceptIdByGlobalProperty(RadiologyConstants.GP_CT_SCAN_ORDERABLES_CONCEPT));
+        builder.put(RadiologyConstants.GP_ULTRASOUND_ORDERABLES_CONCEPT, getConceptIdByGlobalProperty(RadiologyConstants.GP_ULTRASOUND_ORDERABLES_CONCEPT));
+
+        builder.put(RadiologyConstants.GP_RADIOLOGY_ORDER_ENCOUNTER_TYPE, getEncounterTypeIdByGlobalProperty(RadiologyConstants.GP_RADIOLOGY_ORDER_ENCOUNTER_TYPE));
+        builder.put(RadiologyConstants.GP_RADIOLOGY_STUDY_ENCOUNTER_TYPE, getEncounterTypeIdByGlobalProperty(RadiologyConstants.GP_RADIOLOGY_STUDY_ENCOUNTER_TYPE));
+        builder.put(RadiologyConstants.GP_RADIOLOGY_REPORT_ENCOUNTER_TYPE, getEncounterTypeIdByGlobalProperty(RadiologyConstants.GP_RADIOLOGY_REPORT_ENCOUNTER_TYPE));
+
+        builder.put(RadiologyConstants.GP_RADIOLOGY_TECHNICIAN_ENCOUNTER_ROLE, getEncounterRoleIdByGlobalProperty(RadiologyConstants.GP_RADIOLOGY_TECHNICIAN_ENCOUNTER_ROLE));
+        builder.put(RadiologyConstants.GP_PRINCIPAL_RESULTS_INTERPRETER_ENCOUNTER_ROLE, getEncounterRoleIdByGlobalProperty(RadiologyConstants.GP_PRINCIPAL_RESULTS_INTERPRETER_ENCOUNTER_ROLE));
+
+        OrderType orderType = orderService.getOrderTypeByUuid(administrationService.getGlobalProperty(RadiologyConstants.GP_RADIOLOGY_TEST_ORDER_TYPE));
+        builder.put(RadiologyConstants.GP_RADIOLOGY_TEST_ORDER_TYPE, orderType != null ? orderType.getId() : null);
+
+        CareSetting careSetting = orderService.getCareSettingByUuid(administrationService.getGlobalProperty(RadiologyConstants.GP_RADIOLOGY_CARE_SETTING));
+        builder.put(RadiologyConstants.GP_RADIOLOGY_CARE_SETTING, careSetting != null ? careSetting.getId() : null);
+
+        if (StringUtils.isNotBlank(administrationService.getGlobalProperty(RadiologyConstants.GP_CONTRAST_ORDERABLES_CONCEPT))) {
+            builder.put(RadiologyConstants.GP_CONTRAST_ORDERABLES_CONCEPT, getConceptIdByGlobalProperty(RadiologyConstants.GP_CONTRAST_ORDERABLES_CONCEPT));
+            builder.put(RadiologyConstants.GP_CREATININE_LEVEL_CONCEPT, getConceptIdByGlobalProperty(RadiologyConstants.GP_CREATININE_LEVEL_CONCEPT));
+        }
+        else {
+            builder.putOptional(RadiologyConstants.GP_CONTRAST_ORDERABLES_CONCEPT, null);
+            builder.putOptional(RadiologyConstants.GP_CREATININE_LEVEL_CONCEPT, getConceptIdByGlobalProperty(RadiologyConstants.GP_CREATININE_LEVEL_CONCEPT));
         }
-        return encounterType;
+
+        builder.putValue(RadiologyConstants.GP_LEAD_RADIOLOGY_TECH_NAME, administrationService.getGlobalProperty(RadiologyConstants.GP_LEAD_RADIOLOGY_TECH_NAME));
+        builder.putValue(RadiologyConstants.GP_LEAD_RADIOLOGY_TECH_CONTACT_INFO, administrationService.getGlobalProperty(RadiologyConstants.GP_LEAD_RADIOLOGY_TECH_CONTACT_INFO));
+        builder.putValue(RadiologyConstants.GP_SAVE_BATCH_CHUNK_SIZE, administrationService.getGlobalProperty(RadiologyConstants.GP_SAVE_BATCH_CHUNK_SIZE));
+        builder.putValue(RadiologyConstants.GP_HL7_LISTENER_PORT, administrationService.getGlobalProperty(RadiologyConstants.GP_HL7_LISTENER_PORT));
+        builder.putValue(RadiologyConstants.GP_HL7_LISTENER_ADDRESS, administrationService.getGlobalProperty(RadiologyConstants.GP_HL7_LISTENER_ADDRESS));
+        builder.putValue(RadiologyConstants.GP_READ_FROM_STUDY_TABLES, administrationService.getGlobalProperty(RadiologyConstants.GP_READ_FROM_STUDY_TABLES));
+        builder.putValue(RadiologyConstants.GP_TIMELINE_CACHE_SIZE_KB, administrationService.getGlobalProperty(RadiologyConstants.GP_TIMELINE_CACHE_SIZE_KB));
+        builder.putValue(RadiologyConstants.GP_TIMELINE_CACHE_TTL_SECONDS, administrationService.getGlobalProperty(RadiologyConstants.GP_TIMELINE_CACHE_TTL_SECONDS));
+        builder.putValue(RadiologyConstants.GP_CHANGE_POLL_INTERVAL_SECONDS, administrationService.getGlobalProperty(RadiologyConstants.GP_CHANGE_POLL_INTERVAL_SECONDS));
+        builder.putValue(RadiologyConstants.GP_TIMELINE_QUERY_THREADS, administrationService.getGlobalProperty(RadiologyConstants.GP_TIMELINE_QUERY_THREADS));
+        builder.putValue(RadiologyConstants.GP_ORDER_NUMBER_FORMAT, administrationService.getGlobalProperty(RadiologyConstants.GP_ORDER_NUMBER_FORMAT));
+        builder.putValue(RadiologyConstants.GP_ORDER_NUMBER_BLOCK_SIZE, administrationService.getGlobalProperty(RadiologyConstants.GP_ORDER_NUMBER_BLOCK_SIZE));
+
+        EncounterRole orderingProviderEncounterRole = getEmrApiMetadataByCode(EncounterRole.class, EmrApiConstants.GP_ORDERING_PROVIDER_ENCOUNTER_ROLE);
+        builder.put(EmrApiConstants.GP_ORDERING_PROVIDER_ENCOUNTER_ROLE, orderingProviderEncounterRole != null ? orderingProviderEncounterRole.getId() : null);
+
+        Location unknownLocation = getEmrApiMetadataByCode(Location.class, EmrApiConstants.GP_UNKNOWN_LOCATION);
+        builder.put(EmrApiConstants.GP_UNKNOWN_LOCATION, unknownLocation != null ? unknownLocation.getId() : null);
+
+        String unknownProviderUuid = getEmrApiMetadataUuidByCode(EmrApiConstants.GP_UNKNOWN_PROVIDER);
+        Provider unknownProvider = unknownProviderUuid != null ? providerService.getProviderByUuid(unknownProviderUuid) : null;
+        builder.put(EmrApiConstants.GP_UNKNOWN_PROVIDER, unknownProvider != null ? unknownProvider.getId() : null);
+
+        return builder.build(version);
+    }
+
+    private EncounterType getEncounterType(String globalPropertyName) {
+        return getRequired(encounterService.getEncounterType(getRequiredId(globalPropertyName)), globalPropertyName);
     }
 
-    protected EncounterRole getEncounterRoleByGlobalProperty(String globalPropertyName) {
-        String globalProperty = administrationService.getGlobalProperty(globalPropertyName);
-        EncounterRole encounterRole = encounterService.getEncounterRoleByUuid(globalProperty);
-        if (encounterRole == null) {
-            throw new IllegalStateException("Configuration required: " + globalPropertyName);
+    private EncounterRole getEncounterRole(String settingName) {
+        return getRequired(encounterService.getEncounterRole(getRequiredId(settingName)), settingName);
+    }
+
+    private Integer getRequiredId(String settingName) {
+        Integer id = getSnapshot().ids.get(settingName);
+        if (id == null) {
+            // the metadata may have been created since the snapshot was built, e.g. by a module started after this one
+            invalidate();
+            throw new IllegalStateException("Configuration required: " + settingName);
         }
-        return encounterRole;
+        return id;
     }
 
-    protected OrderType getOrderTypeByGlobalProperty(String globalPropertyName) {
-        String globalProperty = administrationService.getGlobalProperty(globalPropertyName);
-        OrderType orderType = orderService.getOrderTypeByUuid(globalProperty);
-        if (orderType == null) {
-            throw new IllegalStateException("Configuration required: " + globalPropertyName);
+    // returns null if the setting is not configured, but still fails if it is configured with an invalid value
+    private Integer getOptionalId(String settingName) {
+        Snapshot current = getSnapshot();
+        if (current.problems.containsKey(settingName)) {
+            invalidate();
+            throw new IllegalStateException(current.problems.get(settingName));
         }
-        return orderType;
+        return current.ids.get(settingName);
     }
 
-    protected <T extends OpenmrsMetadata> T getEmrApiMetadataByCode(Class<T> type, String code, boolean required) {
-        T metadataItem = metadataMappingService.getMetadataItem(type, "org.openmrs.module.emrapi", code);
-        if (required && metadataItem == null) {
-            throw new IllegalStateException("Configuration required: " + code);
-        } else {
-            return metadataItem;
+    private <T> T getRequired(T item, String settingName) {
+        if (item == null) {
+            // the metadata has been deleted since the snapshot was built
+            invalidate();
+            throw new IllegalStateException("Configuration required: " + settingName);
         }
+        return item;
     }
 
-    protected String getEmrApiMetadataUuidByCode(String mappingCode, boolean required) {
-        MetadataTermMapping mapping = metadataMappingService.getMetadataTermMapping("org.openmrs.module.emrapi", mappingCode);
-        if (mapping != null && mapping.getMetadataUuid() != null) {
-            return mapping.getMetadataUuid();
-        } else if (required) {
-            throw new IllegalStateException("Configuration required: " + mappingCode);
-        } else {
-            return null;
+    protected Integer getConceptIdByGlobalProperty(String globalPropertyName) {
+        Concept concept = conceptService.getConceptByUuid(administrationService.getGlobalProperty(globalPropertyName));
+        return concept != null ? concept.getId() : null;
+    }
+
+    protected Integer getEncounterTypeIdByGlobalProperty(String globalPropertyName) {
+        EncounterType encounterType = encounterService.getEncounterTypeByUuid(administrationService.getGlobalProperty(globalPropertyName));
+        return encounterType != null ? encounterType.getId() : null;
+    }
+
+    protected Integer getEncounterRoleIdByGlobalProperty(String globalPropertyName) {
+        EncounterRole encounterRole = encounterService.getEncounterRoleByUuid(administrationService.getGlobalProperty(globalPropertyName));
+        return encounterRole != null ? encounterRole.getId() : null;
+    }
+
+    protected <T extends OpenmrsMetadata> T getEmrApiMetadataByCode(Class<T> type, String code) {
+        return metadataMappingService.getMetadataItem(type, EMRAPI_METADATA_SOURCE, code);
+    }
+
+    protected String getEmrApiMetadataUuidByCode(String mappingCode) {
+        MetadataTermMapping mapping = metadataMappingService.getMetadataTermMapping(EMRAPI_METADATA_SOURCE, mappingCode);
+        return mapping != null ? mapping.getMetadataUuid() : null;
+    }
+
+    /**
+     * An immutable view of the radiology configuration at a given version
+     */
+    protected static class Snapshot {
+
+        private final long version;
+
+        private final Map<String, Integer> ids;
+
+        private final Map<String, String> values;
+
+        private final Map<String, String> problems;
+
+        private Snapshot(long version, Map<String, Integer> ids, Map<String, String> values, Map<String, String> problems) {
+            this.version = version;
+            this.ids = Collections.unmodifiableMap(new HashMap<String, Integer>(ids));
+            this.values = Collections.unmodifiableMap(new HashMap<String, String>(values));
+            this.problems = Collections.unmodifiableMap(new LinkedHashMap<String, String>(problems));
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<String> getProblems() {
+            return new ArrayList<String>(problems.values());
+        }
+    }
+
+    private static class SnapshotBuilder {
+
+        private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+        private final Map<String, String> values = new HashMap<String, String>();
+
+        private final Map<String, String> problems = new LinkedHashMap<String, String>();
+
+        private void put(String settingName, Integer id) {
+            if (id == null) {
+                problems.put(settingName, "Configuration required: " + settingName);
+            }
+            putOptional(settingName, id);
+        }
+
+        private void putOptional(String settingName, Integer id) {
+            if (id != null) {
+                ids.put(settingName, id);
+            }
+        }
+
+        private void putValue(String settingName, String value) {
+            values.put(settingName, value);
+        }
+
+        private Snapshot build(long version) {
+            return new Snapshot(version, ids, values, problems);
         }
     }
 }
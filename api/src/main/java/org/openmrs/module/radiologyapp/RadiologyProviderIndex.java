@@ -0,0 +1,289 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.Person;
+import org.openmrs.Provider;
+import org.openmrs.api.ProviderService;
+import org.openmrs.util.ProviderByPersonNameComparator;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory index of the names of the active providers, so that the provider of a radiology order can be looked up
+ * as the user types rather than by listing all of the providers on the order page.
+ * <p>
+ * Every word of a provider's name is indexed, in lower case and without accents, in a sorted array that is binary
+ * searched for the words that start with what was typed. Results are returned in the order of
+ * {@link ProviderByPersonNameComparator}, as the full list used to be.
+ * <p>
+ * The index is built on first use (or eagerly when the module starts) and is never modified once published. It is
+ * discarded by {@link #invalidate()}, which is called when a provider or the name of one changes (see
+ * {@link org.openmrs.module.radiologyapp.db.RadiologyMetadataInterceptor}), and is rebuilt on the next search.
+ */
+public class RadiologyProviderIndex {
+
+    private static final Pattern NON_WORD_CHARACTERS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    @Setter
+    private ProviderService providerService;
+
+    private volatile Index index;
+
+    // bumped on every invalidation, so that an index that raced with an invalidation is not published
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param query the start of any of the words of the names to look for, e.g. "jo sm" finds John Smith
+     * @param limit the maximum number of providers to return
+     * @return the providers whose names match, ordered by name
+     */
+    public List<Entry> search(String query, int limit) {
+        List<String> terms = getWords(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        // the longest term narrows down the candidates the most; the others are checked for each candidate
+        String narrowest = terms.get(0);
+        for (String term : terms) {
+            if (term.length() > narrowest.length()) {
+                narrowest = term;
+            }
+        }
+
+        Index current = getIndex();
+        Set<Integer> matches = new TreeSet<Integer>();
+        for (int i = current.lowerBound(narrowest); i < current.words.length && current.words[i].startsWith(narrowest); i++) {
+            int position = current.entryPositions[i];
+            if (!matches.contains(position) && current.entries[position].matchesAll(terms)) {
+                matches.add(position);
+            }
+        }
+
+        List<Entry> results = new ArrayList<Entry>();
+        for (Integer position : matches) {
+            if (results.size() == limit) {
+                break;
+            }
+            results.add(current.entries[position]);
+        }
+        return results;
+    }
+
+    /**
+     * Builds the index immediately, replacing the one that is currently held
+     */
+    public synchronized void refresh() {
+        long expectedGeneration = generation.get();
+        Index fresh = build();
+        if (generation.get() == expectedGeneration) {
+            index = fresh;
+        }
+    }
+
+    /**
+     * Discards the index; it will be built again on next search
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        index = null;
+    }
+
+    /**
+     * @return true if the given person is an indexed provider; while the index isn't built (possibly concurrently with
+     * this call) we can't tell, so any person counts
+     */
+    public boolean isIndexedPerson(Person person) {
+        if (person == null) {
+            return false;
+        }
+        Index current = index;
+        return current == null || current.personIds.contains(person.getPersonId());
+    }
+
+    private Index getIndex() {
+        Index current = index;
+        if (current == null) {
+            synchronized (this) {
+                current = index;
+                if (current == null) {
+                    long expectedGeneration = generation.get();
+                    current = build();
+                    if (generation.get() == expectedGeneration) {
+                        index = current;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    private Index build() {
+        List<Provider> providers = providerService.getAllProviders(false);
+        Collections.sort(providers, new ProviderByPersonNameComparator());
+
+        Entry[] entries = new Entry[providers.size()];
+        Set<Integer> personIds = new HashSet<Integer>();
+        List<IndexedWord> indexedWords = new ArrayList<IndexedWord>();
+        for (int position = 0; position < entries.length; position++) {
+            Provider provider = providers.get(position);
+            List<String> words = getWords(provider.getName());
+            entries[position] = new Entry(provider.getProviderId(), provider.getName(), words);
+            for (String word : new HashSet<String>(words)) {
+                indexedWords.add(new IndexedWord(word, position));
+            }
+            if (provider.getPerson() != null) {
+                personIds.add(provider.getPerson().getPersonId());
+            }
+        }
+        Collections.sort(indexedWords);
+
+        String[] words = new String[indexedWords.size()];
+        int[] entryPositions = new int[indexedWords.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = indexedWords.get(i).word;
+            entryPositions[i] = indexedWords.get(i).position;
+        }
+        return new Index(entries, words, entryPositions, personIds);
+    }
+
+    // lower case, without accents, so that e.g. "jose" finds José
+    private static List<String> getWords(String text) {
+        List<String> words = new ArrayList<String>();
+        if (StringUtils.isBlank(text)) {
+            return words;
+        }
+        String normalized = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String word : NON_WORD_CHARACTERS.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (word.length() > 0) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * A provider found by a search
+     */
+    public static class Entry {
+
+        private final Integer providerId;
+
+        private final String name;
+
+        private final List<String> words;
+
+        private Entry(Integer providerId, String name, List<String> words) {
+            this.providerId = providerId;
+            this.name = name;
+            this.words = words;
+        }
+
+        public Integer getProviderId() {
+            return providerId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        private boolean matchesAll(List<String> terms) {
+            for (String term : terms) {
+                if (!matches(term)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matches(String term) {
+            for (String word : words) {
+                if (word.startsWith(term)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class IndexedWord implements Comparable<IndexedWord> {
+
+        private final String word;
+
+        private final int position;
+
+        private IndexedWord(String word, int position) {
+            this.word = word;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(IndexedWord other) {
+            int result = word.compareTo(other.word);
+            return result != 0 ? result : position - other.position;
+        }
+    }
+
+    private static class Index {
+
+        // the providers, ordered by name
+        private final Entry[] entries;
+
+        // every word of every name, sorted, and the position in entries of the provider that each is part of
+        private final String[] words;
+
+        private final int[] entryPositions;
+
+        private final Set<Integer> personIds;
+
+        private Index(Entry[] entries, String[] words, int[] entryPositions, Set<Integer> personIds) {
+            this.entries = entries;
+            this.words = words;
+            this.entryPositions = entryPositions;
+            this.personIds = Collections.unmodifiableSet(personIds);
+        }
+
+        // the position of the first word that isn't before the given prefix
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = words.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (words[middle].compareTo(prefix) < 0) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import lombok.Setter;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent read-only queries at the same time, each on a thread of its own, in a read-only transaction of a
+ * session of its own, and with the user context of the thread that submitted it.
+ * <p>
+ * At most radiologyapp.timelineQueryThreads queries run at once, across all requests, as each takes a database
+ * connection while its caller holds on to another. When they are all taken, the caller runs the query itself, so that
+ * a busy server falls back to running the queries one after the other rather than queueing them. The queries run on
+ * virtual threads where the JVM has them (Java 21 and later), and on a pool of daemon threads otherwise.
+ * <p>
+ * The session of a query is closed once it is done, so callers must copy the entities it read into their own session
+ * (see {@link RadiologyEntityResolver}). The threads are stopped by {@link #shutdown()} when the module stops.
+ */
+public class RadiologyQueryExecutor {
+
+    @Setter
+    private RadiologyProperties radiologyProperties;
+
+    @Setter
+    private PlatformTransactionManager transactionManager;
+
+    private final ExecutorService executor = newExecutor();
+
+    // guarded by this
+    private Semaphore permits;
+
+    // guarded by this
+    private int permitCount;
+
+    /**
+     * @return whether queries may run on threads of their own, i.e. radiologyapp.timelineQueryThreads is set and the
+     * caller isn't in a read-write transaction, whose changes the queries wouldn't see until it commits
+     */
+    public boolean isEnabled() {
+        if (radiologyProperties.getTimelineQueryThreads() <= 0) {
+            return false;
+        }
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * Stops the threads, interrupting the queries that are still running; any query submitted afterwards runs on the
+     * thread that submits it
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts running the query on a thread of its own, or runs it right away on this thread if the maximum number of
+     * queries are already running
+     *
+     * @return the result of the query, to be read with {@link #getResult(Future)}
+     */
+    public <T> Future<T> submit(final Callable<T> query) {
+        final Semaphore semaphore = getPermits();
+        if (!semaphore.tryAcquire()) {
+            FutureTask<T> future = new FutureTask<T>(query);
+            future.run();
+            return future;
+        }
+
+        final UserContext userContext = Context.getUserContext();
+        try {
+            return executor.submit(new Callable<T>() {
+
+                @Override
+                public T call() throws Exception {
+                    try {
+                        return callInSession(query, userContext);
+                    }
+                    finally {
+                        semaphore.release();
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // shut down
+            semaphore.release();
+            FutureTask<T> future = new FutureTask<T>(query);
+            future.run();
+            return future;
+        }
+    }
+
+    /**
+     * Waits for the result of a query
+     *
+     * @return the result of the query
+     * @throws RuntimeException whatever the query threw, or a {@link RadiologyAPIException} wrapping it if it was
+     * a checked exception
+     */
+    public static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RadiologyAPIException("Interrupted while waiting for a radiology query", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RadiologyAPIException("Radiology query failed", e.getCause());
+        }
+    }
+
+    protected <T> T callInSession(final Callable<T> query, UserContext userContext) {
+        Context.openSession();
+        try {
+            // after opening the session, which starts with a user context of its own
+            Context.setUserContext(userContext);
+
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            return transactionTemplate.execute(new TransactionCallback<T>() {
+
+                @Override
+                public T doInTransaction(TransactionStatus status) {
+                    try {
+                        return query.call();
+                    }
+                    catch (RuntimeException e) {
+                        throw e;
+                    }
+                    catch (Exception e) {
+                        throw new RadiologyAPIException("Radiology query failed", e);
+                    }
+                }
+            });
+        }
+        finally {
+            Context.clearUserContext();
+            Context.closeSession();
+        }
+    }
+
+    // the setting may change at any time; a query releases its permit to the semaphore it took it from
+    private synchronized Semaphore getPermits() {
+        int count = radiologyProperties.getTimelineQueryThreads();
+        if (permits == null || count != permitCount) {
+            permits = new Semaphore(count);
+            permitCount = count;
+        }
+        return permits;
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            // looked up by name, as the module is still built for Java 8
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (Exception e) {
+            // the semaphore bounds the number of threads, and idle threads end after a minute
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "radiology-query-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+}
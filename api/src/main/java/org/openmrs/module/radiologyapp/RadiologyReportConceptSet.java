@@ -23,6 +23,8 @@ import org.openmrs.module.emrapi.EmrApiConstants;
 import org.openmrs.module.emrapi.descriptor.ConceptSetDescriptor;
 import org.openmrs.module.emrapi.descriptor.ConceptSetDescriptorField;
 
+import java.util.Collection;
+
 public class RadiologyReportConceptSet extends ConceptSetDescriptor {
 
     private Concept radiologyReportSetConcept;
@@ -79,22 +81,38 @@ public class RadiologyReportConceptSet extends ConceptSetDescriptor {
     }
 
     public String getOrderNumberFromObsGroup(Obs obsGroup) {
-        Obs orderNumberObs = getMemberObsByConcept(obsGroup, getOrderNumberConcept());
-        return orderNumberObs != null ? orderNumberObs.getValueText() : null;
+        return getOrderNumberFromGroupMembers(obsGroup.getGroupMembers());
     }
 
     public String getReportBodyFromObsGroup(Obs obsGroup) {
-        Obs reportBodyObs = getMemberObsByConcept(obsGroup, getReportBodyConcept());
-        return reportBodyObs != null ? reportBodyObs.getValueText() : null;
+        return getReportBodyFromGroupMembers(obsGroup.getGroupMembers());
     }
 
     public Concept getReportTypeFromObsGroup(Obs obsGroup) {
-        Obs reportTypeObs = getMemberObsByConcept(obsGroup, getReportTypeConcept());
-        return reportTypeObs != null ? reportTypeObs.getValueCoded() : null;
+        return getReportTypeFromGroupMembers(obsGroup.getGroupMembers());
     }
 
     public Concept getProcedureFromObsGroup(Obs obsGroup) {
-        Obs procedureObs = getMemberObsByConcept(obsGroup, getProcedureConcept());
+        return getProcedureFromGroupMembers(obsGroup.getGroupMembers());
+    }
+
+    public String getOrderNumberFromGroupMembers(Collection<Obs> groupMembers) {
+        Obs orderNumberObs = getMemberObsByConcept(groupMembers, getOrderNumberConcept());
+        return orderNumberObs != null ? orderNumberObs.getValueText() : null;
+    }
+
+    public String getReportBodyFromGroupMembers(Collection<Obs> groupMembers) {
+        Obs reportBodyObs = getMemberObsByConcept(groupMembers, getReportBodyConcept());
+        return reportBodyObs != null ? reportBodyObs.getValueText() : null;
+    }
+
+    public Concept getReportTypeFromGroupMembers(Collection<Obs> groupMembers) {
+        Obs reportTypeObs = getMemberObsByConcept(groupMembers, getReportTypeConcept());
+        return reportTypeObs != null ? reportTypeObs.getValueCoded() : null;
+    }
+
+    public Concept getProcedureFromGroupMembers(Collection<Obs> groupMembers) {
+        Obs procedureObs = getMemberObsByConcept(groupMembers, getProcedureConcept());
         return procedureObs != null ? procedureObs.getValueCoded() : null;
     }
 
@@ -127,8 +145,11 @@ public class RadiologyReportConceptSet extends ConceptSetDescriptor {
         return null;
     }
 
-    private Obs getMemberObsByConcept(Obs obsGroup, Concept concept) {
-        for (Obs obs : obsGroup.getGroupMembers()) {
+    private Obs getMemberObsByConcept(Collection<Obs> groupMembers, Concept concept) {
+        if (groupMembers == null) {
+            return null;
+        }
+        for (Obs obs : groupMembers) {
             if (obs.getConcept().equals(concept)) {
                 return obs;
             }
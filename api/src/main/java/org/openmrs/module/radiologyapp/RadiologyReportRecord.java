@@ -0,0 +1,236 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.hibernate.search.annotations.Analyze;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.annotations.SortableField;
+import org.openmrs.Concept;
+import org.openmrs.ConceptName;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
+
+import java.util.Date;
+
+/**
+ * Relational copy of a radiology report encounter and its obs group, the counterpart of {@link RadiologyStudyRecord}
+ * <p>
+ * It is also indexed into the (embedded, on disk) Lucene index of OpenMRS, so that reports can be searched by their
+ * text; Hibernate Search updates the index when the transaction that saves a record commits.
+ */
+@Indexed
+public class RadiologyReportRecord {
+
+    public static final String FIELD_REPORT_BODY = "reportBody";
+
+    public static final String FIELD_REPORT_DATE = "reportDate";
+
+    public static final String FIELD_PROCEDURE_NAMES = "procedureNames";
+
+    public static final String FIELD_REPORT_TYPE_NAMES = "reportTypeNames";
+
+    public static final String FIELD_PROCEDURE_ID = "procedureId";
+
+    public static final String FIELD_REPORT_TYPE_ID = "reportTypeId";
+
+    public static final String FIELD_PATIENT_ID = "patientId";
+
+    public static final String FIELD_ENCOUNTER_VOIDED = "encounterVoided";
+
+    private Integer id;
+
+    private Encounter encounter;
+
+    private Patient patient;
+
+    private String accessionNumber;
+
+    private Concept procedure;
+
+    private Concept reportType;
+
+    private String reportBody;
+
+    private Date reportDate;
+
+    private Location reportLocation;
+
+    private Provider principalResultsInterpreter;
+
+    public RadiologyReportRecord() {
+    }
+
+    public RadiologyReportRecord(RadiologyReport radiologyReport, Encounter encounter) {
+        this.encounter = encounter;
+        this.patient = encounter.getPatient();
+        this.accessionNumber = radiologyReport.getOrderNumber();
+        this.procedure = radiologyReport.getProcedure();
+        this.reportType = radiologyReport.getReportType();
+        this.reportBody = radiologyReport.getReportBody();
+        this.reportDate = encounter.getEncounterDatetime();
+        this.reportLocation = encounter.getLocation();
+        this.principalResultsInterpreter = radiologyReport.getPrincipalResultsInterpreter();
+    }
+
+    public RadiologyReport toRadiologyReport() {
+        RadiologyReport radiologyReport = new RadiologyReport();
+        radiologyReport.setPatient(patient);
+        radiologyReport.setOrderNumber(accessionNumber);
+        radiologyReport.setProcedure(procedure);
+        radiologyReport.setReportType(reportType);
+        radiologyReport.setReportBody(reportBody);
+        radiologyReport.setReportDate(reportDate);
+        radiologyReport.setReportLocation(reportLocation);
+        radiologyReport.setPrincipalResultsInterpreter(principalResultsInterpreter);
+        return radiologyReport;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Encounter getEncounter() {
+        return encounter;
+    }
+
+    public void setEncounter(Encounter encounter) {
+        this.encounter = encounter;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public void setPatient(Patient patient) {
+        this.patient = patient;
+    }
+
+    public String getAccessionNumber() {
+        return accessionNumber;
+    }
+
+    public void setAccessionNumber(String accessionNumber) {
+        this.accessionNumber = accessionNumber;
+    }
+
+    public Concept getProcedure() {
+        return procedure;
+    }
+
+    public void setProcedure(Concept procedure) {
+        this.procedure = procedure;
+    }
+
+    public Concept getReportType() {
+        return reportType;
+    }
+
+    public void setReportType(Concept reportType) {
+        this.reportType = reportType;
+    }
+
+    @Field
+    public String getReportBody() {
+        return reportBody;
+    }
+
+    public void setReportBody(String reportBody) {
+        this.reportBody = reportBody;
+    }
+
+    @Field(analyze = Analyze.NO)
+    @SortableField
+    public Date getReportDate() {
+        return reportDate;
+    }
+
+    public void setReportDate(Date reportDate) {
+        this.reportDate = reportDate;
+    }
+
+    public Location getReportLocation() {
+        return reportLocation;
+    }
+
+    public void setReportLocation(Location reportLocation) {
+        this.reportLocation = reportLocation;
+    }
+
+    public Provider getPrincipalResultsInterpreter() {
+        return principalResultsInterpreter;
+    }
+
+    public void setPrincipalResultsInterpreter(Provider principalResultsInterpreter) {
+        this.principalResultsInterpreter = principalResultsInterpreter;
+    }
+
+    // the properties below are only derived for the search index
+
+    @Field(analyze = Analyze.NO)
+    public Integer getPatientId() {
+        return patient != null ? patient.getPatientId() : null;
+    }
+
+    @Field(analyze = Analyze.NO)
+    public Integer getProcedureId() {
+        return procedure != null ? procedure.getConceptId() : null;
+    }
+
+    @Field(analyze = Analyze.NO)
+    public Integer getReportTypeId() {
+        return reportType != null ? reportType.getConceptId() : null;
+    }
+
+    @Field
+    public String getProcedureNames() {
+        return getNames(procedure);
+    }
+
+    @Field
+    public String getReportTypeNames() {
+        return getNames(reportType);
+    }
+
+    @Field(analyze = Analyze.NO)
+    public Boolean getEncounterVoided() {
+        return encounter != null ? encounter.getVoided() : null;
+    }
+
+    /**
+     * @return all the names of the concept (in every locale, with synonyms), so that e.g. "chest" finds a report of
+     * a procedure whatever the name it was ordered by
+     */
+    private String getNames(Concept concept) {
+        if (concept == null) {
+            return null;
+        }
+        StringBuilder names = new StringBuilder();
+        for (ConceptName conceptName : concept.getNames(false)) {
+            if (names.length() > 0) {
+                names.append(' ');
+            }
+            names.append(conceptName.getName());
+        }
+        return names.toString();
+    }
+}
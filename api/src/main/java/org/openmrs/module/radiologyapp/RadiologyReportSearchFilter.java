@@ -0,0 +1,86 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.openmrs.Concept;
+import org.openmrs.Patient;
+
+import java.util.Date;
+
+/**
+ * Narrows down a full text search of radiology reports (see
+ * {@link RadiologyService#searchRadiologyReports(String, RadiologyReportSearchFilter, int, int)}); every criterion
+ * is optional
+ */
+public class RadiologyReportSearchFilter {
+
+    private Patient patient;
+
+    private Concept procedure;
+
+    private Concept reportType;
+
+    private Date fromDate;
+
+    private Date toDate;
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public void setPatient(Patient patient) {
+        this.patient = patient;
+    }
+
+    public Concept getProcedure() {
+        return procedure;
+    }
+
+    public void setProcedure(Concept procedure) {
+        this.procedure = procedure;
+    }
+
+    public Concept getReportType() {
+        return reportType;
+    }
+
+    public void setReportType(Concept reportType) {
+        this.reportType = reportType;
+    }
+
+    /**
+     * @return the date from which reports are included (inclusive)
+     */
+    public Date getFromDate() {
+        return fromDate;
+    }
+
+    public void setFromDate(Date fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    /**
+     * @return the date until which reports are included (exclusive)
+     */
+    public Date getToDate() {
+        return toDate;
+    }
+
+    public void setToDate(Date toDate) {
+        this.toDate = toDate;
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import java.util.List;
+
+/**
+ * One page of the radiology reports matching a full text search, most recent first
+ */
+public class RadiologyReportSearchResult {
+
+    private final List<RadiologyReport> reports;
+
+    private final int totalCount;
+
+    public RadiologyReportSearchResult(List<RadiologyReport> reports, int totalCount) {
+        this.reports = reports;
+        this.totalCount = totalCount;
+    }
+
+    public List<RadiologyReport> getReports() {
+        return reports;
+    }
+
+    /**
+     * @return the number of matching reports across all pages, according to the search index
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+}
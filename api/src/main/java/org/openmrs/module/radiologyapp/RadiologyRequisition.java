@@ -52,6 +52,9 @@ public class RadiologyRequisition {
 
     private Date creatinineTestDate;
 
+    // the modality code of the studies, e.g. CT; only used to number the orders
+    private String modality;
+
     public Patient getPatient() {
         return patient;
     }
@@ -143,4 +146,12 @@ public class RadiologyRequisition {
     public void setCreatinineTestDate(Date creatinineTestDate) {
         this.creatinineTestDate = creatinineTestDate;
     }
+
+    public String getModality() {
+        return modality;
+    }
+
+    public void setModality(String modality) {
+        this.modality = modality;
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.openmrs.Encounter;
+
+/**
+ * The outcome of saving one item of a batch of radiology studies or reports
+ */
+public class RadiologySaveResult<T> {
+
+    public enum Status { SAVED, DUPLICATE, INVALID, FAILED }
+
+    private final T item;
+
+    private final Status status;
+
+    private final Encounter encounter;
+
+    private final String message;
+
+    private RadiologySaveResult(T item, Status status, Encounter encounter, String message) {
+        this.item = item;
+        this.status = status;
+        this.encounter = encounter;
+        this.message = message;
+    }
+
+    public static <T> RadiologySaveResult<T> saved(T item, Encounter encounter) {
+        return new RadiologySaveResult<T>(item, Status.SAVED, encounter, null);
+    }
+
+    public static <T> RadiologySaveResult<T> duplicate(T item, String message) {
+        return new RadiologySaveResult<T>(item, Status.DUPLICATE, null, message);
+    }
+
+    public static <T> RadiologySaveResult<T> invalid(T item, String message) {
+        return new RadiologySaveResult<T>(item, Status.INVALID, null, message);
+    }
+
+    /**
+     * @param message why saving the (valid) item failed, e.g. because the database rejected it
+     */
+    public static <T> RadiologySaveResult<T> failed(T item, String message) {
+        return new RadiologySaveResult<T>(item, Status.FAILED, null, message);
+    }
+
+    public T getItem() {
+        return item;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the saved encounter, or null if the item wasn't saved; note that a batch save clears the session as it
+     * goes, so the encounter is usually detached from it
+     */
+    public Encounter getEncounter() {
+        return encounter;
+    }
+
+    /**
+     * @return why the item wasn't saved, or null if it was
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSaved() {
+        return status == Status.SAVED;
+    }
+
+}
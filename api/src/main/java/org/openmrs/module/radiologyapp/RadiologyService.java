@@ -21,6 +21,10 @@ import org.openmrs.api.OpenmrsService;
 import org.openmrs.module.emrapi.adt.exception.EncounterDateAfterVisitStopDateException;
 import org.openmrs.module.emrapi.adt.exception.EncounterDateBeforeVisitStartDateException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 public interface RadiologyService extends OpenmrsService {
@@ -37,6 +41,19 @@ public interface RadiologyService extends OpenmrsService {
      */
     Encounter saveRadiologyReport(RadiologyReport radiologyReport);
 
+    /**
+     * Converts a batch of radiology reports (preliminary, final or corrections) to encounters and saves them in a
+     * single transaction. The session is flushed and cleared every radiologyapp.saveBatchChunkSize reports, so that
+     * memory use doesn't grow with the batch, so the encounters of the results, and anything loaded before the call,
+     * are detached from it. An invalid report, or one that fails to save, doesn't fail the batch but is reported as
+     * such in its result, unless it fails in the database session itself, after which the transaction can't commit and
+     * the whole batch fails.
+     *
+     * @param radiologyReports
+     * @return the result for each report, in the same order as the reports
+     */
+    List<RadiologySaveResult<RadiologyReport>> saveRadiologyReports(List<RadiologyReport> radiologyReports);
+
     /**
      * Converts a radiology study to an encounter and saves it
      *
@@ -45,6 +62,21 @@ public interface RadiologyService extends OpenmrsService {
      */
     Encounter saveRadiologyStudy(RadiologyStudy radiologyStudy);
 
+    /**
+     * Converts a batch of radiology studies to encounters and saves them in a single transaction, e.g. when a PACS
+     * catches up after an outage. Unlike {@link #saveRadiologyStudy(RadiologyStudy)}, a study that is invalid, or
+     * whose order number is already used by another study (whether saved earlier or earlier in the batch), doesn't
+     * fail the batch but is reported as such in its result, as is a study whose order number the database rejects as
+     * a duplicate (e.g. saved concurrently by another server) or that otherwise fails to save, unless it fails in the
+     * database session itself, after which the transaction can't commit and the whole batch fails. The session is
+     * cleared every radiologyapp.saveBatchChunkSize studies, so the encounters of the results, and anything loaded
+     * before the call, are detached from it.
+     *
+     * @param radiologyStudies
+     * @return the result for each study, in the same order as the studies
+     */
+    List<RadiologySaveResult<RadiologyStudy>> saveRadiologyStudies(List<RadiologyStudy> radiologyStudies);
+
     /**
      * Fetches the radiology order with the specified order number
      *
@@ -73,6 +105,18 @@ public interface RadiologyService extends OpenmrsService {
      */
     RadiologyStudy getRadiologyStudyByOrderNumber(String orderNumber);
 
+    /**
+     * Fetches the radiology studies of the given patient with any of the specified order numbers, with their reports
+     * (report bodies included), in one go rather than one order number at a time. Studies are derived from reports
+     * as by {@link #getRadiologyStudyByOrderNumber(Patient, String)}; order numbers without any study or report are
+     * left out.
+     *
+     * @param patient
+     * @param orderNumbers
+     * @return the studies, sorted by date with most recent first
+     */
+    List<RadiologyStudy> getRadiologyStudiesByOrderNumbers(Patient patient, Collection<String> orderNumbers);
+
     /**
      * Fetches all radiology reports with the specified order number for the given patient
      * (i.e., all the reports for a single study)
@@ -99,16 +143,145 @@ public interface RadiologyService extends OpenmrsService {
      */
     List<Order> getUnfulfilledRadiologyOrdersForPatient(Patient patient);
 
+    /**
+     * Returns at most the given number of radiology orders that have no corresponding study for the selected patient,
+     * sorted by date, with most recent first.
+     * @param patient
+     * @param limit the maximum number of orders to return, or null for all of them
+     * @return
+     */
+    List<Order> getUnfulfilledRadiologyOrdersForPatient(Patient patient, Integer limit);
+
+    /**
+     * Returns one page of the radiology worklist: the active radiology orders, across all patients, that have no
+     * corresponding study, optionally filtered by modality, exam location, urgency and date range, sorted with STAT
+     * orders first, then oldest first (see {@link RadiologyWorklistQuery})
+     *
+     * @param query
+     * @return
+     */
+    List<RadiologyOrder> getRadiologyWorklist(RadiologyWorklistQuery query);
+
     /**
      * Returns all the radiology studies for the selected patient, sorted by date, with most recent first
      * This method determines fetches studies by 1) fetching all Radiology Study encounters, and then
      * 2) fetching all orphaned Radiology Reports (i.e., Radiology Report encounters where there is no
      * Radiology Study encounter with the same order number) and creating transient Radiology Study
      * objects for these report sets
+     * <p>
+     * This is meant for lists, so the reports are summaries without their report body; use
+     * {@link #getRadiologyStudyByOrderNumber(String)} to fetch a study with its full reports
      *
      * @param patient
      * @return
      */
     List<RadiologyStudy> getRadiologyStudiesForPatient(Patient patient);
 
+    /**
+     * Returns one page of the radiology studies for the selected patient, sorted by date, with most recent first
+     * (see {@link #getRadiologyStudiesForPatient(Patient)}). Only the studies and reports of the requested page
+     * are loaded, so e.g. fetching the 5 most recent studies costs the same regardless of the patient's history.
+     * As with the full list, the reports are summaries without their report body.
+     *
+     * @param patient
+     * @param offset the number of studies to skip
+     * @param limit the maximum number of studies to return
+     * @return
+     */
+    List<RadiologyStudy> getRadiologyStudiesForPatient(Patient patient, int offset, int limit);
+
+    /**
+     * Returns the number of radiology studies for the selected patient, counting studies derived from orphaned
+     * Radiology Reports
+     *
+     * @param patient
+     * @return
+     */
+    long getRadiologyStudyCountForPatient(Patient patient);
+
+    /**
+     * Copies a batch of the radiology study and report encounters that have no row in the emr_radiology_study and
+     * emr_radiology_report tables yet (i.e. that were saved before those tables existed) into them; the batch size is
+     * radiologyapp.saveBatchChunkSize
+     *
+     * @return the number of studies and reports copied, so 0 once the tables are complete
+     */
+    int backfillRadiologyStudyTables();
+
+    /**
+     * Searches the text of the radiology reports (along with their procedure and report type names), e.g. for all
+     * the chest X-rays mentioning pneumothorax in the last year. Only reports in the emr_radiology_report table are
+     * searched, so the reports saved before it existed are only found once {@link #backfillRadiologyStudyTables()}
+     * has copied them.
+     *
+     * @param query the text to search for, in simple query string syntax: words must all match unless separated by
+     * <code>|</code>, <code>"..."</code> matches a phrase, <code>-</code> excludes a word and <code>*</code> matches a
+     * prefix; if blank, all the reports that pass the filter match
+     * @param filter narrows down the search, may be null
+     * @param offset the number of matching reports to skip
+     * @param limit the maximum number of reports to return
+     * @return the requested page of matching reports, most recent first, along with the total number of matches
+     */
+    RadiologyReportSearchResult searchRadiologyReports(String query, RadiologyReportSearchFilter filter, int offset,
+                                                       int limit);
+
+    /**
+     * Rebuilds the full text index that {@link #searchRadiologyReports(String, RadiologyReportSearchFilter, int, int)}
+     * uses from the emr_radiology_report table. The index is otherwise kept up to date as reports are saved, but
+     * e.g. voiding a report encounter only drops the report from the index once it is rebuilt.
+     */
+    void rebuildRadiologyReportSearchIndex();
+
+    /**
+     * Writes the radiology studies and reports (from the emr_radiology_study and emr_radiology_report tables) that
+     * match the query to the stream, studies first, as NDJSON or CSV. The rows are read and written a batch at a
+     * time, so memory use doesn't grow with the size of the export. The stream is flushed but not closed.
+     *
+     * @param query the format and filters of the export; for an incremental export, set its changedSince to the time
+     * the previous export started
+     * @param out the stream to write to
+     * @return the number of studies and reports written
+     * @throws IOException if writing to the stream fails
+     */
+    int exportRadiologyStudiesAndReports(RadiologyExportQuery query, OutputStream out) throws IOException;
+
+    /**
+     * Fetches the changes that the servers sharing the database logged after the given one, for each server to
+     * discard what it has cached about the changed data
+     *
+     * @param afterChangeId the id of the last change already read, or null to start from the first
+     * @param limit the maximum number of changes to return
+     * @return the changes, in the order they were logged
+     */
+    List<RadiologyChange> getRadiologyChangesAfter(Integer afterChangeId, int limit);
+
+    /**
+     * @return the id of the last change logged, or null if there is none
+     */
+    Integer getLatestRadiologyChangeId();
+
+    /**
+     * Logs changes for the other servers sharing the database; the save methods of this service log their own
+     * changes, so this is for the changes made elsewhere, e.g. to the radiology concepts
+     *
+     * @param changes the changes to log
+     */
+    void saveRadiologyChanges(Collection<RadiologyChange> changes);
+
+    /**
+     * Deletes the changes logged before the given date, which all servers should have read by then
+     *
+     * @return the number of changes deleted
+     */
+    int purgeRadiologyChanges(Date before);
+
+    /**
+     * Reserves a block of radiology order numbers for this server to hand out, in a transaction of its own, so that the
+     * block stays reserved even if the order that needed a number is rolled back
+     *
+     * @param count how many numbers to reserve
+     * @return the first of the reserved numbers
+     */
+    long reserveRadiologyOrderNumbers(int count);
+
 }
\ No newline at end of file
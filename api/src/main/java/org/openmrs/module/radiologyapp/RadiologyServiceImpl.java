@@ -19,51 +19,94 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
 import org.openmrs.Encounter;
+import org.openmrs.EncounterType;
 import org.openmrs.Obs;
 import org.openmrs.Order;
-import org.openmrs.OrderType;
 import org.openmrs.Patient;
 import org.openmrs.Provider;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.EncounterService;
+import org.openmrs.api.LocationService;
 import org.openmrs.api.OrderContext;
 import org.openmrs.api.OrderService;
+import org.openmrs.api.ProviderService;
+import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.emrapi.adt.exception.EncounterDateAfterVisitStopDateException;
 import org.openmrs.module.emrapi.adt.exception.EncounterDateBeforeVisitStartDateException;
-import org.openmrs.module.emrapi.db.EmrEncounterDAO;
 import org.openmrs.module.emrapi.encounter.EncounterDomainWrapper;
-import org.openmrs.module.radiologyapp.comparator.RadiologyOrderByDateComparator;
 import org.openmrs.module.radiologyapp.comparator.RadiologyReportByDataComparator;
 import org.openmrs.module.radiologyapp.comparator.RadiologyStudyByDateComparator;
+import org.openmrs.module.radiologyapp.db.RadiologyAccessionDAO;
+import org.openmrs.module.radiologyapp.db.RadiologyChangeDAO;
+import org.openmrs.module.radiologyapp.db.RadiologyOrderNumberSequenceDAO;
+import org.openmrs.module.radiologyapp.db.RadiologyEncounterDAO;
 import org.openmrs.module.radiologyapp.db.RadiologyOrderDAO;
+import org.openmrs.module.radiologyapp.db.RadiologyReportRecordDAO;
+import org.openmrs.module.radiologyapp.db.RadiologyStudyRecordDAO;
 import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
+import org.openmrs.module.radiologyapp.export.RadiologyExportRow;
+import org.openmrs.module.radiologyapp.export.RadiologyExportWriter;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Savepoint;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 public class RadiologyServiceImpl  extends BaseOpenmrsService implements RadiologyService {
 
     private static final Log log = LogFactory.getLog(RadiologyServiceImpl.class);
 
+    // the number of studies or reports that an export reads at a time
+    private static final int EXPORT_BATCH_SIZE = 1000;
+
     private RadiologyProperties radiologyProperties;
 
     private EncounterService encounterService;
 
-    private ConceptService conceptService;
+    private RadiologyConceptSetRegistry conceptSetRegistry;
 
     private OrderService orderService;
 
     private RadiologyOrderDAO radiologyOrderDAO;
 
-    private EmrEncounterDAO emrEncounterDAO;
+    private RadiologyAccessionDAO radiologyAccessionDAO;
+
+    private RadiologyEncounterDAO radiologyEncounterDAO;
+
+    private RadiologyStudyRecordDAO radiologyStudyRecordDAO;
+
+    private RadiologyReportRecordDAO radiologyReportRecordDAO;
+
+    private RadiologyTimelineCache radiologyTimelineCache;
+
+    private RadiologyChangeDAO radiologyChangeDAO;
+
+    private RadiologyOrderNumberSequenceDAO radiologyOrderNumberSequenceDAO;
+
+    private RadiologyQueryExecutor radiologyQueryExecutor;
+
+    private ConceptService conceptService;
+
+    private LocationService locationService;
+
+    private ProviderService providerService;
+
+    private AccessionNumberLocks accessionNumberLocks = new AccessionNumberLocks();
 
     @Transactional
     @Override
@@ -94,9 +137,13 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
 
         // save the encounter
         encounterService.saveEncounter(encounter);
+        radiologyTimelineCache.invalidate(requisition.getPatient().getPatientId());
 
         OrderContext orderContext = new OrderContext();
         orderContext.setOrderType(radiologyProperties.getRadiologyTestOrderType());
+        // for the radiologyOrderNumberGenerator, if that is configured to number the orders
+        orderContext.setAttribute(RadiologyOrderNumberGenerator.MODALITY_ATTRIBUTE,
+                StringUtils.isNotBlank(requisition.getModality()) ? requisition.getModality().trim().toUpperCase() : "");
 
         // now add the orders
         for (Concept study : requisition.getStudies()) {
@@ -115,6 +162,7 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
             order.setOrderer(requisition.getRequestedBy());
             encounter.addOrder(order);
             orderService.saveOrder(order, orderContext);
+            radiologyDataChanged(RadiologyChange.Kind.ORDER, requisition.getPatient(), order.getOrderNumber());
         }
 
         return encounter;
@@ -126,41 +174,146 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
 
         validate(radiologyReport);
 
-        Encounter encounter = new Encounter();
-        encounter.setEncounterType(radiologyProperties.getRadiologyReportEncounterType());
-        encounter.setEncounterDatetime(radiologyReport.getReportDate());
-        encounter.setLocation(radiologyReport.getReportLocation() != null ?
-                radiologyReport.getReportLocation() : radiologyProperties.getUnknownLocation());
-        encounter.setPatient(radiologyReport.getPatient());
-        encounter.addProvider(radiologyProperties.getPrincipalResultsInterpreterEncounterRole(),
-                radiologyReport.getPrincipalResultsInterpreter() != null ?  radiologyReport.getPrincipalResultsInterpreter() : radiologyProperties.getUnknownProvider());
+        Encounter encounter = encounterService.saveEncounter(buildRadiologyReportEncounter(radiologyReport));
+        radiologyAccessionDAO.saveOrUpdate(new RadiologyAccession(radiologyReport.getOrderNumber(), RadiologyAccession.Kind.REPORT, encounter));
+        radiologyReportRecordDAO.saveOrUpdate(buildRadiologyReportRecord(radiologyReport, encounter));
+        radiologyDataChanged(RadiologyChange.Kind.REPORT, radiologyReport.getPatient(), radiologyReport.getOrderNumber());
+        return encounter;
+    }
 
-        RadiologyReportConceptSet radiologyReportConceptSet = new RadiologyReportConceptSet(conceptService);
-        encounter.addObs(radiologyReportConceptSet.buildRadiologyReportObsGroup(radiologyReport));
+    @Transactional
+    @Override
+    public List<RadiologySaveResult<RadiologyReport>> saveRadiologyReports(List<RadiologyReport> radiologyReports) {
+
+        List<RadiologySaveResult<RadiologyReport>> results = new ArrayList<RadiologySaveResult<RadiologyReport>>(
+                Collections.<RadiologySaveResult<RadiologyReport>>nCopies(radiologyReports.size(), null));
+        List<Integer> valid = new ArrayList<Integer>();
+
+        for (int i = 0; i < radiologyReports.size(); i++) {
+            try {
+                validate(radiologyReports.get(i));
+                valid.add(i);
+            }
+            catch (RadiologyAPIException e) {
+                results.set(i, RadiologySaveResult.invalid(radiologyReports.get(i), e.getMessage()));
+            }
+        }
+
+        saveInChunks(radiologyReports, valid, results, new BatchItemSaver<RadiologyReport>() {
 
-        return encounterService.saveEncounter(encounter);
+            @Override
+            public Encounter save(RadiologyReport radiologyReport) {
+                Encounter encounter = encounterService.saveEncounter(buildRadiologyReportEncounter(radiologyReport));
+                radiologyAccessionDAO.saveOrUpdate(new RadiologyAccession(radiologyReport.getOrderNumber(), RadiologyAccession.Kind.REPORT, encounter));
+                radiologyReportRecordDAO.saveOrUpdate(buildRadiologyReportRecord(radiologyReport, encounter));
+                radiologyDataChanged(RadiologyChange.Kind.REPORT, radiologyReport.getPatient(), radiologyReport.getOrderNumber());
+                return encounter;
+            }
+
+            @Override
+            public RadiologySaveResult<RadiologyReport> failed(RadiologyReport radiologyReport, RuntimeException e) {
+                return RadiologySaveResult.failed(radiologyReport, e.getMessage());
+            }
+        });
+
+        return results;
     }
 
     @Transactional
     @Override
-    // we synchronize this method so that we can verify that we never create two studies with the same order number
-    public synchronized Encounter saveRadiologyStudy(RadiologyStudy radiologyStudy) {
+    public Encounter saveRadiologyStudy(RadiologyStudy radiologyStudy) {
 
-        validate(radiologyStudy);
+        // serialize saves of the same order number on this node, holding the lock until commit so that the next save
+        // sees our study; across nodes, the unique study accession number in the index table catches duplicates
+        AccessionNumberLocks.Lease lease = accessionNumberLocks.acquire(radiologyStudy.getOrderNumber());
+        try {
+            validate(radiologyStudy);
 
-        Encounter encounter = new Encounter();
-        encounter.setEncounterType(radiologyProperties.getRadiologyStudyEncounterType());
-        encounter.setEncounterDatetime(radiologyStudy.getDatePerformed());
-        encounter.setLocation(radiologyStudy.getStudyLocation() != null ?
-                radiologyStudy.getStudyLocation() : radiologyProperties.getUnknownLocation());
-        encounter.setPatient(radiologyStudy.getPatient());
-        encounter.addProvider(radiologyProperties.getRadiologyTechnicianEncounterRole(),
-                radiologyStudy.getTechnician() != null ? radiologyStudy.getTechnician() : radiologyProperties.getUnknownProvider());
+            Encounter encounter = encounterService.saveEncounter(buildRadiologyStudyEncounter(radiologyStudy));
 
-        RadiologyStudyConceptSet radiologyStudyConceptSet = new RadiologyStudyConceptSet(conceptService);
-        encounter.addObs(radiologyStudyConceptSet.buildRadiologyStudyObsGroup(radiologyStudy));
+            radiologyAccessionDAO.releaseVoidedStudyAccessionNumber(radiologyStudy.getOrderNumber());
+            radiologyAccessionDAO.saveStudyAccession(new RadiologyAccession(radiologyStudy.getOrderNumber(), RadiologyAccession.Kind.STUDY, encounter));
+            radiologyStudyRecordDAO.saveOrUpdate(buildRadiologyStudyRecord(radiologyStudy, encounter));
+            radiologyDataChanged(RadiologyChange.Kind.STUDY, radiologyStudy.getPatient(), radiologyStudy.getOrderNumber());
+            return encounter;
+        }
+        finally {
+            lease.releaseAfterTransaction();
+        }
+    }
+
+    @Transactional
+    @Override
+    public List<RadiologySaveResult<RadiologyStudy>> saveRadiologyStudies(List<RadiologyStudy> radiologyStudies) {
+
+        List<RadiologySaveResult<RadiologyStudy>> results = new ArrayList<RadiologySaveResult<RadiologyStudy>>(
+                Collections.<RadiologySaveResult<RadiologyStudy>>nCopies(radiologyStudies.size(), null));
+
+        // the index of the first valid study for each order number
+        Map<String, Integer> candidates = new LinkedHashMap<String, Integer>();
+
+        for (int i = 0; i < radiologyStudies.size(); i++) {
+            RadiologyStudy radiologyStudy = radiologyStudies.get(i);
+            try {
+                validateRequiredFields(radiologyStudy);
+            }
+            catch (RadiologyAPIException e) {
+                results.set(i, RadiologySaveResult.invalid(radiologyStudy, e.getMessage()));
+                continue;
+            }
+            if (candidates.containsKey(radiologyStudy.getOrderNumber())) {
+                results.set(i, RadiologySaveResult.duplicate(radiologyStudy,
+                        "A Radiology Study with order number " + radiologyStudy.getOrderNumber() + " appears earlier in the batch"));
+            }
+            else {
+                candidates.put(radiologyStudy.getOrderNumber(), i);
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return results;
+        }
+
+        // as in saveRadiologyStudy, but for all the order numbers of the batch at once
+        AccessionNumberLocks.Lease lease = accessionNumberLocks.acquire(candidates.keySet());
+        try {
+            for (String existing : radiologyAccessionDAO.getStudyAccessionNumbers(candidates.keySet())) {
+                Integer i = candidates.remove(existing);
+                if (i != null) {
+                    results.set(i, RadiologySaveResult.duplicate(radiologyStudies.get(i),
+                            "A Radiology Study already exists with order number " + existing));
+                }
+            }
+
+            if (!candidates.isEmpty()) {
+                radiologyAccessionDAO.releaseVoidedStudyAccessionNumbers(candidates.keySet());
+            }
+
+            saveInChunks(radiologyStudies, candidates.values(), results, new BatchItemSaver<RadiologyStudy>() {
+
+                @Override
+                public Encounter save(RadiologyStudy radiologyStudy) {
+                    Encounter encounter = encounterService.saveEncounter(buildRadiologyStudyEncounter(radiologyStudy));
+                    // a study saved concurrently on another node fails the unique study accession number
+                    radiologyAccessionDAO.saveStudyAccession(new RadiologyAccession(radiologyStudy.getOrderNumber(), RadiologyAccession.Kind.STUDY, encounter));
+                    radiologyStudyRecordDAO.saveOrUpdate(buildRadiologyStudyRecord(radiologyStudy, encounter));
+                    radiologyDataChanged(RadiologyChange.Kind.STUDY, radiologyStudy.getPatient(), radiologyStudy.getOrderNumber());
+                    return encounter;
+                }
 
-        return encounterService.saveEncounter(encounter);
+                @Override
+                public RadiologySaveResult<RadiologyStudy> failed(RadiologyStudy radiologyStudy, RuntimeException e) {
+                    // saveStudyAccession is the only thing here that throws a RadiologyAPIException
+                    return e instanceof RadiologyAPIException ? RadiologySaveResult.duplicate(radiologyStudy, e.getMessage())
+                            : RadiologySaveResult.failed(radiologyStudy, e.getMessage());
+                }
+            });
+        }
+        finally {
+            lease.releaseAfterTransaction();
+        }
+
+        return results;
     }
 
     @Transactional(readOnly = true)
@@ -179,35 +332,57 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
     @Override
     public RadiologyStudy getRadiologyStudyByOrderNumber(Patient patient, String orderNumber) {
 
-        RadiologyStudy radiologyStudy = null;
-
         // first search for any radiology study encounters
-        List<Encounter> radiologyStudyEncounters =
-                emrEncounterDAO.getEncountersByObsValueText(patient, new RadiologyStudyConceptSet(conceptService).getOrderNumberConcept(),
-                        orderNumber, radiologyProperties.getRadiologyStudyEncounterType(), false);
+        RadiologyStudy radiologyStudy = radiologyProperties.isReadFromStudyTables() ?
+                getRadiologyStudyFromStudyTable(patient, orderNumber) : getRadiologyStudyFromObs(patient, orderNumber);
 
-        if (radiologyStudyEncounters != null && radiologyStudyEncounters.size() > 0) {
+        // if we don't find an actual radiology study encounter, see if we can derive information from any reports
+        // with the same order number
+        List<RadiologyReport> radiologyReports = getRadiologyReportsByOrderNumber(patient, orderNumber);
 
-            // note that also the API should prevent two radiology study encounters with the same order number from being created,
-            // if we do encounter this issue, we log an error, but we don't throw an exception and instead just return the first study
-            if (radiologyStudyEncounters.size() > 1) {
-                log.error("More than one Radiology Study Encounter with order number " + orderNumber);
-            }
+        if (radiologyStudy == null && radiologyReports.size() > 0) {
+            radiologyStudy = deriveRadiologyStudyFromRadiologyReports(radiologyReports);
+        }
 
-            radiologyStudy = convertEncounterToRadiologyStudy(radiologyStudyEncounters.get(0));
+        if (radiologyStudy != null && radiologyReports.size() > 0) {
+            radiologyStudy.setReports(radiologyReports);
         }
-        else {
 
-            // if we don't find an actual radiology study encounter, see if we can derive information from any reports
-            // with the same order number
-            List<RadiologyReport> radiologyReports = getRadiologyReportsByOrderNumber(patient, orderNumber);
+        return radiologyStudy;
+    }
 
-            if (radiologyReports != null && radiologyReports.size() > 0) {
-                radiologyStudy = deriveRadiologyStudyFromRadiologyReports(radiologyReports);
+    @Transactional(readOnly = true)
+    @Override
+    public List<RadiologyStudy> getRadiologyStudiesByOrderNumbers(Patient patient, Collection<String> orderNumbers) {
+
+        if (orderNumbers == null || orderNumbers.isEmpty()) {
+            return new ArrayList<RadiologyStudy>();
+        }
+
+        List<RadiologyStudy> radiologyStudies;
+        if (radiologyProperties.isReadFromStudyTables()) {
+            List<RadiologyReport> radiologyReports = new ArrayList<RadiologyReport>();
+            for (RadiologyReportRecord record : radiologyReportRecordDAO.getReportRecords(patient, orderNumbers)) {
+                radiologyReports.add(record.toRadiologyReport());
             }
+            radiologyStudies = buildRadiologyStudiesFromRecords(
+                    radiologyStudyRecordDAO.getStudyRecords(patient, orderNumbers), radiologyReports);
+        }
+        else {
+            List<Encounter> encounters = new ArrayList<Encounter>();
+            for (RadiologyAccession accession : radiologyAccessionDAO.getAccessions(patient, orderNumbers)) {
+                encounters.add(accession.getEncounter());
+            }
+            radiologyStudies = buildRadiologyStudies(encounters, Collections.<Concept>emptyList());
         }
 
-        return radiologyStudy;
+        // as for a single study, the reports come most recent first
+        for (RadiologyStudy radiologyStudy : radiologyStudies) {
+            if (radiologyStudy.getReports() != null) {
+                Collections.sort(radiologyStudy.getReports(), new RadiologyReportByDataComparator());
+            }
+        }
+        return radiologyStudies;
     }
 
     @Transactional(readOnly = true)
@@ -220,15 +395,24 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
     @Override
     public List<RadiologyReport> getRadiologyReportsByOrderNumber(Patient patient, String orderNumber) {
 
-        List<Encounter> radiologyReportEncounters =
-                emrEncounterDAO.getEncountersByObsValueText(patient, new RadiologyReportConceptSet(conceptService).getOrderNumberConcept(),
-                        orderNumber, radiologyProperties.getRadiologyReportEncounterType(), false);
-
         List<RadiologyReport> radiologyReports = new ArrayList<RadiologyReport>();
 
-        if (radiologyReportEncounters != null) {
+        if (radiologyProperties.isReadFromStudyTables()) {
+            for (RadiologyReportRecord record : radiologyReportRecordDAO.getReportRecords(patient, orderNumber)) {
+                radiologyReports.add(record.toRadiologyReport());
+            }
+            Collections.sort(radiologyReports, new RadiologyReportByDataComparator());
+            return radiologyReports;
+        }
+
+        List<Encounter> radiologyReportEncounters =
+                radiologyAccessionDAO.getEncountersByAccessionNumber(patient, orderNumber, RadiologyAccession.Kind.REPORT);
+
+        if (radiologyReportEncounters != null && radiologyReportEncounters.size() > 0) {
+            Map<Encounter, Collection<Obs>> groupMembersByEncounter = getGroupMembersByEncounter(radiologyReportEncounters);
             for (Encounter radiologyReportEncounter : radiologyReportEncounters) {
-                radiologyReports.add(convertEncounterToRadiologyReport(radiologyReportEncounter));
+                radiologyReports.add(convertEncounterToRadiologyReport(radiologyReportEncounter,
+                        groupMembersByEncounter.get(radiologyReportEncounter)));
             }
         }
 
@@ -239,80 +423,459 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
     @Transactional(readOnly = true)
     @Override
     public List<Order> getUnfulfilledRadiologyOrdersForPatient(Patient patient) {
+        return getUnfulfilledRadiologyOrdersForPatient(patient, null);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<Order> getUnfulfilledRadiologyOrdersForPatient(Patient patient, Integer limit) {
+
+        List<Order> radiologyOrders = radiologyOrderDAO.getUnfulfilledOrders(patient,
+                radiologyProperties.getRadiologyTestOrderType(), limit);
+
+        // callers expect null rather than an empty list if there are no unfulfilled orders
+        return radiologyOrders != null && radiologyOrders.size() > 0 ? radiologyOrders : null;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<RadiologyOrder> getRadiologyWorklist(RadiologyWorklistQuery query) {
+        return radiologyOrderDAO.getUnfulfilledOrders(query, radiologyProperties.getRadiologyTestOrderType());
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<RadiologyStudy> getRadiologyStudiesForPatient(Patient patient) {
+
+        long loadingStarted = radiologyTimelineCache.startLoading();
+        List<RadiologyStudy> radiologyStudies = radiologyTimelineCache.get(patient, RadiologyTimelineCache.ALL_STUDIES);
+        if (radiologyStudies != null) {
+            return radiologyStudies;
+        }
+
+        if (radiologyQueryExecutor.isEnabled()) {
+            radiologyStudies = loadRadiologyStudiesInParallel(patient);
+        }
+        else if (radiologyProperties.isReadFromStudyTables()) {
+            radiologyStudies = buildRadiologyStudiesFromRecords(radiologyStudyRecordDAO.getStudyRecords(patient),
+                    radiologyReportRecordDAO.getReportSummaries(patient));
+        }
+        else {
+            // fetch all the radiology study and report encounters for this patient (with their providers)
+            List<Encounter> encounters = radiologyEncounterDAO.getEncounters(patient,
+                    Arrays.asList(radiologyProperties.getRadiologyStudyEncounterType(),
+                            radiologyProperties.getRadiologyReportEncounterType()));
+
+            radiologyStudies = buildRadiologyStudies(encounters, Collections.singletonList(
+                    conceptSetRegistry.getRadiologyReportConceptSet().getReportBodyConcept()));
+        }
 
-        List<Order> radiologyOrders = null;
-
-        OrderType radiologyTestOrderType = radiologyProperties.getRadiologyTestOrderType();
-        List<Order> allOrders = orderService.getAllOrdersByPatient(patient);
-        List<RadiologyStudy> allStudies = getRadiologyStudiesForPatient(patient);
-
-        if (allOrders != null && allOrders.size() > 0) {
-            for (Order order : allOrders) {
-                if (order.getOrderType().getUuid().equals(radiologyTestOrderType.getUuid()) && !order.isVoided()) {
-                    String orderNumber = order.getOrderNumber();
-                    if (StringUtils.isNotBlank(orderNumber)) {
-                        RadiologyStudy study = getStudyWithOrderNumber(allStudies, orderNumber);
-                        if (study == null) {
-                            //we found a Radiology Order with no study
-                            if (radiologyOrders == null) {
-                                radiologyOrders = new ArrayList<Order>();
-                            }
-                            radiologyOrders.add(order);
-                        }
+        radiologyTimelineCache.put(patient, RadiologyTimelineCache.ALL_STUDIES, radiologyStudies, loadingStarted);
+        return radiologyStudies;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<RadiologyStudy> getRadiologyStudiesForPatient(Patient patient, int offset, int limit) {
+
+        String view = offset + "," + limit;
+        long loadingStarted = radiologyTimelineCache.startLoading();
+        List<RadiologyStudy> radiologyStudies = radiologyTimelineCache.get(patient, view);
+        if (radiologyStudies != null) {
+            return radiologyStudies;
+        }
+
+        radiologyStudies = loadRadiologyStudiesForPatient(patient, offset, limit);
+        radiologyTimelineCache.put(patient, view, radiologyStudies, loadingStarted);
+        return radiologyStudies;
+    }
+
+    /**
+     * As {@link #getRadiologyStudiesForPatient(Patient)} reads them, but reading the studies and the reports at the same
+     * time, each in a session of its own. Both are read in the same order as they are one after the other, and copied
+     * into this session before they are put together, so that the timeline comes out exactly the same.
+     */
+    private List<RadiologyStudy> loadRadiologyStudiesInParallel(final Patient patient) {
+
+        final boolean readFromStudyTables = radiologyProperties.isReadFromStudyTables();
+        final EncounterType radiologyStudyEncounterType = radiologyProperties.getRadiologyStudyEncounterType();
+        final EncounterType radiologyReportEncounterType = radiologyProperties.getRadiologyReportEncounterType();
+        final List<Concept> excludedConcepts = Collections.singletonList(
+                conceptSetRegistry.getRadiologyReportConceptSet().getReportBodyConcept());
+
+        Future<List<RadiologyStudy>> studiesRead = radiologyQueryExecutor.submit(new Callable<List<RadiologyStudy>>() {
+
+            @Override
+            public List<RadiologyStudy> call() {
+                List<RadiologyStudy> radiologyStudies = new ArrayList<RadiologyStudy>();
+                if (readFromStudyTables) {
+                    for (RadiologyStudyRecord record : radiologyStudyRecordDAO.getStudyRecords(patient)) {
+                        radiologyStudies.add(record.toRadiologyStudy());
                     }
                 }
+                else {
+                    convertEncounters(radiologyEncounterDAO.getEncounters(patient,
+                            Collections.singletonList(radiologyStudyEncounterType)), excludedConcepts,
+                            radiologyStudies, new ArrayList<RadiologyReport>());
+                }
+                return radiologyStudies;
             }
+        });
+
+        Future<List<RadiologyReport>> reportsRead = radiologyQueryExecutor.submit(new Callable<List<RadiologyReport>>() {
+
+            @Override
+            public List<RadiologyReport> call() {
+                if (readFromStudyTables) {
+                    return radiologyReportRecordDAO.getReportSummaries(patient);
+                }
+                List<RadiologyReport> radiologyReports = new ArrayList<RadiologyReport>();
+                convertEncounters(radiologyEncounterDAO.getEncounters(patient,
+                        Collections.singletonList(radiologyReportEncounterType)), excludedConcepts,
+                        new ArrayList<RadiologyStudy>(), radiologyReports);
+                return radiologyReports;
+            }
+        });
+
+        List<RadiologyStudy> radiologyStudies = RadiologyQueryExecutor.getResult(studiesRead);
+        List<RadiologyReport> radiologyReports = RadiologyQueryExecutor.getResult(reportsRead);
+
+        RadiologyEntityResolver resolver = new RadiologyEntityResolver(conceptService, locationService, providerService);
+        for (RadiologyStudy radiologyStudy : radiologyStudies) {
+            resolver.reattach(radiologyStudy, patient);
+        }
+        for (RadiologyReport radiologyReport : radiologyReports) {
+            resolver.reattach(radiologyReport, patient);
         }
 
-        if (radiologyOrders != null && radiologyOrders.size() > 0 ) {
-            Collections.sort(radiologyOrders, new RadiologyOrderByDateComparator());
+        return buildRadiologyStudies(radiologyStudies, radiologyReports);
+    }
+
+    private List<RadiologyStudy> loadRadiologyStudiesForPatient(Patient patient, int offset, int limit) {
+
+        // first pick the order numbers of the requested page, and then only fetch the encounters for those
+        List<String> orderNumbers = radiologyAccessionDAO.getAccessionNumbers(patient, offset, limit);
+        if (orderNumbers.isEmpty()) {
+            return new ArrayList<RadiologyStudy>();
         }
-        return radiologyOrders;
+
+        if (radiologyProperties.isReadFromStudyTables()) {
+            return buildRadiologyStudiesFromRecords(radiologyStudyRecordDAO.getStudyRecords(patient, orderNumbers),
+                    radiologyReportRecordDAO.getReportSummaries(patient, orderNumbers));
+        }
+
+        List<Encounter> encounters = new ArrayList<Encounter>();
+        for (RadiologyAccession accession : radiologyAccessionDAO.getAccessions(patient, orderNumbers)) {
+            encounters.add(accession.getEncounter());
+        }
+
+        return buildRadiologyStudies(encounters, Collections.singletonList(
+                conceptSetRegistry.getRadiologyReportConceptSet().getReportBodyConcept()));
     }
 
     @Transactional(readOnly = true)
     @Override
-    public List<RadiologyStudy> getRadiologyStudiesForPatient(Patient patient) {
+    public long getRadiologyStudyCountForPatient(Patient patient) {
+        return radiologyAccessionDAO.getAccessionNumberCount(patient);
+    }
+
+    @Transactional
+    @Override
+    public int backfillRadiologyStudyTables() {
+
+        int batchSize = radiologyProperties.getSaveBatchChunkSize();
+        List<Encounter> studyEncounters = radiologyStudyRecordDAO.getEncountersWithoutStudyRecord(batchSize);
+        List<Encounter> reportEncounters = radiologyReportRecordDAO.getEncountersWithoutReportRecord(batchSize);
+
+        List<Encounter> encounters = new ArrayList<Encounter>(studyEncounters);
+        encounters.addAll(reportEncounters);
+        Map<Encounter, Collection<Obs>> groupMembersByEncounter = getGroupMembersByEncounter(encounters);
+
+        for (Encounter encounter : studyEncounters) {
+            radiologyStudyRecordDAO.saveOrUpdate(new RadiologyStudyRecord(
+                    convertEncounterToRadiologyStudy(encounter, groupMembersByEncounter.get(encounter)), encounter));
+        }
+        for (Encounter encounter : reportEncounters) {
+            radiologyReportRecordDAO.saveOrUpdate(new RadiologyReportRecord(
+                    convertEncounterToRadiologyReport(encounter, groupMembersByEncounter.get(encounter)), encounter));
+        }
+
+        return encounters.size();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public RadiologyReportSearchResult searchRadiologyReports(String query, RadiologyReportSearchFilter filter,
+                                                              int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            throw new IllegalArgumentException("offset must not be negative and limit must be positive");
+        }
+        return radiologyReportRecordDAO.searchReportRecords(query, filter, offset, limit);
+    }
+
+    @Transactional
+    @Override
+    public void rebuildRadiologyReportSearchIndex() {
+        Context.updateSearchIndexForType(RadiologyReportRecord.class);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public int exportRadiologyStudiesAndReports(RadiologyExportQuery query, OutputStream out) throws IOException {
+
+        RadiologyExportWriter writer = RadiologyExportWriter.create(query.getFormat(), out);
+        Map<Integer, String> conceptNames = new HashMap<Integer, String>();
+
+        writer.start();
+        int count = exportRows(RadiologyExportRow.Type.STUDY, query, writer, conceptNames)
+                + exportRows(RadiologyExportRow.Type.REPORT, query, writer, conceptNames);
+        writer.finish();
+
+        return count;
+    }
+
+    /**
+     * Exports the study or report records batch by batch, each batch starting after the last record of the previous
+     * one, so that only one batch of plain rows is ever held in memory. (A scrollable result set would be simpler,
+     * but MySQL only streams those with a fetch size of Integer.MIN_VALUE, and then no other query can run on the
+     * connection until it is closed, e.g. to look up a concept name.)
+     */
+    private int exportRows(RadiologyExportRow.Type type, RadiologyExportQuery query, RadiologyExportWriter writer,
+                           Map<Integer, String> conceptNames) throws IOException {
+
+        int count = 0;
+        Integer afterRecordId = null;
+        List<RadiologyExportRow> rows;
+        do {
+            rows = type == RadiologyExportRow.Type.STUDY ?
+                    radiologyStudyRecordDAO.getExportRows(query, afterRecordId, EXPORT_BATCH_SIZE) :
+                    radiologyReportRecordDAO.getExportRows(query, afterRecordId, EXPORT_BATCH_SIZE);
+            for (RadiologyExportRow row : rows) {
+                row.setProcedure(getConceptName(row.getProcedureConceptId(), conceptNames));
+                row.setReportType(getConceptName(row.getReportTypeConceptId(), conceptNames));
+                writer.write(row);
+                afterRecordId = row.getRecordId();
+            }
+            count += rows.size();
+        }
+        while (rows.size() == EXPORT_BATCH_SIZE);
+
+        return count;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<RadiologyChange> getRadiologyChangesAfter(Integer afterChangeId, int limit) {
+        return radiologyChangeDAO.getChangesAfter(afterChangeId, limit);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Integer getLatestRadiologyChangeId() {
+        return radiologyChangeDAO.getLatestChangeId();
+    }
+
+    @Transactional
+    @Override
+    public void saveRadiologyChanges(Collection<RadiologyChange> changes) {
+        for (RadiologyChange change : changes) {
+            radiologyChangeDAO.saveOrUpdate(change);
+        }
+    }
+
+    @Transactional
+    @Override
+    public int purgeRadiologyChanges(Date before) {
+        return radiologyChangeDAO.deleteChangesBefore(before);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Override
+    public long reserveRadiologyOrderNumbers(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("The number of order numbers to reserve must be positive");
+        }
+        return radiologyOrderNumberSequenceDAO.reserveValues(RadiologyOrderNumberGenerator.SEQUENCE_NAME, count);
+    }
+
+    /**
+     * Saves the items of a batch at the given indexes, radiologyapp.saveBatchChunkSize at a time, clearing the session
+     * after each chunk so that it doesn't grow with the batch. Each chunk is saved under a savepoint; if saving or
+     * flushing it fails, it is rolled back and its items are saved again one at a time, so that only the items that
+     * fail are reported as such and the rest of the batch is still saved. A failure that leaves the transaction unable
+     * to commit, whatever the savepoint, is thrown instead, so that the batch isn't silently rolled back.
+     */
+    private <T> void saveInChunks(List<T> items, Collection<Integer> indexes, List<RadiologySaveResult<T>> results,
+                                  BatchItemSaver<T> saver) {
+
+        List<Integer> pending = new ArrayList<Integer>(indexes);
+        int chunkSize = radiologyProperties.getSaveBatchChunkSize();
+
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            List<Integer> chunk = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+            Savepoint savepoint = radiologyEncounterDAO.setSavepoint();
+            try {
+                for (Integer i : chunk) {
+                    results.set(i, RadiologySaveResult.saved(items.get(i), saver.save(items.get(i))));
+                }
+                radiologyEncounterDAO.flush();
+                radiologyEncounterDAO.releaseSavepoint(savepoint);
+            }
+            catch (RuntimeException e) {
+                if (!radiologyEncounterDAO.rollbackToSavepoint(savepoint)) {
+                    throw e;
+                }
+                log.warn("Failed to save a chunk of " + chunk.size() + " radiology items, saving them one at a time", e);
+                for (Integer i : chunk) {
+                    results.set(i, saveAlone(items.get(i), saver));
+                }
+            }
+            Context.clearSession();
+        }
+    }
+
+    private <T> RadiologySaveResult<T> saveAlone(T item, BatchItemSaver<T> saver) {
+        Savepoint savepoint = radiologyEncounterDAO.setSavepoint();
+        try {
+            Encounter encounter = saver.save(item);
+            radiologyEncounterDAO.flush();
+            radiologyEncounterDAO.releaseSavepoint(savepoint);
+            return RadiologySaveResult.saved(item, encounter);
+        }
+        catch (RuntimeException e) {
+            if (!radiologyEncounterDAO.rollbackToSavepoint(savepoint)) {
+                throw e;
+            }
+            return saver.failed(item, e);
+        }
+    }
+
+    /**
+     * Saves one item of a batch for {@link #saveInChunks(List, Collection, List, BatchItemSaver)}
+     */
+    private interface BatchItemSaver<T> {
+
+        /**
+         * @return the saved encounter
+         */
+        Encounter save(T item);
+
+        /**
+         * @return the result for an item that failed to save with the given exception
+         */
+        RadiologySaveResult<T> failed(T item, RuntimeException e);
+
+    }
 
-        RadiologyReportConceptSet radiologyReportConceptSet = new RadiologyReportConceptSet(conceptService);
+    /**
+     * Discards the patient's cached radiology timeline on this server, and, if the servers sharing the database poll
+     * the change log, logs the change for the others in the same transaction
+     */
+    private void radiologyDataChanged(RadiologyChange.Kind kind, Patient patient, String accessionNumber) {
+        radiologyTimelineCache.invalidate(patient.getPatientId());
+        if (radiologyProperties.isChangeLogEnabled()) {
+            radiologyChangeDAO.saveOrUpdate(new RadiologyChange(kind, patient.getPatientId(), accessionNumber));
+        }
+    }
+
+    /**
+     * @return the name of the concept with the given id, looking each concept up only once per export (there are only
+     * so many procedures and report types)
+     */
+    private String getConceptName(Integer conceptId, Map<Integer, String> conceptNames) {
+        if (conceptId == null) {
+            return null;
+        }
+        if (!conceptNames.containsKey(conceptId)) {
+            Concept concept = conceptService.getConcept(conceptId);
+            conceptNames.put(conceptId, concept != null && concept.getName() != null ? concept.getName().getName() : null);
+        }
+        return conceptNames.get(conceptId);
+    }
 
-        // first fetch all the radiology study encounters for this patient
-        List<Encounter> radiologyStudyEncounters = encounterService.getEncounters(patient, null, null, null, null,
-                Collections.singletonList(radiologyProperties.getRadiologyStudyEncounterType()),
-                null, null, null, false);
+    /**
+     * Converts the given radiology study and report encounters to radiology studies (deriving a study from the reports
+     * where there is no study encounter), with the reports attached, sorted by date with most recent first
+     *
+     * @param encounters the radiology study and report encounters
+     * @param excludedConcepts the concepts of the obs not to load; lists leave out the report bodies, which are by far
+     *                         the largest and which they don't show
+     */
+    private List<RadiologyStudy> buildRadiologyStudies(List<Encounter> encounters, Collection<Concept> excludedConcepts) {
 
         List<RadiologyStudy> radiologyStudies = new ArrayList<RadiologyStudy>();
-        Set<String> orderNumbersOfExistingRadiologyStudyEncounters = new HashSet<String>();
+        List<RadiologyReport> radiologyReports = new ArrayList<RadiologyReport>();
+        convertEncounters(encounters, excludedConcepts, radiologyStudies, radiologyReports);
+
+        return buildRadiologyStudies(radiologyStudies, radiologyReports);
+    }
+
+    /**
+     * Converts the given radiology study and report encounters to radiology studies and reports, in the same order
+     */
+    private void convertEncounters(List<Encounter> encounters, Collection<Concept> excludedConcepts,
+                                   List<RadiologyStudy> radiologyStudies, List<RadiologyReport> radiologyReports) {
 
-        if (radiologyStudyEncounters != null) {
-            for (Encounter encounter : radiologyStudyEncounters) {
-                RadiologyStudy radiologyStudy = convertEncounterToRadiologyStudy(encounter);
-                radiologyStudies.add(radiologyStudy);
-                orderNumbersOfExistingRadiologyStudyEncounters.add(radiologyStudy.getOrderNumber());
+        EncounterType radiologyStudyEncounterType = radiologyProperties.getRadiologyStudyEncounterType();
+
+        // fetch the obs of all the encounters at once, rather than walking the obs of each encounter one by one
+        Map<Encounter, Collection<Obs>> groupMembersByEncounter = getGroupMembersByEncounter(encounters,
+                excludedConcepts);
+
+        for (Encounter encounter : encounters) {
+            if (encounter.getEncounterType().equals(radiologyStudyEncounterType)) {
+                radiologyStudies.add(convertEncounterToRadiologyStudy(encounter, groupMembersByEncounter.get(encounter)));
+            }
+            else {
+                radiologyReports.add(convertEncounterToRadiologyReport(encounter, groupMembersByEncounter.get(encounter)));
             }
         }
+    }
 
-        // now fetch all the radiology reports for this patient, and organize by order number
-        Map<String, List<RadiologyReport>> radiologyReportsByOrderNumber = new HashMap<String, List<RadiologyReport>>();
+    /**
+     * As {@link #buildRadiologyStudies(List, Collection)}, but from the emr_radiology_study and emr_radiology_report tables
+     */
+    private List<RadiologyStudy> buildRadiologyStudiesFromRecords(List<RadiologyStudyRecord> studyRecords,
+                                                                  List<RadiologyReport> reportSummaries) {
 
-        List<Encounter> radiologyReportEncounters = encounterService.getEncounters(patient, null, null, null, null,
-                Collections.singletonList(radiologyProperties.getRadiologyReportEncounterType()),
-                null, null, null, false);
+        List<RadiologyStudy> radiologyStudies = new ArrayList<RadiologyStudy>();
+        for (RadiologyStudyRecord record : studyRecords) {
+            radiologyStudies.add(record.toRadiologyStudy());
+        }
+        return buildRadiologyStudies(radiologyStudies, reportSummaries);
+    }
 
-        for (Encounter radiologyReportEncounter : radiologyReportEncounters) {
-            String orderNumber = radiologyReportConceptSet.getOrderNumberFromEncounter(radiologyReportEncounter);
+    /**
+     * Attaches the reports to their studies (deriving a study from the reports where there is none), sorted by date
+     * with most recent first
+     *
+     * @param radiologyStudies the studies
+     * @param radiologyReports the reports, oldest first
+     */
+    private List<RadiologyStudy> buildRadiologyStudies(List<RadiologyStudy> radiologyStudies,
+                                                       Collection<RadiologyReport> radiologyReports) {
+
+        Set<String> orderNumbersOfExistingRadiologyStudyEncounters = new HashSet<String>();
+        for (RadiologyStudy radiologyStudy : radiologyStudies) {
+            orderNumbersOfExistingRadiologyStudyEncounters.add(radiologyStudy.getOrderNumber());
+        }
+
+        // organize the radiology reports by order number
+        Map<String, List<RadiologyReport>> radiologyReportsByOrderNumber = new HashMap<String, List<RadiologyReport>>();
+
+        for (RadiologyReport radiologyReport : radiologyReports) {
+            String orderNumber = radiologyReport.getOrderNumber();
 
             if (!radiologyReportsByOrderNumber.containsKey(orderNumber)) {
                 radiologyReportsByOrderNumber.put(orderNumber, new ArrayList<RadiologyReport>());
             }
-            radiologyReportsByOrderNumber.get(orderNumber).add(convertEncounterToRadiologyReport(radiologyReportEncounter));
+            radiologyReportsByOrderNumber.get(orderNumber).add(radiologyReport);
         }
 
         // now find any "orphaned" reports" and make transient radiology studies to represent them
         for (String orderNumber : radiologyReportsByOrderNumber.keySet()) {
             if (!orderNumbersOfExistingRadiologyStudyEncounters.contains(orderNumber)) {
-                List<RadiologyReport> radiologyReports = radiologyReportsByOrderNumber.get(orderNumber);
-                radiologyStudies.add(deriveRadiologyStudyFromRadiologyReports(radiologyReports));
+                radiologyStudies.add(deriveRadiologyStudyFromRadiologyReports(radiologyReportsByOrderNumber.get(orderNumber)));
             }
         }
 
@@ -332,16 +895,51 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
         return radiologyStudies;
     }
 
-    private RadiologyStudy getStudyWithOrderNumber(List<RadiologyStudy> studies, String orderNumber) {
-        for (RadiologyStudy s : studies) {
-            if (s.getOrderNumber().equals(orderNumber)) {
-                return s;
+    /**
+     * Loads the obs of all the given encounters at once, and returns the members of the radiology study or report obs
+     * group of each encounter (an encounter without such an obs group maps to an empty collection)
+     */
+    private Map<Encounter, Collection<Obs>> getGroupMembersByEncounter(Collection<Encounter> encounters) {
+        return getGroupMembersByEncounter(encounters, Collections.<Concept>emptyList());
+    }
+
+    /**
+     * As {@link #getGroupMembersByEncounter(Collection)}, but without the group members with any of the given concepts
+     */
+    private Map<Encounter, Collection<Obs>> getGroupMembersByEncounter(Collection<Encounter> encounters,
+                                                                       Collection<Concept> excludedConcepts) {
+
+        Set<Concept> obsGroupConcepts = new HashSet<Concept>(Arrays.asList(
+                conceptSetRegistry.getRadiologyStudyConceptSet().getRadiologyStudySetConcept(),
+                conceptSetRegistry.getRadiologyReportConceptSet().getRadiologyReportSetConcept()));
+
+        Map<Encounter, Obs> obsGroupByEncounter = new HashMap<Encounter, Obs>();
+        Map<Obs, Collection<Obs>> groupMembersByObsGroup = new HashMap<Obs, Collection<Obs>>();
+
+        for (Obs obs : radiologyEncounterDAO.getObs(encounters, excludedConcepts)) {
+            if (obs.getObsGroup() == null) {
+                if (obsGroupConcepts.contains(obs.getConcept()) && !obsGroupByEncounter.containsKey(obs.getEncounter())) {
+                    obsGroupByEncounter.put(obs.getEncounter(), obs);
+                }
             }
+            else {
+                if (!groupMembersByObsGroup.containsKey(obs.getObsGroup())) {
+                    groupMembersByObsGroup.put(obs.getObsGroup(), new ArrayList<Obs>());
+                }
+                groupMembersByObsGroup.get(obs.getObsGroup()).add(obs);
+            }
+        }
+
+        Map<Encounter, Collection<Obs>> groupMembersByEncounter = new HashMap<Encounter, Collection<Obs>>();
+        for (Encounter encounter : encounters) {
+            Obs obsGroup = obsGroupByEncounter.get(encounter);
+            Collection<Obs> groupMembers = obsGroup != null ? groupMembersByObsGroup.get(obsGroup) : null;
+            groupMembersByEncounter.put(encounter, groupMembers != null ? groupMembers : Collections.<Obs>emptyList());
         }
-        return null;
+        return groupMembersByEncounter;
     }
 
-    private RadiologyStudy convertEncounterToRadiologyStudy(Encounter encounter) {
+    private RadiologyStudy convertEncounterToRadiologyStudy(Encounter encounter, Collection<Obs> groupMembers) {
 
         RadiologyStudy radiologyStudy = new RadiologyStudy();
         radiologyStudy.setPatient(encounter.getPatient());
@@ -356,15 +954,15 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
             radiologyStudy.setTechnician(technicians.iterator().next());
         }
 
-        RadiologyStudyConceptSet radiologyStudyConceptSet = new RadiologyStudyConceptSet(conceptService);
-        radiologyStudy.setProcedure(radiologyStudyConceptSet.getProcedureFromEncounter(encounter));
-        radiologyStudy.setImagesAvailable(radiologyStudyConceptSet.getImagesAvailableFromEncounter(encounter));
-        radiologyStudy.setOrderNumber(radiologyStudyConceptSet.getOrderNumberFromEncounter(encounter));
+        RadiologyStudyConceptSet radiologyStudyConceptSet = conceptSetRegistry.getRadiologyStudyConceptSet();
+        radiologyStudy.setProcedure(radiologyStudyConceptSet.getProcedureFromGroupMembers(groupMembers));
+        radiologyStudy.setImagesAvailable(radiologyStudyConceptSet.getImagesAvailableFromGroupMembers(groupMembers));
+        radiologyStudy.setOrderNumber(radiologyStudyConceptSet.getOrderNumberFromGroupMembers(groupMembers));
 
         return radiologyStudy;
     }
 
-    private RadiologyReport convertEncounterToRadiologyReport(Encounter encounter) {
+    private RadiologyReport convertEncounterToRadiologyReport(Encounter encounter, Collection<Obs> groupMembers) {
 
         RadiologyReport radiologyReport = new RadiologyReport();
         radiologyReport.setPatient(encounter.getPatient());
@@ -379,11 +977,11 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
             radiologyReport.setPrincipalResultsInterpreter(resultsInterpreters.iterator().next());
         }
 
-        RadiologyReportConceptSet radiologyReportConceptSet = new RadiologyReportConceptSet(conceptService);
-        radiologyReport.setReportType(radiologyReportConceptSet.getReportTypeFromEncounter(encounter));
-        radiologyReport.setReportBody(radiologyReportConceptSet.getReportBodyFromEncounter(encounter));
-        radiologyReport.setOrderNumber(radiologyReportConceptSet.getOrderNumberFromEncounter(encounter));
-        radiologyReport.setProcedure(radiologyReportConceptSet.getProcedureFromEncounter(encounter));
+        RadiologyReportConceptSet radiologyReportConceptSet = conceptSetRegistry.getRadiologyReportConceptSet();
+        radiologyReport.setReportType(radiologyReportConceptSet.getReportTypeFromGroupMembers(groupMembers));
+        radiologyReport.setReportBody(radiologyReportConceptSet.getReportBodyFromGroupMembers(groupMembers));
+        radiologyReport.setOrderNumber(radiologyReportConceptSet.getOrderNumberFromGroupMembers(groupMembers));
+        radiologyReport.setProcedure(radiologyReportConceptSet.getProcedureFromGroupMembers(groupMembers));
 
         return radiologyReport;
 
@@ -406,6 +1004,56 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
         return radiologyStudy;
     }
 
+    private RadiologyStudy getRadiologyStudyFromObs(Patient patient, String orderNumber) {
+
+        List<Encounter> radiologyStudyEncounters =
+                radiologyAccessionDAO.getEncountersByAccessionNumber(patient, orderNumber, RadiologyAccession.Kind.STUDY);
+
+        if (radiologyStudyEncounters == null || radiologyStudyEncounters.isEmpty()) {
+            return null;
+        }
+
+        // note that also the API should prevent two radiology study encounters with the same order number from being created,
+        // if we do encounter this issue, we log an error, but we don't throw an exception and instead just return the first study
+        if (radiologyStudyEncounters.size() > 1) {
+            log.error("More than one Radiology Study Encounter with order number " + orderNumber);
+        }
+
+        Encounter radiologyStudyEncounter = radiologyStudyEncounters.get(0);
+        return convertEncounterToRadiologyStudy(radiologyStudyEncounter,
+                getGroupMembersByEncounter(Collections.singletonList(radiologyStudyEncounter)).get(radiologyStudyEncounter));
+    }
+
+    private RadiologyStudy getRadiologyStudyFromStudyTable(Patient patient, String orderNumber) {
+
+        List<RadiologyStudyRecord> records = radiologyStudyRecordDAO.getStudyRecords(patient, orderNumber);
+
+        if (records.isEmpty()) {
+            return null;
+        }
+        if (records.size() > 1) {
+            log.error("More than one Radiology Study Encounter with order number " + orderNumber);
+        }
+        return records.get(0).toRadiologyStudy();
+    }
+
+    private RadiologyStudyRecord buildRadiologyStudyRecord(RadiologyStudy radiologyStudy, Encounter encounter) {
+        RadiologyStudyRecord record = new RadiologyStudyRecord(radiologyStudy, encounter);
+        // as on the encounter, a study without a technician is recorded against the unknown provider
+        if (record.getTechnician() == null) {
+            record.setTechnician(radiologyProperties.getUnknownProvider());
+        }
+        return record;
+    }
+
+    private RadiologyReportRecord buildRadiologyReportRecord(RadiologyReport radiologyReport, Encounter encounter) {
+        RadiologyReportRecord record = new RadiologyReportRecord(radiologyReport, encounter);
+        if (record.getPrincipalResultsInterpreter() == null) {
+            record.setPrincipalResultsInterpreter(radiologyProperties.getUnknownProvider());
+        }
+        return record;
+    }
+
     private void validate(RadiologyReport radiologyReport) {
 
         // TODO: perhaps move these into an external validator?
@@ -427,8 +1075,54 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
 
     }
 
+    private Encounter buildRadiologyReportEncounter(RadiologyReport radiologyReport) {
+
+        Encounter encounter = new Encounter();
+        encounter.setEncounterType(radiologyProperties.getRadiologyReportEncounterType());
+        encounter.setEncounterDatetime(radiologyReport.getReportDate());
+        encounter.setLocation(radiologyReport.getReportLocation() != null ?
+                radiologyReport.getReportLocation() : radiologyProperties.getUnknownLocation());
+        encounter.setPatient(radiologyReport.getPatient());
+        encounter.addProvider(radiologyProperties.getPrincipalResultsInterpreterEncounterRole(),
+                radiologyReport.getPrincipalResultsInterpreter() != null ?  radiologyReport.getPrincipalResultsInterpreter() : radiologyProperties.getUnknownProvider());
+
+        RadiologyReportConceptSet radiologyReportConceptSet = conceptSetRegistry.getRadiologyReportConceptSet();
+        encounter.addObs(radiologyReportConceptSet.buildRadiologyReportObsGroup(radiologyReport));
+        return encounter;
+    }
+
+    private Encounter buildRadiologyStudyEncounter(RadiologyStudy radiologyStudy) {
+
+        Encounter encounter = new Encounter();
+        encounter.setEncounterType(radiologyProperties.getRadiologyStudyEncounterType());
+        encounter.setEncounterDatetime(radiologyStudy.getDatePerformed());
+        encounter.setLocation(radiologyStudy.getStudyLocation() != null ?
+                radiologyStudy.getStudyLocation() : radiologyProperties.getUnknownLocation());
+        encounter.setPatient(radiologyStudy.getPatient());
+        encounter.addProvider(radiologyProperties.getRadiologyTechnicianEncounterRole(),
+                radiologyStudy.getTechnician() != null ? radiologyStudy.getTechnician() : radiologyProperties.getUnknownProvider());
+
+        RadiologyStudyConceptSet radiologyStudyConceptSet = conceptSetRegistry.getRadiologyStudyConceptSet();
+        encounter.addObs(radiologyStudyConceptSet.buildRadiologyStudyObsGroup(radiologyStudy));
+        return encounter;
+    }
+
     private void validate(RadiologyStudy radiologyStudy) {
 
+        validateRequiredFields(radiologyStudy);
+
+        // make sure no existing study with the same order number
+        List<Encounter> radiologyStudyEncounters = radiologyAccessionDAO.getEncountersByAccessionNumber(null,
+                radiologyStudy.getOrderNumber(), RadiologyAccession.Kind.STUDY);
+
+        if (radiologyStudyEncounters != null && radiologyStudyEncounters.size() > 0) {
+            throw new RadiologyAPIException("A Radiology Study already exists with order number " + radiologyStudy.getOrderNumber());
+        }
+
+    }
+
+    private void validateRequiredFields(RadiologyStudy radiologyStudy) {
+
         // TODO: perhaps move these into an external validator?
 
         if (StringUtils.isBlank(radiologyStudy.getOrderNumber())) {
@@ -446,14 +1140,6 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
                     + radiologyStudy.getOrderNumber());
         }
 
-        // make sure no existing study with the same order number
-        List<Encounter> radiologyStudyEncounters = emrEncounterDAO.getEncountersByObsValueText(new RadiologyStudyConceptSet(conceptService).getOrderNumberConcept(),
-                radiologyStudy.getOrderNumber(), radiologyProperties.getRadiologyStudyEncounterType(), false);
-
-        if (radiologyStudyEncounters != null && radiologyStudyEncounters.size() > 0) {
-            throw new RadiologyAPIException("A Radiology Study already exists with order number " + radiologyStudy.getOrderNumber());
-        }
-
     }
 
     public void setRadiologyProperties(RadiologyProperties radiologyProperties) {
@@ -464,8 +1150,8 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
         this.encounterService = encounterService;
     }
 
-    public void setConceptService(ConceptService conceptService) {
-        this.conceptService = conceptService;
+    public void setConceptSetRegistry(RadiologyConceptSetRegistry conceptSetRegistry) {
+        this.conceptSetRegistry = conceptSetRegistry;
     }
 
     public void setOrderService(OrderService orderService) {
@@ -476,7 +1162,47 @@ public class RadiologyServiceImpl  extends BaseOpenmrsService implements Radiolo
         this.radiologyOrderDAO = radiologyOrderDAO;
     }
 
-    public void setEmrEncounterDAO(EmrEncounterDAO emrEncounterDAO) {
-        this.emrEncounterDAO = emrEncounterDAO;
+    public void setRadiologyAccessionDAO(RadiologyAccessionDAO radiologyAccessionDAO) {
+        this.radiologyAccessionDAO = radiologyAccessionDAO;
+    }
+
+    public void setRadiologyEncounterDAO(RadiologyEncounterDAO radiologyEncounterDAO) {
+        this.radiologyEncounterDAO = radiologyEncounterDAO;
+    }
+
+    public void setRadiologyStudyRecordDAO(RadiologyStudyRecordDAO radiologyStudyRecordDAO) {
+        this.radiologyStudyRecordDAO = radiologyStudyRecordDAO;
+    }
+
+    public void setRadiologyReportRecordDAO(RadiologyReportRecordDAO radiologyReportRecordDAO) {
+        this.radiologyReportRecordDAO = radiologyReportRecordDAO;
+    }
+
+    public void setRadiologyTimelineCache(RadiologyTimelineCache radiologyTimelineCache) {
+        this.radiologyTimelineCache = radiologyTimelineCache;
+    }
+
+    public void setRadiologyChangeDAO(RadiologyChangeDAO radiologyChangeDAO) {
+        this.radiologyChangeDAO = radiologyChangeDAO;
+    }
+
+    public void setRadiologyOrderNumberSequenceDAO(RadiologyOrderNumberSequenceDAO radiologyOrderNumberSequenceDAO) {
+        this.radiologyOrderNumberSequenceDAO = radiologyOrderNumberSequenceDAO;
+    }
+
+    public void setRadiologyQueryExecutor(RadiologyQueryExecutor radiologyQueryExecutor) {
+        this.radiologyQueryExecutor = radiologyQueryExecutor;
+    }
+
+    public void setConceptService(ConceptService conceptService) {
+        this.conceptService = conceptService;
+    }
+
+    public void setLocationService(LocationService locationService) {
+        this.locationService = locationService;
+    }
+
+    public void setProviderService(ProviderService providerService) {
+        this.providerService = providerService;
     }
 }
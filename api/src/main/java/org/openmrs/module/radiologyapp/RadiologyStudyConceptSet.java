@@ -23,6 +23,8 @@ import org.openmrs.module.emrapi.EmrApiConstants;
 import org.openmrs.module.emrapi.descriptor.ConceptSetDescriptor;
 import org.openmrs.module.emrapi.descriptor.ConceptSetDescriptorField;
 
+import java.util.Collection;
+
 public class RadiologyStudyConceptSet extends ConceptSetDescriptor {
 
     private Concept radiologyStudySetConcept;
@@ -72,17 +74,29 @@ public class RadiologyStudyConceptSet extends ConceptSetDescriptor {
     }
 
     public String getOrderNumberFromObsGroup(Obs obsGroup) {
-        Obs orderNumberObs = getMemberObsByConcept(obsGroup, getOrderNumberConcept());
-        return orderNumberObs != null ? orderNumberObs.getValueText() : null;
+        return getOrderNumberFromGroupMembers(obsGroup.getGroupMembers());
     }
 
     public Concept getProcedureFromObsGroup(Obs obsGroup) {
-        Obs procedureObs = getMemberObsByConcept(obsGroup, getProcedureConcept());
-        return procedureObs != null ? procedureObs.getValueCoded() : null;
+        return getProcedureFromGroupMembers(obsGroup.getGroupMembers());
     }
 
     public Boolean getImagesAvailableFromObsGroup(Obs obsGroup) {
-        Obs imagesAvailableObs = getMemberObsByConcept(obsGroup, getImagesAvailableConcept());
+        return getImagesAvailableFromGroupMembers(obsGroup.getGroupMembers());
+    }
+
+    public String getOrderNumberFromGroupMembers(Collection<Obs> groupMembers) {
+        Obs orderNumberObs = getMemberObsByConcept(groupMembers, getOrderNumberConcept());
+        return orderNumberObs != null ? orderNumberObs.getValueText() : null;
+    }
+
+    public Concept getProcedureFromGroupMembers(Collection<Obs> groupMembers) {
+        Obs procedureObs = getMemberObsByConcept(groupMembers, getProcedureConcept());
+        return procedureObs != null ? procedureObs.getValueCoded() : null;
+    }
+
+    public Boolean getImagesAvailableFromGroupMembers(Collection<Obs> groupMembers) {
+        Obs imagesAvailableObs = getMemberObsByConcept(groupMembers, getImagesAvailableConcept());
         return imagesAvailableObs != null ? imagesAvailableObs.getValueBoolean() : null;
     }
 
@@ -110,8 +124,11 @@ public class RadiologyStudyConceptSet extends ConceptSetDescriptor {
         return null;
     }
 
-    private Obs getMemberObsByConcept(Obs obsGroup, Concept concept) {
-        for (Obs obs : obsGroup.getGroupMembers()) {
+    private Obs getMemberObsByConcept(Collection<Obs> groupMembers, Concept concept) {
+        if (groupMembers == null) {
+            return null;
+        }
+        for (Obs obs : groupMembers) {
             if (obs.getConcept().equals(concept)) {
                 return obs;
             }
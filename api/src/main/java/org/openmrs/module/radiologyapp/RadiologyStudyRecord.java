@@ -0,0 +1,148 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
+
+import java.util.Date;
+
+/**
+ * Relational copy of a radiology study encounter and its obs group, so that studies can be read with a single query
+ * rather than by loading the encounter's obs (see {@link RadiologyProperties#isReadFromStudyTables()}). The encounter
+ * remains the record of truth: voiding it voids the study.
+ */
+public class RadiologyStudyRecord {
+
+    private Integer id;
+
+    private Encounter encounter;
+
+    private Patient patient;
+
+    private String accessionNumber;
+
+    private Concept procedure;
+
+    private Date datePerformed;
+
+    private Location studyLocation;
+
+    private Provider technician;
+
+    private Boolean imagesAvailable;
+
+    public RadiologyStudyRecord() {
+    }
+
+    public RadiologyStudyRecord(RadiologyStudy radiologyStudy, Encounter encounter) {
+        this.encounter = encounter;
+        this.patient = encounter.getPatient();
+        this.accessionNumber = radiologyStudy.getOrderNumber();
+        this.procedure = radiologyStudy.getProcedure();
+        this.datePerformed = encounter.getEncounterDatetime();
+        this.studyLocation = encounter.getLocation();
+        this.technician = radiologyStudy.getTechnician();
+        this.imagesAvailable = radiologyStudy.isImagesAvailable();
+    }
+
+    public RadiologyStudy toRadiologyStudy() {
+        RadiologyStudy radiologyStudy = new RadiologyStudy();
+        radiologyStudy.setPatient(patient);
+        radiologyStudy.setOrderNumber(accessionNumber);
+        radiologyStudy.setProcedure(procedure);
+        radiologyStudy.setDatePerformed(datePerformed);
+        radiologyStudy.setStudyLocation(studyLocation);
+        radiologyStudy.setTechnician(technician);
+        radiologyStudy.setImagesAvailable(imagesAvailable);
+        return radiologyStudy;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Encounter getEncounter() {
+        return encounter;
+    }
+
+    public void setEncounter(Encounter encounter) {
+        this.encounter = encounter;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public void setPatient(Patient patient) {
+        this.patient = patient;
+    }
+
+    public String getAccessionNumber() {
+        return accessionNumber;
+    }
+
+    public void setAccessionNumber(String accessionNumber) {
+        this.accessionNumber = accessionNumber;
+    }
+
+    public Concept getProcedure() {
+        return procedure;
+    }
+
+    public void setProcedure(Concept procedure) {
+        this.procedure = procedure;
+    }
+
+    public Date getDatePerformed() {
+        return datePerformed;
+    }
+
+    public void setDatePerformed(Date datePerformed) {
+        this.datePerformed = datePerformed;
+    }
+
+    public Location getStudyLocation() {
+        return studyLocation;
+    }
+
+    public void setStudyLocation(Location studyLocation) {
+        this.studyLocation = studyLocation;
+    }
+
+    public Provider getTechnician() {
+        return technician;
+    }
+
+    public void setTechnician(Provider technician) {
+        this.technician = technician;
+    }
+
+    public Boolean getImagesAvailable() {
+        return imagesAvailable;
+    }
+
+    public void setImagesAvailable(Boolean imagesAvailable) {
+        this.imagesAvailable = imagesAvailable;
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import lombok.Setter;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Patient;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.ProviderService;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the radiology timelines (the lists of studies, with their reports, that the radiology tab and dashboard
+ * section show) of recently viewed patients, so that they are not assembled from the obs or the study tables on every
+ * page view.
+ * <p>
+ * Only plain values and the ids of the concepts, locations and providers are kept, and a timeline is rebuilt from
+ * them (through the services, so mostly from the second-level cache) on every hit; cached entities would outlive their
+ * session. The timelines of the least recently viewed patients are evicted once the estimated size of the cache
+ * exceeds radiologyapp.timelineCacheSizeKb, and a timeline is used for at most radiologyapp.timelineCacheTtlSeconds.
+ * <p>
+ * A patient's timelines are discarded by {@link #invalidate(Integer)} as soon as a radiology study or report of theirs
+ * is saved, and again once the transaction that saved it completes (see
+ * {@link org.openmrs.module.radiologyapp.db.RadiologyTimelineInterceptor}). All of them are discarded when the radiology
+ * configuration changes. A timeline that was assembled from what was read before an invalidation is not put in the
+ * cache.
+ */
+public class RadiologyTimelineCache {
+
+    /**
+     * The view of a timeline with all of the patient's studies
+     */
+    public static final String ALL_STUDIES = "all";
+
+    // invalidation times are only needed as long as a load that started before them could still be put
+    private static final int MAX_INVALIDATION_TIMES = 1000;
+
+    @Setter
+    private RadiologyProperties radiologyProperties;
+
+    @Setter
+    private ConceptService conceptService;
+
+    @Setter
+    private LocationService locationService;
+
+    @Setter
+    private ProviderService providerService;
+
+    // access ordered, so that iterating goes from the least to the most recently viewed patient; guarded by this
+    private final LinkedHashMap<Integer, Timeline> timelines = new LinkedHashMap<Integer, Timeline>(16, 0.75f, true);
+
+    // guarded by this
+    private long estimatedBytes;
+
+    // the version of the radiology configuration that the cached timelines were assembled with; guarded by this
+    private long configurationVersion;
+
+    private final ConcurrentMap<Integer, Long> invalidatedAt = new ConcurrentHashMap<Integer, Long>();
+
+    // null until all the timelines are first invalidated
+    private volatile Long allInvalidatedAt;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @return the time to pass to {@link #put} once the timeline has been assembled; must be taken before anything
+     * is read for it
+     */
+    public long startLoading() {
+        return nanoTime();
+    }
+
+    /**
+     * @param patient the patient
+     * @param view which view of the patient's timeline, i.e. {@link #ALL_STUDIES} or a page of it
+     * @return a fresh copy of the cached timeline, or null if it is not cached (or the cache is switched off)
+     */
+    public List<RadiologyStudy> get(Patient patient, String view) {
+
+        if (radiologyProperties.getTimelineCacheMaxBytes() <= 0) {
+            return null;
+        }
+
+        CachedView cachedView;
+        synchronized (this) {
+            checkConfigurationVersion();
+            Timeline timeline = timelines.get(patient.getPatientId());
+            cachedView = timeline != null ? timeline.views.get(view) : null;
+            if (cachedView != null && isExpired(cachedView)) {
+                removeView(patient.getPatientId(), timeline, view, cachedView);
+                expirations.increment();
+                cachedView = null;
+            }
+        }
+
+        if (cachedView == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cachedView.toRadiologyStudies(patient,
+                new RadiologyEntityResolver(conceptService, locationService, providerService));
+    }
+
+    /**
+     * Caches a view of a patient's timeline, unless the patient's timelines were invalidated since it started loading
+     *
+     * @param patient the patient
+     * @param view which view of the patient's timeline
+     * @param radiologyStudies the timeline
+     * @param loadingStarted what {@link #startLoading()} returned before the timeline was read
+     */
+    public void put(Patient patient, String view, List<RadiologyStudy> radiologyStudies, long loadingStarted) {
+
+        long maxBytes = radiologyProperties.getTimelineCacheMaxBytes();
+        Integer patientId = patient.getPatientId();
+        if (maxBytes <= 0 || patientId == null || isInvalidatedSince(patientId, loadingStarted)) {
+            return;
+        }
+
+        CachedView cachedView = CachedView.of(radiologyStudies, loadingStarted);
+        if (cachedView == null || cachedView.estimatedBytes > maxBytes) {
+            return;
+        }
+
+        synchronized (this) {
+            checkConfigurationVersion();
+            // checked again under the lock, as invalidate() updates the invalidation times before taking it
+            if (isInvalidatedSince(patientId, loadingStarted)) {
+                return;
+            }
+            Timeline timeline = timelines.get(patientId);
+            if (timeline == null) {
+                timeline = new Timeline();
+                timelines.put(patientId, timeline);
+                estimatedBytes += Timeline.ESTIMATED_BYTES;
+            }
+            CachedView replaced = timeline.views.put(view, cachedView);
+            estimatedBytes += cachedView.estimatedBytes - (replaced != null ? replaced.estimatedBytes : 0);
+            puts.increment();
+
+            Iterator<Map.Entry<Integer, Timeline>> leastRecentlyViewed = timelines.entrySet().iterator();
+            while (estimatedBytes > maxBytes && leastRecentlyViewed.hasNext()) {
+                Timeline evicted = leastRecentlyViewed.next().getValue();
+                estimatedBytes -= evicted.getEstimatedBytes();
+                leastRecentlyViewed.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Discards the timelines of the given patient
+     */
+    public void invalidate(Integer patientId) {
+        if (patientId == null) {
+            return;
+        }
+        long now = nanoTime();
+        invalidatedAt.put(patientId, now);
+        if (invalidatedAt.size() > MAX_INVALIDATION_TIMES) {
+            pruneInvalidationTimes(now);
+        }
+
+        synchronized (this) {
+            Timeline timeline = timelines.remove(patientId);
+            if (timeline != null) {
+                estimatedBytes -= timeline.getEstimatedBytes();
+            }
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * Discards all the cached timelines
+     */
+    public void invalidateAll() {
+        allInvalidatedAt = nanoTime();
+        synchronized (this) {
+            timelines.clear();
+            estimatedBytes = 0;
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * @return the current figures, keyed by name, ready to be serialized as JSON
+     */
+    public Map<String, Object> getSnapshot() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+        snapshot.put("hits", hitCount);
+        snapshot.put("misses", missCount);
+        snapshot.put("hitRatio", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        snapshot.put("puts", puts.sum());
+        snapshot.put("evictions", evictions.sum());
+        snapshot.put("expirations", expirations.sum());
+        snapshot.put("invalidations", invalidations.sum());
+        synchronized (this) {
+            snapshot.put("patients", timelines.size());
+            snapshot.put("estimatedBytes", estimatedBytes);
+        }
+        snapshot.put("maxBytes", radiologyProperties.getTimelineCacheMaxBytes());
+        return snapshot;
+    }
+
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    // e.g. the encounter types or whether to read from the study tables may have changed
+    private void checkConfigurationVersion() {
+        long version = radiologyProperties.getVersion();
+        if (version != configurationVersion) {
+            allInvalidatedAt = nanoTime();
+            timelines.clear();
+            estimatedBytes = 0;
+            configurationVersion = version;
+        }
+    }
+
+    private boolean isInvalidatedSince(Integer patientId, long loadingStarted) {
+        // nano times may overflow, so only their differences can be compared
+        Long everythingInvalidatedAt = allInvalidatedAt;
+        Long patientInvalidatedAt = invalidatedAt.get(patientId);
+        return (everythingInvalidatedAt != null && everythingInvalidatedAt - loadingStarted >= 0)
+                || (patientInvalidatedAt != null && patientInvalidatedAt - loadingStarted >= 0);
+    }
+
+    private boolean isExpired(CachedView cachedView) {
+        return nanoTime() - cachedView.loadingStarted
+                > TimeUnit.MILLISECONDS.toNanos(radiologyProperties.getTimelineCacheTtlMillis());
+    }
+
+    // a view is cached with the time it started loading, so it expires before any load that started before an
+    // invalidation that is pruned here could still be put
+    private void pruneInvalidationTimes(long now) {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(radiologyProperties.getTimelineCacheTtlMillis());
+        for (Iterator<Long> times = invalidatedAt.values().iterator(); times.hasNext(); ) {
+            if (now - times.next() > ttlNanos) {
+                times.remove();
+            }
+        }
+    }
+
+    private void removeView(Integer patientId, Timeline timeline, String view, CachedView cachedView) {
+        timeline.views.remove(view);
+        estimatedBytes -= cachedView.estimatedBytes;
+        if (timeline.views.isEmpty()) {
+            timelines.remove(patientId);
+            estimatedBytes -= Timeline.ESTIMATED_BYTES;
+        }
+    }
+
+    private static int estimateBytes(String value) {
+        return value != null ? 40 + 2 * value.length() : 0;
+    }
+
+    private static Integer getId(OpenmrsObject object) {
+        return object != null ? object.getId() : null;
+    }
+
+    /**
+     * The cached views of one patient's timeline
+     */
+    private static class Timeline {
+
+        private static final long ESTIMATED_BYTES = 200;
+
+        private final Map<String, CachedView> views = new HashMap<String, CachedView>();
+
+        private long getEstimatedBytes() {
+            long bytes = ESTIMATED_BYTES;
+            for (CachedView view : views.values()) {
+                bytes += view.estimatedBytes;
+            }
+            return bytes;
+        }
+    }
+
+    private static class CachedView {
+
+        private final List<CachedStudy> studies;
+
+        private final long loadingStarted;
+
+        private final long estimatedBytes;
+
+        private CachedView(List<CachedStudy> studies, long loadingStarted) {
+            this.studies = studies;
+            this.loadingStarted = loadingStarted;
+            long bytes = 100;
+            for (CachedStudy study : studies) {
+                bytes += study.estimateBytes();
+            }
+            this.estimatedBytes = bytes;
+        }
+
+        /**
+         * @return the view, or null if the timeline can't be cached (it refers to orders, which we don't keep)
+         */
+        private static CachedView of(List<RadiologyStudy> radiologyStudies, long loadingStarted) {
+            List<CachedStudy> studies = new ArrayList<CachedStudy>(radiologyStudies.size());
+            for (RadiologyStudy radiologyStudy : radiologyStudies) {
+                if (radiologyStudy.getAssociatedRadiologyOrder() != null) {
+                    return null;
+                }
+                List<CachedReport> reports = null;
+                if (radiologyStudy.getReports() != null) {
+                    reports = new ArrayList<CachedReport>(radiologyStudy.getReports().size());
+                    for (RadiologyReport radiologyReport : radiologyStudy.getReports()) {
+                        if (radiologyReport.getAssociatedRadiologyOrder() != null) {
+                            return null;
+                        }
+                        reports.add(new CachedReport(radiologyReport));
+                    }
+                }
+                studies.add(new CachedStudy(radiologyStudy, reports));
+            }
+            return new CachedView(studies, loadingStarted);
+        }
+
+        private List<RadiologyStudy> toRadiologyStudies(Patient patient, RadiologyEntityResolver resolver) {
+            List<RadiologyStudy> radiologyStudies = new ArrayList<RadiologyStudy>(studies.size());
+            for (CachedStudy study : studies) {
+                radiologyStudies.add(study.toRadiologyStudy(patient, resolver));
+            }
+            return radiologyStudies;
+        }
+    }
+
+    private static class CachedStudy {
+
+        private final String orderNumber;
+
+        private final Integer procedureId;
+
+        private final Integer technicianId;
+
+        private final Long datePerformed;
+
+        private final Integer studyLocationId;
+
+        private final Boolean imagesAvailable;
+
+        private final List<CachedReport> reports;
+
+        private CachedStudy(RadiologyStudy radiologyStudy, List<CachedReport> reports) {
+            this.orderNumber = radiologyStudy.getOrderNumber();
+            this.procedureId = getId(radiologyStudy.getProcedure());
+            this.technicianId = getId(radiologyStudy.getTechnician());
+            this.datePerformed = radiologyStudy.getDatePerformed() != null ? radiologyStudy.getDatePerformed().getTime() : null;
+            this.studyLocationId = getId(radiologyStudy.getStudyLocation());
+            this.imagesAvailable = radiologyStudy.isImagesAvailable();
+            this.reports = reports;
+        }
+
+        private long estimateBytes() {
+            long bytes = 120 + estimateBytes(orderNumber);
+            if (reports != null) {
+                bytes += 40;
+                for (CachedReport report : reports) {
+                    bytes += report.estimateBytes();
+                }
+            }
+            return bytes;
+        }
+
+        private RadiologyStudy toRadiologyStudy(Patient patient, RadiologyEntityResolver resolver) {
+            RadiologyStudy radiologyStudy = new RadiologyStudy();
+            radiologyStudy.setPatient(patient);
+            radiologyStudy.setOrderNumber(orderNumber);
+            radiologyStudy.setProcedure(resolver.getConcept(procedureId));
+            radiologyStudy.setTechnician(resolver.getProvider(technicianId));
+            radiologyStudy.setDatePerformed(datePerformed != null ? new Date(datePerformed) : null);
+            radiologyStudy.setStudyLocation(resolver.getLocation(studyLocationId));
+            radiologyStudy.setImagesAvailable(imagesAvailable);
+            if (reports != null) {
+                List<RadiologyReport> radiologyReports = new ArrayList<RadiologyReport>(reports.size());
+                for (CachedReport report : reports) {
+                    radiologyReports.add(report.toRadiologyReport(patient, resolver));
+                }
+                radiologyStudy.setReports(radiologyReports);
+            }
+            return radiologyStudy;
+        }
+    }
+
+    private static class CachedReport {
+
+        private final String orderNumber;
+
+        private final Integer principalResultsInterpreterId;
+
+        private final Integer procedureId;
+
+        private final Integer reportLocationId;
+
+        private final Integer reportTypeId;
+
+        private final String reportBody;
+
+        private final Long reportDate;
+
+        private CachedReport(RadiologyReport radiologyReport) {
+            this.orderNumber = radiologyReport.getOrderNumber();
+            this.principalResultsInterpreterId = getId(radiologyReport.getPrincipalResultsInterpreter());
+            this.procedureId = getId(radiologyReport.getProcedure());
+            this.reportLocationId = getId(radiologyReport.getReportLocation());
+            this.reportTypeId = getId(radiologyReport.getReportType());
+            this.reportBody = radiologyReport.getReportBody();
+            this.reportDate = radiologyReport.getReportDate() != null ? radiologyReport.getReportDate().getTime() : null;
+        }
+
+        private long estimateBytes() {
+            return 120 + estimateBytes(orderNumber) + estimateBytes(reportBody);
+        }
+
+        private RadiologyReport toRadiologyReport(Patient patient, RadiologyEntityResolver resolver) {
+            RadiologyReport radiologyReport = new RadiologyReport();
+            radiologyReport.setPatient(patient);
+            radiologyReport.setOrderNumber(orderNumber);
+            radiologyReport.setPrincipalResultsInterpreter(resolver.getProvider(principalResultsInterpreterId));
+            radiologyReport.setProcedure(resolver.getConcept(procedureId));
+            radiologyReport.setReportLocation(resolver.getLocation(reportLocationId));
+            radiologyReport.setReportType(resolver.getConcept(reportTypeId));
+            radiologyReport.setReportBody(reportBody);
+            radiologyReport.setReportDate(reportDate != null ? new Date(reportDate) : null);
+            return radiologyReport;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.openmrs.Concept;
+import org.openmrs.Location;
+import org.openmrs.Order;
+import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
+
+import java.util.Date;
+
+/**
+ * The filters and position of one page of the radiology worklist, i.e. the unfulfilled radiology orders across all
+ * patients. The worklist is sorted STAT orders first, then oldest first; rather than an offset, a page is positioned
+ * by the last order of the previous page (see {@link #setAfter(Order)}), so that fetching a page doesn't get slower
+ * the further down the worklist it is, and orders fulfilled in the meantime don't shift the pages.
+ */
+public class RadiologyWorklistQuery {
+
+    public static final int DEFAULT_LIMIT = 50;
+
+    private Concept modality;
+
+    private Location examLocation;
+
+    private Order.Urgency urgency;
+
+    private Date fromDate;
+
+    private Date toDate;
+
+    private int limit = DEFAULT_LIMIT;
+
+    private Boolean afterStat;
+
+    private Date afterDateActivated;
+
+    private Integer afterOrderId;
+
+    /**
+     * @return the orderables concept set (e.g. the CT scan orderables) whose members to restrict the worklist to
+     */
+    public Concept getModality() {
+        return modality;
+    }
+
+    public void setModality(Concept modality) {
+        this.modality = modality;
+    }
+
+    public Location getExamLocation() {
+        return examLocation;
+    }
+
+    public void setExamLocation(Location examLocation) {
+        this.examLocation = examLocation;
+    }
+
+    public Order.Urgency getUrgency() {
+        return urgency;
+    }
+
+    public void setUrgency(Order.Urgency urgency) {
+        this.urgency = urgency;
+    }
+
+    /**
+     * @return the earliest activation date (inclusive) of the orders to include
+     */
+    public Date getFromDate() {
+        return fromDate;
+    }
+
+    public void setFromDate(Date fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    /**
+     * @return the latest activation date (exclusive) of the orders to include
+     */
+    public Date getToDate() {
+        return toDate;
+    }
+
+    public void setToDate(Date toDate) {
+        this.toDate = toDate;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * @return whether the page starts after an order, or else at the top of the worklist
+     */
+    public boolean hasAfter() {
+        return afterOrderId != null;
+    }
+
+    public boolean isAfterStat() {
+        return Boolean.TRUE.equals(afterStat);
+    }
+
+    public Date getAfterDateActivated() {
+        return afterDateActivated;
+    }
+
+    public Integer getAfterOrderId() {
+        return afterOrderId;
+    }
+
+    /**
+     * Positions the page directly after the given order, typically the last order of the previous page
+     *
+     * @param order the order to start after, or null to start at the top of the worklist
+     */
+    public void setAfter(Order order) {
+        if (order == null) {
+            afterStat = null;
+            afterDateActivated = null;
+            afterOrderId = null;
+        }
+        else {
+            afterStat = order.getUrgency() == Order.Urgency.STAT;
+            afterDateActivated = order.getDateActivated();
+            afterOrderId = order.getOrderId();
+        }
+    }
+
+    /**
+     * @param order the last order of a page
+     * @return an opaque cursor that {@link #setCursor(String)} positions the next page with, e.g. for a web client to
+     * pass back
+     */
+    public static String getCursor(Order order) {
+        return (order.getUrgency() == Order.Urgency.STAT ? "S" : "R") + ":" + order.getDateActivated().getTime()
+                + ":" + order.getOrderId();
+    }
+
+    /**
+     * Positions the page with a cursor returned by {@link #getCursor(Order)}
+     *
+     * @param cursor the cursor, or null to start at the top of the worklist
+     * @throws RadiologyAPIException if the cursor is not valid
+     */
+    public void setCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            setAfter(null);
+            return;
+        }
+        String[] parts = cursor.split(":");
+        if (parts.length != 3 || !(parts[0].equals("S") || parts[0].equals("R"))) {
+            throw new RadiologyAPIException("Invalid worklist cursor: " + cursor);
+        }
+        try {
+            afterDateActivated = new Date(Long.parseLong(parts[1]));
+            afterOrderId = Integer.valueOf(parts[2]);
+        }
+        catch (NumberFormatException e) {
+            throw new RadiologyAPIException("Invalid worklist cursor: " + cursor, e);
+        }
+        afterStat = parts[0].equals("S");
+    }
+
+}
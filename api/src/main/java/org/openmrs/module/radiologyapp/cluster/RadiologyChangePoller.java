@@ -0,0 +1,311 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.cluster;
+
+import lombok.Setter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.radiologyapp.RadiologyChange;
+import org.openmrs.module.radiologyapp.RadiologyConceptSetRegistry;
+import org.openmrs.module.radiologyapp.RadiologyOrderablesCatalog;
+import org.openmrs.module.radiologyapp.RadiologyProperties;
+import org.openmrs.module.radiologyapp.RadiologyProviderIndex;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.module.radiologyapp.RadiologyTimelineCache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps what this server caches consistent with the changes made by the other servers sharing the database, through
+ * the emr_radiology_change log rather than a message broker.
+ * <p>
+ * The radiology service logs the orders, studies and reports that it saves in the transaction that saves them. Changes
+ * to the cached metadata, and to the encounters of patients made outside the radiology service, are only noticed as
+ * their transaction completes, so those are queued here and logged on the next poll. Each poll then reads the changes logged since the last one, and discards whatever the changes of the other
+ * servers have made stale here.
+ * <p>
+ * A change gets its id when it is logged, but only becomes visible when its transaction commits, so a change may turn
+ * up behind changes that were already read. The watermark that polls read from therefore only moves past the changes
+ * logged more than {@link #COMMIT_GRACE_MILLIS} ago, and the more recent changes that were already applied are
+ * remembered so that they aren't applied again.
+ */
+public class RadiologyChangePoller {
+
+    private static final Log log = LogFactory.getLog(RadiologyChangePoller.class);
+
+    // longer than any transaction that saves radiology data should take
+    static final long COMMIT_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // all the servers have read the changes long before then
+    static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Setter
+    private RadiologyProperties radiologyProperties;
+
+    @Setter
+    private RadiologyConceptSetRegistry conceptSetRegistry;
+
+    @Setter
+    private RadiologyTimelineCache radiologyTimelineCache;
+
+    @Setter
+    private RadiologyOrderablesCatalog orderablesCatalog;
+
+    @Setter
+    private RadiologyProviderIndex providerIndex;
+
+    // the maximum number of changes to read per query
+    @Setter
+    private int batchSize = 500;
+
+    private final Set<RadiologyChange.Kind> pendingChanges = EnumSet.noneOf(RadiologyChange.Kind.class);
+
+    // guarded by pendingChanges
+    private final Set<Integer> pendingPatientIds = new HashSet<Integer>();
+
+    // only used by the polling thread from here on
+    private final Set<Integer> appliedAfterWatermark = new HashSet<Integer>();
+
+    private Integer watermark;
+
+    private long lastPurge;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    /**
+     * Starts polling the change log
+     *
+     * @param intervalSeconds how long to wait between polls
+     * @param daemonToken the module's token, to poll as the daemon user
+     */
+    public synchronized void start(int intervalSeconds, DaemonToken daemonToken) {
+        if (running) {
+            throw new IllegalStateException("The radiology change poller is already running");
+        }
+        final long intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+
+        watermark = null;
+        appliedAfterWatermark.clear();
+        lastPurge = 0;
+        running = true;
+
+        worker = startWorker(new Runnable() {
+
+            @Override
+            public void run() {
+                while (running) {
+                    try {
+                        poll();
+                    }
+                    catch (Exception e) {
+                        log.warn("Unable to poll the radiology change log", e);
+                    }
+                    finally {
+                        Context.clearSession();
+                    }
+                    try {
+                        Thread.sleep(intervalMillis);
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, daemonToken);
+
+        log.info("Radiology change poller started, polling every " + intervalSeconds + " seconds");
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker = null;
+        synchronized (pendingChanges) {
+            pendingChanges.clear();
+            pendingPatientIds.clear();
+        }
+
+        log.info("Radiology change poller stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Queues a change to the cached metadata made on this server, to be logged for the other servers on the next poll
+     */
+    public void logLocalChange(RadiologyChange.Kind kind) {
+        if (!running) {
+            return;
+        }
+        synchronized (pendingChanges) {
+            pendingChanges.add(kind);
+        }
+    }
+
+    /**
+     * Queues a change to the encounters or radiology obs of a patient made on this server outside the radiology service
+     * (e.g. by another module, or by a patient merge), to be logged for the other servers on the next poll
+     */
+    public void logLocalPatientChange(Integer patientId) {
+        if (!running) {
+            return;
+        }
+        synchronized (pendingChanges) {
+            pendingPatientIds.add(patientId);
+        }
+    }
+
+    /**
+     * Logs the queued changes of this server, and applies the changes that the other servers logged since the last
+     * poll
+     */
+    void poll() {
+        RadiologyService radiologyService = getRadiologyService();
+        logPendingChanges(radiologyService);
+
+        if (watermark == null) {
+            // nothing was cached before this server started, so only the changes from now on matter
+            Integer latestChangeId = radiologyService.getLatestRadiologyChangeId();
+            watermark = latestChangeId != null ? latestChangeId : 0;
+            return;
+        }
+
+        long now = currentTimeMillis();
+        boolean advancing = true;
+        Integer afterChangeId = watermark;
+        List<RadiologyChange> changes;
+        do {
+            changes = radiologyService.getRadiologyChangesAfter(afterChangeId, batchSize);
+            for (RadiologyChange change : changes) {
+                if (!change.isLocal() && !appliedAfterWatermark.contains(change.getId())) {
+                    apply(change);
+                }
+                afterChangeId = change.getId();
+
+                // changes logged before this one may still commit until it is old enough
+                advancing = advancing && change.getDateCreated().getTime() < now - COMMIT_GRACE_MILLIS;
+                if (advancing) {
+                    watermark = change.getId();
+                }
+                else {
+                    appliedAfterWatermark.add(change.getId());
+                }
+            }
+        }
+        while (changes.size() == batchSize);
+
+        for (Iterator<Integer> i = appliedAfterWatermark.iterator(); i.hasNext(); ) {
+            if (i.next() <= watermark) {
+                i.remove();
+            }
+        }
+
+        if (now - lastPurge > PURGE_INTERVAL_MILLIS) {
+            lastPurge = now;
+            radiologyService.purgeRadiologyChanges(new Date(now - RETENTION_MILLIS));
+        }
+    }
+
+    private void logPendingChanges(RadiologyService radiologyService) {
+        Set<RadiologyChange.Kind> kinds;
+        Set<Integer> patientIds;
+        synchronized (pendingChanges) {
+            kinds = EnumSet.copyOf(pendingChanges);
+            pendingChanges.clear();
+            patientIds = new HashSet<Integer>(pendingPatientIds);
+            pendingPatientIds.clear();
+        }
+        if (kinds.isEmpty() && patientIds.isEmpty()) {
+            return;
+        }
+
+        List<RadiologyChange> changes = new ArrayList<RadiologyChange>();
+        for (RadiologyChange.Kind kind : kinds) {
+            changes.add(new RadiologyChange(kind, null, null));
+        }
+        for (Integer patientId : patientIds) {
+            changes.add(new RadiologyChange(RadiologyChange.Kind.ENCOUNTER, patientId, null));
+        }
+        try {
+            radiologyService.saveRadiologyChanges(changes);
+        }
+        catch (RuntimeException e) {
+            // try again on the next poll
+            synchronized (pendingChanges) {
+                pendingChanges.addAll(kinds);
+                pendingPatientIds.addAll(patientIds);
+            }
+            throw e;
+        }
+    }
+
+    private void apply(RadiologyChange change) {
+        switch (change.getKind()) {
+            case ORDER:
+            case STUDY:
+            case REPORT:
+            case ENCOUNTER:
+                if (change.getPatientId() != null) {
+                    radiologyTimelineCache.invalidate(change.getPatientId());
+                }
+                break;
+            case CONCEPT_SETS:
+                conceptSetRegistry.invalidate();
+                break;
+            case PROPERTIES:
+                radiologyProperties.invalidate();
+                break;
+            case ORDERABLES:
+                orderablesCatalog.invalidate();
+                break;
+            case PROVIDERS:
+                providerIndex.invalidate();
+                break;
+        }
+    }
+
+    // looked up rather than injected, as the session factory depends on this through the metadata interceptor
+    protected RadiologyService getRadiologyService() {
+        return Context.getService(RadiologyService.class);
+    }
+
+    protected Thread startWorker(Runnable worker, DaemonToken daemonToken) {
+        return Daemon.runInDaemonThread(worker, daemonToken);
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.type.StandardBasicTypes;
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.module.emrapi.db.HibernateSingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyAccession;
+import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class HibernateRadiologyAccessionDAO extends HibernateSingleClassDAO<RadiologyAccession> implements RadiologyAccessionDAO {
+
+    // keeps the "in" lists well below the parameter limits of the databases we support
+    private static final int MAX_ACCESSION_NUMBERS_PER_QUERY = 500;
+
+    public HibernateRadiologyAccessionDAO() {
+        super(RadiologyAccession.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Encounter> getEncountersByAccessionNumber(Patient patient, String accessionNumber, RadiologyAccession.Kind kind) {
+        Query query = sessionFactory.getCurrentSession().createQuery("select a.encounter from RadiologyAccession a "
+                + "where a.accessionNumber = :accessionNumber and a.kind = :kind and a.encounter.voided = false "
+                + (patient != null ? "and a.patient = :patient " : "")
+                + "order by a.accessionDate, a.id");
+        query.setParameter("accessionNumber", accessionNumber);
+        query.setParameter("kind", kind);
+        if (patient != null) {
+            query.setParameter("patient", patient);
+        }
+        return query.list();
+    }
+
+    @Override
+    public RadiologyAccession saveStudyAccession(final RadiologyAccession accession) {
+        // inserted through JDBC rather than the session: when any operation of the session fails, Hibernate marks its
+        // transaction rollback-only, which would keep a batch from going on after a duplicate
+        try {
+            accession.setId(getHibernateSession().doReturningWork(new ReturningWork<Integer>() {
+
+                @Override
+                public Integer execute(Connection connection) throws SQLException {
+                    PreparedStatement statement = connection.prepareStatement("insert into emr_radiology_accession "
+                            + "(accession_number, study_accession_number, kind, encounter_id, patient_id, accession_date) "
+                            + "values (?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+                    try {
+                        statement.setString(1, accession.getAccessionNumber());
+                        statement.setString(2, accession.getStudyAccessionNumber());
+                        statement.setString(3, accession.getKind().name());
+                        statement.setInt(4, accession.getEncounter().getEncounterId());
+                        statement.setInt(5, accession.getPatient().getPatientId());
+                        if (accession.getAccessionDate() != null) {
+                            statement.setTimestamp(6, new Timestamp(accession.getAccessionDate().getTime()));
+                        }
+                        else {
+                            statement.setNull(6, Types.TIMESTAMP);
+                        }
+                        statement.executeUpdate();
+
+                        ResultSet generatedKeys = statement.getGeneratedKeys();
+                        return generatedKeys.next() ? generatedKeys.getInt(1) : null;
+                    }
+                    finally {
+                        statement.close();
+                    }
+                }
+            }));
+        }
+        catch (RuntimeException e) {
+            if (isConstraintViolation(e)) {
+                throw new RadiologyAPIException("A Radiology Study already exists with order number " + accession.getAccessionNumber(), e);
+            }
+            throw e;
+        }
+        return accession;
+    }
+
+    @Override
+    public void releaseVoidedStudyAccessionNumber(String accessionNumber) {
+        sessionFactory.getCurrentSession().createQuery("update RadiologyAccession a set a.studyAccessionNumber = null "
+                + "where a.studyAccessionNumber = :accessionNumber "
+                + "and a.encounter in (select e from Encounter e where e.voided = true)")
+                .setParameter("accessionNumber", accessionNumber)
+                .executeUpdate();
+    }
+
+    @Override
+    public void releaseVoidedStudyAccessionNumbers(Collection<String> accessionNumbers) {
+        for (List<String> chunk : chunk(accessionNumbers)) {
+            sessionFactory.getCurrentSession().createQuery("update RadiologyAccession a set a.studyAccessionNumber = null "
+                    + "where a.studyAccessionNumber in (:accessionNumbers) "
+                    + "and a.encounter in (select e from Encounter e where e.voided = true)")
+                    .setParameterList("accessionNumbers", chunk)
+                    .executeUpdate();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStudyAccessionNumbers(Collection<String> accessionNumbers) {
+        Set<String> studyAccessionNumbers = new HashSet<String>();
+        for (List<String> chunk : chunk(accessionNumbers)) {
+            studyAccessionNumbers.addAll(sessionFactory.getCurrentSession().createQuery("select distinct a.accessionNumber "
+                    + "from RadiologyAccession a where a.accessionNumber in (:accessionNumbers) and a.kind = :kind "
+                    + "and a.encounter.voided = false")
+                    .setParameterList("accessionNumbers", chunk)
+                    .setParameter("kind", RadiologyAccession.Kind.STUDY)
+                    .list());
+        }
+        return studyAccessionNumbers;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> getAccessionNumbers(Patient patient, int offset, int limit) {
+        // plain SQL, as HQL can't reliably order by an aggregate; the (patient, accession number, kind, date) index
+        // covers the grouping, so only the encounters are visited to check that they are not voided
+        return sessionFactory.getCurrentSession().createSQLQuery("select a.accession_number, "
+                + "coalesce(min(case when a.kind = 'STUDY' then a.accession_date end), min(a.accession_date)) as study_date "
+                + "from emr_radiology_accession a inner join encounter e on e.encounter_id = a.encounter_id "
+                + "where a.patient_id = :patientId and e.voided = :voided "
+                + "group by a.accession_number "
+                + "order by study_date desc, a.accession_number desc")
+                .addScalar("accession_number", StandardBasicTypes.STRING)
+                .setParameter("patientId", patient.getPatientId())
+                .setParameter("voided", false)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .list();
+    }
+
+    @Override
+    public long getAccessionNumberCount(Patient patient) {
+        Number count = (Number) sessionFactory.getCurrentSession().createQuery("select count(distinct a.accessionNumber) "
+                + "from RadiologyAccession a where a.patient = :patient and a.encounter.voided = false")
+                .setParameter("patient", patient)
+                .uniqueResult();
+        return count != null ? count.longValue() : 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyAccession> getAccessions(Patient patient, Collection<String> accessionNumbers) {
+        if (accessionNumbers == null || accessionNumbers.isEmpty()) {
+            return new ArrayList<RadiologyAccession>();
+        }
+        return sessionFactory.getCurrentSession().createQuery("select distinct a from RadiologyAccession a "
+                + "join fetch a.encounter e left join fetch e.encounterProviders ep left join fetch ep.provider "
+                + "left join fetch ep.encounterRole "
+                + "where a.patient = :patient and a.accessionNumber in (:accessionNumbers) and e.voided = false "
+                + "order by a.accessionDate, a.id")
+                .setParameter("patient", patient)
+                .setParameterList("accessionNumbers", accessionNumbers)
+                .list();
+    }
+
+    private List<List<String>> chunk(Collection<String> accessionNumbers) {
+        List<List<String>> chunks = new ArrayList<List<String>>();
+        if (accessionNumbers != null) {
+            List<String> accessionNumberList = new ArrayList<String>(accessionNumbers);
+            for (int i = 0; i < accessionNumberList.size(); i += MAX_ACCESSION_NUMBERS_PER_QUERY) {
+                chunks.add(accessionNumberList.subList(i, Math.min(i + MAX_ACCESSION_NUMBERS_PER_QUERY, accessionNumberList.size())));
+            }
+        }
+        return chunks;
+    }
+
+    // depending on the Hibernate version and the call, the violation may be wrapped in a PersistenceException
+    private boolean isConstraintViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the JDBC connection is only reachable through the Hibernate session itself
+    private Session getHibernateSession() {
+        return sessionFactory.getHibernateSessionFactory().getCurrentSession();
+    }
+
+}
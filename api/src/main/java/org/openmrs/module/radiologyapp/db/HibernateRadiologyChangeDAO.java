@@ -0,0 +1,53 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.openmrs.module.emrapi.db.HibernateSingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyChange;
+
+import java.util.Date;
+import java.util.List;
+
+public class HibernateRadiologyChangeDAO extends HibernateSingleClassDAO<RadiologyChange> implements RadiologyChangeDAO {
+
+    public HibernateRadiologyChangeDAO() {
+        super(RadiologyChange.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyChange> getChangesAfter(Integer afterChangeId, int limit) {
+        return sessionFactory.getCurrentSession().createQuery("select c from RadiologyChange c "
+                + "where c.id > :afterChangeId order by c.id")
+                .setParameter("afterChangeId", afterChangeId != null ? afterChangeId : 0)
+                .setMaxResults(limit)
+                .list();
+    }
+
+    @Override
+    public Integer getLatestChangeId() {
+        return (Integer) sessionFactory.getCurrentSession().createQuery("select max(c.id) from RadiologyChange c")
+                .uniqueResult();
+    }
+
+    @Override
+    public int deleteChangesBefore(Date date) {
+        return sessionFactory.getCurrentSession().createQuery("delete from RadiologyChange c where c.dateCreated < :date")
+                .setParameter("date", date)
+                .executeUpdate();
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.jdbc.Work;
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.EncounterType;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.module.emrapi.db.HibernateSingleClassDAO;
+import org.springframework.orm.hibernate5.SessionFactoryUtils;
+import org.springframework.transaction.support.ResourceHolderSupport;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class HibernateRadiologyEncounterDAO extends HibernateSingleClassDAO<Encounter> implements RadiologyEncounterDAO {
+
+    // keeps the "in" lists well below the parameter limits of the databases we support
+    private static final int MAX_ENCOUNTERS_PER_QUERY = 500;
+
+    public HibernateRadiologyEncounterDAO() {
+        super(Encounter.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Encounter> getEncounters(Patient patient, Collection<EncounterType> encounterTypes) {
+        if (encounterTypes == null || encounterTypes.isEmpty()) {
+            return new ArrayList<Encounter>();
+        }
+        return sessionFactory.getCurrentSession().createQuery("select distinct e from Encounter e "
+                + "left join fetch e.encounterProviders ep left join fetch ep.provider left join fetch ep.encounterRole "
+                + "where e.patient = :patient and e.encounterType in (:encounterTypes) and e.voided = false "
+                + "order by e.encounterDatetime, e.encounterId")
+                .setParameter("patient", patient)
+                .setParameterList("encounterTypes", encounterTypes)
+                .list();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Obs> getObs(Collection<Encounter> encounters, Collection<Concept> excludedConcepts) {
+
+        List<Obs> obs = new ArrayList<Obs>();
+        if (encounters == null || encounters.isEmpty()) {
+            return obs;
+        }
+
+        boolean excluding = excludedConcepts != null && !excludedConcepts.isEmpty();
+        List<Encounter> encounterList = new ArrayList<Encounter>(encounters);
+
+        for (int i = 0; i < encounterList.size(); i += MAX_ENCOUNTERS_PER_QUERY) {
+            Query query = sessionFactory.getCurrentSession().createQuery("select o from Obs o join fetch o.concept "
+                    + "where o.encounter in (:encounters) and o.voided = false "
+                    + (excluding ? "and o.concept not in (:excludedConcepts)" : ""));
+            query.setParameterList("encounters",
+                    encounterList.subList(i, Math.min(i + MAX_ENCOUNTERS_PER_QUERY, encounterList.size())));
+            if (excluding) {
+                query.setParameterList("excludedConcepts", excludedConcepts);
+            }
+            obs.addAll(query.list());
+        }
+        return obs;
+    }
+
+    @Override
+    public void flush() {
+        sessionFactory.getCurrentSession().flush();
+    }
+
+    @Override
+    public Savepoint setSavepoint() {
+        return getHibernateSession().doReturningWork(new ReturningWork<Savepoint>() {
+
+            @Override
+            public Savepoint execute(Connection connection) throws SQLException {
+                return connection.setSavepoint();
+            }
+        });
+    }
+
+    @Override
+    public boolean rollbackToSavepoint(final Savepoint savepoint) {
+        Session session = getHibernateSession();
+        session.doWork(new Work() {
+
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                connection.rollback(savepoint);
+            }
+        });
+        // otherwise whatever failed to flush would be flushed again
+        session.clear();
+
+        // a service that threw while saving marks the whole transaction rollback-only, on both the session and the
+        // connection that the transaction manager bound; like Spring's own nested transactions, rolling back to the
+        // savepoint undoes that
+        resetRollbackOnly(sessionFactory.getHibernateSessionFactory());
+        resetRollbackOnly(SessionFactoryUtils.getDataSource(sessionFactory.getHibernateSessionFactory()));
+
+        return !session.getTransaction().getRollbackOnly();
+    }
+
+    @Override
+    public void releaseSavepoint(final Savepoint savepoint) {
+        getHibernateSession().doWork(new Work() {
+
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                connection.releaseSavepoint(savepoint);
+            }
+        });
+    }
+
+    private void resetRollbackOnly(Object resourceKey) {
+        Object resourceHolder = resourceKey != null ? TransactionSynchronizationManager.getResource(resourceKey) : null;
+        if (resourceHolder instanceof ResourceHolderSupport) {
+            ((ResourceHolderSupport) resourceHolder).resetRollbackOnly();
+        }
+    }
+
+    // the JDBC connection is only reachable through the Hibernate session itself
+    private Session getHibernateSession() {
+        return sessionFactory.getHibernateSessionFactory().getCurrentSession();
+    }
+
+}
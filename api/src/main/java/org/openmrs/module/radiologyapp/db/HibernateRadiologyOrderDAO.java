@@ -15,12 +15,32 @@
 package org.openmrs.module.radiologyapp.db;
 
 import org.hibernate.Criteria;
+import org.hibernate.Query;
 import org.hibernate.criterion.Restrictions;
+import org.openmrs.Order;
+import org.openmrs.OrderType;
+import org.openmrs.Patient;
 import org.openmrs.module.emrapi.db.HibernateSingleClassDAO;
 import org.openmrs.module.radiologyapp.RadiologyOrder;
+import org.openmrs.module.radiologyapp.RadiologyWorklistQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 public class HibernateRadiologyOrderDAO extends HibernateSingleClassDAO<RadiologyOrder> implements RadiologyOrderDAO {
 
+    // the order of the worklist within an urgency, as in the worklist index
+    private static final Comparator<RadiologyOrder> BY_DATE_ACTIVATED_AND_ID = new Comparator<RadiologyOrder>() {
+
+        @Override
+        public int compare(RadiologyOrder left, RadiologyOrder right) {
+            int byDate = left.getDateActivated().compareTo(right.getDateActivated());
+            return byDate != 0 ? byDate : left.getOrderId().compareTo(right.getOrderId());
+        }
+    };
+
     public HibernateRadiologyOrderDAO() {
         super(RadiologyOrder.class);
     }
@@ -32,6 +52,100 @@ public class HibernateRadiologyOrderDAO extends HibernateSingleClassDAO<Radiolog
         return (RadiologyOrder) criteria.uniqueResult();
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Order> getUnfulfilledOrders(Patient patient, OrderType orderType, Integer limit) {
+        // a report without a study still counts as fulfilling the order, since the study is then derived from it
+        Query query = sessionFactory.getCurrentSession().createQuery("select o from Order o "
+                + "where o.patient = :patient and o.orderType = :orderType and o.voided = false "
+                + "and o.orderNumber is not null and o.orderNumber <> '' "
+                + "and not exists (select a.id from RadiologyAccession a, Encounter e "
+                + "where a.encounter = e and e.voided = false and a.patient = o.patient and a.accessionNumber = o.orderNumber) "
+                + "order by o.dateCreated desc, o.orderId desc");
+        query.setParameter("patient", patient);
+        query.setParameter("orderType", orderType);
+        if (limit != null) {
+            query.setMaxResults(limit);
+        }
+        return query.list();
+    }
+
+    @Override
+    public List<RadiologyOrder> getUnfulfilledOrders(RadiologyWorklistQuery query, OrderType orderType) {
+        // fetch the orders of each urgency separately, so that each query can walk the worklist index in order rather
+        // than sorting every pending order (which "urgency <> STAT" would), then merge the non-STAT ones
+        List<RadiologyOrder> orders = new ArrayList<RadiologyOrder>();
+        boolean includeStat = query.getUrgency() == null || query.getUrgency() == Order.Urgency.STAT;
+
+        if (includeStat && !(query.hasAfter() && !query.isAfterStat())) {
+            orders.addAll(getUnfulfilledOrders(query, orderType, Order.Urgency.STAT, query.hasAfter(), query.getLimit()));
+        }
+
+        int limit = query.getLimit() - orders.size();
+        if (limit > 0) {
+            List<RadiologyOrder> others = new ArrayList<RadiologyOrder>();
+            for (Order.Urgency urgency : Order.Urgency.values()) {
+                if (urgency != Order.Urgency.STAT && (query.getUrgency() == null || query.getUrgency() == urgency)) {
+                    others.addAll(getUnfulfilledOrders(query, orderType, urgency, query.hasAfter() && !query.isAfterStat(),
+                            limit));
+                }
+            }
+            Collections.sort(others, BY_DATE_ACTIVATED_AND_ID);
+            orders.addAll(others.subList(0, Math.min(limit, others.size())));
+        }
+        return orders;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RadiologyOrder> getUnfulfilledOrders(RadiologyWorklistQuery query, OrderType orderType,
+                                                      Order.Urgency urgency, boolean after, int limit) {
+        StringBuilder hql = new StringBuilder("select o from RadiologyOrder o "
+                + "where o.orderType = :orderType and o.voided = false and o.dateStopped is null and o.action <> :discontinue "
+                + "and o.orderNumber is not null and o.orderNumber <> '' ");
+        hql.append("and o.urgency = :urgency ");
+        if (query.getModality() != null) {
+            hql.append("and o.concept in (select s.concept from ConceptSet s where s.conceptSet = :modality) ");
+        }
+        if (query.getExamLocation() != null) {
+            hql.append("and o.examLocation = :examLocation ");
+        }
+        if (query.getFromDate() != null) {
+            hql.append("and o.dateActivated >= :fromDate ");
+        }
+        if (query.getToDate() != null) {
+            hql.append("and o.dateActivated < :toDate ");
+        }
+        if (after) {
+            hql.append("and (o.dateActivated > :afterDate or (o.dateActivated = :afterDate and o.orderId > :afterOrderId)) ");
+        }
+        hql.append("and not exists (select a.id from RadiologyAccession a, Encounter e "
+                + "where a.encounter = e and e.voided = false and a.patient = o.patient and a.accessionNumber = o.orderNumber) "
+                + "order by o.dateActivated, o.orderId");
+
+        Query hqlQuery = sessionFactory.getCurrentSession().createQuery(hql.toString());
+        hqlQuery.setParameter("orderType", orderType);
+        hqlQuery.setParameter("discontinue", Order.Action.DISCONTINUE);
+        hqlQuery.setParameter("urgency", urgency);
+        if (query.getModality() != null) {
+            hqlQuery.setParameter("modality", query.getModality());
+        }
+        if (query.getExamLocation() != null) {
+            hqlQuery.setParameter("examLocation", query.getExamLocation());
+        }
+        if (query.getFromDate() != null) {
+            hqlQuery.setParameter("fromDate", query.getFromDate());
+        }
+        if (query.getToDate() != null) {
+            hqlQuery.setParameter("toDate", query.getToDate());
+        }
+        if (after) {
+            hqlQuery.setParameter("afterDate", query.getAfterDateActivated());
+            hqlQuery.setParameter("afterOrderId", query.getAfterOrderId());
+        }
+        hqlQuery.setMaxResults(limit);
+        return hqlQuery.list();
+    }
+
 
     private Criteria createRadiologyOrderCriteria() {
         return sessionFactory.getCurrentSession().createCriteria(RadiologyOrder.class);
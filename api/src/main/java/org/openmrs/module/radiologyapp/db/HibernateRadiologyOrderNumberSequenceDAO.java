@@ -0,0 +1,52 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.hibernate.Session;
+import org.openmrs.module.emrapi.db.HibernateSingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyOrderNumberSequence;
+
+public class HibernateRadiologyOrderNumberSequenceDAO extends HibernateSingleClassDAO<RadiologyOrderNumberSequence> implements RadiologyOrderNumberSequenceDAO {
+
+    public HibernateRadiologyOrderNumberSequenceDAO() {
+        super(RadiologyOrderNumberSequence.class);
+    }
+
+    @Override
+    public long reserveValues(String name, int count) {
+        Session session = sessionFactory.getCurrentSession();
+
+        // a single update rather than a read followed by a write, so that concurrent reservations queue up on the row
+        int updated = session.createQuery("update RadiologyOrderNumberSequence s set s.nextValue = s.nextValue + :count "
+                + "where s.name = :name")
+                .setParameter("count", (long) count)
+                .setParameter("name", name)
+                .executeUpdate();
+
+        if (updated == 0) {
+            // liquibase creates the sequence, so this only happens on databases it didn't set up, e.g. in tests
+            session.save(new RadiologyOrderNumberSequence(name, 1L + count));
+            session.flush();
+            return 1L;
+        }
+
+        Long nextValue = (Long) session.createQuery("select s.nextValue from RadiologyOrderNumberSequence s where s.name = :name")
+                .setParameter("name", name)
+                .uniqueResult();
+        return nextValue - count;
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.apache.commons.lang.StringUtils;
+import org.hibernate.Query;
+import org.hibernate.search.FullTextQuery;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.hibernate.search.query.dsl.BooleanJunction;
+import org.hibernate.search.query.dsl.QueryBuilder;
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
+import org.openmrs.module.emrapi.db.HibernateSingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyAccession;
+import org.openmrs.module.radiologyapp.RadiologyExportQuery;
+import org.openmrs.module.radiologyapp.RadiologyReport;
+import org.openmrs.module.radiologyapp.RadiologyReportRecord;
+import org.openmrs.module.radiologyapp.RadiologyReportSearchFilter;
+import org.openmrs.module.radiologyapp.RadiologyReportSearchResult;
+import org.openmrs.module.radiologyapp.export.RadiologyExportRow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public class HibernateRadiologyReportRecordDAO extends HibernateSingleClassDAO<RadiologyReportRecord> implements RadiologyReportRecordDAO {
+
+    // every column but the report body; the optional associations are outer joined so that reports without them are kept
+    private static final String SELECT_REPORT_SUMMARY = "select r.patient, r.accessionNumber, p, t, r.reportDate, l, i "
+            + "from RadiologyReportRecord r left join r.procedure p left join r.reportType t "
+            + "left join r.reportLocation l left join r.principalResultsInterpreter i ";
+
+    public HibernateRadiologyReportRecordDAO() {
+        super(RadiologyReportRecord.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyReportRecord> getReportRecords(Patient patient, String accessionNumber) {
+        Query query = sessionFactory.getCurrentSession().createQuery("select r from RadiologyReportRecord r "
+                + "where r.accessionNumber = :accessionNumber and r.encounter.voided = false "
+                + (patient != null ? "and r.patient = :patient " : "")
+                + "order by r.reportDate, r.id");
+        query.setParameter("accessionNumber", accessionNumber);
+        if (patient != null) {
+            query.setParameter("patient", patient);
+        }
+        return query.list();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyReportRecord> getReportRecords(Patient patient, Collection<String> accessionNumbers) {
+        if (accessionNumbers == null || accessionNumbers.isEmpty()) {
+            return new ArrayList<RadiologyReportRecord>();
+        }
+        return sessionFactory.getCurrentSession().createQuery("select r from RadiologyReportRecord r "
+                + "where r.patient = :patient and r.accessionNumber in (:accessionNumbers) and r.encounter.voided = false "
+                + "order by r.reportDate, r.id")
+                .setParameter("patient", patient)
+                .setParameterList("accessionNumbers", accessionNumbers)
+                .list();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyReport> getReportSummaries(Patient patient, Collection<String> accessionNumbers) {
+        if (accessionNumbers == null || accessionNumbers.isEmpty()) {
+            return new ArrayList<RadiologyReport>();
+        }
+        return toRadiologyReports(sessionFactory.getCurrentSession().createQuery(SELECT_REPORT_SUMMARY
+                + "where r.patient = :patient and r.accessionNumber in (:accessionNumbers) and r.encounter.voided = false "
+                + "order by r.reportDate, r.id")
+                .setParameter("patient", patient)
+                .setParameterList("accessionNumbers", accessionNumbers)
+                .list());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyReport> getReportSummaries(Patient patient) {
+        return toRadiologyReports(sessionFactory.getCurrentSession().createQuery(SELECT_REPORT_SUMMARY
+                + "where r.patient = :patient and r.encounter.voided = false "
+                + "order by r.reportDate, r.id")
+                .setParameter("patient", patient)
+                .list());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Encounter> getEncountersWithoutReportRecord(int limit) {
+        return sessionFactory.getCurrentSession().createQuery("select a.encounter from RadiologyAccession a "
+                + "where a.kind = :kind and a.encounter.voided = false "
+                + "and not exists (select r.id from RadiologyReportRecord r where r.encounter = a.encounter) "
+                + "order by a.id")
+                .setParameter("kind", RadiologyAccession.Kind.REPORT)
+                .setMaxResults(limit)
+                .list();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public RadiologyReportSearchResult searchReportRecords(String text, RadiologyReportSearchFilter filter, int offset,
+                                                           int limit) {
+
+        // Hibernate Search needs the Hibernate session itself rather than the OpenMRS wrapper around it
+        FullTextSession fullTextSession = Search.getFullTextSession(
+                sessionFactory.getHibernateSessionFactory().getCurrentSession());
+        QueryBuilder queryBuilder = fullTextSession.getSearchFactory().buildQueryBuilder()
+                .forEntity(RadiologyReportRecord.class).get();
+
+        BooleanJunction<?> junction = queryBuilder.bool();
+        if (StringUtils.isNotBlank(text)) {
+            junction.must(queryBuilder.simpleQueryString()
+                    .onFields(RadiologyReportRecord.FIELD_REPORT_BODY, RadiologyReportRecord.FIELD_PROCEDURE_NAMES,
+                            RadiologyReportRecord.FIELD_REPORT_TYPE_NAMES)
+                    .withAndAsDefaultOperator()
+                    .matching(text)
+                    .createQuery());
+        }
+        else {
+            junction.must(queryBuilder.all().createQuery());
+        }
+        junction.must(queryBuilder.keyword().onField(RadiologyReportRecord.FIELD_ENCOUNTER_VOIDED).matching(true)
+                .createQuery()).not();
+
+        if (filter != null) {
+            if (filter.getPatient() != null) {
+                junction.must(queryBuilder.keyword().onField(RadiologyReportRecord.FIELD_PATIENT_ID)
+                        .matching(filter.getPatient().getPatientId()).createQuery());
+            }
+            if (filter.getProcedure() != null) {
+                junction.must(queryBuilder.keyword().onField(RadiologyReportRecord.FIELD_PROCEDURE_ID)
+                        .matching(filter.getProcedure().getConceptId()).createQuery());
+            }
+            if (filter.getReportType() != null) {
+                junction.must(queryBuilder.keyword().onField(RadiologyReportRecord.FIELD_REPORT_TYPE_ID)
+                        .matching(filter.getReportType().getConceptId()).createQuery());
+            }
+            if (filter.getFromDate() != null) {
+                junction.must(queryBuilder.range().onField(RadiologyReportRecord.FIELD_REPORT_DATE)
+                        .above(filter.getFromDate()).createQuery());
+            }
+            if (filter.getToDate() != null) {
+                junction.must(queryBuilder.range().onField(RadiologyReportRecord.FIELD_REPORT_DATE)
+                        .below(filter.getToDate()).excludeLimit().createQuery());
+            }
+        }
+
+        FullTextQuery query = fullTextSession.createFullTextQuery(junction.createQuery(), RadiologyReportRecord.class);
+        query.setSort(queryBuilder.sort().byField(RadiologyReportRecord.FIELD_REPORT_DATE).desc().createSort());
+        query.setFirstResult(offset);
+        query.setMaxResults(limit);
+
+        List<RadiologyReport> radiologyReports = new ArrayList<RadiologyReport>();
+        for (RadiologyReportRecord record : (List<RadiologyReportRecord>) query.list()) {
+            radiologyReports.add(record.toRadiologyReport());
+        }
+        return new RadiologyReportSearchResult(radiologyReports, query.getResultSize());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyExportRow> getExportRows(RadiologyExportQuery query, Integer afterRecordId, int limit) {
+
+        StringBuilder hql = new StringBuilder("select r.id, e.uuid, pt.uuid, r.accessionNumber, p.conceptId, "
+                + "r.reportDate, l.name, i.identifier, t.conceptId, r.reportBody, e.voided, "
+                + "coalesce(e.dateChanged, e.dateCreated) "
+                + "from RadiologyReportRecord r join r.encounter e join r.patient pt left join r.procedure p "
+                + "left join r.reportType t left join r.reportLocation l left join r.principalResultsInterpreter i ");
+        RadiologyExportHql.appendFilters(hql, query, afterRecordId, "reportDate", "reportLocation");
+
+        Query hqlQuery = sessionFactory.getCurrentSession().createQuery(hql.toString());
+        RadiologyExportHql.setParameters(hqlQuery, query, afterRecordId);
+        hqlQuery.setMaxResults(limit);
+
+        List<RadiologyExportRow> rows = new ArrayList<RadiologyExportRow>();
+        for (Object[] values : (List<Object[]>) hqlQuery.list()) {
+            RadiologyExportRow row = new RadiologyExportRow();
+            row.setType(RadiologyExportRow.Type.REPORT);
+            row.setRecordId((Integer) values[0]);
+            row.setEncounterUuid((String) values[1]);
+            row.setPatientUuid((String) values[2]);
+            row.setAccessionNumber((String) values[3]);
+            row.setProcedureConceptId((Integer) values[4]);
+            row.setDate((Date) values[5]);
+            row.setLocation((String) values[6]);
+            row.setProvider((String) values[7]);
+            row.setReportTypeConceptId((Integer) values[8]);
+            row.setReportBody((String) values[9]);
+            row.setVoided((Boolean) values[10]);
+            row.setDateChanged((Date) values[11]);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private List<RadiologyReport> toRadiologyReports(List<Object[]> rows) {
+        List<RadiologyReport> radiologyReports = new ArrayList<RadiologyReport>();
+        for (Object[] row : rows) {
+            RadiologyReport radiologyReport = new RadiologyReport();
+            radiologyReport.setPatient((Patient) row[0]);
+            radiologyReport.setOrderNumber((String) row[1]);
+            radiologyReport.setProcedure((Concept) row[2]);
+            radiologyReport.setReportType((Concept) row[3]);
+            radiologyReport.setReportDate((Date) row[4]);
+            radiologyReport.setReportLocation((Location) row[5]);
+            radiologyReport.setPrincipalResultsInterpreter((Provider) row[6]);
+            radiologyReports.add(radiologyReport);
+        }
+        return radiologyReports;
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.hibernate.Query;
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.module.emrapi.db.HibernateSingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyAccession;
+import org.openmrs.module.radiologyapp.RadiologyExportQuery;
+import org.openmrs.module.radiologyapp.RadiologyStudyRecord;
+import org.openmrs.module.radiologyapp.export.RadiologyExportRow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public class HibernateRadiologyStudyRecordDAO extends HibernateSingleClassDAO<RadiologyStudyRecord> implements RadiologyStudyRecordDAO {
+
+    public HibernateRadiologyStudyRecordDAO() {
+        super(RadiologyStudyRecord.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyStudyRecord> getStudyRecords(Patient patient, String accessionNumber) {
+        Query query = sessionFactory.getCurrentSession().createQuery("select r from RadiologyStudyRecord r "
+                + "where r.accessionNumber = :accessionNumber and r.encounter.voided = false "
+                + (patient != null ? "and r.patient = :patient " : "")
+                + "order by r.datePerformed, r.id");
+        query.setParameter("accessionNumber", accessionNumber);
+        if (patient != null) {
+            query.setParameter("patient", patient);
+        }
+        return query.list();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyStudyRecord> getStudyRecords(Patient patient, Collection<String> accessionNumbers) {
+        if (accessionNumbers == null || accessionNumbers.isEmpty()) {
+            return new ArrayList<RadiologyStudyRecord>();
+        }
+        return sessionFactory.getCurrentSession().createQuery("select r from RadiologyStudyRecord r "
+                + "where r.patient = :patient and r.accessionNumber in (:accessionNumbers) and r.encounter.voided = false "
+                + "order by r.datePerformed, r.id")
+                .setParameter("patient", patient)
+                .setParameterList("accessionNumbers", accessionNumbers)
+                .list();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyStudyRecord> getStudyRecords(Patient patient) {
+        return sessionFactory.getCurrentSession().createQuery("select r from RadiologyStudyRecord r "
+                + "where r.patient = :patient and r.encounter.voided = false "
+                + "order by r.datePerformed, r.id")
+                .setParameter("patient", patient)
+                .list();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Encounter> getEncountersWithoutStudyRecord(int limit) {
+        return sessionFactory.getCurrentSession().createQuery("select a.encounter from RadiologyAccession a "
+                + "where a.kind = :kind and a.encounter.voided = false "
+                + "and not exists (select r.id from RadiologyStudyRecord r where r.encounter = a.encounter) "
+                + "order by a.id")
+                .setParameter("kind", RadiologyAccession.Kind.STUDY)
+                .setMaxResults(limit)
+                .list();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RadiologyExportRow> getExportRows(RadiologyExportQuery query, Integer afterRecordId, int limit) {
+
+        StringBuilder hql = new StringBuilder("select r.id, e.uuid, pt.uuid, r.accessionNumber, p.conceptId, "
+                + "r.datePerformed, l.name, t.identifier, r.imagesAvailable, e.voided, "
+                + "coalesce(e.dateChanged, e.dateCreated) "
+                + "from RadiologyStudyRecord r join r.encounter e join r.patient pt left join r.procedure p "
+                + "left join r.studyLocation l left join r.technician t ");
+        RadiologyExportHql.appendFilters(hql, query, afterRecordId, "datePerformed", "studyLocation");
+
+        Query hqlQuery = sessionFactory.getCurrentSession().createQuery(hql.toString());
+        RadiologyExportHql.setParameters(hqlQuery, query, afterRecordId);
+        hqlQuery.setMaxResults(limit);
+
+        List<RadiologyExportRow> rows = new ArrayList<RadiologyExportRow>();
+        for (Object[] values : (List<Object[]>) hqlQuery.list()) {
+            RadiologyExportRow row = new RadiologyExportRow();
+            row.setType(RadiologyExportRow.Type.STUDY);
+            row.setRecordId((Integer) values[0]);
+            row.setEncounterUuid((String) values[1]);
+            row.setPatientUuid((String) values[2]);
+            row.setAccessionNumber((String) values[3]);
+            row.setProcedureConceptId((Integer) values[4]);
+            row.setDate((Date) values[5]);
+            row.setLocation((String) values[6]);
+            row.setProvider((String) values[7]);
+            row.setImagesAvailable((Boolean) values[8]);
+            row.setVoided((Boolean) values[9]);
+            row.setDateChanged((Date) values[10]);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+}
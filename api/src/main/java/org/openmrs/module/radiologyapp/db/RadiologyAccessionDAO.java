@@ -0,0 +1,86 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.module.emrapi.db.SingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyAccession;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface RadiologyAccessionDAO extends SingleClassDAO<RadiologyAccession> {
+
+    /**
+     * Fetches the non-voided encounters indexed under the given accession number
+     *
+     * @param patient if not null, restrict to encounters for this patient
+     * @param accessionNumber the accession number to look up
+     * @param kind whether to look for study or report encounters
+     * @return the matching encounters, oldest first
+     */
+    public List<Encounter> getEncountersByAccessionNumber(Patient patient, String accessionNumber, RadiologyAccession.Kind kind);
+
+    /**
+     * Inserts a study index entry right away, so that a duplicate accession number is detected here. The entry is
+     * inserted directly rather than through the session, so a duplicate doesn't keep the transaction from committing
+     * what else it saved
+     *
+     * @throws org.openmrs.module.radiologyapp.exception.RadiologyAPIException if a study with the same accession
+     * number already exists
+     */
+    public RadiologyAccession saveStudyAccession(RadiologyAccession accession);
+
+    /**
+     * Frees the given accession number from any voided study encounters, so that it can be used by a new study
+     */
+    public void releaseVoidedStudyAccessionNumber(String accessionNumber);
+
+    /**
+     * Frees the given accession numbers from any voided study encounters, so that they can be used by new studies
+     */
+    public void releaseVoidedStudyAccessionNumbers(Collection<String> accessionNumbers);
+
+    /**
+     * @return those of the given accession numbers that are already used by a non-voided study
+     */
+    public Set<String> getStudyAccessionNumbers(Collection<String> accessionNumbers);
+
+    /**
+     * Fetches a page of the distinct accession numbers of a patient's non-voided studies and reports, most recent
+     * first; an accession number is dated by its study, or by its earliest report if there is no study
+     *
+     * @param patient the patient to fetch accession numbers for
+     * @param offset the number of accession numbers to skip
+     * @param limit the maximum number of accession numbers to return
+     */
+    public List<String> getAccessionNumbers(Patient patient, int offset, int limit);
+
+    /**
+     * @return the number of distinct accession numbers of a patient's non-voided studies and reports
+     */
+    public long getAccessionNumberCount(Patient patient);
+
+    /**
+     * Fetches the index entries of a patient's non-voided studies and reports with the given accession numbers, with
+     * their encounters and encounter providers already loaded
+     *
+     * @return the matching entries, oldest first
+     */
+    public List<RadiologyAccession> getAccessions(Patient patient, Collection<String> accessionNumbers);
+
+}
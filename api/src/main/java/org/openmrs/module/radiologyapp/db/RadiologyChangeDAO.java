@@ -0,0 +1,46 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.openmrs.module.emrapi.db.SingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyChange;
+
+import java.util.Date;
+import java.util.List;
+
+public interface RadiologyChangeDAO extends SingleClassDAO<RadiologyChange> {
+
+    /**
+     * Fetches the changes logged after the given one, in the order of their ids
+     *
+     * @param afterChangeId the id of the last change already read, or null to start from the first
+     * @param limit the maximum number of changes to return
+     */
+    public List<RadiologyChange> getChangesAfter(Integer afterChangeId, int limit);
+
+    /**
+     * @return the id of the last change logged, or null if the log is empty
+     */
+    public Integer getLatestChangeId();
+
+    /**
+     * Deletes the changes logged before the given date
+     *
+     * @return the number of changes deleted
+     */
+    public int deleteChangesBefore(Date date);
+
+}
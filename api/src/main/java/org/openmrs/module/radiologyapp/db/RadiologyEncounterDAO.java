@@ -0,0 +1,78 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.EncounterType;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.module.emrapi.db.SingleClassDAO;
+
+import java.sql.Savepoint;
+import java.util.Collection;
+import java.util.List;
+
+public interface RadiologyEncounterDAO extends SingleClassDAO<Encounter> {
+
+    /**
+     * Fetches the non-voided encounters of the given types for a patient, with their providers already loaded
+     *
+     * @param patient the patient to fetch encounters for
+     * @param encounterTypes the encounter types to include
+     * @return the matching encounters, oldest first
+     */
+    public List<Encounter> getEncounters(Patient patient, Collection<EncounterType> encounterTypes);
+
+    /**
+     * Fetches the non-voided obs (both top-level obs and group members) of the given encounters in as few queries as
+     * possible, so that callers don't have to walk the lazy obs collections of each encounter
+     *
+     * @param encounters the encounters to fetch obs for
+     * @param excludedConcepts if not empty, obs for these concepts are left out
+     * @return the matching obs, in no particular order
+     */
+    public List<Obs> getObs(Collection<Encounter> encounters, Collection<Concept> excludedConcepts);
+
+    /**
+     * Flushes the session, so that saving a batch of encounters fails on the encounters that break a constraint
+     * rather than on the commit
+     */
+    public void flush();
+
+    /**
+     * Sets a savepoint in the current transaction, so that a part of a batch can be undone without failing the rest
+     *
+     * @return the savepoint, to be released or rolled back to
+     */
+    public Savepoint setSavepoint();
+
+    /**
+     * Undoes what has been saved since the given savepoint, and whatever marked the transaction rollback-only since.
+     * The session is cleared, since it still holds what was undone, so anything loaded before is detached from it
+     *
+     * @param savepoint a savepoint set by {@link #setSavepoint()}
+     * @return false if the transaction can't go on all the same, since an operation of the session itself failed
+     * (e.g. a flush), which marks Hibernate's own transaction rollback-only for good
+     */
+    public boolean rollbackToSavepoint(Savepoint savepoint);
+
+    /**
+     * @param savepoint a savepoint set by {@link #setSavepoint()}, that is no longer needed
+     */
+    public void releaseSavepoint(Savepoint savepoint);
+
+}
@@ -0,0 +1,166 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.FlushMode;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.hibernate.type.Type;
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.radiologyapp.RadiologyReportRecord;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the patient that the accession number index and the study and report tables copy from each radiology
+ * encounter in step with the encounter, so that the studies and reports of an encounter that is moved to another
+ * patient (e.g. by a patient merge) move with it rather than staying listed under the old patient. It also reindexes
+ * the report records of encounters that are moved, voided or unvoided, since the search filters on the patient and
+ * the voided flag of the encounter, but nothing else would tell the index that the encounter of a record changed.
+ * <p>
+ * Like {@link RadiologyMetadataInterceptor}, this is chained into the session factory by just being declared as a bean.
+ */
+public class RadiologyEncounterInterceptor extends EmptyInterceptor {
+
+    private static final long serialVersionUID = 1L;
+
+    // the entities that copy the patient of their encounter
+    private static final String[] PATIENT_COPIES = { "RadiologyAccession", "RadiologyStudyRecord", "RadiologyReportRecord" };
+
+    // the ids of the encounters moved in the current flush, by the id of the patient they were moved to
+    private final transient ThreadLocal<Map<Integer, Set<Integer>>> movedEncounterIds = new ThreadLocal<Map<Integer, Set<Integer>>>();
+
+    // the ids of the encounters moved, voided or unvoided in the current flush
+    private final transient ThreadLocal<Set<Integer>> reindexedEncounterIds = new ThreadLocal<Set<Integer>>();
+
+    @Override
+    public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+                                String[] propertyNames, Type[] types) {
+        if (entity instanceof Encounter) {
+            Integer patientId = getPatientId((Patient) getPropertyValue(currentState, propertyNames, "patient"));
+            Integer previousPatientId = getPatientId((Patient) getPropertyValue(previousState, propertyNames, "patient"));
+            if (patientId != null && previousPatientId != null && !patientId.equals(previousPatientId)) {
+                Map<Integer, Set<Integer>> encounterIds = movedEncounterIds.get();
+                if (encounterIds == null) {
+                    encounterIds = new HashMap<Integer, Set<Integer>>();
+                    movedEncounterIds.set(encounterIds);
+                }
+                if (!encounterIds.containsKey(patientId)) {
+                    encounterIds.put(patientId, new HashSet<Integer>());
+                }
+                encounterIds.get(patientId).add((Integer) id);
+                reindex((Integer) id);
+            }
+            if (Boolean.TRUE.equals(getPropertyValue(currentState, propertyNames, "voided"))
+                    != Boolean.TRUE.equals(getPropertyValue(previousState, propertyNames, "voided"))) {
+                reindex((Integer) id);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void postFlush(Iterator entities) {
+        Map<Integer, Set<Integer>> encounterIds = movedEncounterIds.get();
+        Set<Integer> reindexed = reindexedEncounterIds.get();
+        if (encounterIds == null && reindexed == null) {
+            return;
+        }
+        movedEncounterIds.remove();
+        reindexedEncounterIds.remove();
+
+        // the session factory is built with this interceptor, so it can only be looked up once it is in use
+        Session session = Context.getRegisteredComponent("sessionFactory", SessionFactory.class).getCurrentSession();
+        if (encounterIds != null) {
+            movePatientCopies(session, encounterIds);
+        }
+
+        if (reindexed != null) {
+            Query query = session.createQuery("select r from RadiologyReportRecord r where r.encounter.encounterId in (:encounterIds)");
+            query.setParameterList("encounterIds", reindexed);
+            // we're still within the flush
+            query.setFlushMode(FlushMode.MANUAL);
+
+            // the index is updated as the transaction commits
+            FullTextSession fullTextSession = Search.getFullTextSession(session);
+            for (RadiologyReportRecord record : (List<RadiologyReportRecord>) query.list()) {
+                // a record that was already in the session still has the patient it had before it was moved
+                session.refresh(record);
+                fullTextSession.index(record);
+            }
+        }
+    }
+
+    @Override
+    public void afterTransactionCompletion(Transaction tx) {
+        movedEncounterIds.remove();
+        reindexedEncounterIds.remove();
+    }
+
+    private void movePatientCopies(Session session, Map<Integer, Set<Integer>> encounterIds) {
+        for (Map.Entry<Integer, Set<Integer>> entry : encounterIds.entrySet()) {
+            Patient patient = (Patient) session.load(Patient.class, entry.getKey());
+            for (String entityName : PATIENT_COPIES) {
+                session.createQuery("update " + entityName + " c set c.patient = :patient "
+                        + "where c.encounter.encounterId in (:encounterIds)")
+                        .setParameter("patient", patient)
+                        .setParameterList("encounterIds", entry.getValue())
+                        // we're still within the flush
+                        .setFlushMode(FlushMode.MANUAL)
+                        .executeUpdate();
+            }
+        }
+    }
+
+    private void reindex(Integer encounterId) {
+        Set<Integer> encounterIds = reindexedEncounterIds.get();
+        if (encounterIds == null) {
+            encounterIds = new HashSet<Integer>();
+            reindexedEncounterIds.set(encounterIds);
+        }
+        encounterIds.add(encounterId);
+    }
+
+    // the identifier getter, so that a proxy is not initialized in the middle of a flush
+    private Integer getPatientId(Patient patient) {
+        return patient != null ? patient.getPatientId() : null;
+    }
+
+    private Object getPropertyValue(Object[] state, String[] propertyNames, String propertyName) {
+        if (state != null && propertyNames != null) {
+            for (int i = 0; i < propertyNames.length; i++) {
+                if (propertyName.equals(propertyNames[i])) {
+                    return state[i];
+                }
+            }
+        }
+        return null;
+    }
+}
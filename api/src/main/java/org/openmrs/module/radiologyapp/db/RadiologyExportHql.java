@@ -0,0 +1,78 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.hibernate.Query;
+import org.openmrs.module.radiologyapp.RadiologyExportQuery;
+
+/**
+ * The filters that the study and report record exports have in common; the record is aliased r and its encounter e
+ */
+final class RadiologyExportHql {
+
+    private RadiologyExportHql() {
+    }
+
+    static void appendFilters(StringBuilder hql, RadiologyExportQuery query, Integer afterRecordId, String dateProperty,
+                              String locationProperty) {
+        hql.append("where 1 = 1 ");
+        if (afterRecordId != null) {
+            hql.append("and r.id > :afterRecordId ");
+        }
+        // a full export leaves out what's voided, an incremental one has to tell what was voided since
+        if (query.getChangedSince() == null) {
+            hql.append("and e.voided = false ");
+        }
+        else {
+            hql.append("and coalesce(e.dateChanged, e.dateCreated) >= :changedSince ");
+        }
+        if (query.getFromDate() != null) {
+            hql.append("and r.").append(dateProperty).append(" >= :fromDate ");
+        }
+        if (query.getToDate() != null) {
+            hql.append("and r.").append(dateProperty).append(" < :toDate ");
+        }
+        if (query.getModality() != null) {
+            hql.append("and r.procedure in (select s.concept from ConceptSet s where s.conceptSet = :modality) ");
+        }
+        if (query.getLocation() != null) {
+            hql.append("and r.").append(locationProperty).append(" = :location ");
+        }
+        hql.append("order by r.id");
+    }
+
+    static void setParameters(Query hqlQuery, RadiologyExportQuery query, Integer afterRecordId) {
+        if (afterRecordId != null) {
+            hqlQuery.setParameter("afterRecordId", afterRecordId);
+        }
+        if (query.getChangedSince() != null) {
+            hqlQuery.setParameter("changedSince", query.getChangedSince());
+        }
+        if (query.getFromDate() != null) {
+            hqlQuery.setParameter("fromDate", query.getFromDate());
+        }
+        if (query.getToDate() != null) {
+            hqlQuery.setParameter("toDate", query.getToDate());
+        }
+        if (query.getModality() != null) {
+            hqlQuery.setParameter("modality", query.getModality());
+        }
+        if (query.getLocation() != null) {
+            hqlQuery.setParameter("location", query.getLocation());
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.radiologyapp.db;
+
+import lombok.Setter;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSet;
+import org.openmrs.GlobalProperty;
+import org.openmrs.PersonName;
+import org.openmrs.Provider;
+import org.openmrs.module.metadatamapping.MetadataTermMapping;
+import org.openmrs.module.radiologyapp.RadiologyChange;
+import org.openmrs.module.radiologyapp.RadiologyConceptSetRegistry;
+import org.openmrs.module.radiologyapp.RadiologyOrderablesCatalog;
+import org.openmrs.module.radiologyapp.RadiologyProperties;
+import org.openmrs.module.radiologyapp.RadiologyProviderIndex;
+import org.openmrs.module.radiologyapp.cluster.RadiologyChangePoller;
+
+import java.io.Serializable;
+
+/**
+ * Watches for changes to the metadata that the radiology module caches, and invalidates the affected caches once the
+ * transaction that made the change completes, on this server and, through the change log, on the others sharing the
+ * database.
+ * <p>
+ * OpenMRS picks up every {@link org.hibernate.Interceptor} bean in the application context and chains it into the
+ * session factory, so this only needs to be declared as a bean in moduleApplicationContext.xml.
+ */
+public class RadiologyMetadataInterceptor extends EmptyInterceptor {
+
+    private static final long serialVersionUID = 1L;
+
+    @Setter
+    private transient RadiologyConceptSetRegistry conceptSetRegistry;
+
+    @Setter
+    private transient RadiologyProperties radiologyProperties;
+
+    @Setter
+    private transient RadiologyOrderablesCatalog orderablesCatalog;
+
+    @Setter
+    private transient RadiologyProviderIndex providerIndex;
+
+    @Setter
+    private transient RadiologyChangePoller radiologyChangePoller;
+
+    private final transient ThreadLocal<Boolean> conceptSetsChanged = new ThreadLocal<Boolean>();
+
+    private final transient ThreadLocal<Boolean> propertiesChanged = new ThreadLocal<Boolean>();
+
+    private final transient ThreadLocal<Boolean> orderablesChanged = new ThreadLocal<Boolean>();
+
+    private final transient ThreadLocal<Boolean> providersChanged = new ThreadLocal<Boolean>();
+
+    @Override
+    public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        checkEntity(entity, null, propertyNames);
+        return false;
+    }
+
+    @Override
+    public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+                                String[] propertyNames, Type[] types) {
+        checkEntity(entity, previousState, propertyNames);
+        return false;
+    }
+
+    @Override
+    public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        checkEntity(entity, state, propertyNames);
+    }
+
+    @Override
+    public void afterTransactionCompletion(Transaction tx) {
+        // invalidate after completion (whether committed or rolled back) so that no other thread can re-resolve the
+        // concept sets from data that has not been committed yet
+        if (Boolean.TRUE.equals(conceptSetsChanged.get())) {
+            conceptSetsChanged.remove();
+            conceptSetRegistry.invalidate();
+            radiologyChangePoller.logLocalChange(RadiologyChange.Kind.CONCEPT_SETS);
+        }
+        if (Boolean.TRUE.equals(propertiesChanged.get())) {
+            propertiesChanged.remove();
+            radiologyProperties.invalidate();
+            radiologyChangePoller.logLocalChange(RadiologyChange.Kind.PROPERTIES);
+        }
+        if (Boolean.TRUE.equals(orderablesChanged.get())) {
+            orderablesChanged.remove();
+            orderablesCatalog.invalidate();
+            radiologyChangePoller.logLocalChange(RadiologyChange.Kind.ORDERABLES);
+        }
+        if (Boolean.TRUE.equals(providersChanged.get())) {
+            providersChanged.remove();
+            providerIndex.invalidate();
+            radiologyChangePoller.logLocalChange(RadiologyChange.Kind.PROVIDERS);
+        }
+    }
+
+    private void checkEntity(Object entity, Object[] previousState, String[] propertyNames) {
+        if (affectsConceptSets(entity, previousState, propertyNames)) {
+            conceptSetsChanged.set(Boolean.TRUE);
+        }
+        if (affectsRadiologyProperties(entity)) {
+            propertiesChanged.set(Boolean.TRUE);
+        }
+        if (affectsOrderables(entity)) {
+            orderablesChanged.set(Boolean.TRUE);
+        }
+        if (affectsProviders(entity)) {
+            providersChanged.set(Boolean.TRUE);
+        }
+    }
+
+    private boolean affectsConceptSets(Object entity, Object[] previousState, String[] propertyNames) {
+        if (entity instanceof Concept) {
+            return conceptSetRegistry.isReferencedConcept((Concept) entity);
+        }
+        else if (entity instanceof ConceptMap) {
+            ConceptMap conceptMap = (ConceptMap) entity;
+            return conceptSetRegistry.isReferencedConcept(conceptMap.getConcept())
+                    || (conceptMap.getConceptReferenceTerm() != null
+                        && conceptSetRegistry.isReferencedCode(conceptMap.getConceptReferenceTerm().getCode()));
+        }
+        else if (entity instanceof ConceptReferenceTerm) {
+            // a term may be renamed either to or away from one of our codes
+            return conceptSetRegistry.isReferencedCode(((ConceptReferenceTerm) entity).getCode())
+                    || conceptSetRegistry.isReferencedCode((String) getPropertyValue(previousState, propertyNames, "code"));
+        }
+        return false;
+    }
+
+    private boolean affectsOrderables(Object entity) {
+        if (entity instanceof Concept) {
+            return orderablesCatalog.isCatalogedConcept((Concept) entity);
+        }
+        else if (entity instanceof ConceptName) {
+            return orderablesCatalog.isCatalogedConcept(((ConceptName) entity).getConcept());
+        }
+        else if (entity instanceof ConceptSet) {
+            // members being added to or removed from one of the sets
+            return orderablesCatalog.isCatalogedConcept(((ConceptSet) entity).getConceptSet());
+        }
+        return false;
+    }
+
+    private boolean affectsProviders(Object entity) {
+        if (entity instanceof Provider) {
+            return true;
+        }
+        else if (entity instanceof PersonName) {
+            return providerIndex.isIndexedPerson(((PersonName) entity).getPerson());
+        }
+        return false;
+    }
+
+    private boolean affectsRadiologyProperties(Object entity) {
+        // the global property listener already covers changes made through the AdministrationService, but only once
+        // the transaction has completed can we be sure that other threads rebuild from the new values
+        if (entity instanceof GlobalProperty) {
+            return radiologyProperties.isRadiologyGlobalProperty(((GlobalProperty) entity).getProperty());
+        }
+        return entity instanceof MetadataTermMapping;
+    }
+
+    private Object getPropertyValue(Object[] state, String[] propertyNames, String propertyName) {
+        if (state != null && propertyNames != null) {
+            for (int i = 0; i < propertyNames.length; i++) {
+                if (propertyName.equals(propertyNames[i])) {
+                    return state[i];
+                }
+            }
+        }
+        return null;
+    }
+}
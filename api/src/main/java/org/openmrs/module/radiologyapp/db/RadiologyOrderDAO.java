@@ -14,11 +14,38 @@
 
 package org.openmrs.module.radiologyapp.db;
 
+import org.openmrs.Order;
+import org.openmrs.OrderType;
+import org.openmrs.Patient;
 import org.openmrs.module.emrapi.db.SingleClassDAO;
 import org.openmrs.module.radiologyapp.RadiologyOrder;
+import org.openmrs.module.radiologyapp.RadiologyWorklistQuery;
+
+import java.util.List;
 
 public interface RadiologyOrderDAO extends SingleClassDAO<RadiologyOrder> {
 
     public RadiologyOrder getRadiologyOrderByOrderNumber(String orderNumber);
 
+    /**
+     * Fetches the non-voided orders of the given type for a patient that have no non-voided radiology study or report
+     * indexed under their order number
+     *
+     * @param patient the patient to fetch orders for
+     * @param orderType the radiology order type
+     * @param limit if not null, the maximum number of orders to return
+     * @return the matching orders, most recently created first
+     */
+    public List<Order> getUnfulfilledOrders(Patient patient, OrderType orderType, Integer limit);
+
+    /**
+     * Fetches one page of the worklist: the active, non-voided radiology orders of the given type, across all patients,
+     * that have no non-voided radiology study or report indexed under their order number
+     *
+     * @param query the filters, position and size of the page
+     * @param orderType the radiology order type
+     * @return the matching orders, STAT orders first, then by date activated and order id
+     */
+    public List<RadiologyOrder> getUnfulfilledOrders(RadiologyWorklistQuery query, OrderType orderType);
+
 }
@@ -0,0 +1,33 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.openmrs.module.emrapi.db.SingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyOrderNumberSequence;
+
+public interface RadiologyOrderNumberSequenceDAO extends SingleClassDAO<RadiologyOrderNumberSequence> {
+
+    /**
+     * Advances the given sequence past the given number of values, which the row lock taken by the update keeps other
+     * transactions from doing concurrently
+     *
+     * @param name the name of the sequence, which is created if it doesn't exist yet
+     * @param count how many values to reserve
+     * @return the first of the reserved values
+     */
+    public long reserveValues(String name, int count);
+
+}
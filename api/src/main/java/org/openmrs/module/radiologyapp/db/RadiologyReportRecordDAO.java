@@ -0,0 +1,96 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.module.emrapi.db.SingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyExportQuery;
+import org.openmrs.module.radiologyapp.RadiologyReport;
+import org.openmrs.module.radiologyapp.RadiologyReportRecord;
+import org.openmrs.module.radiologyapp.RadiologyReportSearchFilter;
+import org.openmrs.module.radiologyapp.RadiologyReportSearchResult;
+import org.openmrs.module.radiologyapp.export.RadiologyExportRow;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface RadiologyReportRecordDAO extends SingleClassDAO<RadiologyReportRecord> {
+
+    /**
+     * Fetches the report records with the given accession number whose encounters are not voided
+     *
+     * @param patient if not null, restrict to reports of this patient
+     * @param accessionNumber the accession number to look up
+     * @return the matching records, oldest first
+     */
+    public List<RadiologyReportRecord> getReportRecords(Patient patient, String accessionNumber);
+
+    /**
+     * Fetches a patient's report records with any of the given accession numbers whose encounters are not voided
+     *
+     * @return the matching records, oldest first
+     */
+    public List<RadiologyReportRecord> getReportRecords(Patient patient, Collection<String> accessionNumbers);
+
+    /**
+     * Fetches summaries of a patient's reports with any of the given accession numbers whose encounters are not voided.
+     * The report bodies are not loaded, so the summaries have no report body.
+     *
+     * @return the matching reports, oldest first
+     */
+    public List<RadiologyReport> getReportSummaries(Patient patient, Collection<String> accessionNumbers);
+
+    /**
+     * Fetches summaries of all of a patient's reports whose encounters are not voided. The report bodies are not
+     * loaded, so the summaries have no report body.
+     *
+     * @return the matching reports, oldest first
+     */
+    public List<RadiologyReport> getReportSummaries(Patient patient);
+
+    /**
+     * Searches the full text index of the report records
+     *
+     * @param text the text to search the report bodies, procedure names and report type names for, in simple query
+     * string syntax (e.g. <code>"apical pneumothorax" -effusion</code>); all the reports match if blank
+     * @param filter further criteria, may be null
+     * @param offset the number of matching reports to skip
+     * @param limit the maximum number of reports to return
+     * @return the matching reports, most recent first
+     */
+    public RadiologyReportSearchResult searchReportRecords(String text, RadiologyReportSearchFilter filter, int offset,
+                                                           int limit);
+
+    /**
+     * Fetches non-voided radiology report encounters (as indexed in emr_radiology_accession) that have no report record
+     * yet, i.e. that predate the report table
+     *
+     * @param limit the maximum number of encounters to return
+     */
+    public List<Encounter> getEncountersWithoutReportRecord(int limit);
+
+    /**
+     * Fetches the next batch of report records to export, as plain values, in the order of their ids
+     *
+     * @param query the export filters
+     * @param afterRecordId the id of the last record of the previous batch, or null for the first batch
+     * @param limit the maximum number of rows to return
+     * @return the rows, without the names of their concepts
+     */
+    public List<RadiologyExportRow> getExportRows(RadiologyExportQuery query, Integer afterRecordId, int limit);
+
+}
@@ -0,0 +1,71 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.module.emrapi.db.SingleClassDAO;
+import org.openmrs.module.radiologyapp.RadiologyExportQuery;
+import org.openmrs.module.radiologyapp.RadiologyStudyRecord;
+import org.openmrs.module.radiologyapp.export.RadiologyExportRow;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface RadiologyStudyRecordDAO extends SingleClassDAO<RadiologyStudyRecord> {
+
+    /**
+     * Fetches the study records with the given accession number whose encounters are not voided
+     *
+     * @param patient if not null, restrict to studys of this patient
+     * @param accessionNumber the accession number to look up
+     * @return the matching records, oldest first
+     */
+    public List<RadiologyStudyRecord> getStudyRecords(Patient patient, String accessionNumber);
+
+    /**
+     * Fetches a patient's study records with any of the given accession numbers whose encounters are not voided
+     *
+     * @return the matching records, oldest first
+     */
+    public List<RadiologyStudyRecord> getStudyRecords(Patient patient, Collection<String> accessionNumbers);
+
+    /**
+     * Fetches all of a patient's study records whose encounters are not voided
+     *
+     * @return the matching records, oldest first
+     */
+    public List<RadiologyStudyRecord> getStudyRecords(Patient patient);
+
+    /**
+     * Fetches non-voided radiology study encounters (as indexed in emr_radiology_accession) that have no study record
+     * yet, i.e. that predate the study table
+     *
+     * @param limit the maximum number of encounters to return
+     */
+    public List<Encounter> getEncountersWithoutStudyRecord(int limit);
+
+    /**
+     * Fetches the next batch of study records to export, as plain values, in the order of their ids
+     *
+     * @param query the export filters
+     * @param afterRecordId the id of the last record of the previous batch, or null for the first batch
+     * @param limit the maximum number of rows to return
+     * @return the rows, without the names of their concepts
+     */
+    public List<RadiologyExportRow> getExportRows(RadiologyExportQuery query, Integer afterRecordId, int limit);
+
+}
@@ -0,0 +1,139 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.db;
+
+import lombok.Setter;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.Person;
+import org.openmrs.module.radiologyapp.RadiologyConceptSetRegistry;
+import org.openmrs.module.radiologyapp.RadiologyTimelineCache;
+import org.openmrs.module.radiologyapp.cluster.RadiologyChangePoller;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Watches for changes to the encounters and radiology obs of patients, whoever makes them (e.g. another module saving
+ * or voiding an encounter, or a patient merge moving encounters to the preferred patient), and discards the cached
+ * radiology timelines of the patients concerned, both right away and once the transaction completes. Once it completes,
+ * the changes are also queued to the {@link RadiologyChangePoller}, so that the other servers discard those timelines too.
+ * <p>
+ * Like {@link RadiologyMetadataInterceptor}, this is chained into the session factory by just being declared as a bean.
+ */
+public class RadiologyTimelineInterceptor extends EmptyInterceptor {
+
+    private static final long serialVersionUID = 1L;
+
+    @Setter
+    private transient RadiologyTimelineCache radiologyTimelineCache;
+
+    @Setter
+    private transient RadiologyConceptSetRegistry conceptSetRegistry;
+
+    @Setter
+    private transient RadiologyChangePoller radiologyChangePoller;
+
+    private final transient ThreadLocal<Set<Integer>> changedPatientIds = new ThreadLocal<Set<Integer>>();
+
+    @Override
+    public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        checkEntity(entity, null, propertyNames);
+        return false;
+    }
+
+    @Override
+    public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+                                String[] propertyNames, Type[] types) {
+        checkEntity(entity, previousState, propertyNames);
+        return false;
+    }
+
+    @Override
+    public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        checkEntity(entity, state, propertyNames);
+    }
+
+    @Override
+    public void afterTransactionCompletion(Transaction tx) {
+        // invalidate again after completion (whether committed or rolled back), as another thread may have cached what
+        // it read before the transaction committed
+        Set<Integer> patientIds = changedPatientIds.get();
+        if (patientIds != null) {
+            changedPatientIds.remove();
+            for (Integer patientId : patientIds) {
+                radiologyTimelineCache.invalidate(patientId);
+                radiologyChangePoller.logLocalPatientChange(patientId);
+            }
+        }
+    }
+
+    private void checkEntity(Object entity, Object[] previousState, String[] propertyNames) {
+        if (entity instanceof Encounter) {
+            // radiology order, study and report encounters are all encounters of the patient, so we don't bother to
+            // check their types; patients have far fewer encounters than obs
+            patientChanged(getPatientId(((Encounter) entity).getPatient()));
+            patientChanged(getPatientId((Patient) getPropertyValue(previousState, propertyNames, "patient")));
+        }
+        else if (entity instanceof Obs) {
+            // the members of the radiology study and report obs groups may also be edited on their own
+            Obs obs = (Obs) entity;
+            if (conceptSetRegistry.isReferencedConcept(obs.getConcept())) {
+                patientChanged(getPersonId(obs.getPerson()));
+                patientChanged(getPersonId((Person) getPropertyValue(previousState, propertyNames, "person")));
+            }
+        }
+    }
+
+    private void patientChanged(Integer patientId) {
+        if (patientId == null) {
+            return;
+        }
+        radiologyTimelineCache.invalidate(patientId);
+
+        Set<Integer> patientIds = changedPatientIds.get();
+        if (patientIds == null) {
+            patientIds = new HashSet<Integer>();
+            changedPatientIds.set(patientIds);
+        }
+        patientIds.add(patientId);
+    }
+
+    // the identifier getters, so that a proxy is not initialized in the middle of a flush
+    private Integer getPatientId(Patient patient) {
+        return patient != null ? patient.getPatientId() : null;
+    }
+
+    private Integer getPersonId(Person person) {
+        return person != null ? person.getPersonId() : null;
+    }
+
+    private Object getPropertyValue(Object[] state, String[] propertyNames, String propertyName) {
+        if (state != null && propertyNames != null) {
+            for (int i = 0; i < propertyNames.length; i++) {
+                if (propertyName.equals(propertyNames[i])) {
+                    return state[i];
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -14,4 +14,8 @@ public class RadiologyAPIException extends APIException {
         super(message);
     }
 
+    public RadiologyAPIException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
 }
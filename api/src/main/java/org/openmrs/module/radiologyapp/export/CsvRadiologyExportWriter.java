@@ -0,0 +1,71 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the studies and reports as RFC 4180 CSV, with a header line; values that contain a comma, quote or line
+ * break (as report bodies usually do) are quoted
+ */
+public class CsvRadiologyExportWriter extends RadiologyExportWriter {
+
+    private static final String[] HEADER = { "type", "encounterUuid", "patientUuid", "accessionNumber",
+            "procedureConceptId", "procedure", "date", "location", "provider", "imagesAvailable", "reportTypeConceptId",
+            "reportType", "reportBody", "voided", "dateChanged" };
+
+    public CsvRadiologyExportWriter(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void start() throws IOException {
+        writeLine((Object[]) HEADER);
+    }
+
+    @Override
+    public void write(RadiologyExportRow row) throws IOException {
+        writeLine(row.getType().name().toLowerCase(), row.getEncounterUuid(), row.getPatientUuid(),
+                row.getAccessionNumber(), row.getProcedureConceptId(), row.getProcedure(), formatDate(row.getDate()),
+                row.getLocation(), row.getProvider(), row.getImagesAvailable(), row.getReportTypeConceptId(),
+                row.getReportType(), row.getReportBody(), row.isVoided(), formatDate(row.getDateChanged()));
+    }
+
+    private void writeLine(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writeValue(values[i].toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeValue(String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+        }
+        else {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+}
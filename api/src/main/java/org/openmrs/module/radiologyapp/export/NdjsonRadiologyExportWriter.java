@@ -0,0 +1,105 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes each study or report as a JSON object on a line of its own (http://ndjson.org); fields without a value are
+ * left out
+ */
+public class NdjsonRadiologyExportWriter extends RadiologyExportWriter {
+
+    private boolean firstField;
+
+    public NdjsonRadiologyExportWriter(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(RadiologyExportRow row) throws IOException {
+        writer.write('{');
+        firstField = true;
+        writeField("type", row.getType().name().toLowerCase());
+        writeField("encounterUuid", row.getEncounterUuid());
+        writeField("patientUuid", row.getPatientUuid());
+        writeField("accessionNumber", row.getAccessionNumber());
+        writeField("procedureConceptId", row.getProcedureConceptId());
+        writeField("procedure", row.getProcedure());
+        writeField("date", formatDate(row.getDate()));
+        writeField("location", row.getLocation());
+        writeField("provider", row.getProvider());
+        writeField("imagesAvailable", row.getImagesAvailable());
+        writeField("reportTypeConceptId", row.getReportTypeConceptId());
+        writeField("reportType", row.getReportType());
+        writeField("reportBody", row.getReportBody());
+        writeField("voided", row.isVoided());
+        writeField("dateChanged", formatDate(row.getDateChanged()));
+        writer.write("}\n");
+    }
+
+    private void writeField(String name, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!firstField) {
+            writer.write(',');
+        }
+        firstField = false;
+        writeString(name);
+        writer.write(':');
+        if (value instanceof Number || value instanceof Boolean) {
+            writer.write(value.toString());
+        }
+        else {
+            writeString(value.toString());
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.export;
+
+import java.util.Date;
+
+/**
+ * One exported radiology study or report, flattened to plain values so that exporting doesn't hold on to any
+ * Hibernate entities
+ */
+public class RadiologyExportRow {
+
+    public enum Type { STUDY, REPORT }
+
+    private Type type;
+
+    private Integer recordId;
+
+    private String encounterUuid;
+
+    private String patientUuid;
+
+    private String accessionNumber;
+
+    private Integer procedureConceptId;
+
+    private String procedure;
+
+    private Date date;
+
+    private String location;
+
+    private String provider;
+
+    private Boolean imagesAvailable;
+
+    private Integer reportTypeConceptId;
+
+    private String reportType;
+
+    private String reportBody;
+
+    private boolean voided;
+
+    private Date dateChanged;
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * @return the id of the row in emr_radiology_study or emr_radiology_report
+     */
+    public Integer getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(Integer recordId) {
+        this.recordId = recordId;
+    }
+
+    public String getEncounterUuid() {
+        return encounterUuid;
+    }
+
+    public void setEncounterUuid(String encounterUuid) {
+        this.encounterUuid = encounterUuid;
+    }
+
+    public String getPatientUuid() {
+        return patientUuid;
+    }
+
+    public void setPatientUuid(String patientUuid) {
+        this.patientUuid = patientUuid;
+    }
+
+    public String getAccessionNumber() {
+        return accessionNumber;
+    }
+
+    public void setAccessionNumber(String accessionNumber) {
+        this.accessionNumber = accessionNumber;
+    }
+
+    public Integer getProcedureConceptId() {
+        return procedureConceptId;
+    }
+
+    public void setProcedureConceptId(Integer procedureConceptId) {
+        this.procedureConceptId = procedureConceptId;
+    }
+
+    /**
+     * @return the name of the procedure
+     */
+    public String getProcedure() {
+        return procedure;
+    }
+
+    public void setProcedure(String procedure) {
+        this.procedure = procedure;
+    }
+
+    /**
+     * @return the date the study was performed or the report written
+     */
+    public Date getDate() {
+        return date;
+    }
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
+
+    /**
+     * @return the name of the location the study was performed or the report written at
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    /**
+     * @return the identifier of the technician of a study or the principal results interpreter of a report
+     */
+    public String getProvider() {
+        return provider;
+    }
+
+    public void setProvider(String provider) {
+        this.provider = provider;
+    }
+
+    public Boolean getImagesAvailable() {
+        return imagesAvailable;
+    }
+
+    public void setImagesAvailable(Boolean imagesAvailable) {
+        this.imagesAvailable = imagesAvailable;
+    }
+
+    public Integer getReportTypeConceptId() {
+        return reportTypeConceptId;
+    }
+
+    public void setReportTypeConceptId(Integer reportTypeConceptId) {
+        this.reportTypeConceptId = reportTypeConceptId;
+    }
+
+    /**
+     * @return the name of the report type
+     */
+    public String getReportType() {
+        return reportType;
+    }
+
+    public void setReportType(String reportType) {
+        this.reportType = reportType;
+    }
+
+    public String getReportBody() {
+        return reportBody;
+    }
+
+    public void setReportBody(String reportBody) {
+        this.reportBody = reportBody;
+    }
+
+    public boolean isVoided() {
+        return voided;
+    }
+
+    public void setVoided(boolean voided) {
+        this.voided = voided;
+    }
+
+    /**
+     * @return when the encounter of the study or report was last created, changed or voided
+     */
+    public Date getDateChanged() {
+        return dateChanged;
+    }
+
+    public void setDateChanged(Date dateChanged) {
+        this.dateChanged = dateChanged;
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.export;
+
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.openmrs.module.radiologyapp.RadiologyExportQuery;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Writes exported radiology studies and reports to a stream one at a time, so that an export never holds more than
+ * one row (and a buffer) in memory
+ */
+public abstract class RadiologyExportWriter {
+
+    protected static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZZ";
+
+    protected final Writer writer;
+
+    protected RadiologyExportWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    public static RadiologyExportWriter create(RadiologyExportQuery.Format format, OutputStream out) {
+        switch (format) {
+            case CSV:
+                return new CsvRadiologyExportWriter(out);
+            case NDJSON:
+                return new NdjsonRadiologyExportWriter(out);
+            default:
+                throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+    }
+
+    /**
+     * Writes anything that goes before the rows, e.g. a header line
+     */
+    public void start() throws IOException {
+    }
+
+    public abstract void write(RadiologyExportRow row) throws IOException;
+
+    /**
+     * Flushes what has been written to the stream, but leaves the stream open (it belongs to the caller)
+     */
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    protected static String formatDate(Date date) {
+        return date != null ? DateFormatUtils.format(date, DATE_FORMAT) : null;
+    }
+
+}
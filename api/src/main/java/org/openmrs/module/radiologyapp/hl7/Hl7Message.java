@@ -0,0 +1,308 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.hl7;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * A minimal reader and writer of HL7 v2 messages in the usual pipe-delimited (ER7) encoding. It only splits the
+ * message into segments, fields, repetitions, components and subcomponents, and unescapes the values; interpreting
+ * them is up to the caller.
+ */
+public class Hl7Message {
+
+    static final String DEFAULT_ENCODING_CHARACTERS = "^~\\&";
+
+    private final List<Segment> segments;
+
+    private final char fieldSeparator;
+
+    private final char componentSeparator;
+
+    private final char repetitionSeparator;
+
+    private final char escapeCharacter;
+
+    private final char subcomponentSeparator;
+
+    private Hl7Message(String text) {
+        if (text == null || !text.startsWith("MSH") || text.length() < 8) {
+            throw new RadiologyAPIException("Not an HL7 message: it must start with an MSH segment");
+        }
+        fieldSeparator = text.charAt(3);
+        componentSeparator = text.charAt(4);
+        repetitionSeparator = text.charAt(5);
+        escapeCharacter = text.charAt(6);
+        subcomponentSeparator = text.charAt(7);
+
+        List<Segment> segments = new ArrayList<Segment>();
+        // segments are terminated by carriage returns, but be lenient with senders that use line feeds
+        for (String segment : text.split("\r\n|\r|\n")) {
+            if (StringUtils.isNotBlank(segment)) {
+                segments.add(new Segment(segment));
+            }
+        }
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * @throws RadiologyAPIException if the text doesn't start with an MSH segment
+     */
+    public static Hl7Message parse(String text) {
+        return new Hl7Message(text);
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public Segment getMsh() {
+        return segments.get(0);
+    }
+
+    /**
+     * @return the message type and trigger event, e.g. ORU^R01
+     */
+    public String getMessageType() {
+        return getMsh().get(9, 1) + "^" + getMsh().get(9, 2);
+    }
+
+    public String getMessageControlId() {
+        return getMsh().get(10);
+    }
+
+    /**
+     * Builds the acknowledgment of this message
+     *
+     * @param acknowledgmentCode AA, AE or AR
+     * @param text the error message, if any
+     */
+    public String buildAck(String acknowledgmentCode, String text) {
+        Segment msh = getMsh();
+        return buildAck(msh.get(5), msh.get(6), msh.get(3), msh.get(4), msh.get(11), msh.get(12),
+                getMessageControlId(), acknowledgmentCode, text);
+    }
+
+    /**
+     * Builds an acknowledgment from scratch, e.g. for a message that couldn't be parsed
+     */
+    public static String buildAck(String sendingApplication, String sendingFacility, String receivingApplication,
+                                  String receivingFacility, String processingId, String version,
+                                  String acknowledgedControlId, String acknowledgmentCode, String text) {
+        String now = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        return "MSH|" + DEFAULT_ENCODING_CHARACTERS
+                + "|" + escape(sendingApplication) + "|" + escape(sendingFacility)
+                + "|" + escape(receivingApplication) + "|" + escape(receivingFacility)
+                + "|" + now + "||ACK^R01^ACK|" + now + Math.abs(System.nanoTime() % 100000)
+                + "|" + StringUtils.defaultIfBlank(escape(processingId), "P")
+                + "|" + StringUtils.defaultIfBlank(escape(version), "2.5") + "\r"
+                + "MSA|" + acknowledgmentCode + "|" + escape(acknowledgedControlId)
+                + (StringUtils.isNotBlank(text) ? "|" + escape(text) : "") + "\r";
+    }
+
+    /**
+     * Parses an HL7 timestamp (YYYY[MM[DD[HH[MM[SS[.S[S[S[S]]]]]]]]][+/-ZZZZ]) in the server's time zone, unless it
+     * specifies its own
+     *
+     * @return the date, or null if the value is blank
+     * @throws RadiologyAPIException if the value is not a valid timestamp
+     */
+    public static Date parseTimestamp(String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        String timestamp = value.trim();
+        TimeZone timeZone = TimeZone.getDefault();
+
+        int offset = Math.max(timestamp.indexOf('+'), timestamp.indexOf('-'));
+        if (offset > 0) {
+            timeZone = TimeZone.getTimeZone("GMT" + timestamp.substring(offset));
+            timestamp = timestamp.substring(0, offset);
+        }
+        int fraction = timestamp.indexOf('.');
+        if (fraction > 0) {
+            timestamp = timestamp.substring(0, fraction);
+        }
+
+        String pattern = "yyyyMMddHHmmss";
+        if (timestamp.length() < 4 || timestamp.length() > pattern.length() || timestamp.length() % 2 != 0) {
+            throw new RadiologyAPIException("Invalid HL7 timestamp: " + value);
+        }
+        SimpleDateFormat format = new SimpleDateFormat(pattern.substring(0, timestamp.length()));
+        format.setLenient(false);
+        format.setTimeZone(timeZone);
+        try {
+            return format.parse(timestamp);
+        }
+        catch (ParseException e) {
+            throw new RadiologyAPIException("Invalid HL7 timestamp: " + value, e);
+        }
+    }
+
+    /**
+     * Escapes the delimiters in a value, for the default encoding characters
+     */
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '\\': escaped.append("\\E\\"); break;
+                case '|': escaped.append("\\F\\"); break;
+                case '^': escaped.append("\\S\\"); break;
+                case '&': escaped.append("\\T\\"); break;
+                case '~': escaped.append("\\R\\"); break;
+                case '\r': break;
+                case '\n': escaped.append("\\.br\\"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private String unescape(String value) {
+        if (value.indexOf(escapeCharacter) < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            int end = c == escapeCharacter ? value.indexOf(escapeCharacter, i + 1) : -1;
+            if (end < 0) {
+                unescaped.append(c);
+                i++;
+                continue;
+            }
+            String sequence = value.substring(i + 1, end);
+            if (sequence.equals("F")) {
+                unescaped.append(fieldSeparator);
+            }
+            else if (sequence.equals("S")) {
+                unescaped.append(componentSeparator);
+            }
+            else if (sequence.equals("T")) {
+                unescaped.append(subcomponentSeparator);
+            }
+            else if (sequence.equals("R")) {
+                unescaped.append(repetitionSeparator);
+            }
+            else if (sequence.equals("E")) {
+                unescaped.append(escapeCharacter);
+            }
+            else if (sequence.equals(".br")) {
+                unescaped.append('\n');
+            }
+            // other sequences (highlighting, hex data, formatting) are dropped
+            i = end + 1;
+        }
+        return unescaped.toString();
+    }
+
+    private static List<String> split(String value, char separator) {
+        List<String> parts = new ArrayList<String>();
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == separator) {
+                parts.add(value.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(value.substring(start));
+        return parts;
+    }
+
+    /**
+     * One segment of the message; fields, repetitions, components and subcomponents are numbered as in the HL7
+     * specification, i.e. from 1 (except repetitions, which are numbered from 0)
+     */
+    public class Segment {
+
+        private final List<String> fields;
+
+        private Segment(String text) {
+            List<String> fields = split(text, fieldSeparator);
+            if (fields.get(0).equals("MSH")) {
+                // MSH-1 is the field separator itself, so the fields of MSH are shifted by one
+                fields.add(1, String.valueOf(fieldSeparator));
+            }
+            this.fields = fields;
+        }
+
+        public String getName() {
+            return fields.get(0);
+        }
+
+        /**
+         * @return the number of repetitions of the given field
+         */
+        public int getRepetitionCount(int field) {
+            String value = getRawField(field);
+            return value.isEmpty() ? 0 : split(value, repetitionSeparator).size();
+        }
+
+        public String get(int field) {
+            return get(field, 0, 1, 1);
+        }
+
+        public String get(int field, int component) {
+            return get(field, 0, component, 1);
+        }
+
+        public String get(int field, int component, int subcomponent) {
+            return get(field, 0, component, subcomponent);
+        }
+
+        /**
+         * @return the unescaped value, or an empty string if it isn't there
+         */
+        public String get(int field, int repetition, int component, int subcomponent) {
+            String value = getRawField(field);
+            if (getName().equals("MSH") && field <= 2) {
+                return value;
+            }
+            List<String> repetitions = split(value, repetitionSeparator);
+            if (repetition >= repetitions.size()) {
+                return "";
+            }
+            List<String> components = split(repetitions.get(repetition), componentSeparator);
+            if (component > components.size()) {
+                return "";
+            }
+            List<String> subcomponents = split(components.get(component - 1), subcomponentSeparator);
+            if (subcomponent > subcomponents.size()) {
+                return "";
+            }
+            return unescape(subcomponents.get(subcomponent - 1));
+        }
+
+        private String getRawField(int field) {
+            return field < fields.size() ? fields.get(field) : "";
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.hl7;
+
+import java.util.Date;
+
+/**
+ * A radiology report as read from an ORU^R01 message, before its identifiers and codes are resolved to OpenMRS
+ * objects
+ */
+public class Hl7RadiologyReport {
+
+    private String accessionNumber;
+
+    private String patientIdentifier;
+
+    private String procedureCode;
+
+    private String procedureCodingSystem;
+
+    private String resultStatus;
+
+    private String interpreterIdentifier;
+
+    private Date reportDate;
+
+    private final StringBuilder reportBody = new StringBuilder();
+
+    public String getAccessionNumber() {
+        return accessionNumber;
+    }
+
+    public void setAccessionNumber(String accessionNumber) {
+        this.accessionNumber = accessionNumber;
+    }
+
+    public String getPatientIdentifier() {
+        return patientIdentifier;
+    }
+
+    public void setPatientIdentifier(String patientIdentifier) {
+        this.patientIdentifier = patientIdentifier;
+    }
+
+    public String getProcedureCode() {
+        return procedureCode;
+    }
+
+    public void setProcedureCode(String procedureCode) {
+        this.procedureCode = procedureCode;
+    }
+
+    public String getProcedureCodingSystem() {
+        return procedureCodingSystem;
+    }
+
+    public void setProcedureCodingSystem(String procedureCodingSystem) {
+        this.procedureCodingSystem = procedureCodingSystem;
+    }
+
+    /**
+     * @return the OBR-25 result status, e.g. P for preliminary, F for final or C for correction
+     */
+    public String getResultStatus() {
+        return resultStatus;
+    }
+
+    public void setResultStatus(String resultStatus) {
+        this.resultStatus = resultStatus;
+    }
+
+    public String getInterpreterIdentifier() {
+        return interpreterIdentifier;
+    }
+
+    public void setInterpreterIdentifier(String interpreterIdentifier) {
+        this.interpreterIdentifier = interpreterIdentifier;
+    }
+
+    public Date getReportDate() {
+        return reportDate;
+    }
+
+    public void setReportDate(Date reportDate) {
+        this.reportDate = reportDate;
+    }
+
+    public String getReportBody() {
+        return reportBody.toString();
+    }
+
+    public void appendReportBody(String text) {
+        if (reportBody.length() > 0) {
+            reportBody.append('\n');
+        }
+        reportBody.append(text);
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.hl7;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Minimal Lower Layer Protocol framing of HL7 v2 messages over TCP: each message is sent as a start block
+ * character, the message, an end block character and a carriage return
+ */
+public final class Mllp {
+
+    public static final int START_BLOCK = 0x0b;
+
+    public static final int END_BLOCK = 0x1c;
+
+    public static final int CARRIAGE_RETURN = 0x0d;
+
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private Mllp() {
+    }
+
+    /**
+     * Reads the next framed message, skipping anything outside a frame. The stream is read a byte at a time, so it
+     * should be buffered.
+     *
+     * @param maxLength the maximum length of a message in bytes
+     * @return the message, or null if the stream ended before another message started
+     * @throws IOException if the stream ends within a message, or the message is too long
+     */
+    public static String readMessage(InputStream in, int maxLength) throws IOException {
+        int b;
+        do {
+            b = in.read();
+            if (b == -1) {
+                return null;
+            }
+        } while (b != START_BLOCK);
+
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        while (true) {
+            b = in.read();
+            if (b == -1) {
+                throw new IOException("Connection closed within an HL7 message");
+            }
+            if (b == END_BLOCK) {
+                b = in.read();
+                if (b == CARRIAGE_RETURN || b == -1) {
+                    return new String(message.toByteArray(), CHARSET);
+                }
+                // not a frame end after all
+                message.write(END_BLOCK);
+            }
+            if (message.size() >= maxLength) {
+                throw new IOException("HL7 message longer than " + maxLength + " bytes");
+            }
+            message.write(b);
+        }
+    }
+
+    public static void writeMessage(OutputStream out, String message) throws IOException {
+        out.write(START_BLOCK);
+        out.write(message.getBytes(CHARSET));
+        out.write(END_BLOCK);
+        out.write(CARRIAGE_RETURN);
+        out.flush();
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.hl7;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the radiology reports out of an ORU^R01 message; each OBR segment is one report, whose body is made up of
+ * the text values of the OBX segments that follow it.
+ * <p>
+ * This only looks at the text of the message, so it can run without a database session.
+ */
+public class OruR01Parser {
+
+    public static final String MESSAGE_TYPE = "ORU^R01";
+
+    // the OBX value types that carry report text
+    private static final Set<String> TEXT_VALUE_TYPES = new HashSet<String>(Arrays.asList("TX", "FT", "ST"));
+
+    /**
+     * @throws RadiologyAPIException if the message is not an ORU^R01 message, or is missing required values
+     */
+    public List<Hl7RadiologyReport> parse(Hl7Message message) {
+
+        if (!MESSAGE_TYPE.equals(message.getMessageType())) {
+            throw new RadiologyAPIException("Unsupported message type " + message.getMessageType());
+        }
+
+        Date messageDate = Hl7Message.parseTimestamp(message.getMsh().get(7));
+
+        List<Hl7RadiologyReport> reports = new ArrayList<Hl7RadiologyReport>();
+        String patientIdentifier = null;
+        Hl7RadiologyReport report = null;
+
+        for (Hl7Message.Segment segment : message.getSegments()) {
+            if (segment.getName().equals("PID")) {
+                patientIdentifier = StringUtils.trimToNull(segment.get(3));
+            }
+            else if (segment.getName().equals("OBR")) {
+                report = parseObr(segment, patientIdentifier, messageDate);
+                reports.add(report);
+            }
+            else if (segment.getName().equals("OBX") && report != null && TEXT_VALUE_TYPES.contains(segment.get(2))) {
+                for (int i = 0; i < segment.getRepetitionCount(5); i++) {
+                    report.appendReportBody(segment.get(5, i, 1, 1));
+                }
+            }
+        }
+
+        if (reports.isEmpty()) {
+            throw new RadiologyAPIException("No OBR segment in message " + message.getMessageControlId());
+        }
+        return reports;
+    }
+
+    private Hl7RadiologyReport parseObr(Hl7Message.Segment obr, String patientIdentifier, Date messageDate) {
+
+        Hl7RadiologyReport report = new Hl7RadiologyReport();
+        report.setPatientIdentifier(patientIdentifier);
+
+        // the filler order number is the accession number; fall back to the placer order number
+        report.setAccessionNumber(StringUtils.trimToNull(StringUtils.defaultIfBlank(obr.get(3), obr.get(2))));
+        if (report.getAccessionNumber() == null) {
+            throw new RadiologyAPIException("No accession number (OBR-3) in OBR segment");
+        }
+
+        report.setProcedureCode(StringUtils.trimToNull(obr.get(4, 1)));
+        report.setProcedureCodingSystem(StringUtils.trimToNull(obr.get(4, 3)));
+        report.setResultStatus(StringUtils.trimToNull(obr.get(25)));
+
+        // the principal result interpreter's id is the first subcomponent of OBR-32
+        report.setInterpreterIdentifier(StringUtils.trimToNull(obr.get(32, 1, 1)));
+
+        // when the results were reported, or else when the study was performed, or else when the message was sent
+        Date reportDate = Hl7Message.parseTimestamp(obr.get(22));
+        if (reportDate == null) {
+            reportDate = Hl7Message.parseTimestamp(obr.get(7));
+        }
+        report.setReportDate(reportDate != null ? reportDate : messageDate);
+        return report;
+    }
+
+}
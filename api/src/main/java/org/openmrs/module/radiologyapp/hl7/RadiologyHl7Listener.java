@@ -0,0 +1,514 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.hl7;
+
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Concept;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.PatientService;
+import org.openmrs.api.ProviderService;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.emrapi.EmrApiConstants;
+import org.openmrs.module.radiologyapp.RadiologyConstants;
+import org.openmrs.module.radiologyapp.RadiologyOrder;
+import org.openmrs.module.radiologyapp.RadiologyReport;
+import org.openmrs.module.radiologyapp.RadiologySaveResult;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Receives radiology reports as HL7 v2 ORU^R01 messages over MLLP and saves them with
+ * {@link RadiologyService#saveRadiologyReports}.
+ * <p>
+ * Messages go through a pipeline: each connection is read by its own thread, the messages are parsed by a pool of
+ * parser threads (which don't need a database session), and the parsed reports are queued for a pool of persistence
+ * threads, which run as the daemon user. A persistence thread saves whatever reports have queued up in one batch, and
+ * only acknowledges each message once the batch has been committed; a message that can't be parsed or saved gets an
+ * error acknowledgment instead. The queues are bounded, so a sender that outpaces the database is slowed down rather
+ * than filling the heap.
+ */
+public class RadiologyHl7Listener {
+
+    private static final Log log = LogFactory.getLog(RadiologyHl7Listener.class);
+
+    @Setter
+    private RadiologyService radiologyService;
+
+    @Setter
+    private PatientService patientService;
+
+    @Setter
+    private ProviderService providerService;
+
+    @Setter
+    private ConceptService conceptService;
+
+    @Setter
+    private int parserThreads = 2;
+
+    @Setter
+    private int persistenceThreads = 1;
+
+    @Setter
+    private int queueCapacity = 1000;
+
+    @Setter
+    private int maxBatchSize = 100;
+
+    @Setter
+    private int maxMessageLength = 1024 * 1024;
+
+    private final OruR01Parser parser = new OruR01Parser();
+
+    private final Set<Connection> connections = Collections.synchronizedSet(new HashSet<Connection>());
+
+    private final List<Thread> persistenceWorkers = new ArrayList<Thread>();
+
+    private volatile boolean running;
+
+    private ServerSocket serverSocket;
+
+    private ExecutorService connectionPool;
+
+    private ThreadPoolExecutor parserPool;
+
+    private BlockingQueue<ParsedMessage> persistenceQueue;
+
+    private DaemonToken daemonToken;
+
+    /**
+     * Starts listening on the given address and port
+     *
+     * @param port the port, or 0 for any free port
+     * @param daemonToken the module's token, to run the persistence threads as the daemon user
+     */
+    public synchronized void start(String bindAddress, int port, DaemonToken daemonToken) throws IOException {
+        if (running) {
+            throw new IllegalStateException("The radiology HL7 listener is already running");
+        }
+        this.daemonToken = daemonToken;
+
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), port));
+
+        running = true;
+        connectionPool = Executors.newCachedThreadPool(threadFactory("radiology-hl7-connection"));
+        // when the parsers fall behind, the connection threads parse for themselves, and so stop reading
+        parserPool = new ThreadPoolExecutor(parserThreads, parserThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory("radiology-hl7-parser"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        persistenceQueue = new ArrayBlockingQueue<ParsedMessage>(queueCapacity);
+
+        for (int i = 0; i < persistenceThreads; i++) {
+            persistenceWorkers.add(startWorker(new Runnable() {
+
+                @Override
+                public void run() {
+                    persist();
+                }
+            }));
+        }
+
+        Thread acceptor = threadFactory("radiology-hl7-acceptor").newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+        acceptor.start();
+
+        log.info("Radiology HL7 listener started on " + serverSocket.getLocalSocketAddress());
+    }
+
+    /**
+     * Stops listening and closes all connections; messages that have not been acknowledged yet are dropped, so that
+     * the senders will resend them
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        closeQuietly(serverSocket);
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                closeQuietly(connection.socket);
+            }
+        }
+        connectionPool.shutdownNow();
+        parserPool.shutdownNow();
+        for (Thread worker : persistenceWorkers) {
+            worker.interrupt();
+        }
+        persistenceWorkers.clear();
+
+        log.info("Radiology HL7 listener stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return the port that the listener is bound to
+     */
+    public synchronized int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts a persistence thread; they run as the daemon user, in a session of their own
+     */
+    protected Thread startWorker(Runnable worker) {
+        return Daemon.runInDaemonThread(worker, daemonToken);
+    }
+
+    /**
+     * Clears the persistence thread's session after each batch, so that it doesn't grow
+     */
+    protected void clearSession() {
+        Context.clearSession();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                final Connection connection = new Connection(serverSocket.accept());
+                connections.add(connection);
+                connectionPool.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        read(connection);
+                    }
+                });
+            }
+            catch (IOException e) {
+                if (running) {
+                    log.error("Error accepting HL7 connection", e);
+                }
+            }
+        }
+    }
+
+    private void read(final Connection connection) {
+        try {
+            // Mllp reads a byte at a time, which would otherwise be a system call per byte
+            InputStream in = new BufferedInputStream(connection.socket.getInputStream());
+            String text;
+            while (running && (text = Mllp.readMessage(in, maxMessageLength)) != null) {
+                final String message = text;
+                parserPool.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        parse(connection, message);
+                    }
+                });
+            }
+        }
+        catch (IOException e) {
+            if (running) {
+                log.warn("Error reading from HL7 connection " + connection.socket.getRemoteSocketAddress(), e);
+            }
+        }
+        finally {
+            connections.remove(connection);
+            closeQuietly(connection.socket);
+        }
+    }
+
+    private void parse(Connection connection, String text) {
+
+        Hl7Message message;
+        try {
+            message = Hl7Message.parse(text);
+        }
+        catch (RuntimeException e) {
+            connection.send(Hl7Message.buildAck(null, null, null, null, null, null, null, "AR", e.getMessage()));
+            return;
+        }
+
+        try {
+            persistenceQueue.put(new ParsedMessage(connection, message, parser.parse(message)));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (RuntimeException e) {
+            log.warn("Rejected HL7 message " + message.getMessageControlId() + ": " + e.getMessage());
+            connection.send(message.buildAck("AR", e.getMessage()));
+        }
+    }
+
+    private void persist() {
+        while (running) {
+            List<ParsedMessage> batch = new ArrayList<ParsedMessage>();
+            try {
+                ParsedMessage first = persistenceQueue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                persistenceQueue.drainTo(batch, maxBatchSize - 1);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                persist(batch);
+            }
+            catch (RuntimeException e) {
+                log.error("Error saving HL7 radiology reports", e);
+            }
+            finally {
+                clearSession();
+            }
+        }
+    }
+
+    private void persist(List<ParsedMessage> batch) {
+
+        List<ParsedMessage> resolved = new ArrayList<ParsedMessage>();
+        List<RadiologyReport> reports = new ArrayList<RadiologyReport>();
+
+        for (ParsedMessage message : batch) {
+            try {
+                List<RadiologyReport> messageReports = new ArrayList<RadiologyReport>();
+                for (Hl7RadiologyReport report : message.reports) {
+                    messageReports.add(toRadiologyReport(report));
+                }
+                message.firstReport = reports.size();
+                reports.addAll(messageReports);
+                resolved.add(message);
+            }
+            catch (RuntimeException e) {
+                message.acknowledge("AE", e.getMessage());
+            }
+        }
+
+        if (resolved.isEmpty()) {
+            return;
+        }
+
+        List<RadiologySaveResult<RadiologyReport>> results;
+        try {
+            // we aren't within a transaction, so once this returns the reports have been committed
+            results = radiologyService.saveRadiologyReports(reports);
+        }
+        catch (RuntimeException e) {
+            if (resolved.size() > 1) {
+                // the whole batch was rolled back; save the messages one by one to find the one that failed
+                for (ParsedMessage message : resolved) {
+                    clearSession();
+                    persist(Collections.singletonList(message));
+                }
+            }
+            else {
+                log.error("Error saving HL7 message " + resolved.get(0).message.getMessageControlId(), e);
+                resolved.get(0).acknowledge("AE", e.getMessage());
+            }
+            return;
+        }
+
+        for (ParsedMessage message : resolved) {
+            String error = null;
+            for (int i = message.firstReport; i < message.firstReport + message.reports.size(); i++) {
+                if (!results.get(i).isSaved()) {
+                    error = results.get(i).getMessage();
+                }
+            }
+            message.acknowledge(error == null ? "AA" : "AE", error);
+        }
+    }
+
+    /**
+     * Resolves the identifiers and codes of a report; the patient, and the procedure if the message doesn't specify
+     * one we know, are taken from the radiology order with the report's accession number if there is one
+     */
+    private RadiologyReport toRadiologyReport(Hl7RadiologyReport hl7Report) {
+
+        RadiologyReport report = new RadiologyReport();
+        report.setOrderNumber(hl7Report.getAccessionNumber());
+        report.setReportDate(hl7Report.getReportDate());
+        report.setReportBody(hl7Report.getReportBody());
+        report.setReportType(getReportType(hl7Report.getResultStatus()));
+
+        RadiologyOrder order = radiologyService.getRadiologyOrderByOrderNumber(hl7Report.getAccessionNumber());
+        report.setAssociatedRadiologyOrder(order);
+        report.setPatient(order != null ? order.getPatient() : getPatient(hl7Report.getPatientIdentifier()));
+
+        Concept procedure = null;
+        if (hl7Report.getProcedureCode() != null && hl7Report.getProcedureCodingSystem() != null) {
+            procedure = conceptService.getConceptByMapping(hl7Report.getProcedureCode(), hl7Report.getProcedureCodingSystem());
+        }
+        if (procedure == null && order != null) {
+            procedure = order.getConcept();
+        }
+        report.setProcedure(procedure);
+
+        if (hl7Report.getInterpreterIdentifier() != null) {
+            report.setPrincipalResultsInterpreter(providerService.getProviderByIdentifier(hl7Report.getInterpreterIdentifier()));
+        }
+        return report;
+    }
+
+    private Concept getReportType(String resultStatus) {
+        String code;
+        if ("P".equals(resultStatus)) {
+            code = RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_PRELIM;
+        }
+        else if ("F".equals(resultStatus)) {
+            code = RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_FINAL;
+        }
+        else if ("C".equals(resultStatus)) {
+            code = RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_CORRECTION;
+        }
+        else {
+            throw new RadiologyAPIException("Unsupported result status (OBR-25): " + resultStatus);
+        }
+        Concept reportType = conceptService.getConceptByMapping(code, EmrApiConstants.EMR_CONCEPT_SOURCE_NAME);
+        if (reportType == null) {
+            throw new RadiologyAPIException("No concept mapped to " + code);
+        }
+        return reportType;
+    }
+
+    private Patient getPatient(String identifier) {
+        if (StringUtils.isBlank(identifier)) {
+            throw new RadiologyAPIException("No patient identifier (PID-3) and no radiology order to find the patient by");
+        }
+        Set<Patient> patients = new HashSet<Patient>();
+        for (PatientIdentifier patientIdentifier : patientService.getPatientIdentifiers(identifier, null, null, null, null)) {
+            if (!patientIdentifier.isVoided() && !patientIdentifier.getPatient().isVoided()) {
+                patients.add(patientIdentifier.getPatient());
+            }
+        }
+        if (patients.size() != 1) {
+            throw new RadiologyAPIException((patients.isEmpty() ? "No patient" : "More than one patient")
+                    + " with identifier " + identifier);
+        }
+        return patients.iterator().next();
+    }
+
+    private static ThreadFactory threadFactory(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        }
+        catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * A connection from an HL7 sender; acknowledgments may be sent from any thread
+     */
+    private static class Connection {
+
+        private final Socket socket;
+
+        private Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        private void send(String ack) {
+            synchronized (this) {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    Mllp.writeMessage(out, ack);
+                }
+                catch (SocketException e) {
+                    // the sender has gone away, and will resend the message
+                }
+                catch (IOException e) {
+                    log.warn("Error sending HL7 acknowledgment to " + socket.getRemoteSocketAddress(), e);
+                }
+            }
+        }
+    }
+
+    private static class ParsedMessage {
+
+        private final Connection connection;
+
+        private final Hl7Message message;
+
+        private final List<Hl7RadiologyReport> reports;
+
+        // the index of the message's first report within its batch
+        private int firstReport;
+
+        private ParsedMessage(Connection connection, Hl7Message message, List<Hl7RadiologyReport> reports) {
+            this.connection = connection;
+            this.message = message;
+            this.reports = reports;
+        }
+
+        private void acknowledge(String acknowledgmentCode, String text) {
+            connection.send(message.buildAck(acknowledgmentCode, text));
+        }
+    }
+
+}
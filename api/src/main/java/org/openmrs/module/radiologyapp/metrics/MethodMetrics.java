@@ -0,0 +1,198 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Call count, error count, latency histogram and result sizes of one service method.
+ * <p>
+ * Everything is kept in {@link LongAdder}s and {@link LongAccumulator}s, so recording a call never blocks, however
+ * many threads call the method at once. A snapshot is therefore not taken atomically, and its figures may be off by
+ * the calls that complete while it is being taken.
+ */
+public class MethodMetrics {
+
+    /**
+     * Upper bounds (inclusive, in milliseconds) of the latency buckets; slower calls go into a final overflow bucket
+     */
+    static final long[] BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS_MILLIS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS_MILLIS[i]);
+        }
+    }
+
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    };
+
+    private final String name;
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(MAX, 0);
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+
+    private final LongAdder sizedResults = new LongAdder();
+
+    private final LongAdder totalResultSize = new LongAdder();
+
+    private final LongAccumulator maxResultSize = new LongAccumulator(MAX, 0);
+
+    public MethodMetrics(String name) {
+        this.name = name;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param nanos how long the call took
+     * @param failed whether the call threw an exception (or its transaction was rolled back)
+     * @param resultSize the number of items the call returned, or null if it didn't return a collection
+     */
+    public void record(long nanos, boolean failed, Integer resultSize) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        buckets[getBucket(nanos)].increment();
+
+        if (resultSize != null) {
+            sizedResults.increment();
+            totalResultSize.add(resultSize);
+            maxResultSize.accumulate(resultSize);
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return the current figures, keyed by name, ready to be serialized as JSON
+     */
+    public Map<String, Object> getSnapshot() {
+
+        long[] counts = new long[buckets.length];
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+        snapshot.put("method", name);
+        snapshot.put("calls", calls.sum());
+        snapshot.put("errors", errors.sum());
+        snapshot.put("meanMillis", count > 0 ? toMillis(totalNanos.sum()) / count : 0.0);
+        snapshot.put("maxMillis", toMillis(maxNanos.get()));
+        snapshot.put("p50Millis", getPercentileMillis(counts, count, 0.50));
+        snapshot.put("p95Millis", getPercentileMillis(counts, count, 0.95));
+        snapshot.put("p99Millis", getPercentileMillis(counts, count, 0.99));
+
+        List<Map<String, Object>> histogram = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < counts.length; i++) {
+            Map<String, Object> bucket = new LinkedHashMap<String, Object>();
+            bucket.put("upToMillis", i < BUCKET_BOUNDS_MILLIS.length ? BUCKET_BOUNDS_MILLIS[i] : null);
+            bucket.put("count", counts[i]);
+            histogram.add(bucket);
+        }
+        snapshot.put("histogram", histogram);
+
+        long sized = sizedResults.sum();
+        snapshot.put("meanResultSize", sized > 0 ? (double) totalResultSize.sum() / sized : null);
+        snapshot.put("maxResultSize", sized > 0 ? maxResultSize.get() : null);
+        return snapshot;
+    }
+
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        sizedResults.reset();
+        totalResultSize.reset();
+        maxResultSize.reset();
+    }
+
+    static int getBucket(long nanos) {
+        for (int i = 0; i < BUCKET_BOUNDS_NANOS.length; i++) {
+            if (nanos <= BUCKET_BOUNDS_NANOS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_NANOS.length;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket it falls into (or the maximum, if that is lower or the
+     * percentile falls into the overflow bucket)
+     */
+    private Double getPercentileMillis(long[] counts, long count, double percentile) {
+        if (count == 0) {
+            return null;
+        }
+        double max = toMillis(maxNanos.get());
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_MILLIS[i], max);
+            }
+        }
+        return max;
+    }
+
+    private double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Times every call to the radiology service and keeps {@link MethodMetrics} for each of its methods.
+ * <p>
+ * This is one of the post-interceptors of the radiologyService bean, so it runs inside the transaction. When the call
+ * started the transaction, the call is only recorded once the transaction completes, so that its time includes the
+ * flush and commit, and a rollback counts as an error.
+ */
+public class RadiologyServiceMetrics implements MethodInterceptor {
+
+    private final ConcurrentMap<Method, MethodMetrics> metricsByMethod = new ConcurrentHashMap<Method, MethodMetrics>();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+
+        final MethodMetrics metrics = getMethodMetrics(invocation.getMethod());
+        final long start = System.nanoTime();
+
+        final Object result;
+        try {
+            result = invocation.proceed();
+        }
+        catch (Throwable t) {
+            metrics.record(System.nanoTime() - start, true, null);
+            throw t;
+        }
+
+        final Integer resultSize = getResultSize(result);
+        if (isNewTransaction()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(int status) {
+                    metrics.record(System.nanoTime() - start, status != TransactionSynchronization.STATUS_COMMITTED,
+                            resultSize);
+                }
+            });
+        }
+        else {
+            metrics.record(System.nanoTime() - start, false, resultSize);
+        }
+        return result;
+    }
+
+    /**
+     * @return a snapshot of the metrics of each method that has been called, ordered by method
+     */
+    public List<Map<String, Object>> getSnapshot() {
+        List<MethodMetrics> methodMetrics = new ArrayList<MethodMetrics>(metricsByMethod.values());
+        Collections.sort(methodMetrics, new Comparator<MethodMetrics>() {
+
+            @Override
+            public int compare(MethodMetrics left, MethodMetrics right) {
+                return left.getName().compareTo(right.getName());
+            }
+        });
+
+        List<Map<String, Object>> snapshot = new ArrayList<Map<String, Object>>();
+        for (MethodMetrics metrics : methodMetrics) {
+            snapshot.add(metrics.getSnapshot());
+        }
+        return snapshot;
+    }
+
+    public void reset() {
+        for (MethodMetrics metrics : metricsByMethod.values()) {
+            metrics.reset();
+        }
+    }
+
+    MethodMetrics getMethodMetrics(Method method) {
+        MethodMetrics metrics = metricsByMethod.get(method);
+        if (metrics == null) {
+            // on a method's first call, several threads may get here at once; they all end up with the same metrics
+            MethodMetrics created = new MethodMetrics(getName(method));
+            metrics = metricsByMethod.putIfAbsent(method, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    private String getName(Method method) {
+        StringBuilder name = new StringBuilder(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            name.append(i > 0 ? ", " : "").append(parameterTypes[i].getSimpleName());
+        }
+        return name.append(')').toString();
+    }
+
+    private Integer getResultSize(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        else if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        }
+        return null;
+    }
+
+    private boolean isNewTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        try {
+            return TransactionAspectSupport.currentTransactionStatus().isNewTransaction();
+        }
+        catch (NoTransactionException e) {
+            return false;
+        }
+    }
+
+}
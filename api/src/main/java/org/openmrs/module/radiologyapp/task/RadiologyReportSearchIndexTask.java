@@ -0,0 +1,49 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.task;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * Rebuilds the full text index of the radiology reports. It is registered with the scheduler (but not started) by
+ * liquibase.xml; run it after {@link RadiologyStudyTablesBackfillTask}, or e.g. nightly to drop voided reports from
+ * the index.
+ */
+public class RadiologyReportSearchIndexTask extends AbstractTask {
+
+    private static final Log log = LogFactory.getLog(RadiologyReportSearchIndexTask.class);
+
+    @Override
+    public void execute() {
+        if (isExecuting) {
+            return;
+        }
+        startExecuting();
+        try {
+            long start = System.currentTimeMillis();
+            Context.getService(RadiologyService.class).rebuildRadiologyReportSearchIndex();
+            log.info("Rebuilt the radiology report search index in " + (System.currentTimeMillis() - start) + " ms");
+        }
+        finally {
+            stopExecuting();
+        }
+    }
+
+}
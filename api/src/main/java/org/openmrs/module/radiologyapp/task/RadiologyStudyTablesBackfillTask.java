@@ -0,0 +1,64 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.task;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * Copies the radiology studies and reports saved before the emr_radiology_study and emr_radiology_report tables
+ * existed into them, batch by batch, until there are none left. It is registered with the scheduler (but not
+ * started) by liquibase.xml; once it has run, radiologyapp.readFromStudyTables can be switched on.
+ */
+public class RadiologyStudyTablesBackfillTask extends AbstractTask {
+
+    private static final Log log = LogFactory.getLog(RadiologyStudyTablesBackfillTask.class);
+
+    @Override
+    public void execute() {
+        if (isExecuting) {
+            return;
+        }
+        startExecuting();
+        try {
+            RadiologyService radiologyService = Context.getService(RadiologyService.class);
+            int total = 0;
+            int copied;
+            do {
+                // each batch is its own transaction, so an interrupted backfill resumes where it left off
+                copied = radiologyService.backfillRadiologyStudyTables();
+                total += copied;
+                Context.clearSession();
+            }
+            while (copied > 0 && isExecuting);
+            log.info("Copied " + total + " radiology studies and reports into the radiology study tables");
+        }
+        finally {
+            stopExecuting();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        // lets the current batch finish, and then stops
+        stopExecuting();
+        super.shutdown();
+    }
+
+}
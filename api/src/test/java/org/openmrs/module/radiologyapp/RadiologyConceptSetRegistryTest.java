@@ -0,0 +1,137 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.radiologyapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptMapType;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.api.ConceptService;
+import org.openmrs.module.emrapi.EmrApiConstants;
+import org.openmrs.module.radiologyapp.cluster.RadiologyChangePoller;
+import org.openmrs.module.radiologyapp.db.RadiologyMetadataInterceptor;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RadiologyConceptSetRegistryTest extends BaseConceptSetTest {
+
+    private ConceptService conceptService;
+
+    private Concept procedureConcept;
+
+    private RadiologyConceptSetRegistry registry;
+
+    private RadiologyMetadataInterceptor interceptor;
+
+    @Before
+    public void setup() throws Exception {
+
+        conceptService = mock(ConceptService.class);
+
+        sameAs = new ConceptMapType();
+        emrConceptSource = new ConceptSource();
+        emrConceptSource.setName(EmrApiConstants.EMR_CONCEPT_SOURCE_NAME);
+
+        setupConcept(conceptService, "Radiology Study Set", RadiologyConstants.CONCEPT_CODE_RADIOLOGY_STUDY_SET).setConceptId(1);
+        setupConcept(conceptService, "order Number", RadiologyConstants.CONCEPT_CODE_RADIOLOGY_ORDER_NUMBER).setConceptId(2);
+        setupConcept(conceptService, "Images Available", RadiologyConstants.CONCEPT_CODE_RADIOLOGY_IMAGES_AVAILABLE).setConceptId(3);
+        procedureConcept = setupConcept(conceptService, "Procedure", RadiologyConstants.CONCEPT_CODE_RADIOLOGY_PROCEDURE);
+        procedureConcept.setConceptId(4);
+        setupConcept(conceptService, "Radiology Report Set", RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_SET).setConceptId(5);
+        setupConcept(conceptService, "Report Body", RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_BODY).setConceptId(6);
+        setupConcept(conceptService, "Report Type", RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_TYPE).setConceptId(7);
+
+        registry = new RadiologyConceptSetRegistry();
+        registry.setConceptService(conceptService);
+
+        interceptor = new RadiologyMetadataInterceptor();
+        interceptor.setConceptSetRegistry(registry);
+        interceptor.setOrderablesCatalog(new RadiologyOrderablesCatalog());
+        interceptor.setRadiologyChangePoller(new RadiologyChangePoller());
+    }
+
+    @Test
+    public void shouldResolveConceptSetsOnlyOnce() {
+
+        RadiologyStudyConceptSet studyConceptSet = registry.getRadiologyStudyConceptSet();
+        RadiologyReportConceptSet reportConceptSet = registry.getRadiologyReportConceptSet();
+
+        assertThat(registry.getRadiologyStudyConceptSet(), is(sameInstance(studyConceptSet)));
+        assertThat(registry.getRadiologyReportConceptSet(), is(sameInstance(reportConceptSet)));
+        assertThat(studyConceptSet.getProcedureConcept(), is(procedureConcept));
+        verify(conceptService, times(1)).getConceptByMapping(RadiologyConstants.CONCEPT_CODE_RADIOLOGY_STUDY_SET,
+                EmrApiConstants.EMR_CONCEPT_SOURCE_NAME);
+    }
+
+    @Test
+    public void shouldResolveConceptSetsAgainAfterInvalidation() {
+
+        RadiologyStudyConceptSet studyConceptSet = registry.getRadiologyStudyConceptSet();
+        registry.invalidate();
+
+        assertThat(registry.getRadiologyStudyConceptSet(), is(not(sameInstance(studyConceptSet))));
+        verify(conceptService, times(2)).getConceptByMapping(RadiologyConstants.CONCEPT_CODE_RADIOLOGY_STUDY_SET,
+                EmrApiConstants.EMR_CONCEPT_SOURCE_NAME);
+    }
+
+    @Test
+    public void shouldInvalidateWhenReferencedConceptChangesOnceTransactionCompletes() {
+
+        RadiologyStudyConceptSet studyConceptSet = registry.getRadiologyStudyConceptSet();
+
+        interceptor.onFlushDirty(procedureConcept, 4, null, null, null, null);
+        assertThat(registry.getRadiologyStudyConceptSet(), is(sameInstance(studyConceptSet)));
+
+        interceptor.afterTransactionCompletion(null);
+        assertThat(registry.getRadiologyStudyConceptSet(), is(not(sameInstance(studyConceptSet))));
+    }
+
+    @Test
+    public void shouldInvalidateWhenMappingToReferencedCodeIsAdded() {
+
+        RadiologyStudyConceptSet studyConceptSet = registry.getRadiologyStudyConceptSet();
+
+        Concept otherConcept = new Concept(100);
+        ConceptMap conceptMap = new ConceptMap(new ConceptReferenceTerm(emrConceptSource,
+                RadiologyConstants.CONCEPT_CODE_RADIOLOGY_PROCEDURE, null), sameAs);
+        conceptMap.setConcept(otherConcept);
+
+        interceptor.onSave(conceptMap, null, null, null, null);
+        interceptor.afterTransactionCompletion(null);
+
+        assertThat(registry.getRadiologyStudyConceptSet(), is(not(sameInstance(studyConceptSet))));
+    }
+
+    @Test
+    public void shouldNotInvalidateWhenUnrelatedConceptChanges() {
+
+        RadiologyStudyConceptSet studyConceptSet = registry.getRadiologyStudyConceptSet();
+
+        interceptor.onFlushDirty(new Concept(100), 100, null, null, null, null);
+        interceptor.afterTransactionCompletion(null);
+
+        assertThat(registry.getRadiologyStudyConceptSet(), is(sameInstance(studyConceptSet)));
+    }
+
+}
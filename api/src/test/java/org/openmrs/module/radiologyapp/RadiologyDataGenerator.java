@@ -0,0 +1,431 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.openmrs.Concept;
+import org.openmrs.api.context.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Generates a synthetic radiology history at any scale, writing it straight into the database with batched JDBC
+ * (going through the service would take hours for e.g. a million obs).
+ * <p>
+ * The data is laid out like the service would save it, using the encounter types, encounter roles, order type, care
+ * setting, concepts etc. that are configured for the module (e.g. by radiologyServiceComponentTestDataset.xml), and
+ * is indexed in emr_radiology_accession and copied into emr_radiology_study and emr_radiology_report. The orders are spread evenly over the patients, the studies evenly over the
+ * orders, the reports on studied orders evenly over the studies (several reports for the same study are successive
+ * versions of the report), and the orphaned reports evenly over the orders without a study. Orders that end up with
+ * neither a study nor a report are unfulfilled.
+ * <p>
+ * As the rows bypass Hibernate, callers should clear the session once the data is generated, and rebuild the report
+ * search index if they search the generated reports.
+ */
+public class RadiologyDataGenerator {
+
+    private static final int STUDY_OBS = 4;
+
+    private static final int REPORT_OBS = 5;
+
+    private final RadiologyProperties radiologyProperties;
+
+    private final RadiologyConceptSetRegistry conceptSetRegistry;
+
+    private int patients = 1;
+
+    private int orders;
+
+    private int studies;
+
+    private int reports;
+
+    private int orphanedReports;
+
+    private int batchSize = 1000;
+
+    private Concept procedure;
+
+    private Concept reportType;
+
+    public RadiologyDataGenerator(RadiologyProperties radiologyProperties, RadiologyConceptSetRegistry conceptSetRegistry) {
+        this.radiologyProperties = radiologyProperties;
+        this.conceptSetRegistry = conceptSetRegistry;
+    }
+
+    /**
+     * @return the number of obs that the current settings generate
+     */
+    public long getObsCount() {
+        return (long) studies * STUDY_OBS + (long) reports * REPORT_OBS;
+    }
+
+    public RadiologyDataGenerator setPatients(int patients) {
+        this.patients = patients;
+        return this;
+    }
+
+    public RadiologyDataGenerator setOrders(int orders) {
+        this.orders = orders;
+        return this;
+    }
+
+    public RadiologyDataGenerator setStudies(int studies) {
+        this.studies = studies;
+        return this;
+    }
+
+    /**
+     * @param reports the total number of reports, including the orphaned ones
+     */
+    public RadiologyDataGenerator setReports(int reports) {
+        this.reports = reports;
+        return this;
+    }
+
+    /**
+     * @param orphanedReports how many of the reports are for orders that have no study
+     */
+    public RadiologyDataGenerator setOrphanedReports(int orphanedReports) {
+        this.orphanedReports = orphanedReports;
+        return this;
+    }
+
+    public RadiologyDataGenerator setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param procedure the procedure that is ordered, studied and reported on
+     */
+    public RadiologyDataGenerator setProcedure(Concept procedure) {
+        this.procedure = procedure;
+        return this;
+    }
+
+    /**
+     * @param reportType the type of all the reports
+     */
+    public RadiologyDataGenerator setReportType(Concept reportType) {
+        this.reportType = reportType;
+        return this;
+    }
+
+    /**
+     * Generates the data using the given connection; committing is up to the caller
+     */
+    public GeneratedData generate(Connection connection) throws SQLException {
+
+        if (patients < 1 || studies > orders || orphanedReports > reports
+                || (reports > orphanedReports && studies == 0) || (orphanedReports > 0 && studies == orders)) {
+            throw new IllegalArgumentException("Can't generate " + orders + " orders, " + studies + " studies and "
+                    + reports + " reports (" + orphanedReports + " orphaned) for " + patients + " patients");
+        }
+        if (procedure == null || reportType == null) {
+            throw new IllegalArgumentException("A procedure and report type must be set");
+        }
+
+        Writer writer = new Writer(connection);
+        try {
+            return writer.write();
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Spreads total items as evenly as possible over slots, returning how many go into the given slot
+     */
+    private static int spread(int slot, int slots, int total) {
+        return (int) ((long) (slot + 1) * total / slots - (long) slot * total / slots);
+    }
+
+    public static class GeneratedData {
+
+        private final List<Integer> patientIds = new ArrayList<Integer>();
+
+        private final List<String> studyOrderNumbers = new ArrayList<String>();
+
+        private final List<String> orphanedReportOrderNumbers = new ArrayList<String>();
+
+        private final List<String> unfulfilledOrderNumbers = new ArrayList<String>();
+
+        private long obsCount;
+
+        public List<Integer> getPatientIds() {
+            return patientIds;
+        }
+
+        public List<String> getStudyOrderNumbers() {
+            return studyOrderNumbers;
+        }
+
+        public List<String> getOrphanedReportOrderNumbers() {
+            return orphanedReportOrderNumbers;
+        }
+
+        public List<String> getUnfulfilledOrderNumbers() {
+            return unfulfilledOrderNumbers;
+        }
+
+        public long getObsCount() {
+            return obsCount;
+        }
+    }
+
+    private class Writer {
+
+        private final Connection connection;
+
+        // in foreign key order, as the batches are executed in this order
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>();
+
+        private int pendingRows = 0;
+
+        private final Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        private int nextPersonId;
+
+        private int nextPersonNameId;
+
+        private int nextEncounterId;
+
+        private int nextEncounterProviderId;
+
+        private int nextOrderId;
+
+        private int nextObsId;
+
+        private final int unknownLocationId = radiologyProperties.getUnknownLocation().getLocationId();
+
+        private final int unknownProviderId = radiologyProperties.getUnknownProvider().getProviderId();
+
+        private final RadiologyStudyConceptSet studyConceptSet = conceptSetRegistry.getRadiologyStudyConceptSet();
+
+        private final RadiologyReportConceptSet reportConceptSet = conceptSetRegistry.getRadiologyReportConceptSet();
+
+        private Writer(Connection connection) throws SQLException {
+            this.connection = connection;
+
+            prepare("person", "insert into person (person_id, gender, birthdate, birthdate_estimated, dead, "
+                    + "deathdate_estimated, creator, date_created, voided, uuid) values (?, 'F', ?, false, false, false, 1, ?, false, ?)");
+            prepare("person_name", "insert into person_name (person_name_id, person_id, preferred, given_name, family_name, "
+                    + "creator, date_created, voided, uuid) values (?, ?, true, 'Radiology', ?, 1, ?, false, ?)");
+            prepare("patient", "insert into patient (patient_id, allergy_status, creator, date_created, voided) "
+                    + "values (?, 'Unknown', 1, ?, false)");
+            prepare("encounter", "insert into encounter (encounter_id, encounter_type, patient_id, location_id, "
+                    + "encounter_datetime, creator, date_created, voided, uuid) values (?, ?, ?, ?, ?, 1, ?, false, ?)");
+            prepare("encounter_provider", "insert into encounter_provider (encounter_provider_id, encounter_id, provider_id, "
+                    + "encounter_role_id, creator, date_created, voided, uuid) values (?, ?, ?, ?, 1, ?, false, ?)");
+            prepare("orders", "insert into orders (order_id, order_number, order_type_id, concept_id, orderer, encounter_id, "
+                    + "patient_id, care_setting, urgency, order_action, date_activated, auto_expire_date, creator, "
+                    + "date_created, voided, uuid) values (?, ?, ?, ?, ?, ?, ?, ?, 'ROUTINE', 'NEW', ?, ?, 1, ?, false, ?)");
+            prepare("test_order", "insert into test_order (order_id) values (?)");
+            prepare("emr_radiology_order", "insert into emr_radiology_order (order_id) values (?)");
+            prepare("obs", "insert into obs (obs_id, person_id, concept_id, encounter_id, order_id, obs_datetime, "
+                    + "location_id, obs_group_id, value_text, value_coded, status, creator, date_created, voided, uuid) "
+                    + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'FINAL', 1, ?, false, ?)");
+            prepare("emr_radiology_accession", "insert into emr_radiology_accession (accession_number, "
+                    + "study_accession_number, kind, encounter_id, patient_id, accession_date) values (?, ?, ?, ?, ?, ?)");
+            prepare("emr_radiology_study", "insert into emr_radiology_study (encounter_id, patient_id, accession_number, "
+                    + "procedure_concept_id, date_performed, location_id, technician_provider_id, images_available) "
+                    + "values (?, ?, ?, ?, ?, ?, ?, true)");
+            prepare("emr_radiology_report", "insert into emr_radiology_report (encounter_id, patient_id, accession_number, "
+                    + "procedure_concept_id, report_type_concept_id, report_body, report_date, location_id, "
+                    + "principal_results_interpreter_provider_id) values (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+            nextPersonId = nextId("person", "person_id");
+            nextPersonNameId = nextId("person_name", "person_name_id");
+            nextEncounterId = nextId("encounter", "encounter_id");
+            nextEncounterProviderId = nextId("encounter_provider", "encounter_provider_id");
+            nextOrderId = nextId("orders", "order_id");
+            nextObsId = nextId("obs", "obs_id");
+        }
+
+        private GeneratedData write() throws SQLException {
+
+            GeneratedData data = new GeneratedData();
+
+            for (int i = 0; i < patients; i++) {
+                data.patientIds.add(addPatient(i));
+            }
+
+            // one order a minute, ending a day ago
+            long start = System.currentTimeMillis() - 24L * 60 * 60 * 1000 - (long) orders * 60 * 1000;
+
+            int studied = 0;
+            int unstudied = 0;
+
+            for (int i = 0; i < orders; i++) {
+
+                int patientId = data.patientIds.get(i % patients);
+                Timestamp orderDate = new Timestamp(start + (long) i * 60 * 1000);
+
+                int orderId = nextOrderId++;
+                String orderNumber = "GEN-" + orderId;
+                addOrder(orderId, orderNumber, patientId, orderDate);
+
+                int reportVersions;
+                if (spread(i, orders, studies) > 0) {
+                    addStudy(orderId, orderNumber, patientId, new Timestamp(orderDate.getTime() + 10 * 1000));
+                    reportVersions = spread(studied++, studies, reports - orphanedReports);
+                    data.studyOrderNumbers.add(orderNumber);
+                }
+                else {
+                    reportVersions = spread(unstudied++, orders - studies, orphanedReports);
+                    (reportVersions > 0 ? data.orphanedReportOrderNumbers : data.unfulfilledOrderNumbers).add(orderNumber);
+                }
+
+                for (int version = 0; version < reportVersions; version++) {
+                    addReport(orderId, orderNumber, patientId, version,
+                            new Timestamp(orderDate.getTime() + (20 + version) * 1000));
+                }
+            }
+
+            executeBatches();
+            data.obsCount = getObsCount();
+            return data;
+        }
+
+        private int addPatient(int index) throws SQLException {
+            int personId = nextPersonId++;
+            add("person", personId, new Timestamp(0), now, uuid());
+            add("person_name", nextPersonNameId++, personId, "Patient " + index, now, uuid());
+            add("patient", personId, now);
+            return personId;
+        }
+
+        private void addOrder(int orderId, String orderNumber, int patientId, Timestamp date) throws SQLException {
+            int encounterId = addEncounter(radiologyProperties.getRadiologyOrderEncounterType().getEncounterTypeId(),
+                    patientId, date, radiologyProperties.getOrderingProviderEncounterRole().getEncounterRoleId());
+            add("orders", orderId, orderNumber, radiologyProperties.getRadiologyTestOrderType().getOrderTypeId(),
+                    procedure.getConceptId(), unknownProviderId, encounterId, patientId,
+                    radiologyProperties.getRadiologyCareSetting().getCareSettingId(), date, date, now, uuid());
+            add("test_order", orderId);
+            add("emr_radiology_order", orderId);
+        }
+
+        private void addStudy(int orderId, String orderNumber, int patientId, Timestamp date) throws SQLException {
+            int encounterId = addEncounter(radiologyProperties.getRadiologyStudyEncounterType().getEncounterTypeId(),
+                    patientId, date, radiologyProperties.getRadiologyTechnicianEncounterRole().getEncounterRoleId());
+
+            int obsGroupId = addObs(patientId, studyConceptSet.getRadiologyStudySetConcept(), encounterId, orderId, date,
+                    null, null, null);
+            addObs(patientId, studyConceptSet.getOrderNumberConcept(), encounterId, orderId, date, obsGroupId, orderNumber, null);
+            addObs(patientId, studyConceptSet.getImagesAvailableConcept(), encounterId, orderId, date, obsGroupId, null,
+                    Context.getConceptService().getTrueConcept());
+            addObs(patientId, studyConceptSet.getProcedureConcept(), encounterId, orderId, date, obsGroupId, null, procedure);
+
+            add("emr_radiology_accession", orderNumber, orderNumber, RadiologyAccession.Kind.STUDY.name(), encounterId,
+                    patientId, date);
+            add("emr_radiology_study", encounterId, patientId, orderNumber, procedure.getConceptId(), date,
+                    unknownLocationId, unknownProviderId);
+        }
+
+        private void addReport(int orderId, String orderNumber, int patientId, int version, Timestamp date)
+                throws SQLException {
+            int encounterId = addEncounter(radiologyProperties.getRadiologyReportEncounterType().getEncounterTypeId(),
+                    patientId, date, radiologyProperties.getPrincipalResultsInterpreterEncounterRole().getEncounterRoleId());
+
+            int obsGroupId = addObs(patientId, reportConceptSet.getRadiologyReportSetConcept(), encounterId, orderId, date,
+                    null, null, null);
+            addObs(patientId, reportConceptSet.getOrderNumberConcept(), encounterId, orderId, date, obsGroupId, orderNumber, null);
+            String reportBody = "Report version " + (version + 1) + " for " + orderNumber
+                    + ": no acute cardiopulmonary process.";
+            addObs(patientId, reportConceptSet.getReportBodyConcept(), encounterId, orderId, date, obsGroupId, reportBody,
+                    null);
+            addObs(patientId, reportConceptSet.getReportTypeConcept(), encounterId, orderId, date, obsGroupId, null, reportType);
+            addObs(patientId, reportConceptSet.getProcedureConcept(), encounterId, orderId, date, obsGroupId, null, procedure);
+
+            add("emr_radiology_accession", orderNumber, null, RadiologyAccession.Kind.REPORT.name(), encounterId,
+                    patientId, date);
+            add("emr_radiology_report", encounterId, patientId, orderNumber, procedure.getConceptId(),
+                    reportType.getConceptId(), reportBody, date, unknownLocationId, unknownProviderId);
+        }
+
+        private int addEncounter(int encounterTypeId, int patientId, Timestamp date, int encounterRoleId)
+                throws SQLException {
+            int encounterId = nextEncounterId++;
+            add("encounter", encounterId, encounterTypeId, patientId, unknownLocationId, date, now, uuid());
+            add("encounter_provider", nextEncounterProviderId++, encounterId, unknownProviderId, encounterRoleId, now, uuid());
+            return encounterId;
+        }
+
+        private int addObs(int patientId, Concept concept, int encounterId, int orderId, Timestamp date, Integer obsGroupId,
+                           String valueText, Concept valueCoded) throws SQLException {
+            int obsId = nextObsId++;
+            add("obs", obsId, patientId, concept.getConceptId(), encounterId, orderId, date, unknownLocationId, obsGroupId,
+                    valueText, valueCoded != null ? valueCoded.getConceptId() : null, now, uuid());
+            return obsId;
+        }
+
+        private void prepare(String table, String sql) throws SQLException {
+            statements.put(table, connection.prepareStatement(sql));
+        }
+
+        private int nextId(String table, String column) throws SQLException {
+            Statement statement = connection.createStatement();
+            try {
+                ResultSet resultSet = statement.executeQuery("select max(" + column + ") from " + table);
+                return resultSet.next() ? resultSet.getInt(1) + 1 : 1;
+            }
+            finally {
+                statement.close();
+            }
+        }
+
+        private void add(String table, Object... values) throws SQLException {
+            PreparedStatement statement = statements.get(table);
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(i + 1, values[i]);
+            }
+            statement.addBatch();
+            if (++pendingRows >= batchSize) {
+                executeBatches();
+            }
+        }
+
+        // all tables are flushed together, in foreign key order, so that no row is inserted before the rows it refers to
+        private void executeBatches() throws SQLException {
+            for (PreparedStatement statement : statements.values()) {
+                statement.executeBatch();
+            }
+            pendingRows = 0;
+        }
+
+        private void close() throws SQLException {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+        }
+
+        private String uuid() {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Order;
+import org.openmrs.Patient;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.PatientService;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+public class RadiologyDataGeneratorComponentTest extends BaseModuleContextSensitiveTest {
+
+    @Autowired
+    @Qualifier("radiologyService")
+    private RadiologyService radiologyService;
+
+    @Autowired
+    @Qualifier("patientService")
+    private PatientService patientService;
+
+    @Autowired
+    @Qualifier("conceptService")
+    private ConceptService conceptService;
+
+    @Autowired
+    @Qualifier("adminService")
+    private AdministrationService administrationService;
+
+    @Autowired
+    @Qualifier("radiologyProperties")
+    private RadiologyProperties radiologyProperties;
+
+    @Autowired
+    @Qualifier("radiologyConceptSetRegistry")
+    private RadiologyConceptSetRegistry conceptSetRegistry;
+
+    @Before
+    public void beforeAllTests() throws Exception {
+        executeDataSet("radiologyServiceComponentTestDataset.xml");
+        radiologyProperties.refresh();
+    }
+
+    @Test
+    public void generate_shouldGenerateDataThatTheServiceCanRead() throws Exception {
+
+        // odd orders go to the second patient and are all studied, one of them with two report versions; of the
+        // even orders of the first patient, two only have an (orphaned) report and two are unfulfilled
+        RadiologyDataGenerator generator = new RadiologyDataGenerator(radiologyProperties, conceptSetRegistry)
+                .setPatients(2)
+                .setOrders(8)
+                .setStudies(4)
+                .setReports(7)
+                .setOrphanedReports(2)
+                .setBatchSize(10)
+                .setProcedure(conceptService.getConcept(18))
+                .setReportType(conceptService.getConcept(1009));
+
+        Context.flushSession();
+        RadiologyDataGenerator.GeneratedData data = generator.generate(getConnection());
+        Context.clearSession();
+
+        assertThat(data.getObsCount(), is(4L * 4 + 7L * 5));
+        assertThat(data.getStudyOrderNumbers().size(), is(4));
+        assertThat(data.getOrphanedReportOrderNumbers().size(), is(2));
+        assertThat(data.getUnfulfilledOrderNumbers().size(), is(2));
+
+        Patient withoutStudies = patientService.getPatient(data.getPatientIds().get(0));
+        Patient withStudies = patientService.getPatient(data.getPatientIds().get(1));
+
+        assertThat(radiologyService.getRadiologyStudyCountForPatient(withStudies), is(4L));
+        assertThat(radiologyService.getRadiologyStudiesForPatient(withStudies).size(), is(4));
+        assertThat(radiologyService.getRadiologyStudyCountForPatient(withoutStudies), is(2L));
+        assertNull(radiologyService.getUnfulfilledRadiologyOrdersForPatient(withStudies));
+
+        List<Order> unfulfilledOrders = radiologyService.getUnfulfilledRadiologyOrdersForPatient(withoutStudies);
+        assertThat(unfulfilledOrders.size(), is(2));
+
+        String lastStudyOrderNumber = data.getStudyOrderNumbers().get(3);
+        assertThat(radiologyService.getRadiologyOrderByOrderNumber(lastStudyOrderNumber), is(notNullValue()));
+        assertThat(radiologyService.getRadiologyReportsByOrderNumber(lastStudyOrderNumber).size(), is(2));
+        assertThat(radiologyService.getRadiologyStudyByOrderNumber(lastStudyOrderNumber).getImagesAvailable(), is(true));
+
+        administrationService.setGlobalProperty(RadiologyConstants.GP_READ_FROM_STUDY_TABLES, "true");
+        radiologyProperties.refresh();
+
+        assertThat(radiologyService.getRadiologyStudiesForPatient(withStudies).size(), is(4));
+        assertThat(radiologyService.getRadiologyStudiesForPatient(withoutStudies).size(), is(2));
+        assertThat(radiologyService.getRadiologyStudyByOrderNumber(lastStudyOrderNumber).getImagesAvailable(), is(true));
+        assertThat(radiologyService.getRadiologyReportsByOrderNumber(lastStudyOrderNumber).size(), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void generate_shouldFailIfThereAreMoreStudiesThanOrders() throws Exception {
+        new RadiologyDataGenerator(radiologyProperties, conceptSetRegistry)
+                .setOrders(1)
+                .setStudies(2)
+                .setProcedure(conceptService.getConcept(18))
+                .setReportType(conceptService.getConcept(1009))
+                .generate(getConnection());
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openmrs.api.OrderContext;
+import org.openmrs.api.OrderService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RadiologyOrderNumberGeneratorTest {
+
+    private RadiologyService radiologyService;
+
+    private OrderService orderService;
+
+    private RadiologyProperties radiologyProperties;
+
+    private RadiologyOrderNumberGenerator generator;
+
+    @Before
+    public void setup() {
+        radiologyService = mock(RadiologyService.class);
+        orderService = mock(OrderService.class);
+        radiologyProperties = mock(RadiologyProperties.class);
+        when(radiologyProperties.getOrderNumberFormat()).thenReturn(RadiologyConstants.DEFAULT_ORDER_NUMBER_FORMAT);
+        when(radiologyProperties.getOrderNumberBlockSize()).thenReturn(3);
+
+        generator = new RadiologyOrderNumberGenerator();
+        generator.setRadiologyService(radiologyService);
+        generator.setOrderService(orderService);
+        generator.setRadiologyProperties(radiologyProperties);
+    }
+
+    @Test
+    public void shouldNumberRadiologyOrdersFromReservedBlocks() {
+        when(radiologyService.reserveRadiologyOrderNumbers(3)).thenReturn(1L, 101L);
+
+        assertThat(generator.getNewOrderNumber(radiologyOrderContext("CT")), is("CT0000001"));
+        assertThat(generator.getNewOrderNumber(radiologyOrderContext("CR")), is("CR0000002"));
+        assertThat(generator.getNewOrderNumber(radiologyOrderContext("CT")), is("CT0000003"));
+        assertThat(generator.getNewOrderNumber(radiologyOrderContext("US")), is("US0000101"));
+        verify(radiologyService, times(2)).reserveRadiologyOrderNumbers(3);
+    }
+
+    @Test
+    public void shouldNumberOtherOrdersAsCoreDoesByDefault() {
+        when(orderService.getNextOrderNumberSeedSequenceValue()).thenReturn(42L);
+
+        assertThat(generator.getNewOrderNumber(new OrderContext()), is("ORD-42"));
+        verify(radiologyService, times(0)).reserveRadiologyOrderNumbers(anyInt());
+    }
+
+    @Test
+    public void shouldFormatOrderNumbersAsConfigured() {
+        when(radiologyService.reserveRadiologyOrderNumbers(3)).thenReturn(7L);
+        when(radiologyProperties.getOrderNumberFormat()).thenReturn("RAD-%s-%d");
+
+        assertThat(generator.getNewOrderNumber(radiologyOrderContext("CT")), is("RAD-CT-7"));
+    }
+
+    @Test
+    public void shouldFallBackToDefaultFormatIfConfiguredOneIsInvalid() {
+        when(radiologyService.reserveRadiologyOrderNumbers(3)).thenReturn(7L);
+        when(radiologyProperties.getOrderNumberFormat()).thenReturn("%s%d%d");
+
+        assertThat(generator.getNewOrderNumber(radiologyOrderContext("CT")), is("CT0000007"));
+    }
+
+    @Test
+    public void shouldNeverHandOutTheSameNumberTwice() throws Exception {
+        final AtomicLong sequence = new AtomicLong(1);
+        when(radiologyService.reserveRadiologyOrderNumbers(3)).thenAnswer(new Answer<Long>() {
+
+            @Override
+            public Long answer(InvocationOnMock invocation) throws Throwable {
+                return sequence.getAndAdd(3);
+            }
+        });
+
+        final List<String> orderNumbers = Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        orderNumbers.add(generator.getNewOrderNumber(radiologyOrderContext("CT")));
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(orderNumbers.size(), is(800));
+        assertThat(new HashSet<String>(orderNumbers).size(), is(800));
+    }
+
+    private OrderContext radiologyOrderContext(String modality) {
+        OrderContext orderContext = new OrderContext();
+        orderContext.setAttribute(RadiologyOrderNumberGenerator.MODALITY_ATTRIBUTE, modality);
+        return orderContext;
+    }
+
+}
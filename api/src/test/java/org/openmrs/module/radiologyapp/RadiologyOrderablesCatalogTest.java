@@ -0,0 +1,209 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openmrs.Concept;
+import org.openmrs.ConceptName;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.radiologyapp.cluster.RadiologyChangePoller;
+import org.openmrs.module.radiologyapp.db.RadiologyMetadataInterceptor;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RadiologyOrderablesCatalogTest {
+
+    private RadiologyProperties radiologyProperties;
+
+    private AdministrationService administrationService;
+
+    private Concept chest;
+
+    private Concept contrastHead;
+
+    private RadiologyOrderablesCatalog catalog;
+
+    private RadiologyMetadataInterceptor interceptor;
+
+    @Before
+    public void setup() {
+        radiologyProperties = mock(RadiologyProperties.class);
+        administrationService = mock(AdministrationService.class);
+
+        chest = createConcept(11, "Chest");
+        chest.addName(new ConceptName("Poitrine", Locale.FRENCH));
+        contrastHead = createConcept(12, "Head, \"with contrast\"");
+
+        Concept ctScanOrderables = createConcept(10, "CT scan orderables");
+        ctScanOrderables.addSetMember(chest);
+        ctScanOrderables.addSetMember(contrastHead);
+
+        Concept xrayOrderables = createConcept(20, "X-ray orderables");
+        xrayOrderables.addSetMember(chest);
+
+        Concept contrastOrderables = createConcept(30, "Contrast orderables");
+        contrastOrderables.addSetMember(contrastHead);
+
+        when(radiologyProperties.getOrderablesConcept(RadiologyConstants.CT_SCAN_MODALITY_CODE)).thenReturn(ctScanOrderables);
+        when(radiologyProperties.getOrderablesConcept(RadiologyConstants.XRAY_MODALITY_CODE)).thenReturn(xrayOrderables);
+        when(radiologyProperties.getOrderablesConcept(RadiologyConstants.ULTRASOUND_MODALITY_CODE))
+                .thenThrow(new IllegalStateException("Configuration required"));
+        when(radiologyProperties.getContrastOrderablesConcept()).thenReturn(contrastOrderables);
+        when(administrationService.getAllowedLocales()).thenReturn(Arrays.asList(Locale.ENGLISH, Locale.FRENCH));
+
+        catalog = new RadiologyOrderablesCatalog();
+        catalog.setRadiologyProperties(radiologyProperties);
+        catalog.setAdministrationService(administrationService);
+
+        interceptor = new RadiologyMetadataInterceptor();
+        interceptor.setConceptSetRegistry(mock(RadiologyConceptSetRegistry.class));
+        interceptor.setRadiologyProperties(radiologyProperties);
+        interceptor.setOrderablesCatalog(catalog);
+        interceptor.setRadiologyChangePoller(new RadiologyChangePoller());
+    }
+
+    @Test
+    public void shouldRenderOrderablesOnlyOnce() {
+
+        RadiologyOrderablesCatalog.Orderables orderables = catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH);
+
+        assertThat(orderables.getJson(),
+                is("[{\"value\":11,\"label\":\"Chest\"},{\"value\":12,\"label\":\"Head, \\\"with contrast\\\"\"}]"));
+        assertThat(catalog.getOrderables("ct", Locale.ENGLISH), is(sameInstance(orderables)));
+        verify(radiologyProperties, times(1)).getOrderablesConcept(RadiologyConstants.CT_SCAN_MODALITY_CODE);
+        verify(radiologyProperties, times(1)).getContrastOrderablesConcept();
+    }
+
+    @Test
+    public void shouldNameOrderablesInTheGivenLocale() {
+        assertThat(catalog.getOrderables(RadiologyConstants.XRAY_MODALITY_CODE, Locale.FRENCH).getJson(),
+                is("[{\"value\":11,\"label\":\"Poitrine\"}]"));
+        assertThat(catalog.getOrderables(RadiologyConstants.XRAY_MODALITY_CODE, Locale.ENGLISH).getJson(),
+                is("[{\"value\":11,\"label\":\"Chest\"}]"));
+    }
+
+    @Test
+    public void shouldLeaveOutContrastStudiesOnRequest() {
+        assertThat(catalog.getContrastStudiesJson(), is("[12]"));
+        assertThat(catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH).getJsonWithoutContrastStudies(),
+                is("[{\"value\":11,\"label\":\"Chest\"}]"));
+    }
+
+    @Test
+    public void shouldNotListContrastStudiesIfNoContrastOrderablesConceptIsConfigured() {
+        when(radiologyProperties.getContrastOrderablesConcept()).thenReturn(null);
+
+        assertThat(catalog.getContrastStudiesJson(), is(nullValue()));
+        RadiologyOrderablesCatalog.Orderables orderables = catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH);
+        assertThat(orderables.getJsonWithoutContrastStudies(), is(orderables.getJson()));
+    }
+
+    @Test
+    public void shouldRenderAllLocalesOfTheConfiguredModalitiesOnRefresh() {
+        catalog.refresh();
+
+        catalog.getOrderables(RadiologyConstants.XRAY_MODALITY_CODE, Locale.FRENCH);
+        catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH);
+        verify(radiologyProperties, times(1)).getOrderablesConcept(RadiologyConstants.XRAY_MODALITY_CODE);
+        verify(radiologyProperties, times(1)).getOrderablesConcept(RadiologyConstants.CT_SCAN_MODALITY_CODE);
+    }
+
+    @Test
+    public void shouldKeepWhatIsRenderedOnRefreshAlthoughAModalityIsNotConfigured() {
+
+        // as RadiologyProperties does when it is asked for a setting that is missing
+        final AtomicLong version = new AtomicLong();
+        when(radiologyProperties.getVersion()).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                return version.get();
+            }
+        });
+        doAnswer(new Answer<Concept>() {
+            @Override
+            public Concept answer(InvocationOnMock invocation) {
+                version.incrementAndGet();
+                throw new IllegalStateException("Configuration required");
+            }
+        }).when(radiologyProperties).getOrderablesConcept(RadiologyConstants.ULTRASOUND_MODALITY_CODE);
+
+        catalog.refresh();
+
+        catalog.getOrderables(RadiologyConstants.XRAY_MODALITY_CODE, Locale.FRENCH);
+        verify(radiologyProperties, times(1)).getOrderablesConcept(RadiologyConstants.XRAY_MODALITY_CODE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailForUnknownModality() {
+        when(radiologyProperties.getOrderablesConcept("MRI")).thenThrow(new IllegalArgumentException("Invalid Modality: MRI"));
+        catalog.getOrderables("MRI", Locale.ENGLISH);
+    }
+
+    @Test
+    public void shouldRenderAgainAfterConfigurationChanges() {
+
+        RadiologyOrderablesCatalog.Orderables orderables = catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH);
+        when(radiologyProperties.getVersion()).thenReturn(1L);
+
+        assertThat(catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH), is(not(sameInstance(orderables))));
+    }
+
+    @Test
+    public void shouldInvalidateWhenOrderableIsRenamedOnceTransactionCompletes() {
+
+        RadiologyOrderablesCatalog.Orderables orderables = catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH);
+
+        interceptor.onFlushDirty(chest.getName(Locale.ENGLISH), 1, null, null, null, null);
+        assertThat(catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH), is(sameInstance(orderables)));
+
+        interceptor.afterTransactionCompletion(null);
+        assertThat(catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH), is(not(sameInstance(orderables))));
+    }
+
+    @Test
+    public void shouldNotInvalidateWhenUnrelatedConceptChanges() {
+
+        RadiologyOrderablesCatalog.Orderables orderables = catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH);
+
+        interceptor.onFlushDirty(createConcept(100, "Something else"), 100, null, null, null, null);
+        interceptor.afterTransactionCompletion(null);
+
+        assertThat(catalog.getOrderables(RadiologyConstants.CT_SCAN_MODALITY_CODE, Locale.ENGLISH), is(sameInstance(orderables)));
+    }
+
+    private Concept createConcept(Integer conceptId, String name) {
+        Concept concept = new Concept(conceptId);
+        concept.addName(new ConceptName(name, Locale.ENGLISH));
+        return concept;
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.radiologyapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.EncounterType;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.EncounterService;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.OrderService;
+import org.openmrs.api.ProviderService;
+import org.openmrs.module.metadatamapping.api.MetadataMappingService;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RadiologyPropertiesTest {
+
+    private static final String STUDY_ENCOUNTER_TYPE_UUID = "77ae96f4-6afe-4351-b6f8-cd4fc383cce1";
+
+    private static final String REPORT_ENCOUNTER_TYPE_UUID = "b8bb4c1e-8c7d-4d5a-9d1b-2f0e4c3a6f01";
+
+    private AdministrationService administrationService;
+
+    private EncounterService encounterService;
+
+    private EncounterType studyEncounterType;
+
+    private RadiologyProperties radiologyProperties;
+
+    @Before
+    public void setup() {
+        administrationService = mock(AdministrationService.class);
+        encounterService = mock(EncounterService.class);
+
+        studyEncounterType = new EncounterType(1001);
+        when(administrationService.getGlobalProperty(RadiologyConstants.GP_RADIOLOGY_STUDY_ENCOUNTER_TYPE)).thenReturn(STUDY_ENCOUNTER_TYPE_UUID);
+        when(encounterService.getEncounterTypeByUuid(STUDY_ENCOUNTER_TYPE_UUID)).thenReturn(studyEncounterType);
+        when(encounterService.getEncounterType(1001)).thenReturn(studyEncounterType);
+
+        radiologyProperties = new RadiologyProperties();
+        radiologyProperties.setAdministrationService(administrationService);
+        radiologyProperties.setEncounterService(encounterService);
+        radiologyProperties.setConceptService(mock(ConceptService.class));
+        radiologyProperties.setOrderService(mock(OrderService.class));
+        radiologyProperties.setMetadataMappingService(mock(MetadataMappingService.class));
+        radiologyProperties.setProviderService(mock(ProviderService.class));
+        radiologyProperties.setLocationService(mock(LocationService.class));
+    }
+
+    @Test
+    public void shouldReadGlobalPropertiesOnlyOnce() {
+        assertThat(radiologyProperties.getRadiologyStudyEncounterType(), is(studyEncounterType));
+        assertThat(radiologyProperties.getRadiologyStudyEncounterType(), is(studyEncounterType));
+        verify(administrationService, times(1)).getGlobalProperty(RadiologyConstants.GP_RADIOLOGY_STUDY_ENCOUNTER_TYPE);
+        verify(encounterService, times(1)).getEncounterTypeByUuid(STUDY_ENCOUNTER_TYPE_UUID);
+    }
+
+    @Test
+    public void shouldRebuildAfterRadiologyGlobalPropertyChanges() {
+        radiologyProperties.getRadiologyStudyEncounterType();
+        radiologyProperties.globalPropertyChanged(new GlobalProperty(RadiologyConstants.GP_RADIOLOGY_STUDY_ENCOUNTER_TYPE, "something else"));
+        radiologyProperties.getRadiologyStudyEncounterType();
+        verify(administrationService, times(2)).getGlobalProperty(RadiologyConstants.GP_RADIOLOGY_STUDY_ENCOUNTER_TYPE);
+    }
+
+    @Test
+    public void shouldListAllMissingSettingsOnRefresh() {
+        List<String> problems = radiologyProperties.refresh();
+        assertThat(problems, hasItem("Configuration required: " + RadiologyConstants.GP_RADIOLOGY_REPORT_ENCOUNTER_TYPE));
+        assertThat(problems, hasItem("Configuration required: " + RadiologyConstants.GP_RADIOLOGY_CARE_SETTING));
+        assertFalse(problems.contains("Configuration required: " + RadiologyConstants.GP_RADIOLOGY_STUDY_ENCOUNTER_TYPE));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailWhenRequiredSettingIsMissing() {
+        radiologyProperties.getRadiologyReportEncounterType();
+    }
+
+    @Test
+    public void shouldPickUpMetadataCreatedAfterTheFirstBuild() {
+        when(administrationService.getGlobalProperty(RadiologyConstants.GP_RADIOLOGY_REPORT_ENCOUNTER_TYPE)).thenReturn(REPORT_ENCOUNTER_TYPE_UUID);
+
+        // e.g. at startup, before the module that installs the metadata has run
+        assertTrue(radiologyProperties.refresh().contains("Configuration required: " + RadiologyConstants.GP_RADIOLOGY_REPORT_ENCOUNTER_TYPE));
+        try {
+            radiologyProperties.getRadiologyReportEncounterType();
+            fail();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        EncounterType reportEncounterType = new EncounterType(1002);
+        when(encounterService.getEncounterTypeByUuid(REPORT_ENCOUNTER_TYPE_UUID)).thenReturn(reportEncounterType);
+        when(encounterService.getEncounterType(1002)).thenReturn(reportEncounterType);
+
+        assertThat(radiologyProperties.getRadiologyReportEncounterType(), is(reportEncounterType));
+        assertThat(radiologyProperties.getRadiologyStudyEncounterType(), is(studyEncounterType));
+    }
+
+    @Test
+    public void shouldFallBackToDefaultSaveBatchChunkSize() {
+        assertThat(radiologyProperties.getSaveBatchChunkSize(), is(RadiologyConstants.DEFAULT_SAVE_BATCH_CHUNK_SIZE));
+
+        when(administrationService.getGlobalProperty(RadiologyConstants.GP_SAVE_BATCH_CHUNK_SIZE)).thenReturn("250");
+        radiologyProperties.invalidate();
+        assertThat(radiologyProperties.getSaveBatchChunkSize(), is(250));
+
+        when(administrationService.getGlobalProperty(RadiologyConstants.GP_SAVE_BATCH_CHUNK_SIZE)).thenReturn("-1");
+        radiologyProperties.invalidate();
+        assertThat(radiologyProperties.getSaveBatchChunkSize(), is(RadiologyConstants.DEFAULT_SAVE_BATCH_CHUNK_SIZE));
+    }
+
+    @Test
+    public void shouldOnlySupportRadiologyGlobalProperties() {
+        assertTrue(radiologyProperties.supportsPropertyName(RadiologyConstants.GP_RADIOLOGY_CARE_SETTING));
+        assertTrue(radiologyProperties.supportsPropertyName(RadiologyConstants.GP_CONTRAST_ORDERABLES_CONCEPT));
+        assertTrue(radiologyProperties.supportsPropertyName(RadiologyConstants.GP_PRINCIPAL_RESULTS_INTERPRETER_ENCOUNTER_ROLE));
+        assertFalse(radiologyProperties.supportsPropertyName("locale.allowed.list"));
+    }
+}
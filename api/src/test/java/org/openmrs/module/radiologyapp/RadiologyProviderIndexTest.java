@@ -0,0 +1,132 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Provider;
+import org.openmrs.api.ProviderService;
+import org.openmrs.module.radiologyapp.cluster.RadiologyChangePoller;
+import org.openmrs.module.radiologyapp.db.RadiologyMetadataInterceptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RadiologyProviderIndexTest {
+
+    private ProviderService providerService;
+
+    private RadiologyProviderIndex providerIndex;
+
+    private RadiologyMetadataInterceptor interceptor;
+
+    @Before
+    public void setup() {
+        providerService = mock(ProviderService.class);
+
+        // already in name order; providers without a person keep their order when sorted
+        when(providerService.getAllProviders(false)).thenReturn(new ArrayList<Provider>(Arrays.asList(
+                createProvider(1, "Anne Smithers"),
+                createProvider(2, "José Álvarez"),
+                createProvider(3, "John Smith"),
+                createProvider(4, "Mary-Jo Smith"),
+                createProvider(5, "Paul Jones"))));
+
+        providerIndex = new RadiologyProviderIndex();
+        providerIndex.setProviderService(providerService);
+
+        interceptor = new RadiologyMetadataInterceptor();
+        interceptor.setConceptSetRegistry(mock(RadiologyConceptSetRegistry.class));
+        interceptor.setOrderablesCatalog(new RadiologyOrderablesCatalog());
+        interceptor.setProviderIndex(providerIndex);
+        interceptor.setRadiologyChangePoller(new RadiologyChangePoller());
+    }
+
+    @Test
+    public void shouldFindProvidersByTheStartOfAnyWordOfTheirNames() {
+        assertThat(getProviderIds(providerIndex.search("smi", 10)), contains(1, 3, 4));
+        assertThat(getProviderIds(providerIndex.search("SMITHERS", 10)), contains(1));
+        assertThat(getProviderIds(providerIndex.search("jo", 10)), contains(2, 3, 4, 5));
+    }
+
+    @Test
+    public void shouldRequireEveryWordOfTheQueryToMatch() {
+        assertThat(getProviderIds(providerIndex.search("jo smi", 10)), contains(3, 4));
+        assertThat(getProviderIds(providerIndex.search("smith mary", 10)), contains(4));
+        assertThat(getProviderIds(providerIndex.search("jo xyz", 10)), empty());
+    }
+
+    @Test
+    public void shouldIgnoreAccents() {
+        assertThat(getProviderIds(providerIndex.search("jose alv", 10)), contains(2));
+        assertThat(getProviderIds(providerIndex.search("Álv", 10)), contains(2));
+    }
+
+    @Test
+    public void shouldReturnAtMostTheGivenNumberOfProvidersInNameOrder() {
+        assertThat(getProviderIds(providerIndex.search("jo", 2)), contains(2, 3));
+    }
+
+    @Test
+    public void shouldReturnNothingForBlankQuery() {
+        assertThat(providerIndex.search(" - ", 10), empty());
+        assertThat(providerIndex.search(null, 10), empty());
+    }
+
+    @Test
+    public void shouldIndexProvidersOnlyOnce() {
+        providerIndex.search("smi", 10);
+        providerIndex.search("jo", 10);
+        verify(providerService, times(1)).getAllProviders(false);
+    }
+
+    @Test
+    public void shouldIndexAgainWhenProviderChangesOnceTransactionCompletes() {
+        providerIndex.search("smi", 10);
+
+        interceptor.onSave(createProvider(6, "Sam Smithson"), 6, null, null, null, null);
+        providerIndex.search("smi", 10);
+        verify(providerService, times(1)).getAllProviders(false);
+
+        interceptor.afterTransactionCompletion(null);
+        providerIndex.search("smi", 10);
+        verify(providerService, times(2)).getAllProviders(false);
+    }
+
+    private Provider createProvider(Integer providerId, String name) {
+        Provider provider = new Provider(providerId);
+        provider.setName(name);
+        return provider;
+    }
+
+    private List<Integer> getProviderIds(List<RadiologyProviderIndex.Entry> providers) {
+        List<Integer> providerIds = new ArrayList<Integer>();
+        for (RadiologyProviderIndex.Entry provider : providers) {
+            providerIds.add(provider.getProviderId());
+        }
+        return providerIds;
+    }
+
+}
@@ -14,6 +14,8 @@
 
 package org.openmrs.module.radiologyapp;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.search.Search;
 import org.joda.time.DateTime;
 import org.junit.Assert;
 import org.junit.Before;
@@ -35,6 +37,7 @@ import org.openmrs.api.PatientService;
 import org.openmrs.api.ProviderService;
 import org.openmrs.api.VisitService;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.db.hibernate.DbSessionFactory;
 import org.openmrs.module.emrapi.EmrApiProperties;
 import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
 import org.openmrs.module.radiologyapp.matchers.IsExpectedRadiologyReport;
@@ -43,15 +46,21 @@ import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.openmrs.util.DateUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.transaction.TestTransaction;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -98,13 +107,27 @@ public class RadiologyServiceComponentTest extends BaseModuleContextSensitiveTes
     @Qualifier("radiologyProperties")
     private RadiologyProperties radiologyProperties;
 
+    @Autowired
+    @Qualifier("radiologyTimelineCache")
+    private RadiologyTimelineCache radiologyTimelineCache;
+
     @Autowired
     @Qualifier("adminService")
     private AdministrationService administrationService;
 
+    @Autowired
+    @Qualifier("dbSessionFactory")
+    private DbSessionFactory dbSessionFactory;
+
+    @Autowired
+    @Qualifier("sessionFactory")
+    private SessionFactory sessionFactory;
+
     @Before
     public void beforeAllTests() throws Exception {
         executeDataSet("radiologyServiceComponentTestDataset.xml");
+        // the dataset is inserted directly, bypassing the global property listener
+        radiologyProperties.refresh();
     }
 
     @Test
@@ -279,6 +302,155 @@ public class RadiologyServiceComponentTest extends BaseModuleContextSensitiveTes
 
     }
 
+    @Test(expected = RadiologyAPIException.class)
+    public void saveRadiologyStudy_shouldFailIfTheDatabaseAlreadyHasAStudyWithTheSameOrderNumber() {
+
+        Patient patient = patientService.getPatient(6);
+
+        RadiologyStudy existingRadiologyStudy = new RadiologyStudy();
+        existingRadiologyStudy.setPatient(patient);
+        existingRadiologyStudy.setProcedure(conceptService.getConcept(1001));
+        existingRadiologyStudy.setOrderNumber("12345");
+        existingRadiologyStudy.setDatePerformed(new DateTime(2012,1,1,10,10,10,0).toDate());
+        radiologyService.saveRadiologyStudy(existingRadiologyStudy);
+
+        // hide the first study from the check in the service, as if another server saved it after that check ran, so
+        // that only the unique study accession number in the database can catch the duplicate
+        dbSessionFactory.getCurrentSession()
+                .createQuery("update RadiologyAccession a set a.accessionNumber = 'saved elsewhere' where a.studyAccessionNumber = '12345'")
+                .executeUpdate();
+
+        RadiologyStudy radiologyStudy = new RadiologyStudy();
+        radiologyStudy.setPatient(patient);
+        radiologyStudy.setProcedure(conceptService.getConcept(1001));
+        radiologyStudy.setImagesAvailable(true);
+        radiologyStudy.setOrderNumber("12345");
+        radiologyStudy.setDatePerformed(new Date());
+        radiologyService.saveRadiologyStudy(radiologyStudy);
+    }
+
+    @Test
+    public void saveRadiologyStudies_shouldSaveValidStudiesAndReportDuplicates() {
+
+        Date timeOfStudy = DateUtil.truncateToSeconds(new Date());
+
+        // use patient demo database
+        Patient patient = patientService.getPatient(6);
+
+        // from radiologyServiceComponentTestDataset.xml
+        Concept procedure = conceptService.getConcept(1001);
+
+        RadiologyStudy existingStudy = new RadiologyStudy();
+        existingStudy.setPatient(patient);
+        existingStudy.setProcedure(procedure);
+        existingStudy.setOrderNumber("EXISTING");
+        existingStudy.setDatePerformed(timeOfStudy);
+        radiologyService.saveRadiologyStudy(existingStudy);
+
+        List<RadiologyStudy> batch = new ArrayList<RadiologyStudy>();
+        for (String orderNumber : Arrays.asList("BATCH-1", "EXISTING", "BATCH-2", "BATCH-1", null)) {
+            RadiologyStudy radiologyStudy = new RadiologyStudy();
+            radiologyStudy.setPatient(patient);
+            radiologyStudy.setProcedure(procedure);
+            radiologyStudy.setOrderNumber(orderNumber);
+            radiologyStudy.setDatePerformed(timeOfStudy);
+            batch.add(radiologyStudy);
+        }
+
+        List<RadiologySaveResult<RadiologyStudy>> results = radiologyService.saveRadiologyStudies(batch);
+
+        assertThat(results.size(), is(5));
+        assertThat(results.get(0).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(1).getStatus(), is(RadiologySaveResult.Status.DUPLICATE));
+        assertThat(results.get(2).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(3).getStatus(), is(RadiologySaveResult.Status.DUPLICATE));
+        assertThat(results.get(4).getStatus(), is(RadiologySaveResult.Status.INVALID));
+
+        Context.clearSession();
+
+        assertThat(radiologyService.getRadiologyStudyByOrderNumber(patient, "BATCH-1").getProcedure(), is(procedure));
+        assertThat(radiologyService.getRadiologyStudyByOrderNumber(patient, "BATCH-2").getDatePerformed(), is(timeOfStudy));
+    }
+
+    @Test
+    public void saveRadiologyStudies_shouldReportAStudyRejectedByTheDatabaseAsDuplicateAndSaveTheRest() {
+
+        Patient patient = patientService.getPatient(6);
+        Date timeOfStudy = DateUtil.truncateToSeconds(new Date());
+
+        RadiologyStudy existingRadiologyStudy = new RadiologyStudy();
+        existingRadiologyStudy.setPatient(patient);
+        existingRadiologyStudy.setProcedure(conceptService.getConcept(1001));
+        existingRadiologyStudy.setOrderNumber("12345");
+        existingRadiologyStudy.setDatePerformed(timeOfStudy);
+        radiologyService.saveRadiologyStudy(existingRadiologyStudy);
+
+        // as if another server saved the study after the check in the service ran
+        dbSessionFactory.getCurrentSession()
+                .createQuery("update RadiologyAccession a set a.accessionNumber = 'saved elsewhere' where a.studyAccessionNumber = '12345'")
+                .executeUpdate();
+
+        List<RadiologyStudy> batch = new ArrayList<RadiologyStudy>();
+        for (String orderNumber : Arrays.asList("BATCH-1", "12345", "BATCH-2")) {
+            RadiologyStudy radiologyStudy = new RadiologyStudy();
+            radiologyStudy.setPatient(patient);
+            radiologyStudy.setProcedure(conceptService.getConcept(1001));
+            radiologyStudy.setOrderNumber(orderNumber);
+            radiologyStudy.setDatePerformed(timeOfStudy);
+            batch.add(radiologyStudy);
+        }
+
+        List<RadiologySaveResult<RadiologyStudy>> results = radiologyService.saveRadiologyStudies(batch);
+
+        assertThat(results.get(0).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(1).getStatus(), is(RadiologySaveResult.Status.DUPLICATE));
+        assertThat(results.get(2).getStatus(), is(RadiologySaveResult.Status.SAVED));
+
+        Context.clearSession();
+
+        assertThat(radiologyService.getRadiologyStudyByOrderNumber(patient, "BATCH-1").getDatePerformed(), is(timeOfStudy));
+        assertThat(radiologyService.getRadiologyStudyByOrderNumber(patient, "BATCH-2").getDatePerformed(), is(timeOfStudy));
+    }
+
+    @Test
+    public void saveRadiologyStudies_shouldCommitTheRestOfTheBatchWhenAStudyFailsToSave() {
+
+        Patient patient = patientService.getPatient(6);
+        Date timeOfStudy = DateUtil.truncateToSeconds(new Date());
+
+        List<RadiologyStudy> batch = new ArrayList<RadiologyStudy>();
+        for (String orderNumber : Arrays.asList("BATCH-1", "BATCH-2", "BATCH-3")) {
+            RadiologyStudy radiologyStudy = new RadiologyStudy();
+            radiologyStudy.setPatient(patient);
+            radiologyStudy.setProcedure(conceptService.getConcept(1001));
+            radiologyStudy.setOrderNumber(orderNumber);
+            radiologyStudy.setDatePerformed(timeOfStudy);
+            batch.add(radiologyStudy);
+        }
+        // the encounter service rejects an encounter in the future, marking the transaction rollback-only
+        batch.get(1).setDatePerformed(new DateTime().plusDays(1).toDate());
+
+        List<RadiologySaveResult<RadiologyStudy>> results = radiologyService.saveRadiologyStudies(batch);
+        assertThat(results.get(0).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(1).getStatus(), is(RadiologySaveResult.Status.FAILED));
+        assertThat(results.get(2).getStatus(), is(RadiologySaveResult.Status.SAVED));
+
+        // throws an UnexpectedRollbackException if the transaction is still marked rollback-only
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        try {
+            assertNotNull(radiologyService.getRadiologyStudyByOrderNumber(patient, "BATCH-1"));
+            assertNull(radiologyService.getRadiologyStudyByOrderNumber(patient, "BATCH-2"));
+            assertNotNull(radiologyService.getRadiologyStudyByOrderNumber(patient, "BATCH-3"));
+        }
+        finally {
+            // the other tests expect a database without what was committed
+            deleteAllData();
+        }
+    }
+
     @Test
     public void saveRadiologyReport_shouldSaveARadiologyReport() {
 
@@ -351,6 +523,96 @@ public class RadiologyServiceComponentTest extends BaseModuleContextSensitiveTes
 
     }
 
+    @Test
+    public void getUnfulfilledRadiologyOrdersForPatient_shouldOnlyReturnOrdersWithoutStudy() throws Exception {
+
+        Patient patient = patientService.getPatient(6);
+
+        RadiologyRequisition requisition = new RadiologyRequisition();
+        requisition.setPatient(patient);
+        requisition.setStudies(Collections.singleton(conceptService.getConcept(18)));
+        requisition.setUrgency(Order.Urgency.STAT);
+        requisition.setRequestedBy(providerService.getProvider(1));
+        requisition.setRequestedOn(new Date());
+        requisition.setRequestedFrom(locationService.getLocation(1));
+
+        Encounter radiologyRequisition = radiologyService.placeRadiologyRequisition(requisition);
+        Order order = radiologyRequisition.getOrders().iterator().next();
+
+        // order 12345 in the dataset is not of the radiology order type, so only the new order is unfulfilled
+        List<Order> unfulfilledOrders = radiologyService.getUnfulfilledRadiologyOrdersForPatient(patient);
+        assertThat(unfulfilledOrders.size(), is(1));
+        assertThat(unfulfilledOrders.get(0).getOrderNumber(), is(order.getOrderNumber()));
+
+        RadiologyStudy radiologyStudy = new RadiologyStudy();
+        radiologyStudy.setPatient(patient);
+        radiologyStudy.setProcedure(conceptService.getConcept(18));
+        radiologyStudy.setOrderNumber(order.getOrderNumber());
+        radiologyStudy.setDatePerformed(new Date());
+        radiologyService.saveRadiologyStudy(radiologyStudy);
+
+        assertNull(radiologyService.getUnfulfilledRadiologyOrdersForPatient(patient));
+    }
+
+    @Test
+    public void getRadiologyWorklist_shouldReturnUnfulfilledOrdersOfAllPatientsStatFirst() throws Exception {
+
+        Order routineOrder = placeRadiologyOrder(patientService.getPatient(6), Order.Urgency.ROUTINE, 3);
+        Order statOrder = placeRadiologyOrder(patientService.getPatient(7), Order.Urgency.STAT, 1);
+        Order laterRoutineOrder = placeRadiologyOrder(patientService.getPatient(7), Order.Urgency.ROUTINE, 2);
+
+        RadiologyWorklistQuery query = new RadiologyWorklistQuery();
+        query.setLimit(2);
+        List<RadiologyOrder> firstPage = radiologyService.getRadiologyWorklist(query);
+        assertThat(firstPage.size(), is(2));
+        assertThat(firstPage.get(0).getOrderNumber(), is(statOrder.getOrderNumber()));
+        assertThat(firstPage.get(1).getOrderNumber(), is(routineOrder.getOrderNumber()));
+
+        query.setCursor(RadiologyWorklistQuery.getCursor(firstPage.get(1)));
+        List<RadiologyOrder> secondPage = radiologyService.getRadiologyWorklist(query);
+        assertThat(secondPage.size(), is(1));
+        assertThat(secondPage.get(0).getOrderNumber(), is(laterRoutineOrder.getOrderNumber()));
+
+        query.setAfter(secondPage.get(0));
+        assertThat(radiologyService.getRadiologyWorklist(query).size(), is(0));
+    }
+
+    @Test
+    public void getRadiologyWorklist_shouldFilterOrdersAndLeaveOutFulfilledOnes() throws Exception {
+
+        Patient patient = patientService.getPatient(6);
+        Order routineOrder = placeRadiologyOrder(patient, Order.Urgency.ROUTINE, 2);
+        Order statOrder = placeRadiologyOrder(patient, Order.Urgency.STAT, 1);
+
+        RadiologyWorklistQuery query = new RadiologyWorklistQuery();
+        query.setUrgency(Order.Urgency.ROUTINE);
+        List<RadiologyOrder> worklist = radiologyService.getRadiologyWorklist(query);
+        assertThat(worklist.size(), is(1));
+        assertThat(worklist.get(0).getOrderNumber(), is(routineOrder.getOrderNumber()));
+
+        query = new RadiologyWorklistQuery();
+        query.setFromDate(new DateTime().minusMinutes(90).toDate());
+        worklist = radiologyService.getRadiologyWorklist(query);
+        assertThat(worklist.size(), is(1));
+        assertThat(worklist.get(0).getOrderNumber(), is(statOrder.getOrderNumber()));
+
+        RadiologyStudy radiologyStudy = new RadiologyStudy();
+        radiologyStudy.setPatient(patient);
+        radiologyStudy.setProcedure(conceptService.getConcept(18));
+        radiologyStudy.setOrderNumber(statOrder.getOrderNumber());
+        radiologyStudy.setDatePerformed(new Date());
+        radiologyService.saveRadiologyStudy(radiologyStudy);
+
+        worklist = radiologyService.getRadiologyWorklist(new RadiologyWorklistQuery());
+        assertThat(worklist.size(), is(1));
+        assertThat(worklist.get(0).getOrderNumber(), is(routineOrder.getOrderNumber()));
+    }
+
+    @Test(expected = RadiologyAPIException.class)
+    public void getRadiologyWorklist_shouldFailForInvalidCursor() throws Exception {
+        new RadiologyWorklistQuery().setCursor("S:yesterday:1");
+    }
+
     @Test
     public void getRadiologyStudiesForPatient_shouldRetrieveRadiologyStudiesForPatient() {
 
@@ -462,6 +724,69 @@ public class RadiologyServiceComponentTest extends BaseModuleContextSensitiveTes
         assertTrue(new IsExpectedRadiologyStudy(secondExpectedRadiologyStudy).matches(radiologyStudies.get(0)));
     }
 
+    @Test
+    public void getRadiologyStudiesForPatient_shouldRetrieveRequestedPageOfRadiologyStudies() {
+
+        // use patient demo database
+        Patient patient = patientService.getPatient(6);
+
+        // from radiologyServiceComponentTestDataset.xml
+        Concept procedure = conceptService.getConcept(1001);
+        Concept reportType = conceptService.getConcept(1009);
+
+        // two studies, a report for the older one, and an orphaned report that is more recent than both
+        RadiologyStudy olderRadiologyStudy = new RadiologyStudy();
+        olderRadiologyStudy.setPatient(patient);
+        olderRadiologyStudy.setProcedure(procedure);
+        olderRadiologyStudy.setOrderNumber("12345");
+        olderRadiologyStudy.setDatePerformed(new DateTime(2012,1,1,10,10,10,0).toDate());
+        radiologyService.saveRadiologyStudy(olderRadiologyStudy);
+
+        RadiologyStudy newerRadiologyStudy = new RadiologyStudy();
+        newerRadiologyStudy.setPatient(patient);
+        newerRadiologyStudy.setProcedure(procedure);
+        newerRadiologyStudy.setOrderNumber("678910");
+        newerRadiologyStudy.setDatePerformed(new DateTime(2013,4,3,20,20,20,0).toDate());
+        radiologyService.saveRadiologyStudy(newerRadiologyStudy);
+
+        RadiologyReport radiologyReport = new RadiologyReport();
+        radiologyReport.setPatient(patient);
+        radiologyReport.setProcedure(procedure);
+        radiologyReport.setReportType(reportType);
+        radiologyReport.setReportBody("Some test report");
+        radiologyReport.setOrderNumber("12345");
+        radiologyReport.setReportDate(new DateTime(2014,1,1,10,10,10,0).toDate());
+        radiologyService.saveRadiologyReport(radiologyReport);
+
+        RadiologyReport orphanedRadiologyReport = new RadiologyReport();
+        orphanedRadiologyReport.setPatient(patient);
+        orphanedRadiologyReport.setProcedure(procedure);
+        orphanedRadiologyReport.setReportType(reportType);
+        orphanedRadiologyReport.setReportBody("Another test report");
+        orphanedRadiologyReport.setOrderNumber("55555");
+        orphanedRadiologyReport.setReportDate(new DateTime(2015,1,1,10,10,10,0).toDate());
+        radiologyService.saveRadiologyReport(orphanedRadiologyReport);
+
+        assertThat(radiologyService.getRadiologyStudyCountForPatient(patient), is(3L));
+
+        List<RadiologyStudy> firstPage = radiologyService.getRadiologyStudiesForPatient(patient, 0, 2);
+        assertThat(firstPage.size(), is(2));
+        assertThat(firstPage.get(0).getOrderNumber(), is("55555"));
+        assertThat(firstPage.get(0).getReports().size(), is(1));
+        assertThat(firstPage.get(1).getOrderNumber(), is("678910"));
+
+        // the older study is dated by the study itself, not by its more recent report
+        List<RadiologyStudy> secondPage = radiologyService.getRadiologyStudiesForPatient(patient, 2, 2);
+        assertThat(secondPage.size(), is(1));
+        assertThat(secondPage.get(0).getOrderNumber(), is("12345"));
+        assertThat(secondPage.get(0).getReports().size(), is(1));
+
+        // lists leave out the report bodies, which are only loaded with the study itself
+        assertNull(secondPage.get(0).getReports().get(0).getReportBody());
+        assertThat(radiologyService.getRadiologyStudyByOrderNumber("12345").getReports().get(0).getReportBody(),
+                is("Some test report"));
+    }
+
     @Test
     public void getRadiologyStudyByOrderNumber_shouldRetrieveRadiologyStudyByOrderNumber() {
 
@@ -549,6 +874,32 @@ public class RadiologyServiceComponentTest extends BaseModuleContextSensitiveTes
         assertTrue(new IsExpectedRadiologyStudy(expectedRadiologyStudy).matches(radiologyStudy));
     }
 
+    @Test
+    public void getRadiologyStudyByOrderNumber_shouldFindTheStudyUnderThePatientItsEncounterIsMovedTo() {
+
+        Patient patient = patientService.getPatient(6);
+        Patient otherPatient = patientService.getPatient(7);
+
+        RadiologyStudy radiologyStudy = new RadiologyStudy();
+        radiologyStudy.setPatient(patient);
+        radiologyStudy.setProcedure(conceptService.getConcept(1001));
+        radiologyStudy.setOrderNumber("12345");
+        radiologyStudy.setDatePerformed(new DateTime(2012,1,1,10,10,10,0).toDate());
+        radiologyService.saveRadiologyStudy(radiologyStudy);
+        assertNotNull(radiologyService.getRadiologyStudyByOrderNumber(patient, "12345"));
+
+        // as a patient merge does
+        Encounter encounter = (Encounter) dbSessionFactory.getCurrentSession()
+                .createQuery("select a.encounter from RadiologyAccession a where a.accessionNumber = '12345'")
+                .uniqueResult();
+        encounter.setPatient(otherPatient);
+        encounterService.saveEncounter(encounter);
+        dbSessionFactory.getCurrentSession().flush();
+
+        assertNull(radiologyService.getRadiologyStudyByOrderNumber(patient, "12345"));
+        assertThat(radiologyService.getRadiologyStudyByOrderNumber(otherPatient, "12345").getPatient(), is(otherPatient));
+    }
+
     @Test
     public void getRadiologyReportsByOrderNumber_shouldRetrieveRadiologyReportsByOrderNumber() {
 
@@ -599,4 +950,407 @@ public class RadiologyServiceComponentTest extends BaseModuleContextSensitiveTes
 
     }
 
+    @Test
+    public void getRadiologyStudiesByOrderNumbers_shouldRetrieveTheRequestedStudiesOfThePatientWithReportBodies() {
+
+        Patient patient = patientService.getPatient(6);
+        Patient otherPatient = patientService.getPatient(7);
+        saveStudyWithReport(patient, "12345", new DateTime(2012,1,1,10,10,10,0).toDate());
+        saveStudyWithReport(patient, "67890", new DateTime(2013,4,3,20,20,20,0).toDate());
+        saveStudyWithReport(patient, "11111", new DateTime(2014,1,1,10,10,10,0).toDate());
+        saveStudyWithReport(otherPatient, "55555", new DateTime(2015,1,1,10,10,10,0).toDate());
+        saveReport(patient, "22222", "Report without study", new DateTime(2016,1,1,10,10,10,0).toDate());
+
+        List<String> orderNumbers = Arrays.asList("12345", "67890", "22222", "55555", "99999");
+        List<RadiologyStudy> studiesFromObs = radiologyService.getRadiologyStudiesByOrderNumbers(patient, orderNumbers);
+
+        assertThat(studiesFromObs.size(), is(3));
+        assertThat(studiesFromObs.get(0).getOrderNumber(), is("22222"));
+        assertThat(studiesFromObs.get(0).getReports().get(0).getReportBody(), is("Report without study"));
+        assertThat(studiesFromObs.get(1).getOrderNumber(), is("67890"));
+        assertThat(studiesFromObs.get(1).getReports().get(0).getReportBody(), is("Report for 67890"));
+        assertTrue(new IsExpectedRadiologyStudy(radiologyService.getRadiologyStudyByOrderNumber(patient, "12345"))
+                .matches(studiesFromObs.get(2)));
+
+        administrationService.setGlobalProperty(RadiologyConstants.GP_READ_FROM_STUDY_TABLES, "true");
+        radiologyProperties.refresh();
+        List<RadiologyStudy> studiesFromTables = radiologyService.getRadiologyStudiesByOrderNumbers(patient, orderNumbers);
+
+        assertThat(studiesFromTables.size(), is(3));
+        for (int i = 0; i < studiesFromObs.size(); i++) {
+            assertTrue(new IsExpectedRadiologyStudy(studiesFromObs.get(i)).matches(studiesFromTables.get(i)));
+            assertTrue(new IsExpectedRadiologyReport(studiesFromObs.get(i).getReports().get(0))
+                    .matches(studiesFromTables.get(i).getReports().get(0)));
+        }
+
+        assertThat(radiologyService.getRadiologyStudiesByOrderNumbers(patient, Collections.<String>emptyList()).size(),
+                is(0));
+    }
+
+    @Test
+    public void getRadiologyStudiesForPatient_shouldCacheTimelineUntilAStudyOrReportOfThePatientChanges() {
+
+        Patient patient = patientService.getPatient(6);
+        saveStudyWithReport(patient, "12345", new DateTime(2012,1,1,10,10,10,0).toDate());
+
+        long hits = (Long) radiologyTimelineCache.getSnapshot().get("hits");
+        assertThat(radiologyService.getRadiologyStudiesForPatient(patient).size(), is(1));
+        List<RadiologyStudy> cached = radiologyService.getRadiologyStudiesForPatient(patient);
+        assertThat((Long) radiologyTimelineCache.getSnapshot().get("hits"), is(hits + 1));
+        assertThat(cached.size(), is(1));
+        assertThat(cached.get(0).getProcedure(), is(conceptService.getConcept(1001)));
+        assertThat(cached.get(0).getReports().size(), is(1));
+
+        // saved through the radiology service
+        saveStudyWithReport(patient, "67890", new DateTime(2013,4,3,20,20,20,0).toDate());
+        assertThat(radiologyService.getRadiologyStudiesForPatient(patient).size(), is(2));
+
+        // voided by anyone else
+        for (String entity : Arrays.asList("RadiologyStudyRecord", "RadiologyReportRecord")) {
+            Encounter encounter = (Encounter) dbSessionFactory.getCurrentSession()
+                    .createQuery("select r.encounter from " + entity + " r where r.accessionNumber = '67890'")
+                    .uniqueResult();
+            encounterService.voidEncounter(encounter, "entered in error");
+        }
+        Context.flushSession();
+        assertThat(radiologyService.getRadiologyStudiesForPatient(patient).size(), is(1));
+    }
+
+    @Test
+    public void saveRadiologyStudy_shouldLogTheChangesForTheOtherServersOnlyIfTheyPoll() {
+
+        Patient patient = patientService.getPatient(6);
+        saveStudyWithReport(patient, "12345", new DateTime(2012,1,1,10,10,10,0).toDate());
+        assertNull(radiologyService.getLatestRadiologyChangeId());
+
+        administrationService.setGlobalProperty(RadiologyConstants.GP_CHANGE_POLL_INTERVAL_SECONDS, "5");
+        radiologyProperties.refresh();
+        saveStudyWithReport(patient, "67890", new DateTime(2013,4,3,20,20,20,0).toDate());
+
+        List<RadiologyChange> changes = radiologyService.getRadiologyChangesAfter(null, 10);
+        assertThat(changes.size(), is(2));
+        assertThat(changes.get(0).getKind(), is(RadiologyChange.Kind.STUDY));
+        assertThat(changes.get(1).getKind(), is(RadiologyChange.Kind.REPORT));
+        for (RadiologyChange change : changes) {
+            assertThat(change.getPatientId(), is(6));
+            assertThat(change.getAccessionNumber(), is("67890"));
+            assertTrue(change.isLocal());
+        }
+        assertThat(radiologyService.getRadiologyChangesAfter(changes.get(0).getId(), 10).size(), is(1));
+        assertThat(radiologyService.getLatestRadiologyChangeId(), is(changes.get(1).getId()));
+
+        assertThat(radiologyService.purgeRadiologyChanges(new DateTime().plusMinutes(1).toDate()), is(2));
+        assertNull(radiologyService.getLatestRadiologyChangeId());
+    }
+
+    @Test
+    public void getRadiologyStudiesForPatient_shouldReadTheSameStudiesFromStudyTables() {
+
+        Patient patient = patientService.getPatient(6);
+        saveStudyWithReport(patient, "12345", new DateTime(2012,1,1,10,10,10,0).toDate());
+        saveStudyWithReport(patient, "67890", new DateTime(2013,4,3,20,20,20,0).toDate());
+
+        List<RadiologyStudy> studiesFromObs = radiologyService.getRadiologyStudiesForPatient(patient);
+
+        administrationService.setGlobalProperty(RadiologyConstants.GP_READ_FROM_STUDY_TABLES, "true");
+        radiologyProperties.refresh();
+        List<RadiologyStudy> studiesFromTables = radiologyService.getRadiologyStudiesForPatient(patient);
+
+        assertThat(studiesFromTables.size(), is(2));
+        for (int i = 0; i < studiesFromObs.size(); i++) {
+            assertTrue(new IsExpectedRadiologyStudy(studiesFromObs.get(i)).matches(studiesFromTables.get(i)));
+            assertThat(studiesFromTables.get(i).getReports().size(), is(1));
+            assertTrue(new IsExpectedRadiologyReport(studiesFromObs.get(i).getReports().get(0))
+                    .matches(studiesFromTables.get(i).getReports().get(0)));
+        }
+        assertThat(radiologyService.getRadiologyStudiesForPatient(patient, 1, 1).get(0).getOrderNumber(), is("12345"));
+        assertNull(studiesFromTables.get(0).getReports().get(0).getReportBody());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getRadiologyStudiesForPatient_shouldReadTheStudiesOfEncountersMovedToThePatientFromStudyTables() {
+
+        Patient patient = patientService.getPatient(6);
+        Patient otherPatient = patientService.getPatient(7);
+        saveStudyWithReport(patient, "12345", new DateTime(2012,1,1,10,10,10,0).toDate());
+
+        // as a patient merge does
+        for (Encounter encounter : (List<Encounter>) dbSessionFactory.getCurrentSession()
+                .createQuery("select a.encounter from RadiologyAccession a where a.accessionNumber = '12345'").list()) {
+            encounter.setPatient(otherPatient);
+            encounterService.saveEncounter(encounter);
+        }
+        dbSessionFactory.getCurrentSession().flush();
+
+        administrationService.setGlobalProperty(RadiologyConstants.GP_READ_FROM_STUDY_TABLES, "true");
+        radiologyProperties.refresh();
+
+        assertThat(radiologyService.getRadiologyStudiesForPatient(patient).size(), is(0));
+        List<RadiologyStudy> studies = radiologyService.getRadiologyStudiesForPatient(otherPatient);
+        assertThat(studies.size(), is(1));
+        assertThat(studies.get(0).getOrderNumber(), is("12345"));
+        assertThat(studies.get(0).getReports().size(), is(1));
+    }
+
+    @Test
+    public void backfillRadiologyStudyTables_shouldCopyStudiesSavedBeforeTheTablesExisted() {
+
+        Patient patient = patientService.getPatient(6);
+        saveStudyWithReport(patient, "12345", new DateTime(2012,1,1,10,10,10,0).toDate());
+        RadiologyStudy studyFromObs = radiologyService.getRadiologyStudyByOrderNumber("12345");
+
+        // as if the study and report were saved before the tables existed
+        dbSessionFactory.getCurrentSession().createQuery("delete from RadiologyStudyRecord").executeUpdate();
+        dbSessionFactory.getCurrentSession().createQuery("delete from RadiologyReportRecord").executeUpdate();
+
+        assertThat(radiologyService.backfillRadiologyStudyTables(), is(2));
+        assertThat(radiologyService.backfillRadiologyStudyTables(), is(0));
+
+        administrationService.setGlobalProperty(RadiologyConstants.GP_READ_FROM_STUDY_TABLES, "true");
+        radiologyProperties.refresh();
+        RadiologyStudy studyFromTables = radiologyService.getRadiologyStudyByOrderNumber("12345");
+
+        assertTrue(new IsExpectedRadiologyStudy(studyFromObs).matches(studyFromTables));
+        assertThat(studyFromTables.getReports().size(), is(1));
+        assertThat(studyFromTables.getReports().get(0).getReportBody(), is("Report for 12345"));
+    }
+
+    @Test
+    public void searchRadiologyReports_shouldSearchReportTextOnceIndexIsRebuilt() {
+
+        Patient patient = patientService.getPatient(6);
+        Patient otherPatient = patientService.getPatient(7);
+        saveReport(patient, "12345", "Small left apical pneumothorax.", new DateTime(2012,1,1,10,10,10,0).toDate());
+        saveReport(patient, "67890", "No pneumothorax. Lungs are clear.", new DateTime(2013,4,3,20,20,20,0).toDate());
+        saveReport(otherPatient, "55555", "Resolving pneumothorax.", new DateTime(2014,1,1,10,10,10,0).toDate());
+        saveReport(otherPatient, "66666", "Normal heart size.", new DateTime(2015,1,1,10,10,10,0).toDate());
+
+        radiologyService.rebuildRadiologyReportSearchIndex();
+
+        RadiologyReportSearchResult result = radiologyService.searchRadiologyReports("pneumothorax", null, 0, 10);
+        assertThat(result.getTotalCount(), is(3));
+        assertThat(result.getReports().get(0).getOrderNumber(), is("55555"));
+        assertThat(result.getReports().get(2).getOrderNumber(), is("12345"));
+        assertThat(result.getReports().get(2).getReportBody(), is("Small left apical pneumothorax."));
+
+        assertThat(radiologyService.searchRadiologyReports("pneumothorax -clear", null, 0, 10).getTotalCount(), is(2));
+        assertThat(radiologyService.searchRadiologyReports("\"apical pneumothorax\" | heart", null, 0, 10)
+                .getTotalCount(), is(2));
+
+        RadiologyReportSearchFilter filter = new RadiologyReportSearchFilter();
+        filter.setPatient(patient);
+        result = radiologyService.searchRadiologyReports("pneumothorax", filter, 1, 10);
+        assertThat(result.getTotalCount(), is(2));
+        assertThat(result.getReports().size(), is(1));
+        assertThat(result.getReports().get(0).getOrderNumber(), is("12345"));
+
+        filter = new RadiologyReportSearchFilter();
+        filter.setFromDate(new DateTime(2013,1,1,0,0,0,0).toDate());
+        filter.setToDate(new DateTime(2014,1,1,10,10,10,0).toDate());
+        result = radiologyService.searchRadiologyReports(null, filter, 0, 10);
+        assertThat(result.getTotalCount(), is(1));
+        assertThat(result.getReports().get(0).getOrderNumber(), is("67890"));
+    }
+
+    @Test
+    public void searchRadiologyReports_shouldIndexReportsAsTheyAreSaved() {
+
+        saveReport(patientService.getPatient(6), "12345", "Small left apical pneumothorax.",
+                new DateTime(2012,1,1,10,10,10,0).toDate());
+
+        // the index is updated as the transaction commits, which a test never does
+        sessionFactory.getCurrentSession().flush();
+        Search.getFullTextSession(sessionFactory.getCurrentSession()).flushToIndexes();
+
+        RadiologyReportSearchResult result = radiologyService.searchRadiologyReports("apical", null, 0, 10);
+        assertThat(result.getTotalCount(), is(1));
+        assertThat(result.getReports().get(0).getOrderNumber(), is("12345"));
+    }
+
+    @Test
+    public void searchRadiologyReports_shouldLeaveOutReportsOnceTheirEncounterIsVoided() {
+
+        Patient patient = patientService.getPatient(6);
+        saveReport(patient, "12345", "Small left apical pneumothorax.", new DateTime(2012,1,1,10,10,10,0).toDate());
+        saveReport(patient, "67890", "Resolving apical pneumothorax.", new DateTime(2013,4,3,20,20,20,0).toDate());
+        sessionFactory.getCurrentSession().flush();
+        Search.getFullTextSession(sessionFactory.getCurrentSession()).flushToIndexes();
+        assertThat(radiologyService.searchRadiologyReports("apical", null, 0, 10).getTotalCount(), is(2));
+
+        Encounter encounter = (Encounter) dbSessionFactory.getCurrentSession()
+                .createQuery("select r.encounter from RadiologyReportRecord r where r.accessionNumber = '67890'")
+                .uniqueResult();
+        encounterService.voidEncounter(encounter, "entered in error");
+        sessionFactory.getCurrentSession().flush();
+        Search.getFullTextSession(sessionFactory.getCurrentSession()).flushToIndexes();
+
+        RadiologyReportSearchResult result = radiologyService.searchRadiologyReports("apical", null, 0, 10);
+        assertThat(result.getTotalCount(), is(1));
+        assertThat(result.getReports().size(), is(1));
+        assertThat(result.getReports().get(0).getOrderNumber(), is("12345"));
+    }
+
+    @Test
+    public void searchRadiologyReports_shouldFindReportsUnderThePatientTheirEncounterIsMovedTo() {
+
+        Patient patient = patientService.getPatient(6);
+        Patient otherPatient = patientService.getPatient(7);
+        saveReport(patient, "12345", "Small left apical pneumothorax.", new DateTime(2012,1,1,10,10,10,0).toDate());
+        sessionFactory.getCurrentSession().flush();
+
+        // as a patient merge does
+        Encounter encounter = (Encounter) dbSessionFactory.getCurrentSession()
+                .createQuery("select r.encounter from RadiologyReportRecord r where r.accessionNumber = '12345'")
+                .uniqueResult();
+        encounter.setPatient(otherPatient);
+        encounterService.saveEncounter(encounter);
+        sessionFactory.getCurrentSession().flush();
+        Search.getFullTextSession(sessionFactory.getCurrentSession()).flushToIndexes();
+
+        RadiologyReportSearchFilter filter = new RadiologyReportSearchFilter();
+        filter.setPatient(patient);
+        assertThat(radiologyService.searchRadiologyReports("apical", filter, 0, 10).getTotalCount(), is(0));
+
+        filter.setPatient(otherPatient);
+        RadiologyReportSearchResult result = radiologyService.searchRadiologyReports("apical", filter, 0, 10);
+        assertThat(result.getTotalCount(), is(1));
+        assertThat(result.getReports().get(0).getPatient(), is(otherPatient));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void searchRadiologyReports_shouldFailForInvalidPage() {
+        radiologyService.searchRadiologyReports("pneumothorax", null, 0, 0);
+    }
+
+    @Test
+    public void exportRadiologyStudiesAndReports_shouldWriteStudiesThenReportsAsNdjson() throws Exception {
+
+        saveStudyWithReport(patientService.getPatient(6), "12345", new DateTime(2012,1,1,10,10,10,0).toDate());
+        saveStudyWithReport(patientService.getPatient(7), "67890", new DateTime(2013,4,3,20,20,20,0).toDate());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(radiologyService.exportRadiologyStudiesAndReports(new RadiologyExportQuery(), out), is(4));
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertThat(lines.length, is(4));
+        assertThat(lines[0], startsWith("{\"type\":\"study\""));
+        assertThat(lines[0], containsString("\"accessionNumber\":\"12345\""));
+        assertThat(lines[0], containsString("\"procedure\":\"Chest X-ray\""));
+        assertThat(lines[0], containsString("\"patientUuid\":\"" + patientService.getPatient(6).getUuid() + "\""));
+        assertThat(lines[2], startsWith("{\"type\":\"report\""));
+        assertThat(lines[3], containsString("\"reportBody\":\"Report for 67890\""));
+    }
+
+    @Test
+    public void exportRadiologyStudiesAndReports_shouldOnlyExportMatchingStudiesAndReports() throws Exception {
+
+        saveStudyWithReport(patientService.getPatient(6), "12345", new DateTime(2012,1,1,10,10,10,0).toDate());
+        saveStudyWithReport(patientService.getPatient(6), "67890", new DateTime(2013,4,3,20,20,20,0).toDate());
+
+        RadiologyExportQuery query = new RadiologyExportQuery();
+        query.setFromDate(new DateTime(2013,1,1,0,0,0,0).toDate());
+        assertThat(radiologyService.exportRadiologyStudiesAndReports(query, new ByteArrayOutputStream()), is(2));
+
+        query = new RadiologyExportQuery();
+        query.setLocation(locationService.getLocation(2));
+        assertThat(radiologyService.exportRadiologyStudiesAndReports(query, new ByteArrayOutputStream()), is(2));
+
+        // from radiologyServiceComponentTestDataset.xml, a set that the procedure is not a member of
+        query = new RadiologyExportQuery();
+        query.setModality(conceptService.getConcept(1002));
+        assertThat(radiologyService.exportRadiologyStudiesAndReports(query, new ByteArrayOutputStream()), is(0));
+    }
+
+    @Test
+    public void exportRadiologyStudiesAndReports_shouldQuoteCsvValues() throws Exception {
+
+        saveReport(patientService.getPatient(6), "12345", "Small, \"apical\"\npneumothorax.",
+                new DateTime(2012,1,1,10,10,10,0).toDate());
+
+        RadiologyExportQuery query = new RadiologyExportQuery();
+        query.setFormat(RadiologyExportQuery.Format.CSV);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(radiologyService.exportRadiologyStudiesAndReports(query, out), is(1));
+
+        String csv = out.toString("UTF-8");
+        assertThat(csv, startsWith("type,encounterUuid,patientUuid,accessionNumber,"));
+        assertThat(csv, containsString(",\"Small, \"\"apical\"\"\npneumothorax.\",false,"));
+    }
+
+    @Test
+    public void exportRadiologyStudiesAndReports_shouldIncludeVoidedChangesInIncrementalExport() throws Exception {
+
+        Date beforeSaving = new DateTime().minusMinutes(1).toDate();
+        saveReport(patientService.getPatient(6), "12345", "Small left apical pneumothorax.",
+                new DateTime(2012,1,1,10,10,10,0).toDate());
+        Encounter encounter = (Encounter) dbSessionFactory.getCurrentSession()
+                .createQuery("select r.encounter from RadiologyReportRecord r where r.accessionNumber = '12345'")
+                .uniqueResult();
+        encounterService.voidEncounter(encounter, "entered in error");
+
+        assertThat(radiologyService.exportRadiologyStudiesAndReports(new RadiologyExportQuery(),
+                new ByteArrayOutputStream()), is(0));
+
+        RadiologyExportQuery query = new RadiologyExportQuery();
+        query.setChangedSince(beforeSaving);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(radiologyService.exportRadiologyStudiesAndReports(query, out), is(1));
+        assertThat(out.toString("UTF-8"), containsString("\"voided\":true"));
+
+        query.setChangedSince(new DateTime().plusHours(1).toDate());
+        assertThat(radiologyService.exportRadiologyStudiesAndReports(query, new ByteArrayOutputStream()), is(0));
+    }
+
+    private void saveReport(Patient patient, String orderNumber, String reportBody, Date reportDate) {
+        RadiologyReport radiologyReport = new RadiologyReport();
+        radiologyReport.setPatient(patient);
+        radiologyReport.setProcedure(conceptService.getConcept(1001));
+        radiologyReport.setReportType(conceptService.getConcept(1009));
+        radiologyReport.setReportBody(reportBody);
+        radiologyReport.setOrderNumber(orderNumber);
+        radiologyReport.setReportDate(reportDate);
+        radiologyReport.setPrincipalResultsInterpreter(emrApiProperties.getUnknownProvider());
+        radiologyReport.setReportLocation(emrApiProperties.getUnknownLocation());
+        radiologyService.saveRadiologyReport(radiologyReport);
+    }
+
+    private void saveStudyWithReport(Patient patient, String orderNumber, Date datePerformed) {
+
+        // from radiologyServiceComponentTestDataset.xml
+        Concept procedure = conceptService.getConcept(1001);
+
+        RadiologyStudy radiologyStudy = new RadiologyStudy();
+        radiologyStudy.setPatient(patient);
+        radiologyStudy.setProcedure(procedure);
+        radiologyStudy.setImagesAvailable(true);
+        radiologyStudy.setOrderNumber(orderNumber);
+        radiologyStudy.setDatePerformed(datePerformed);
+        radiologyStudy.setStudyLocation(locationService.getLocation(2));
+        radiologyStudy.setTechnician(providerService.getProvider(1));
+        radiologyService.saveRadiologyStudy(radiologyStudy);
+
+        RadiologyReport radiologyReport = new RadiologyReport();
+        radiologyReport.setPatient(patient);
+        radiologyReport.setProcedure(procedure);
+        radiologyReport.setReportType(conceptService.getConcept(1009));
+        radiologyReport.setReportBody("Report for " + orderNumber);
+        radiologyReport.setOrderNumber(orderNumber);
+        radiologyReport.setReportDate(new DateTime(datePerformed).plusHours(1).toDate());
+        radiologyReport.setPrincipalResultsInterpreter(providerService.getProvider(1));
+        radiologyReport.setReportLocation(emrApiProperties.getUnknownLocation());
+        radiologyService.saveRadiologyReport(radiologyReport);
+    }
+
+    private Order placeRadiologyOrder(Patient patient, Order.Urgency urgency, int hoursAgo) throws Exception {
+        RadiologyRequisition requisition = new RadiologyRequisition();
+        requisition.setPatient(patient);
+        requisition.setStudies(Collections.singleton(conceptService.getConcept(18)));
+        requisition.setUrgency(urgency);
+        requisition.setRequestedBy(providerService.getProvider(1));
+        requisition.setRequestedOn(new DateTime().minusHours(hoursAgo).toDate());
+        requisition.setRequestedFrom(locationService.getLocation(1));
+        return radiologyService.placeRadiologyRequisition(requisition).getOrders().iterator().next();
+    }
+
 }
@@ -22,6 +22,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentMatcher;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.openmrs.Concept;
 import org.openmrs.ConceptDatatype;
 import org.openmrs.ConceptMap;
@@ -41,14 +43,20 @@ import org.openmrs.Person;
 import org.openmrs.Provider;
 import org.openmrs.User;
 import org.openmrs.Visit;
+import org.openmrs.api.APIException;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.EncounterService;
+import org.openmrs.api.LocationService;
 import org.openmrs.api.OrderService;
+import org.openmrs.api.ProviderService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.emrapi.EmrApiConstants;
-import org.openmrs.module.emrapi.db.EmrEncounterDAO;
 import org.openmrs.module.emrapi.visit.VisitDomainWrapper;
+import org.openmrs.module.radiologyapp.db.RadiologyAccessionDAO;
+import org.openmrs.module.radiologyapp.db.RadiologyEncounterDAO;
 import org.openmrs.module.radiologyapp.db.RadiologyOrderDAO;
+import org.openmrs.module.radiologyapp.db.RadiologyReportRecordDAO;
+import org.openmrs.module.radiologyapp.db.RadiologyStudyRecordDAO;
 import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
 import org.openmrs.module.radiologyapp.matchers.IsExpectedRadiologyReport;
 import org.openmrs.module.radiologyapp.matchers.IsExpectedRadiologyStudy;
@@ -56,14 +64,24 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.transaction.PlatformTransactionManager;
 import uk.co.it.modular.hamcrest.date.DateMatchers;
 
+import java.sql.Savepoint;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -76,9 +94,11 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.isA;
-import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 
@@ -97,10 +117,20 @@ public class RadiologyServiceTest{
     private RadiologyOrderDAO radiologyOrderDAO;
 
     private ConceptService conceptService;
+
+    private RadiologyConceptSetRegistry conceptSetRegistry;
     
     private OrderService orderService;
 
-    private EmrEncounterDAO emrEncounterDAO;
+    private RadiologyAccessionDAO radiologyAccessionDAO;
+
+    private RadiologyEncounterDAO radiologyEncounterDAO;
+
+    private RadiologyStudyRecordDAO radiologyStudyRecordDAO;
+
+    private RadiologyReportRecordDAO radiologyReportRecordDAO;
+
+    private List<Obs> stubbedObs = new ArrayList<Obs>();
 
     private OrderType orderType;
 
@@ -209,13 +239,30 @@ public class RadiologyServiceTest{
         prepareMocks();
         setupRadiologyStudyAndRadiologyReportsConceptSets();
 
+        conceptSetRegistry = new RadiologyConceptSetRegistry();
+        conceptSetRegistry.setConceptService(conceptService);
+
         radiologyService = new RadiologyServiceImpl();
         radiologyService.setRadiologyProperties(radiologyProperties);
         radiologyService.setEncounterService(encounterService);
         radiologyService.setRadiologyOrderDAO(radiologyOrderDAO);
-        radiologyService.setConceptService(conceptService);
+        radiologyService.setConceptSetRegistry(conceptSetRegistry);
         radiologyService.setOrderService(orderService);
-        radiologyService.setEmrEncounterDAO(emrEncounterDAO);
+        radiologyService.setRadiologyAccessionDAO(radiologyAccessionDAO);
+        radiologyService.setRadiologyEncounterDAO(radiologyEncounterDAO);
+        radiologyService.setRadiologyStudyRecordDAO(radiologyStudyRecordDAO);
+        radiologyService.setRadiologyReportRecordDAO(radiologyReportRecordDAO);
+
+        // switched off, as the mocked properties have no cache size
+        RadiologyTimelineCache radiologyTimelineCache = new RadiologyTimelineCache();
+        radiologyTimelineCache.setRadiologyProperties(radiologyProperties);
+        radiologyService.setRadiologyTimelineCache(radiologyTimelineCache);
+
+        // switched off until a test sets the number of threads
+        RadiologyQueryExecutor radiologyQueryExecutor = new RadiologyQueryExecutor();
+        radiologyQueryExecutor.setRadiologyProperties(radiologyProperties);
+        radiologyQueryExecutor.setTransactionManager(mock(PlatformTransactionManager.class));
+        radiologyService.setRadiologyQueryExecutor(radiologyQueryExecutor);
     }
 
     private void prepareMocks() {
@@ -225,7 +272,10 @@ public class RadiologyServiceTest{
         radiologyOrderDAO = mock(RadiologyOrderDAO.class);
         conceptService = mock(ConceptService.class);
         orderService = mock(OrderService.class);
-        emrEncounterDAO = mock(EmrEncounterDAO.class);
+        radiologyAccessionDAO = mock(RadiologyAccessionDAO.class);
+        radiologyEncounterDAO = mock(RadiologyEncounterDAO.class);
+        radiologyStudyRecordDAO = mock(RadiologyStudyRecordDAO.class);
+        radiologyReportRecordDAO = mock(RadiologyReportRecordDAO.class);
         booleanType = mock(ConceptDatatype.class);
 
         VisitDomainWrapper currentVisitSummary = new VisitDomainWrapper(currentVisit);
@@ -240,11 +290,14 @@ public class RadiologyServiceTest{
         when(radiologyProperties.getUnknownLocation()).thenReturn(unknownLocation);
         when(radiologyProperties.getUnknownProvider()).thenReturn(unknownProvider);
         when(radiologyProperties.getRadiologyTestOrderType()).thenReturn(orderType);
+        when(radiologyProperties.getSaveBatchChunkSize()).thenReturn(2);
         when(booleanType.isBoolean()).thenReturn(true);
         when(Context.getConceptService()).thenReturn(conceptService);
         when(conceptService.getTrueConcept()).thenReturn(trueConcept);
         when(conceptService.getFalseConcept()).thenReturn(falseConcept);
         when(encounterService.saveEncounter(isA(Encounter.class))).thenReturn(new Encounter());
+        when(radiologyEncounterDAO.getObs(any(Collection.class), any(Collection.class))).thenReturn(stubbedObs);
+        when(radiologyEncounterDAO.rollbackToSavepoint(any(Savepoint.class))).thenReturn(true);
     }
 
     private void setupRadiologyStudyAndRadiologyReportsConceptSets() {
@@ -426,6 +479,81 @@ public class RadiologyServiceTest{
         verify(encounterService).saveEncounter(argThat(new IsExpectedRadiologyStudyEncounter(currentLocation, provider)));
     }
 
+    @Test
+    public void saveRadiologyStudy_shouldIndexOrderNumberOfRadiologyStudyEncounter() {
+
+        RadiologyStudy study = new RadiologyStudy();
+        study.setPatient(patient);
+        study.setDatePerformed(currentDate);
+        study.setOrderNumber("123");
+        study.setProcedure(new Concept());
+
+        radiologyService.saveRadiologyStudy(study);
+
+        verify(radiologyAccessionDAO).saveStudyAccession(argThat(new ArgumentMatcher<RadiologyAccession>() {
+            @Override
+            public boolean matches(RadiologyAccession accession) {
+                return accession.getAccessionNumber().equals("123") && accession.getKind() == RadiologyAccession.Kind.STUDY;
+            }
+        }));
+    }
+
+    @Test
+    public void saveRadiologyStudy_shouldCopyRadiologyStudyToStudyTable() {
+
+        RadiologyStudy study = new RadiologyStudy();
+        study.setPatient(patient);
+        study.setDatePerformed(currentDate);
+        study.setOrderNumber("123");
+        study.setProcedure(new Concept());
+        study.setImagesAvailable(true);
+
+        radiologyService.saveRadiologyStudy(study);
+
+        verify(radiologyStudyRecordDAO).saveOrUpdate(argThat(new ArgumentMatcher<RadiologyStudyRecord>() {
+            @Override
+            public boolean matches(RadiologyStudyRecord record) {
+                return record.getAccessionNumber().equals("123") && record.getImagesAvailable()
+                        && record.getTechnician() == unknownProvider;
+            }
+        }));
+    }
+
+    @Test
+    public void getRadiologyStudyByOrderNumber_shouldReadFromStudyTablesIfEnabled() {
+
+        when(radiologyProperties.isReadFromStudyTables()).thenReturn(true);
+
+        RadiologyStudy study = new RadiologyStudy();
+        study.setPatient(patient);
+        study.setOrderNumber("123");
+        study.setDatePerformed(currentDate);
+        study.setTechnician(provider);
+        Encounter studyEncounter = new Encounter();
+        studyEncounter.setPatient(patient);
+        studyEncounter.setEncounterDatetime(currentDate);
+        when(radiologyStudyRecordDAO.getStudyRecords(null, "123"))
+                .thenReturn(Collections.singletonList(new RadiologyStudyRecord(study, studyEncounter)));
+
+        RadiologyReport report = new RadiologyReport();
+        report.setPatient(patient);
+        report.setOrderNumber("123");
+        report.setReportBody("Some report body");
+        Encounter reportEncounter = new Encounter();
+        reportEncounter.setPatient(patient);
+        reportEncounter.setEncounterDatetime(currentDate);
+        when(radiologyReportRecordDAO.getReportRecords(null, "123"))
+                .thenReturn(Collections.singletonList(new RadiologyReportRecord(report, reportEncounter)));
+
+        RadiologyStudy radiologyStudy = radiologyService.getRadiologyStudyByOrderNumber("123");
+
+        assertThat(radiologyStudy.getOrderNumber(), is("123"));
+        assertThat(radiologyStudy.getTechnician(), is(provider));
+        assertThat(radiologyStudy.getReports().size(), is(1));
+        assertThat(radiologyStudy.getReports().get(0).getReportBody(), is("Some report body"));
+        verifyZeroInteractions(radiologyAccessionDAO, radiologyEncounterDAO);
+    }
+
     @Test(expected = RadiologyAPIException.class)
     public void saveRadiologyStudy_shouldFailIfOrderNumberNotSpecified() {
 
@@ -468,7 +596,7 @@ public class RadiologyServiceTest{
     @Test(expected = RadiologyAPIException.class)
     public void saveRadiologyStudy_shouldFailIfAnotherStudyExistsWithSameOrderNumber() {
 
-        when(emrEncounterDAO.getEncountersByObsValueText(null, orderNumberConcept, "123", radiologyStudyEncounterType, false))
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.STUDY))
                 .thenReturn(Collections.singletonList(new Encounter()));
 
         RadiologyStudy study = new RadiologyStudy();
@@ -481,6 +609,157 @@ public class RadiologyServiceTest{
         radiologyService.saveRadiologyStudy(study);
     }
 
+    @Test
+    public void saveRadiologyStudy_shouldSerializeConcurrentSavesOfTheSameOrderNumberSoThatOnlyTheFirstReachesTheDatabase() throws Exception {
+
+        final Set<String> savedOrderNumbers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.STUDY)).thenAnswer(new Answer<List<Encounter>>() {
+            @Override
+            public List<Encounter> answer(InvocationOnMock invocation) {
+                return savedOrderNumbers.contains("123") ? Collections.singletonList(new Encounter()) : new ArrayList<Encounter>();
+            }
+        });
+
+        // records what reaches the database; the delay widens the gap between the duplicate check and the insert, so
+        // that without the lock the other threads would pass the check too
+        when(radiologyAccessionDAO.saveStudyAccession(any(RadiologyAccession.class))).thenAnswer(new Answer<RadiologyAccession>() {
+            @Override
+            public RadiologyAccession answer(InvocationOnMock invocation) throws Exception {
+                RadiologyAccession accession = (RadiologyAccession) invocation.getArguments()[0];
+                Thread.sleep(20);
+                if (!savedOrderNumbers.add(accession.getAccessionNumber())) {
+                    throw new RadiologyAPIException("A Radiology Study already exists with order number " + accession.getAccessionNumber());
+                }
+                return accession;
+            }
+        });
+
+        int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    RadiologyStudy study = new RadiologyStudy();
+                    study.setPatient(patient);
+                    study.setDatePerformed(currentDate);
+                    study.setOrderNumber("123");
+                    study.setProcedure(new Concept());
+
+                    start.await();
+                    try {
+                        radiologyService.saveRadiologyStudy(study);
+                        return true;
+                    }
+                    catch (RadiologyAPIException e) {
+                        return false;
+                    }
+                }
+            }));
+        }
+
+        start.countDown();
+        int successes = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(30, TimeUnit.SECONDS)) {
+                successes++;
+            }
+        }
+        executor.shutdown();
+
+        assertThat(successes, is(1));
+        assertThat(savedOrderNumbers.size(), is(1));
+        // the losers should have been turned away by the duplicate check, without ever reaching the constraint
+        verify(radiologyAccessionDAO, times(1)).saveStudyAccession(any(RadiologyAccession.class));
+    }
+
+    @Test
+    public void saveRadiologyStudies_shouldCheckAllOrderNumbersAtOnceAndReportResultForEachStudy() {
+
+        when(radiologyAccessionDAO.getStudyAccessionNumbers(any(Collection.class))).thenReturn(Collections.singleton("456"));
+
+        List<RadiologyStudy> studies = new ArrayList<RadiologyStudy>();
+        for (String orderNumber : Arrays.asList("123", "456", "123", "789", null)) {
+            RadiologyStudy study = new RadiologyStudy();
+            study.setPatient(patient);
+            study.setDatePerformed(currentDate);
+            study.setOrderNumber(orderNumber);
+            study.setProcedure(new Concept());
+            studies.add(study);
+        }
+
+        List<RadiologySaveResult<RadiologyStudy>> results = radiologyService.saveRadiologyStudies(studies);
+
+        assertThat(results.size(), is(5));
+        assertThat(results.get(0).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(1).getStatus(), is(RadiologySaveResult.Status.DUPLICATE));
+        assertThat(results.get(2).getStatus(), is(RadiologySaveResult.Status.DUPLICATE));
+        assertThat(results.get(3).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(4).getStatus(), is(RadiologySaveResult.Status.INVALID));
+        assertThat(results.get(0).getItem(), is(studies.get(0)));
+        assertThat(results.get(0).getEncounter(), is(notNullValue()));
+
+        verify(radiologyAccessionDAO, times(1)).getStudyAccessionNumbers(any(Collection.class));
+        verify(encounterService, times(2)).saveEncounter(argThat(new IsExpectedRadiologyStudyEncounter(unknownLocation, unknownProvider)));
+        verify(radiologyAccessionDAO, times(2)).saveStudyAccession(any(RadiologyAccession.class));
+    }
+
+    @Test
+    public void saveRadiologyStudies_shouldSaveTheChunkOfAFailingStudyAgainOneStudyAtATime() {
+
+        final Patient failingPatient = new Patient(2);
+        when(encounterService.saveEncounter(isA(Encounter.class))).thenAnswer(new Answer<Encounter>() {
+            @Override
+            public Encounter answer(InvocationOnMock invocation) throws Throwable {
+                Encounter encounter = (Encounter) invocation.getArguments()[0];
+                if (encounter.getPatient() == failingPatient) {
+                    throw new APIException("failed to save");
+                }
+                return encounter;
+            }
+        });
+
+        List<RadiologyStudy> studies = new ArrayList<RadiologyStudy>();
+        for (String orderNumber : Arrays.asList("123", "456", "789")) {
+            RadiologyStudy study = new RadiologyStudy();
+            study.setPatient(orderNumber.equals("456") ? failingPatient : patient);
+            study.setDatePerformed(currentDate);
+            study.setOrderNumber(orderNumber);
+            study.setProcedure(new Concept());
+            studies.add(study);
+        }
+
+        List<RadiologySaveResult<RadiologyStudy>> results = radiologyService.saveRadiologyStudies(studies);
+
+        assertThat(results.get(0).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(1).getStatus(), is(RadiologySaveResult.Status.FAILED));
+        assertThat(results.get(1).getMessage(), is("failed to save"));
+        assertThat(results.get(2).getStatus(), is(RadiologySaveResult.Status.SAVED));
+
+        // the first chunk, then the failing study on its own
+        verify(radiologyEncounterDAO, times(2)).rollbackToSavepoint(any(Savepoint.class));
+        // the first study in its chunk and then on its own, the last one in a chunk of its own
+        verify(radiologyAccessionDAO, times(3)).saveStudyAccession(any(RadiologyAccession.class));
+    }
+
+    @Test(expected = APIException.class)
+    public void saveRadiologyStudies_shouldFailTheBatchIfAChunkFailsSoThatTheTransactionCannotCommit() {
+
+        doThrow(new APIException("failed to flush")).when(radiologyEncounterDAO).flush();
+        when(radiologyEncounterDAO.rollbackToSavepoint(any(Savepoint.class))).thenReturn(false);
+
+        RadiologyStudy study = new RadiologyStudy();
+        study.setPatient(patient);
+        study.setDatePerformed(currentDate);
+        study.setOrderNumber("123");
+        study.setProcedure(new Concept());
+
+        radiologyService.saveRadiologyStudies(Collections.singletonList(study));
+    }
+
     @Test
     public void saveRadiologyStudy_shouldNotFailIfTechnicianAndLocationNotSpecified() {
 
@@ -516,6 +795,69 @@ public class RadiologyServiceTest{
 
     }
 
+    @Test
+    public void saveRadiologyReports_shouldSaveValidReportsAndReportInvalidOnes() {
+
+        List<RadiologyReport> reports = new ArrayList<RadiologyReport>();
+        for (String orderNumber : Arrays.asList("123", null, "123", "456")) {
+            RadiologyReport report = new RadiologyReport();
+            report.setPatient(patient);
+            report.setReportDate(currentDate);
+            report.setPrincipalResultsInterpreter(provider);
+            report.setReportLocation(currentLocation);
+            report.setOrderNumber(orderNumber);
+            report.setReportBody("test");
+            report.setProcedure(new Concept());
+            report.setReportType(new Concept());
+            reports.add(report);
+        }
+
+        List<RadiologySaveResult<RadiologyReport>> results = radiologyService.saveRadiologyReports(reports);
+
+        assertThat(results.size(), is(4));
+        assertThat(results.get(0).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(1).getStatus(), is(RadiologySaveResult.Status.INVALID));
+        assertThat(results.get(2).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(3).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(3).getItem(), is(reports.get(3)));
+
+        verify(encounterService, times(3)).saveEncounter(argThat(new IsExpectedRadiologyReportEncounter(currentLocation, provider)));
+        verify(radiologyAccessionDAO, times(3)).saveOrUpdate(argThat(new ArgumentMatcher<RadiologyAccession>() {
+            @Override
+            public boolean matches(RadiologyAccession accession) {
+                return accession.getKind() == RadiologyAccession.Kind.REPORT;
+            }
+        }));
+    }
+
+    @Test
+    public void saveRadiologyReports_shouldSaveAChunkAgainOneReportAtATimeIfItFailsToFlush() {
+
+        doThrow(new APIException("failed to flush")).doNothing().when(radiologyEncounterDAO).flush();
+
+        List<RadiologyReport> reports = new ArrayList<RadiologyReport>();
+        for (String orderNumber : Arrays.asList("123", "456", "789")) {
+            RadiologyReport report = new RadiologyReport();
+            report.setPatient(patient);
+            report.setReportDate(currentDate);
+            report.setOrderNumber(orderNumber);
+            report.setReportBody("test");
+            report.setProcedure(new Concept());
+            report.setReportType(new Concept());
+            reports.add(report);
+        }
+
+        List<RadiologySaveResult<RadiologyReport>> results = radiologyService.saveRadiologyReports(reports);
+
+        assertThat(results.get(0).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(1).getStatus(), is(RadiologySaveResult.Status.SAVED));
+        assertThat(results.get(2).getStatus(), is(RadiologySaveResult.Status.SAVED));
+
+        verify(radiologyEncounterDAO, times(1)).rollbackToSavepoint(any(Savepoint.class));
+        // the two reports of the first chunk twice, the last one once
+        verify(encounterService, times(5)).saveEncounter(any(Encounter.class));
+    }
+
     @Test(expected = RadiologyAPIException.class)
     public void saveRadiologyReport_shouldFailIfOrderNumberNotSpecified() {
 
@@ -620,8 +962,7 @@ public class RadiologyServiceTest{
         encounters.add(setupRadiologyStudyEncounter(firstStudyDate, firstStudyLocation, patient, firstStudyTechnician,
                 "123", firstStudyProcedure));
 
-        when(encounterService.getEncounters(patient, null, null, null, null, Collections.singletonList(radiologyStudyEncounterType),
-                null, null, null, false)).thenReturn(encounters);
+        setupRadiologyEncountersForPatient(encounters);
 
         List<RadiologyStudy> radiologyStudies = radiologyService.getRadiologyStudiesForPatient(patient);
         assertThat(radiologyStudies.size(), is(2));
@@ -656,8 +997,7 @@ public class RadiologyServiceTest{
         encounters.add(setupRadiologyStudyEncounterWithoutObsGroup(secondStudyDate, secondStudyLocation, patient, secondStudyTechnician));
         encounters.add(setupRadiologyStudyEncounterWithoutObsGroup(firstStudyDate, firstStudyLocation, patient, firstStudyTechnician));
 
-        when(encounterService.getEncounters(patient, null, null, null, null, Collections.singletonList(radiologyStudyEncounterType),
-                null, null, null, false)).thenReturn(encounters);
+        setupRadiologyEncountersForPatient(encounters);
 
         List<RadiologyStudy> radiologyStudies = radiologyService.getRadiologyStudiesForPatient(patient);
         assertThat(radiologyStudies.size(), is(2));
@@ -669,8 +1009,7 @@ public class RadiologyServiceTest{
     @Test
     public void getRadiologyStudiesForPatient_shouldReturnEmptyListIfNoStudiesForPatient() {
 
-        when(encounterService.getEncounters(patient, null, null, null, null, Collections.singletonList(radiologyStudyEncounterType),
-                null, null, null, false)).thenReturn(null);
+        setupRadiologyEncountersForPatient(new ArrayList<Encounter>());
 
         List<RadiologyStudy> radiologyStudies = radiologyService.getRadiologyStudiesForPatient(patient);
         assertThat(radiologyStudies.size(), is(0));
@@ -718,12 +1057,8 @@ public class RadiologyServiceTest{
         encounters.add(setupRadiologyReportEncounter(firstRadiologyReport));
         encounters.add(setupRadiologyReportEncounter(secondRadiologyReport));
 
-        // return an empty list when trying to fetch studies
-        when(encounterService.getEncounters(patient, null, null, null, null, Collections.singletonList(radiologyStudyEncounterType),
-                null, null, null, false)).thenReturn(new ArrayList<Encounter>());
-
-        when(encounterService.getEncounters(patient, null, null, null, null, Collections.singletonList(radiologyReportEncounterType),
-                null, null, null, false)).thenReturn(encounters);
+        // only report encounters, no study encounters
+        setupRadiologyEncountersForPatient(encounters);
 
         RadiologyStudy firstExpectedStudy = new RadiologyStudy();
         firstExpectedStudy.setDatePerformed(firstReportDate);
@@ -744,6 +1079,104 @@ public class RadiologyServiceTest{
         assertTrue(new IsExpectedRadiologyStudy(firstExpectedStudy).matches(radiologyStudies.get(1)));
     }
 
+    @Test
+    public void getRadiologyStudiesForPatient_shouldNotLoadReportBodies() {
+
+        RadiologyReport radiologyReport = new RadiologyReport();
+        radiologyReport.setOrderNumber("123");
+        radiologyReport.setReportDate(new DateTime(2012, 12, 25, 12, 0, 0, 0).toDate());
+        radiologyReport.setPatient(patient);
+        radiologyReport.setReportType(new Concept());
+        radiologyReport.setReportBody("Some prelim report");
+
+        List<Encounter> encounters = new ArrayList<Encounter>();
+        encounters.add(setupRadiologyReportEncounter(radiologyReport));
+        setupRadiologyEncountersForPatient(encounters);
+
+        List<RadiologyStudy> radiologyStudies = radiologyService.getRadiologyStudiesForPatient(patient);
+
+        assertThat(radiologyStudies.get(0).getReports().size(), is(1));
+        verify(radiologyEncounterDAO).getObs(encounters, Collections.singletonList(reportBodyConcept));
+    }
+
+    @Test
+    public void getRadiologyStudiesForPatient_shouldAssembleTheSameTimelineWhenReadingInParallel() {
+
+        LocationService locationService = mock(LocationService.class);
+        ProviderService providerService = mock(ProviderService.class);
+        radiologyService.setConceptService(conceptService);
+        radiologyService.setLocationService(locationService);
+        radiologyService.setProviderService(providerService);
+
+        // read in sessions of their own, so copied back by id
+        Location location = new Location(1);
+        Provider technician = new Provider(1);
+        Provider reporter = new Provider(2);
+        Concept procedure = new Concept(111);
+        Concept reportType = new Concept(222);
+        when(locationService.getLocation(1)).thenReturn(location);
+        when(providerService.getProvider(1)).thenReturn(technician);
+        when(providerService.getProvider(2)).thenReturn(reporter);
+        when(conceptService.getConcept(111)).thenReturn(procedure);
+        when(conceptService.getConcept(222)).thenReturn(reportType);
+
+        RadiologyReport reportOfStudy = new RadiologyReport();
+        reportOfStudy.setOrderNumber("123");
+        reportOfStudy.setReportDate(new DateTime(2012, 12, 26, 12, 0, 0, 0).toDate());
+        reportOfStudy.setProcedure(procedure);
+        reportOfStudy.setPatient(patient);
+        reportOfStudy.setPrincipalResultsInterpreter(reporter);
+        reportOfStudy.setReportLocation(location);
+        reportOfStudy.setReportType(reportType);
+        reportOfStudy.setReportBody("Some report");
+
+        RadiologyReport reportWithoutStudy = new RadiologyReport();
+        reportWithoutStudy.setOrderNumber("789");
+        reportWithoutStudy.setReportDate(new DateTime(2013, 1, 5, 12, 0, 0, 0).toDate());
+        reportWithoutStudy.setProcedure(procedure);
+        reportWithoutStudy.setPatient(patient);
+        reportWithoutStudy.setPrincipalResultsInterpreter(reporter);
+        reportWithoutStudy.setReportLocation(location);
+        reportWithoutStudy.setReportType(reportType);
+        reportWithoutStudy.setReportBody("Another report");
+
+        // all in the order the encounters are read in
+        List<Encounter> studyEncounters = Arrays.asList(
+                setupRadiologyStudyEncounter(new DateTime(2011, 10, 10, 10, 0, 0, 0).toDate(), location, patient,
+                        technician, "456", procedure),
+                setupRadiologyStudyEncounter(new DateTime(2012, 12, 25, 12, 0, 0, 0).toDate(), location, patient,
+                        technician, "123", procedure));
+        List<Encounter> reportEncounters = Arrays.asList(setupRadiologyReportEncounter(reportOfStudy),
+                setupRadiologyReportEncounter(reportWithoutStudy));
+        List<Encounter> encounters = new ArrayList<Encounter>(studyEncounters);
+        encounters.addAll(reportEncounters);
+
+        setupRadiologyEncountersForPatient(encounters);
+        when(radiologyEncounterDAO.getEncounters(patient, Collections.singletonList(radiologyStudyEncounterType)))
+                .thenReturn(studyEncounters);
+        when(radiologyEncounterDAO.getEncounters(patient, Collections.singletonList(radiologyReportEncounterType)))
+                .thenReturn(reportEncounters);
+
+        List<RadiologyStudy> sequential = radiologyService.getRadiologyStudiesForPatient(patient);
+
+        when(radiologyProperties.getTimelineQueryThreads()).thenReturn(2);
+        List<RadiologyStudy> parallel = radiologyService.getRadiologyStudiesForPatient(patient);
+
+        assertThat(sequential.size(), is(3));
+        assertThat(parallel.size(), is(sequential.size()));
+        for (int i = 0; i < sequential.size(); i++) {
+            assertTrue(new IsExpectedRadiologyStudy(sequential.get(i)).matches(parallel.get(i)));
+            List<RadiologyReport> expectedReports = sequential.get(i).getReports();
+            List<RadiologyReport> reports = parallel.get(i).getReports();
+            assertThat(reports == null ? 0 : reports.size(), is(expectedReports == null ? 0 : expectedReports.size()));
+            for (int j = 0; reports != null && j < reports.size(); j++) {
+                assertTrue(new IsExpectedRadiologyReport(expectedReports.get(j)).matches(reports.get(j)));
+            }
+        }
+        verify(radiologyEncounterDAO).getEncounters(patient, Collections.singletonList(radiologyStudyEncounterType));
+        verify(radiologyEncounterDAO).getEncounters(patient, Collections.singletonList(radiologyReportEncounterType));
+    }
+
     @Test
     public void getRadiologyStudyByOrderNumber_shouldReturnRadiologyStudyWithOrderNumber() {
 
@@ -766,8 +1199,9 @@ public class RadiologyServiceTest{
         encounters.add(setupRadiologyStudyEncounter(studyDate, studyLocation, patient, studyTechnician,
                 "123", studyProcedure));
 
-        when(emrEncounterDAO.getEncountersByObsValueText(null, orderNumberConcept, "123", radiologyStudyEncounterType, false))
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.STUDY))
                 .thenReturn(encounters);
+        setupObsForEncounters(encounters);
 
         RadiologyStudy radiologyStudy = radiologyService.getRadiologyStudyByOrderNumber("123");
         assertTrue(new IsExpectedRadiologyStudy(expectedStudy).matches(radiologyStudy));
@@ -812,8 +1246,9 @@ public class RadiologyServiceTest{
                 "456", secondStudyProcedure));
 
 
-        when(emrEncounterDAO.getEncountersByObsValueText(null, orderNumberConcept, "123", radiologyStudyEncounterType, false))
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.STUDY))
                 .thenReturn(encounters);
+        setupObsForEncounters(encounters);
 
         // should just return the first study
         RadiologyStudy radiologyStudy = radiologyService.getRadiologyStudyByOrderNumber("123");
@@ -823,13 +1258,47 @@ public class RadiologyServiceTest{
 
     @Test
     public void getRadiologyStudyByOrderNumber_shouldReturnNullIfNoMatchingStudy() {
-        when(emrEncounterDAO.getEncountersByObsValueText(any(Patient.class), any(Concept.class), any(String.class)
-                , any(EncounterType.class), eq(false))).thenReturn(null);
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(any(Patient.class), any(String.class),
+                any(RadiologyAccession.Kind.class))).thenReturn(null);
 
         RadiologyStudy radiologyStudy = radiologyService.getRadiologyStudyByOrderNumber("1234");
         assertNull(radiologyStudy);
     }
 
+    @Test
+    public void getRadiologyStudyByOrderNumber_shouldIncludeReportsWithSameOrderNumber() {
+
+        Concept procedure = new Concept();
+        procedure.setId(111);
+
+        RadiologyReport expectedReport = new RadiologyReport();
+        expectedReport.setOrderNumber("123");
+        expectedReport.setReportDate(new DateTime(2012, 12, 30, 12, 0, 0, 0).toDate());
+        expectedReport.setProcedure(procedure);
+        expectedReport.setPatient(patient);
+        expectedReport.setPrincipalResultsInterpreter(new Provider());
+        expectedReport.setReportLocation(new Location());
+        expectedReport.setReportType(new Concept());
+        expectedReport.setReportBody("Some final report");
+
+        List<Encounter> encounters = new ArrayList<Encounter>();
+        encounters.add(setupRadiologyStudyEncounter(new DateTime(2012, 12, 25, 12, 0, 0, 0).toDate(), new Location(),
+                patient, new Provider(), "123", procedure));
+        List<Encounter> reportEncounters = new ArrayList<Encounter>();
+        reportEncounters.add(setupRadiologyReportEncounter(expectedReport));
+
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.STUDY))
+                .thenReturn(encounters);
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.REPORT))
+                .thenReturn(reportEncounters);
+        setupObsForEncounters(encounters);
+        setupObsForEncounters(reportEncounters);
+
+        RadiologyStudy radiologyStudy = radiologyService.getRadiologyStudyByOrderNumber("123");
+        assertThat(radiologyStudy.getReports().size(), is(1));
+        assertTrue(new IsExpectedRadiologyReport(expectedReport).matches(radiologyStudy.getReports().get(0)));
+    }
+
     @Test
     public void getRadiologyStudyByOrderNumber_shouldDeriveRadiologyStudyFromReports() {
 
@@ -873,11 +1342,12 @@ public class RadiologyServiceTest{
         encounters.add(setupRadiologyReportEncounter(secondRadiologyReport));
 
         // return an empty list when trying to fetch studies
-        when(emrEncounterDAO.getEncountersByObsValueText(null, orderNumberConcept, "123", radiologyStudyEncounterType, false))
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.STUDY))
                 .thenReturn(new ArrayList<Encounter>());
 
-        when(emrEncounterDAO.getEncountersByObsValueText(null, orderNumberConcept, "123", radiologyReportEncounterType, false))
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.REPORT))
                 .thenReturn(encounters);
+        setupObsForEncounters(encounters);
 
         RadiologyStudy expectedStudy = new RadiologyStudy();
         expectedStudy.setDatePerformed(firstReportDate);
@@ -930,8 +1400,9 @@ public class RadiologyServiceTest{
         encounters.add(setupRadiologyReportEncounter(firstExpectedRadiologyReport));
         encounters.add(setupRadiologyReportEncounter(secondExpectedRadiologyReport));
 
-        when(emrEncounterDAO.getEncountersByObsValueText(null, orderNumberConcept, "123", radiologyReportEncounterType, false))
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.REPORT))
                 .thenReturn(encounters);
+        setupObsForEncounters(encounters);
 
         List<RadiologyReport> radiologyReports = radiologyService.getRadiologyReportsByOrderNumber("123");
         assertThat(radiologyReports.size(), is(2));
@@ -973,8 +1444,9 @@ public class RadiologyServiceTest{
         encounters.add(setupRadiologyReportEncounterWithoutObsGroup(firstExpectedRadiologyReport));
         encounters.add(setupRadiologyReportEncounterWithoutObsGroup(secondExpectedRadiologyReport));
 
-        when(emrEncounterDAO.getEncountersByObsValueText(null, orderNumberConcept, "123", radiologyReportEncounterType, false))
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.REPORT))
                 .thenReturn(encounters);
+        setupObsForEncounters(encounters);
 
         List<RadiologyReport> radiologyReports = radiologyService.getRadiologyReportsByOrderNumber("123");
         assertThat(radiologyReports.size(), is(2));
@@ -987,7 +1459,7 @@ public class RadiologyServiceTest{
     @Test
     public void getRadiologyReportsByOrderNumber_shouldReturnEmptyListIfNoMatchingStudies() {
 
-        when(emrEncounterDAO.getEncountersByObsValueText(null, orderNumberConcept, "123", radiologyReportEncounterType, false))
+        when(radiologyAccessionDAO.getEncountersByAccessionNumber(null, "123", RadiologyAccession.Kind.REPORT))
                 .thenReturn(new ArrayList<Encounter>());
 
         List<RadiologyReport> radiologyReports = radiologyService.getRadiologyReportsByOrderNumber("123");
@@ -995,6 +1467,23 @@ public class RadiologyServiceTest{
 
     }
 
+    private void setupRadiologyEncountersForPatient(List<Encounter> encounters) {
+        when(radiologyEncounterDAO.getEncounters(patient, Arrays.asList(radiologyStudyEncounterType, radiologyReportEncounterType)))
+                .thenReturn(encounters);
+        setupObsForEncounters(encounters);
+    }
+
+    private void setupObsForEncounters(List<Encounter> encounters) {
+        for (Encounter encounter : encounters) {
+            for (Obs obs : encounter.getObsAtTopLevel(false)) {
+                stubbedObs.add(obs);
+                if (obs.getGroupMembers() != null) {
+                    stubbedObs.addAll(obs.getGroupMembers());
+                }
+            }
+        }
+    }
+
     private Encounter setupRadiologyStudyEncounter(Date datePerformed, Location location, Patient patient,
                                                    Provider provider, String orderNumber, Concept procedure) {
         Encounter encounter = new Encounter();
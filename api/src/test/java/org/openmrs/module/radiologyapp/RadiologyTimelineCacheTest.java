@@ -0,0 +1,219 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Location;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.ProviderService;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RadiologyTimelineCacheTest {
+
+    private RadiologyProperties radiologyProperties;
+
+    private Concept procedure;
+
+    private Location location;
+
+    private Provider technician;
+
+    private long now = 0;
+
+    private RadiologyTimelineCache cache;
+
+    @Before
+    public void setup() {
+        radiologyProperties = mock(RadiologyProperties.class);
+        when(radiologyProperties.getTimelineCacheMaxBytes()).thenReturn(1024L * 1024L);
+        when(radiologyProperties.getTimelineCacheTtlMillis()).thenReturn(60000L);
+
+        procedure = new Concept(18);
+        location = new Location(2);
+        technician = new Provider(1);
+
+        ConceptService conceptService = mock(ConceptService.class);
+        when(conceptService.getConcept(18)).thenReturn(procedure);
+        LocationService locationService = mock(LocationService.class);
+        when(locationService.getLocation(2)).thenReturn(location);
+        ProviderService providerService = mock(ProviderService.class);
+        when(providerService.getProvider(1)).thenReturn(technician);
+
+        cache = new RadiologyTimelineCache() {
+
+            @Override
+            protected long nanoTime() {
+                return now;
+            }
+        };
+        cache.setRadiologyProperties(radiologyProperties);
+        cache.setConceptService(conceptService);
+        cache.setLocationService(locationService);
+        cache.setProviderService(providerService);
+    }
+
+    @Test
+    public void shouldReturnFreshCopiesOfCachedTimeline() {
+
+        Patient patient = new Patient(6);
+        List<RadiologyStudy> timeline = buildTimeline(patient, "12345");
+        cache.put(patient, RadiologyTimelineCache.ALL_STUDIES, timeline, cache.startLoading());
+
+        List<RadiologyStudy> cached = cache.get(patient, RadiologyTimelineCache.ALL_STUDIES);
+
+        assertThat(cached.size(), is(1));
+        assertThat(cached.get(0), is(not(sameInstance(timeline.get(0)))));
+        assertThat(cached.get(0).getOrderNumber(), is("12345"));
+        assertThat(cached.get(0).getProcedure(), is(procedure));
+        assertThat(cached.get(0).getStudyLocation(), is(location));
+        assertThat(cached.get(0).getTechnician(), is(technician));
+        assertThat(cached.get(0).getDatePerformed(), is(timeline.get(0).getDatePerformed()));
+        assertThat(cached.get(0).getReports().get(0).getReportBody(), is("Report for 12345"));
+        assertThat(cached.get(0).getReports().get(0).getPatient(), is(patient));
+        assertNull(cache.get(patient, "0,5"));
+
+        assertThat((Long) cache.getSnapshot().get("hits"), is(1L));
+        assertThat((Long) cache.getSnapshot().get("misses"), is(1L));
+    }
+
+    @Test
+    public void shouldDiscardTimelinesOfInvalidatedPatientOnly() {
+
+        Patient patient = new Patient(6);
+        Patient otherPatient = new Patient(7);
+        cache.put(patient, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(patient, "12345"), cache.startLoading());
+        cache.put(otherPatient, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(otherPatient, "67890"), cache.startLoading());
+
+        now++;
+        cache.invalidate(6);
+
+        assertNull(cache.get(patient, RadiologyTimelineCache.ALL_STUDIES));
+        assertThat(cache.get(otherPatient, RadiologyTimelineCache.ALL_STUDIES).size(), is(1));
+    }
+
+    @Test
+    public void shouldNotCacheTimelineThatStartedLoadingBeforeInvalidation() {
+
+        Patient patient = new Patient(6);
+        long loadingStarted = cache.startLoading();
+        now++;
+        cache.invalidate(6);
+        now++;
+        cache.put(patient, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(patient, "12345"), loadingStarted);
+
+        assertNull(cache.get(patient, RadiologyTimelineCache.ALL_STUDIES));
+
+        cache.put(patient, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(patient, "12345"), cache.startLoading());
+        assertThat(cache.get(patient, RadiologyTimelineCache.ALL_STUDIES).size(), is(1));
+    }
+
+    @Test
+    public void shouldExpireTimelinesAfterTimeToLive() {
+
+        Patient patient = new Patient(6);
+        cache.put(patient, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(patient, "12345"), cache.startLoading());
+
+        now += TimeUnit.SECONDS.toNanos(59);
+        assertThat(cache.get(patient, RadiologyTimelineCache.ALL_STUDIES).size(), is(1));
+
+        now += TimeUnit.SECONDS.toNanos(2);
+        assertNull(cache.get(patient, RadiologyTimelineCache.ALL_STUDIES));
+        assertThat((Long) cache.getSnapshot().get("expirations"), is(1L));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyViewedPatientsOnceFull() {
+
+        Patient first = new Patient(6);
+        Patient second = new Patient(7);
+        Patient third = new Patient(8);
+        cache.put(first, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(first, "11111"), cache.startLoading());
+        long bytesPerPatient = (Long) cache.getSnapshot().get("estimatedBytes");
+        when(radiologyProperties.getTimelineCacheMaxBytes()).thenReturn(bytesPerPatient * 2);
+
+        cache.put(second, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(second, "22222"), cache.startLoading());
+        cache.get(first, RadiologyTimelineCache.ALL_STUDIES);
+        cache.put(third, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(third, "33333"), cache.startLoading());
+
+        assertNull(cache.get(second, RadiologyTimelineCache.ALL_STUDIES));
+        assertThat(cache.get(first, RadiologyTimelineCache.ALL_STUDIES).size(), is(1));
+        assertThat(cache.get(third, RadiologyTimelineCache.ALL_STUDIES).size(), is(1));
+        assertThat((Long) cache.getSnapshot().get("evictions"), is(1L));
+        assertThat((Long) cache.getSnapshot().get("estimatedBytes"), is(bytesPerPatient * 2));
+    }
+
+    @Test
+    public void shouldDiscardAllTimelinesWhenConfigurationChanges() {
+
+        Patient patient = new Patient(6);
+        cache.put(patient, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(patient, "12345"), cache.startLoading());
+
+        now++;
+        when(radiologyProperties.getVersion()).thenReturn(1L);
+
+        assertNull(cache.get(patient, RadiologyTimelineCache.ALL_STUDIES));
+    }
+
+    @Test
+    public void shouldNotCacheAnythingWhenSwitchedOff() {
+
+        when(radiologyProperties.getTimelineCacheMaxBytes()).thenReturn(0L);
+        Patient patient = new Patient(6);
+        cache.put(patient, RadiologyTimelineCache.ALL_STUDIES, buildTimeline(patient, "12345"), cache.startLoading());
+
+        assertNull(cache.get(patient, RadiologyTimelineCache.ALL_STUDIES));
+    }
+
+    private List<RadiologyStudy> buildTimeline(Patient patient, String orderNumber) {
+
+        RadiologyReport radiologyReport = new RadiologyReport();
+        radiologyReport.setPatient(patient);
+        radiologyReport.setOrderNumber(orderNumber);
+        radiologyReport.setProcedure(procedure);
+        radiologyReport.setReportBody("Report for " + orderNumber);
+        radiologyReport.setReportDate(new Date());
+
+        RadiologyStudy radiologyStudy = new RadiologyStudy();
+        radiologyStudy.setPatient(patient);
+        radiologyStudy.setOrderNumber(orderNumber);
+        radiologyStudy.setProcedure(procedure);
+        radiologyStudy.setStudyLocation(location);
+        radiologyStudy.setTechnician(technician);
+        radiologyStudy.setImagesAvailable(true);
+        radiologyStudy.setDatePerformed(new Date());
+        radiologyStudy.setReports(Collections.singletonList(radiologyReport));
+
+        return Collections.singletonList(radiologyStudy);
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.cluster;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.radiologyapp.RadiologyChange;
+import org.openmrs.module.radiologyapp.RadiologyConceptSetRegistry;
+import org.openmrs.module.radiologyapp.RadiologyProperties;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.module.radiologyapp.RadiologyTimelineCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RadiologyChangePollerTest {
+
+    private static final long NOW = 1000000000000L;
+
+    private RadiologyService radiologyService;
+
+    private RadiologyProperties radiologyProperties;
+
+    private RadiologyConceptSetRegistry conceptSetRegistry;
+
+    private RadiologyTimelineCache radiologyTimelineCache;
+
+    private RadiologyChangePoller poller;
+
+    @Before
+    public void setup() {
+        radiologyService = mock(RadiologyService.class);
+        radiologyProperties = mock(RadiologyProperties.class);
+        conceptSetRegistry = mock(RadiologyConceptSetRegistry.class);
+        radiologyTimelineCache = mock(RadiologyTimelineCache.class);
+
+        poller = new RadiologyChangePoller() {
+
+            @Override
+            protected RadiologyService getRadiologyService() {
+                return radiologyService;
+            }
+
+            @Override
+            protected Thread startWorker(Runnable worker, DaemonToken daemonToken) {
+                // polled by the tests themselves
+                return new Thread(worker);
+            }
+
+            @Override
+            protected long currentTimeMillis() {
+                return NOW;
+            }
+        };
+        poller.setRadiologyProperties(radiologyProperties);
+        poller.setConceptSetRegistry(conceptSetRegistry);
+        poller.setRadiologyTimelineCache(radiologyTimelineCache);
+        poller.setBatchSize(2);
+        poller.start(5, null);
+
+        // the first poll only finds where the log ends
+        when(radiologyService.getLatestRadiologyChangeId()).thenReturn(10);
+        poller.poll();
+    }
+
+    @Test
+    public void shouldApplyTheChangesOfOtherServers() {
+        when(radiologyService.getRadiologyChangesAfter(10, 2)).thenReturn(Arrays.asList(
+                remoteChange(11, RadiologyChange.Kind.STUDY, 6, NOW - 2 * RadiologyChangePoller.COMMIT_GRACE_MILLIS),
+                remoteChange(12, RadiologyChange.Kind.CONCEPT_SETS, null, NOW - 2 * RadiologyChangePoller.COMMIT_GRACE_MILLIS)));
+        when(radiologyService.getRadiologyChangesAfter(12, 2)).thenReturn(Arrays.asList(
+                remoteChange(13, RadiologyChange.Kind.PROPERTIES, null, NOW - 2 * RadiologyChangePoller.COMMIT_GRACE_MILLIS)));
+
+        poller.poll();
+
+        verify(radiologyTimelineCache).invalidate(6);
+        verify(conceptSetRegistry).invalidate();
+        verify(radiologyProperties).invalidate();
+
+        // the next poll reads from the last change
+        poller.poll();
+        verify(radiologyService).getRadiologyChangesAfter(13, 2);
+    }
+
+    @Test
+    public void shouldSkipTheChangesOfThisServer() {
+        RadiologyChange local = new RadiologyChange(RadiologyChange.Kind.REPORT, 6, "12345");
+        local.setId(11);
+        when(radiologyService.getRadiologyChangesAfter(10, 2)).thenReturn(Collections.singletonList(local));
+
+        poller.poll();
+
+        verify(radiologyTimelineCache, never()).invalidate(any(Integer.class));
+    }
+
+    @Test
+    public void shouldReadRecentChangesAgainButOnlyApplyThemOnce() {
+        RadiologyChange recent = remoteChange(11, RadiologyChange.Kind.STUDY, 6, NOW);
+        RadiologyChange committedLate = remoteChange(12, RadiologyChange.Kind.STUDY, 7,
+                NOW - 2 * RadiologyChangePoller.COMMIT_GRACE_MILLIS);
+        when(radiologyService.getRadiologyChangesAfter(10, 2)).thenReturn(Collections.singletonList(recent));
+
+        poller.poll();
+        verify(radiologyTimelineCache).invalidate(6);
+
+        // a change logged earlier may show up after a more recent one, as long as the watermark stays behind the latter
+        when(radiologyService.getRadiologyChangesAfter(10, 2)).thenReturn(Arrays.asList(recent, committedLate));
+        when(radiologyService.getRadiologyChangesAfter(12, 2)).thenReturn(new ArrayList<RadiologyChange>());
+
+        poller.poll();
+        verify(radiologyTimelineCache, times(1)).invalidate(6);
+        verify(radiologyTimelineCache).invalidate(7);
+        verify(radiologyService, times(2)).getRadiologyChangesAfter(10, 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldLogQueuedMetadataChangesOnTheNextPoll() {
+        poller.logLocalChange(RadiologyChange.Kind.PROPERTIES);
+        poller.logLocalChange(RadiologyChange.Kind.PROPERTIES);
+        poller.logLocalChange(RadiologyChange.Kind.CONCEPT_SETS);
+
+        poller.poll();
+
+        ArgumentCaptor<Collection> changes = ArgumentCaptor.forClass(Collection.class);
+        verify(radiologyService).saveRadiologyChanges(changes.capture());
+        assertThat(changes.getValue().size(), is(2));
+
+        poller.poll();
+        verify(radiologyService, times(1)).saveRadiologyChanges(any(Collection.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldLogQueuedPatientChangesOnTheNextPoll() {
+        poller.logLocalPatientChange(6);
+        poller.logLocalPatientChange(6);
+        poller.logLocalPatientChange(7);
+
+        poller.poll();
+
+        ArgumentCaptor<Collection> changes = ArgumentCaptor.forClass(Collection.class);
+        verify(radiologyService).saveRadiologyChanges(changes.capture());
+        assertThat(changes.getValue().size(), is(2));
+        for (Object change : changes.getValue()) {
+            assertThat(((RadiologyChange) change).getKind(), is(RadiologyChange.Kind.ENCOUNTER));
+        }
+    }
+
+    @Test
+    public void shouldApplyTheEncounterChangesOfOtherServers() {
+        when(radiologyService.getRadiologyChangesAfter(10, 2)).thenReturn(Collections.singletonList(
+                remoteChange(11, RadiologyChange.Kind.ENCOUNTER, 6, NOW - 2 * RadiologyChangePoller.COMMIT_GRACE_MILLIS)));
+
+        poller.poll();
+
+        verify(radiologyTimelineCache).invalidate(6);
+    }
+
+    @Test
+    public void shouldPurgeOldChangesAtMostHourly() {
+        poller.poll();
+        poller.poll();
+
+        verify(radiologyService, times(1)).purgeRadiologyChanges(eq(new Date(NOW - RadiologyChangePoller.RETENTION_MILLIS)));
+    }
+
+    @Test
+    public void shouldNotQueueChangesWhenStopped() {
+        poller.stop();
+        poller.logLocalChange(RadiologyChange.Kind.PROPERTIES);
+
+        poller.poll();
+
+        verify(radiologyService, never()).saveRadiologyChanges(any(Collection.class));
+    }
+
+    private RadiologyChange remoteChange(int id, RadiologyChange.Kind kind, Integer patientId, long dateCreated) {
+        RadiologyChange change = new RadiologyChange(kind, patientId, null);
+        change.setId(id);
+        change.setOrigin("another server");
+        change.setDateCreated(new Date(dateCreated));
+        return change;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.hl7;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.openmrs.module.radiologyapp.exception.RadiologyAPIException;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class OruR01ParserTest {
+
+    static final String ORU_R01 = "MSH|^~\\&|RIS|HOSPITAL|OPENMRS|HOSPITAL|20261018101500||ORU^R01|MSG00001|P|2.5\r"
+            + "PID|1||100-8^^^OpenMRS^MR||Doe^Jane\r"
+            + "OBR|1|ORD-1|ORD-1|CHEST^Chest X-ray^LOCAL|||20261018090000|||||||||||||||20261018100000|||F|||||||1234&Smith&John\r"
+            + "OBX|1|TX|REPORT^Report||Findings: no acute process.~Lungs are clear\\.br\\Heart normal||||||F\r"
+            + "OBX|2|TX|IMPRESSION^Impression||Normal chest \\T\\ mediastinum||||||F\r"
+            + "OBX|3|NM|SIZE^Size||12||||||F\r";
+
+    private OruR01Parser parser = new OruR01Parser();
+
+    @Test
+    public void parse_shouldReadReportFromObrAndObxSegments() {
+
+        List<Hl7RadiologyReport> reports = parser.parse(Hl7Message.parse(ORU_R01));
+
+        assertThat(reports.size(), is(1));
+        Hl7RadiologyReport report = reports.get(0);
+        assertThat(report.getAccessionNumber(), is("ORD-1"));
+        assertThat(report.getPatientIdentifier(), is("100-8"));
+        assertThat(report.getProcedureCode(), is("CHEST"));
+        assertThat(report.getProcedureCodingSystem(), is("LOCAL"));
+        assertThat(report.getResultStatus(), is("F"));
+        assertThat(report.getInterpreterIdentifier(), is("1234"));
+        assertThat(report.getReportDate(), is(new DateTime(2026, 10, 18, 10, 0, 0).toDate()));
+        assertThat(report.getReportBody(), is("Findings: no acute process.\nLungs are clear\nHeart normal\nNormal chest & mediastinum"));
+    }
+
+    @Test
+    public void parse_shouldReadOneReportPerObrSegment() {
+
+        String message = ORU_R01 + "OBR|2||ORD-2|CHEST^Chest X-ray^LOCAL|||20261018090000||||||||||||||||||P\r"
+                + "OBX|1|TX|REPORT^Report||Preliminary||||||P\r";
+
+        List<Hl7RadiologyReport> reports = parser.parse(Hl7Message.parse(message));
+
+        assertThat(reports.size(), is(2));
+        assertThat(reports.get(1).getAccessionNumber(), is("ORD-2"));
+        assertThat(reports.get(1).getResultStatus(), is("P"));
+        assertThat(reports.get(1).getInterpreterIdentifier(), is(nullValue()));
+        assertThat(reports.get(1).getReportDate(), is(new DateTime(2026, 10, 18, 9, 0, 0).toDate()));
+        assertThat(reports.get(1).getReportBody(), is("Preliminary"));
+    }
+
+    @Test(expected = RadiologyAPIException.class)
+    public void parse_shouldRejectOtherMessageTypes() {
+        parser.parse(Hl7Message.parse(ORU_R01.replace("ORU^R01", "ADT^A01")));
+    }
+
+    @Test(expected = RadiologyAPIException.class)
+    public void parse_shouldRejectReportWithoutAccessionNumber() {
+        parser.parse(Hl7Message.parse(ORU_R01.replace("OBR|1|ORD-1|ORD-1|", "OBR|1|||")));
+    }
+
+    @Test
+    public void parseTimestamp_shouldHandlePrecisionAndTimeZone() {
+        assertThat(Hl7Message.parseTimestamp("20261018"), is(new DateTime(2026, 10, 18, 0, 0, 0).toDate()));
+        assertThat(Hl7Message.parseTimestamp("202610181015.1234"), is(new DateTime(2026, 10, 18, 10, 15, 0).toDate()));
+        assertThat(Hl7Message.parseTimestamp("20261018101500+0000").getTime(), is(1792318500000L));
+        assertThat(Hl7Message.parseTimestamp(""), is(nullValue()));
+    }
+
+    @Test
+    public void buildAck_shouldAcknowledgeMessageControlId() {
+        String ack = Hl7Message.parse(ORU_R01).buildAck("AE", "No patient | found");
+
+        Hl7Message parsedAck = Hl7Message.parse(ack);
+        assertThat(parsedAck.getMsh().get(3), is("OPENMRS"));
+        assertThat(parsedAck.getMsh().get(5), is("RIS"));
+        assertThat(parsedAck.getSegments().get(1).get(1), is("AE"));
+        assertThat(parsedAck.getSegments().get(1).get(2), is("MSG00001"));
+        assertThat(parsedAck.getSegments().get(1).get(3), is("No patient | found"));
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.hl7;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openmrs.Concept;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.Provider;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.PatientService;
+import org.openmrs.api.ProviderService;
+import org.openmrs.module.emrapi.EmrApiConstants;
+import org.openmrs.module.radiologyapp.RadiologyConstants;
+import org.openmrs.module.radiologyapp.RadiologyOrder;
+import org.openmrs.module.radiologyapp.RadiologyReport;
+import org.openmrs.module.radiologyapp.RadiologySaveResult;
+import org.openmrs.module.radiologyapp.RadiologyService;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sends messages to the listener over a local socket, as an HL7 sender would, with the services mocked out
+ */
+public class RadiologyHl7ListenerTest {
+
+    private RadiologyHl7Listener listener;
+
+    private RadiologyService radiologyService;
+
+    private Patient patient;
+
+    private Concept finalReportType;
+
+    private Provider interpreter;
+
+    private Concept procedure;
+
+    @Before
+    public void setup() throws Exception {
+
+        radiologyService = mock(RadiologyService.class);
+        PatientService patientService = mock(PatientService.class);
+        ProviderService providerService = mock(ProviderService.class);
+        ConceptService conceptService = mock(ConceptService.class);
+
+        patient = new Patient(8);
+        PatientIdentifier identifier = new PatientIdentifier();
+        identifier.setPatient(patient);
+        when(patientService.getPatientIdentifiers("100-8", null, null, null, null)).thenReturn(Collections.singletonList(identifier));
+
+        finalReportType = new Concept(1);
+        when(conceptService.getConceptByMapping(RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_FINAL,
+                EmrApiConstants.EMR_CONCEPT_SOURCE_NAME)).thenReturn(finalReportType);
+
+        procedure = new Concept(2);
+        RadiologyOrder order = new RadiologyOrder();
+        order.setPatient(patient);
+        order.setConcept(procedure);
+        when(radiologyService.getRadiologyOrderByOrderNumber("ORD-1")).thenReturn(order);
+
+        interpreter = new Provider(3);
+        when(providerService.getProviderByIdentifier("1234")).thenReturn(interpreter);
+
+        when(radiologyService.saveRadiologyReports(anyList())).thenAnswer(new Answer<List<RadiologySaveResult<RadiologyReport>>>() {
+
+            @Override
+            public List<RadiologySaveResult<RadiologyReport>> answer(InvocationOnMock invocation) {
+                List<RadiologySaveResult<RadiologyReport>> results = new ArrayList<RadiologySaveResult<RadiologyReport>>();
+                for (Object report : (List<?>) invocation.getArguments()[0]) {
+                    results.add(RadiologySaveResult.saved((RadiologyReport) report, null));
+                }
+                return results;
+            }
+        });
+
+        // run the persistence threads as plain threads, without a session
+        listener = new RadiologyHl7Listener() {
+
+            @Override
+            protected Thread startWorker(Runnable worker) {
+                Thread thread = new Thread(worker);
+                thread.setDaemon(true);
+                thread.start();
+                return thread;
+            }
+
+            @Override
+            protected void clearSession() {
+            }
+        };
+        listener.setRadiologyService(radiologyService);
+        listener.setPatientService(patientService);
+        listener.setProviderService(providerService);
+        listener.setConceptService(conceptService);
+        listener.start("127.0.0.1", 0, null);
+    }
+
+    @After
+    public void tearDown() {
+        listener.stop();
+    }
+
+    @Test
+    public void shouldSaveReportAndAcknowledgeMessage() throws Exception {
+
+        String ack = send(OruR01ParserTest.ORU_R01);
+
+        assertThat(ack, startsWith("MSH|^~\\&|OPENMRS|HOSPITAL|RIS|HOSPITAL|"));
+        assertThat(Hl7Message.parse(ack).getSegments().get(1).get(1), is("AA"));
+        assertThat(Hl7Message.parse(ack).getSegments().get(1).get(2), is("MSG00001"));
+
+        ArgumentCaptor<List> reports = ArgumentCaptor.forClass(List.class);
+        verify(radiologyService).saveRadiologyReports(reports.capture());
+        RadiologyReport report = (RadiologyReport) reports.getValue().get(0);
+        assertThat(report.getOrderNumber(), is("ORD-1"));
+        assertThat(report.getPatient(), is(patient));
+        assertThat(report.getProcedure(), is(procedure));
+        assertThat(report.getReportType(), is(finalReportType));
+        assertThat(report.getPrincipalResultsInterpreter(), is(interpreter));
+        assertThat(report.getReportBody(), startsWith("Findings: no acute process."));
+    }
+
+    @Test
+    public void shouldFindPatientByIdentifierIfThereIsNoOrder() throws Exception {
+
+        String ack = send(OruR01ParserTest.ORU_R01.replace("ORD-1", "ORD-2"));
+
+        assertThat(Hl7Message.parse(ack).getSegments().get(1).get(1), is("AA"));
+        ArgumentCaptor<List> reports = ArgumentCaptor.forClass(List.class);
+        verify(radiologyService).saveRadiologyReports(reports.capture());
+        assertThat(((RadiologyReport) reports.getValue().get(0)).getPatient(), is(patient));
+    }
+
+    @Test
+    public void shouldRejectMessageThatCannotBeParsed() throws Exception {
+
+        String ack = send(OruR01ParserTest.ORU_R01.replace("ORU^R01", "ADT^A01"));
+
+        assertThat(Hl7Message.parse(ack).getSegments().get(1).get(1), is("AR"));
+        verify(radiologyService, never()).saveRadiologyReports(anyList());
+    }
+
+    @Test
+    public void shouldReturnErrorIfReportCannotBeSaved() throws Exception {
+
+        when(radiologyService.saveRadiologyReports(anyList())).thenThrow(new IllegalStateException("Database is down"));
+
+        String ack = send(OruR01ParserTest.ORU_R01);
+
+        assertThat(Hl7Message.parse(ack).getSegments().get(1).get(1), is("AE"));
+        assertThat(Hl7Message.parse(ack).getSegments().get(1).get(3), is("Database is down"));
+    }
+
+    @Test
+    public void shouldAcknowledgeEachMessageOnConnection() throws Exception {
+
+        Socket socket = new Socket("127.0.0.1", listener.getLocalPort());
+        try {
+            for (int i = 0; i < 3; i++) {
+                Mllp.writeMessage(socket.getOutputStream(), OruR01ParserTest.ORU_R01.replace("MSG00001", "MSG" + i));
+                String ack = Mllp.readMessage(socket.getInputStream(), 1024 * 1024);
+                assertThat(Hl7Message.parse(ack).getSegments().get(1).get(2), is("MSG" + i));
+            }
+        }
+        finally {
+            socket.close();
+        }
+        verify(radiologyService, times(3)).saveRadiologyReports(any(List.class));
+    }
+
+    private String send(String message) throws Exception {
+        Socket socket = new Socket("127.0.0.1", listener.getLocalPort());
+        try {
+            socket.setSoTimeout(10000);
+            Mllp.writeMessage(socket.getOutputStream(), message);
+            return Mllp.readMessage(socket.getInputStream(), 1024 * 1024);
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.metrics;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.module.radiologyapp.RadiologyStudy;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RadiologyServiceMetricsTest {
+
+    private RadiologyServiceMetrics radiologyServiceMetrics;
+
+    private Method getStudiesMethod;
+
+    private Method saveStudyMethod;
+
+    @Before
+    public void setup() throws Exception {
+        radiologyServiceMetrics = new RadiologyServiceMetrics();
+        getStudiesMethod = RadiologyService.class.getMethod("getRadiologyStudiesForPatient", Patient.class);
+        saveStudyMethod = RadiologyService.class.getMethod("saveRadiologyStudy", RadiologyStudy.class);
+    }
+
+    @Test
+    public void shouldRecordCallsAndResultSizes() throws Throwable {
+
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getMethod()).thenReturn(getStudiesMethod);
+        when(invocation.proceed()).thenReturn(Arrays.asList(new RadiologyStudy(), new RadiologyStudy()));
+
+        radiologyServiceMetrics.invoke(invocation);
+        radiologyServiceMetrics.invoke(invocation);
+
+        List<Map<String, Object>> snapshot = radiologyServiceMetrics.getSnapshot();
+        assertThat(snapshot.size(), is(1));
+        assertThat(snapshot.get(0).get("method"), is((Object) "getRadiologyStudiesForPatient(Patient)"));
+        assertThat(snapshot.get(0).get("calls"), is((Object) 2L));
+        assertThat(snapshot.get(0).get("errors"), is((Object) 0L));
+        assertThat(snapshot.get(0).get("maxResultSize"), is((Object) 2L));
+    }
+
+    @Test
+    public void shouldRecordErrors() throws Throwable {
+
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getMethod()).thenReturn(saveStudyMethod);
+        when(invocation.proceed()).thenThrow(new IllegalArgumentException());
+
+        try {
+            radiologyServiceMetrics.invoke(invocation);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        Map<String, Object> snapshot = radiologyServiceMetrics.getSnapshot().get(0);
+        assertThat(snapshot.get("calls"), is((Object) 1L));
+        assertThat(snapshot.get("errors"), is((Object) 1L));
+        assertThat(snapshot.get("maxResultSize"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldPutLatenciesIntoBuckets() {
+        assertThat(MethodMetrics.getBucket(500000L), is(0));
+        assertThat(MethodMetrics.getBucket(1000000L), is(0));
+        assertThat(MethodMetrics.getBucket(1000001L), is(1));
+        assertThat(MethodMetrics.getBucket(60000000000L), is(MethodMetrics.BUCKET_BOUNDS_MILLIS.length));
+    }
+
+    @Test
+    public void shouldEstimatePercentilesFromHistogram() {
+
+        MethodMetrics metrics = new MethodMetrics("test");
+        for (int i = 0; i < 99; i++) {
+            metrics.record(3000000L, false, null);
+        }
+        metrics.record(700000000L, false, null);
+
+        Map<String, Object> snapshot = metrics.getSnapshot();
+        assertThat(snapshot.get("p50Millis"), is((Object) 5.0));
+        assertThat(snapshot.get("p99Millis"), is((Object) 5.0));
+        assertThat(snapshot.get("maxMillis"), is((Object) 700.0));
+
+        metrics.reset();
+        assertThat(metrics.getCalls(), is(0L));
+        assertThat(metrics.getSnapshot().get("p50Millis"), is(nullValue()));
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Order;
+import org.openmrs.module.radiologyapp.RadiologyReport;
+import org.openmrs.module.radiologyapp.RadiologyStudy;
+import org.openmrs.module.radiologyapp.comparator.RadiologyOrderByDateComparator;
+import org.openmrs.module.radiologyapp.comparator.RadiologyReportByDataComparator;
+import org.openmrs.module.radiologyapp.comparator.RadiologyStudyByDateComparator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting of studies, reports and orders by date. Each invocation sorts a fresh copy of the same shuffled list, so
+ * the cost of the copy is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparatorBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int size;
+
+    private List<RadiologyStudy> studies;
+
+    private List<RadiologyReport> reports;
+
+    private List<Order> orders;
+
+    @Setup
+    public void setup() {
+
+        // fixed seed, so that every run sorts the same data
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+
+        studies = new ArrayList<RadiologyStudy>(size);
+        reports = new ArrayList<RadiologyReport>(size);
+        orders = new ArrayList<Order>(size);
+
+        for (int i = 0; i < size; i++) {
+            Date date = new Date(now - (long) random.nextInt(Integer.MAX_VALUE) * 1000);
+
+            RadiologyStudy study = new RadiologyStudy();
+            study.setDatePerformed(date);
+            studies.add(study);
+
+            RadiologyReport report = new RadiologyReport();
+            report.setReportDate(date);
+            reports.add(report);
+
+            Order order = new Order();
+            order.setDateCreated(date);
+            orders.add(order);
+        }
+    }
+
+    @Benchmark
+    public List<RadiologyStudy> sortStudies() {
+        List<RadiologyStudy> sorted = new ArrayList<RadiologyStudy>(studies);
+        Collections.sort(sorted, new RadiologyStudyByDateComparator());
+        return sorted;
+    }
+
+    @Benchmark
+    public List<RadiologyReport> sortReports() {
+        List<RadiologyReport> sorted = new ArrayList<RadiologyReport>(reports);
+        Collections.sort(sorted, new RadiologyReportByDataComparator());
+        return sorted;
+    }
+
+    @Benchmark
+    public List<Order> sortOrders() {
+        List<Order> sorted = new ArrayList<Order>(orders);
+        Collections.sort(sorted, new RadiologyOrderByDateComparator());
+        return sorted;
+    }
+
+}
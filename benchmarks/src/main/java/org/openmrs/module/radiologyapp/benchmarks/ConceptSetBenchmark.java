@@ -0,0 +1,158 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptMapType;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.api.ConceptService;
+import org.openmrs.module.emrapi.EmrApiConstants;
+import org.openmrs.module.radiologyapp.RadiologyConstants;
+import org.openmrs.module.radiologyapp.RadiologyReport;
+import org.openmrs.module.radiologyapp.RadiologyReportConceptSet;
+import org.openmrs.module.radiologyapp.RadiologyStudy;
+import org.openmrs.module.radiologyapp.RadiologyStudyConceptSet;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reading the values of radiology study and report encounters through the concept sets, both by walking the obs of
+ * the encounter and from already loaded group members, and resolving the concept sets themselves.
+ * <p>
+ * The images available obs is left out, as reading a boolean obs needs a running OpenMRS context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConceptSetBenchmark {
+
+    private ConceptService conceptService;
+
+    private RadiologyStudyConceptSet studyConceptSet;
+
+    private RadiologyReportConceptSet reportConceptSet;
+
+    private Encounter studyEncounter;
+
+    private Encounter reportEncounter;
+
+    private Collection<Obs> studyGroupMembers;
+
+    @Setup
+    public void setup() {
+
+        conceptService = mock(ConceptService.class);
+
+        ConceptSource emrConceptSource = new ConceptSource();
+        emrConceptSource.setName(EmrApiConstants.EMR_CONCEPT_SOURCE_NAME);
+        ConceptMapType sameAs = new ConceptMapType();
+
+        int conceptId = 1;
+        for (String code : new String[] { RadiologyConstants.CONCEPT_CODE_RADIOLOGY_STUDY_SET,
+                RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_SET, RadiologyConstants.CONCEPT_CODE_RADIOLOGY_ORDER_NUMBER,
+                RadiologyConstants.CONCEPT_CODE_RADIOLOGY_IMAGES_AVAILABLE, RadiologyConstants.CONCEPT_CODE_RADIOLOGY_PROCEDURE,
+                RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_BODY, RadiologyConstants.CONCEPT_CODE_RADIOLOGY_REPORT_TYPE }) {
+            Concept concept = new Concept(conceptId++);
+            concept.addName(new ConceptName(code, Locale.ENGLISH));
+            concept.addConceptMapping(new ConceptMap(new ConceptReferenceTerm(emrConceptSource, code, null), sameAs));
+            when(conceptService.getConceptByMapping(code, EmrApiConstants.EMR_CONCEPT_SOURCE_NAME)).thenReturn(concept);
+        }
+
+        studyConceptSet = new RadiologyStudyConceptSet(conceptService);
+        reportConceptSet = new RadiologyReportConceptSet(conceptService);
+
+        Concept procedure = new Concept(100);
+
+        RadiologyStudy study = new RadiologyStudy();
+        study.setOrderNumber("ORD-1");
+        study.setProcedure(procedure);
+        Obs studyObsGroup = studyConceptSet.buildRadiologyStudyObsGroup(study);
+        studyEncounter = new Encounter();
+        studyEncounter.setEncounterDatetime(new Date());
+        studyEncounter.addObs(studyObsGroup);
+        studyGroupMembers = studyObsGroup.getGroupMembers();
+
+        RadiologyReport report = new RadiologyReport();
+        report.setOrderNumber("ORD-1");
+        report.setProcedure(procedure);
+        report.setReportType(new Concept(101));
+        report.setReportBody("No acute findings");
+        reportEncounter = new Encounter();
+        reportEncounter.setEncounterDatetime(new Date());
+        reportEncounter.addObs(reportConceptSet.buildRadiologyReportObsGroup(report));
+    }
+
+    @Benchmark
+    public String studyOrderNumberFromEncounter() {
+        return studyConceptSet.getOrderNumberFromEncounter(studyEncounter);
+    }
+
+    @Benchmark
+    public Concept studyProcedureFromEncounter() {
+        return studyConceptSet.getProcedureFromEncounter(studyEncounter);
+    }
+
+    @Benchmark
+    public String studyOrderNumberFromGroupMembers() {
+        return studyConceptSet.getOrderNumberFromGroupMembers(studyGroupMembers);
+    }
+
+    @Benchmark
+    public String reportOrderNumberFromEncounter() {
+        return reportConceptSet.getOrderNumberFromEncounter(reportEncounter);
+    }
+
+    @Benchmark
+    public String reportBodyFromEncounter() {
+        return reportConceptSet.getReportBodyFromEncounter(reportEncounter);
+    }
+
+    @Benchmark
+    public Concept reportTypeFromEncounter() {
+        return reportConceptSet.getReportTypeFromEncounter(reportEncounter);
+    }
+
+    @Benchmark
+    public RadiologyStudyConceptSet resolveStudyConceptSet() {
+        // what every conversion used to pay before the concept sets were shared
+        return new RadiologyStudyConceptSet(conceptService);
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openmrs.Patient;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.PatientService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.radiologyapp.RadiologyConceptSetRegistry;
+import org.openmrs.module.radiologyapp.RadiologyDataGenerator;
+import org.openmrs.module.radiologyapp.RadiologyProperties;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.module.radiologyapp.RadiologyTimelineCache;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.TestContextManager;
+
+import java.util.List;
+
+/**
+ * An in-memory H2 database, set up like the one of the component tests, with one patient whose radiology history is
+ * generated at the given scale by the {@link RadiologyDataGenerator}. For every four orders, one is left without a
+ * study or report, one only has a report (so its study is derived from the report), and two have a study and a report.
+ * <p>
+ * This reuses the OpenMRS test support outside of JUnit, so the Spring test context is prepared by hand.
+ */
+@State(Scope.Benchmark)
+public class RadiologyDatabaseState extends BaseModuleContextSensitiveTest {
+
+    @Param({ "10", "100", "1000" })
+    public int ordersPerPatient;
+
+    // whether the patient's radiology timeline may stay cached from one call to the next
+    @Param({ "false", "true" })
+    public boolean timelineCached;
+
+    @Autowired
+    @Qualifier("radiologyService")
+    private RadiologyService radiologyService;
+
+    @Autowired
+    @Qualifier("radiologyProperties")
+    private RadiologyProperties radiologyProperties;
+
+    @Autowired
+    @Qualifier("radiologyTimelineCache")
+    private RadiologyTimelineCache radiologyTimelineCache;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private ConceptService conceptService;
+
+    @Autowired
+    @Qualifier("radiologyConceptSetRegistry")
+    private RadiologyConceptSetRegistry conceptSetRegistry;
+
+    private Patient patient;
+
+    private String studyOrderNumber;
+
+    @Setup(Level.Trial)
+    public void setupDatabase() throws Exception {
+
+        new TestContextManager(RadiologyDatabaseState.class).prepareTestInstance(this);
+        baseSetupWithStandardDataAndAuthentication();
+        executeDataSet("radiologyServiceComponentTestDataset.xml");
+        radiologyProperties.refresh();
+
+        // about one order in four is left unfulfilled, one only has a report and two have a study and a report
+        RadiologyDataGenerator.GeneratedData data = new RadiologyDataGenerator(radiologyProperties, conceptSetRegistry)
+                .setOrders(ordersPerPatient)
+                .setStudies(ordersPerPatient / 2)
+                .setReports(ordersPerPatient * 3 / 4)
+                .setOrphanedReports(ordersPerPatient / 4)
+                .setProcedure(conceptService.getConcept(18))
+                .setReportType(conceptService.getConcept(1009))
+                .generate(getConnection());
+
+        Context.clearSession();
+
+        patient = patientService.getPatient(data.getPatientIds().get(0));
+        List<String> studyOrderNumbers = data.getStudyOrderNumbers();
+        studyOrderNumber = studyOrderNumbers.get(studyOrderNumbers.size() - 1);
+    }
+
+    /**
+     * Starts every call with an empty session, like a new request would (and, unless measuring cached timelines, with
+     * an empty timeline cache)
+     */
+    @Setup(Level.Invocation)
+    public void clearSession() {
+        Context.clearSession();
+        if (!timelineCached) {
+            radiologyTimelineCache.invalidateAll();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeSession() {
+        Context.closeSession();
+    }
+
+    public RadiologyService getRadiologyService() {
+        return radiologyService;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public String getStudyOrderNumber() {
+        return studyOrderNumber;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Order;
+import org.openmrs.module.radiologyapp.RadiologyReport;
+import org.openmrs.module.radiologyapp.RadiologyStudy;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The radiology service calls behind the patient dashboard and radiology tab, against an in-memory database seeded at
+ * several scales (see {@link RadiologyDatabaseState}). The conversion of study and report encounters is measured
+ * through the by-order-number lookups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RadiologyServiceBenchmark {
+
+    @Benchmark
+    public List<RadiologyStudy> getRadiologyStudiesForPatient(RadiologyDatabaseState state) {
+        return state.getRadiologyService().getRadiologyStudiesForPatient(state.getPatient());
+    }
+
+    @Benchmark
+    public List<RadiologyStudy> getMostRecentRadiologyStudiesForPatient(RadiologyDatabaseState state) {
+        return state.getRadiologyService().getRadiologyStudiesForPatient(state.getPatient(), 0, 5);
+    }
+
+    @Benchmark
+    public List<Order> getUnfulfilledRadiologyOrdersForPatient(RadiologyDatabaseState state) {
+        return state.getRadiologyService().getUnfulfilledRadiologyOrdersForPatient(state.getPatient());
+    }
+
+    @Benchmark
+    public RadiologyStudy getRadiologyStudyByOrderNumber(RadiologyDatabaseState state) {
+        return state.getRadiologyService().getRadiologyStudyByOrderNumber(state.getStudyOrderNumber());
+    }
+
+    @Benchmark
+    public List<RadiologyReport> getRadiologyReportsByOrderNumber(RadiologyDatabaseState state) {
+        return state.getRadiologyService().getRadiologyReportsByOrderNumber(state.getStudyOrderNumber());
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.fragment.controller;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.radiologyapp.RadiologyConstants;
+import org.openmrs.module.radiologyapp.RadiologyTimelineCache;
+import org.openmrs.module.radiologyapp.metrics.RadiologyServiceMetrics;
+import org.openmrs.ui.framework.SimpleObject;
+import org.openmrs.ui.framework.annotation.SpringBean;
+import org.openmrs.ui.framework.fragment.action.FragmentActionResult;
+import org.openmrs.ui.framework.fragment.action.SuccessResult;
+
+import java.util.Date;
+
+/**
+ * Fragment actions that expose the radiology service metrics as JSON, e.g.
+ * /openmrs/radiologyapp/radiologyMetrics/getMetrics.action
+ */
+public class RadiologyMetricsFragmentController {
+
+    public SimpleObject getMetrics(@SpringBean("radiologyServiceMetrics") RadiologyServiceMetrics radiologyServiceMetrics,
+                                   @SpringBean("radiologyTimelineCache") RadiologyTimelineCache radiologyTimelineCache) {
+        Context.requirePrivilege(RadiologyConstants.PRIVILEGE_VIEW_METRICS);
+        return SimpleObject.create("timestamp", new Date().getTime(), "methods", radiologyServiceMetrics.getSnapshot(),
+                "timelineCache", radiologyTimelineCache.getSnapshot());
+    }
+
+    public FragmentActionResult resetMetrics(@SpringBean("radiologyServiceMetrics") RadiologyServiceMetrics radiologyServiceMetrics) {
+        Context.requirePrivilege(RadiologyConstants.PRIVILEGE_VIEW_METRICS);
+        radiologyServiceMetrics.reset();
+        return new SuccessResult();
+    }
+
+}
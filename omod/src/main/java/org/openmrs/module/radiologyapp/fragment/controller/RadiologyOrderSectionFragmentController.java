@@ -5,6 +5,7 @@ import org.openmrs.Order;
 import org.openmrs.Patient;
 import org.openmrs.module.coreapps.CoreAppsProperties;
 import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.ui.framework.annotation.FragmentParam;
 import org.openmrs.ui.framework.annotation.SpringBean;
 import org.openmrs.ui.framework.fragment.FragmentModel;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -12,16 +13,18 @@ import org.springframework.web.bind.annotation.RequestParam;
 import java.util.List;
 
 public class RadiologyOrderSectionFragmentController {
+
+    private static final int DEFAULT_LIMIT = 5;
+
     public void controller(@RequestParam("patientId") Patient patient,
+                           @FragmentParam(value = "limit", required = false) Integer limit,
                            FragmentModel model,
                            @SpringBean CoreAppsProperties coreAppsProperties,
                            @SpringBean RadiologyService radiologyService) {
 
-        List<Order> orders = radiologyService.getUnfulfilledRadiologyOrdersForPatient(patient);
-        if (orders != null && orders.size() > 5) {
-            //display only the last 5 radiology orders
-            orders = orders.subList(0, 5);
-        }
+        //display only the last few radiology orders (5 by default)
+        List<Order> orders = radiologyService.getUnfulfilledRadiologyOrdersForPatient(patient,
+                limit != null ? limit : DEFAULT_LIMIT);
         model.addAttribute("patient", patient);
         model.addAttribute("orders", orders);
         model.addAttribute("dashboardUrl", coreAppsProperties.getDashboardUrl());
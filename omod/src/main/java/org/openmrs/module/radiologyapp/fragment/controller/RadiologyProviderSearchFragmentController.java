@@ -0,0 +1,54 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.fragment.controller;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.radiologyapp.RadiologyProviderIndex;
+import org.openmrs.ui.framework.SimpleObject;
+import org.openmrs.ui.framework.annotation.SpringBean;
+import org.openmrs.util.PrivilegeConstants;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fragment actions for picking the provider of a radiology order as the user types, e.g.
+ * /openmrs/radiologyapp/radiologyProviderSearch/search.action?q=smi
+ */
+public class RadiologyProviderSearchFragmentController {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private static final int MAX_LIMIT = 100;
+
+    /**
+     * @return the providers with a word of their name starting with each word of the query, ordered by name
+     */
+    public List<SimpleObject> search(@SpringBean("radiologyProviderIndex") RadiologyProviderIndex providerIndex,
+                                     @RequestParam(value = "q", required = false) String q,
+                                     @RequestParam(value = "limit", required = false) Integer limit) {
+
+        Context.requirePrivilege(PrivilegeConstants.GET_PROVIDERS);
+
+        List<SimpleObject> items = new ArrayList<SimpleObject>();
+        for (RadiologyProviderIndex.Entry provider : providerIndex.search(q, limit != null ? Math.min(limit, MAX_LIMIT) : DEFAULT_LIMIT)) {
+            items.add(SimpleObject.create("value", provider.getProviderId(), "label", provider.getName()));
+        }
+        return items;
+    }
+
+}
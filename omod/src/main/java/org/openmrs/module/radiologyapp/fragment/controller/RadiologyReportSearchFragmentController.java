@@ -0,0 +1,93 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.fragment.controller;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.openmrs.Concept;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.appui.UiSessionContext;
+import org.openmrs.module.radiologyapp.RadiologyConstants;
+import org.openmrs.module.radiologyapp.RadiologyReport;
+import org.openmrs.module.radiologyapp.RadiologyReportSearchFilter;
+import org.openmrs.module.radiologyapp.RadiologyReportSearchResult;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.ui.framework.SimpleObject;
+import org.openmrs.ui.framework.UiUtils;
+import org.openmrs.ui.framework.annotation.SpringBean;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Fragment actions for the radiology report search page, e.g.
+ * /openmrs/radiologyapp/radiologyReportSearch/search.action?q=pneumothorax&fromDate=2025-10-18
+ */
+public class RadiologyReportSearchFragmentController {
+
+    // how much of each report body to show in the results
+    private static final int EXCERPT_LENGTH = 300;
+
+    private static final int DEFAULT_LIMIT = 25;
+
+    /**
+     * Fetches one page of the reports matching the search
+     *
+     * @return the reports, with an excerpt of their bodies, and the total number of matches
+     */
+    public SimpleObject search(@SpringBean("radiologyService") RadiologyService radiologyService,
+                               @RequestParam(value = "q", required = false) String q,
+                               @RequestParam(value = "patient", required = false) Patient patient,
+                               @RequestParam(value = "procedure", required = false) Concept procedure,
+                               @RequestParam(value = "reportType", required = false) Concept reportType,
+                               @RequestParam(value = "fromDate", required = false) Date fromDate,
+                               @RequestParam(value = "toDate", required = false) Date toDate,
+                               @RequestParam(value = "offset", required = false) Integer offset,
+                               @RequestParam(value = "limit", required = false) Integer limit,
+                               UiUtils ui, UiSessionContext uiSessionContext) {
+
+        Context.requirePrivilege(RadiologyConstants.PRIVILEGE_SEARCH_REPORTS);
+
+        RadiologyReportSearchFilter filter = new RadiologyReportSearchFilter();
+        filter.setPatient(patient);
+        filter.setProcedure(procedure);
+        filter.setReportType(reportType);
+        filter.setFromDate(fromDate);
+        filter.setToDate(toDate);
+
+        RadiologyReportSearchResult result = radiologyService.searchRadiologyReports(q, filter,
+                offset != null ? offset : 0, limit != null ? limit : DEFAULT_LIMIT);
+
+        List<SimpleObject> simpleReports = new ArrayList<SimpleObject>();
+        for (RadiologyReport report : result.getReports()) {
+            SimpleObject simpleReport = SimpleObject.create("orderNumber", report.getOrderNumber(),
+                    "patientUuid", report.getPatient().getUuid(),
+                    "patient", ui.format(report.getPatient()),
+                    "procedure", report.getProcedure() != null ? ui.format(report.getProcedure()) : null,
+                    "reportType", report.getReportType() != null ? ui.format(report.getReportType()) : null,
+                    "excerpt", StringUtils.abbreviate(report.getReportBody(), EXCERPT_LENGTH));
+            simpleReport.put("reportDate", DateFormatUtils.format(report.getReportDate(),
+                    "dd MMM yyyy hh:mm a", uiSessionContext.getLocale()));
+            simpleReports.add(simpleReport);
+        }
+
+        return SimpleObject.create("reports", simpleReports, "totalCount", result.getTotalCount());
+    }
+
+}
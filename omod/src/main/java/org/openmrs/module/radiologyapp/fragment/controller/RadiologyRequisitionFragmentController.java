@@ -42,6 +42,8 @@ public class RadiologyRequisitionFragmentController {
             throw new IllegalArgumentException(ui.message("radiologyapp.order.noStudiesSelected"));
         }
 
+        requisition.setModality(modality);
+
         // set provider and location if not specified
         if (requisition.getRequestedBy() == null) {
             requisition.setRequestedBy(uiSessionContext.getCurrentProvider());
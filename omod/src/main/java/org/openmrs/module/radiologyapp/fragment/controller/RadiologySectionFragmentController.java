@@ -5,6 +5,7 @@ import org.openmrs.Patient;
 import org.openmrs.module.coreapps.CoreAppsProperties;
 import org.openmrs.module.radiologyapp.RadiologyService;
 import org.openmrs.module.radiologyapp.RadiologyStudy;
+import org.openmrs.ui.framework.annotation.FragmentParam;
 import org.openmrs.ui.framework.annotation.SpringBean;
 import org.openmrs.ui.framework.fragment.FragmentModel;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -13,16 +14,17 @@ import java.util.List;
 
 public class RadiologySectionFragmentController {
 
+    private static final int DEFAULT_LIMIT = 5;
+
     public void controller(@RequestParam("patientId") Patient patient,
+                           @FragmentParam(value = "limit", required = false) Integer limit,
                            FragmentModel model,
                            @SpringBean CoreAppsProperties coreAppsProperties,
                            @SpringBean RadiologyService radiologyService) {
 
-        List<RadiologyStudy> studies = radiologyService.getRadiologyStudiesForPatient(patient);
-        if (studies != null && studies.size() > 5) {
-            //display only the last 5 studies or reports
-            studies = studies.subList(0, 5);
-        }
+        //display only the last few studies or reports (5 by default)
+        List<RadiologyStudy> studies = radiologyService.getRadiologyStudiesForPatient(patient, 0,
+                limit != null ? limit : DEFAULT_LIMIT);
         model.addAttribute("patient", patient);
         model.addAttribute("studies", studies);
         model.addAttribute("dashboardUrl", coreAppsProperties.getDashboardUrl());
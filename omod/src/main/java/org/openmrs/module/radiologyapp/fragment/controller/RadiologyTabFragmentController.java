@@ -1,6 +1,7 @@
 package org.openmrs.module.radiologyapp.fragment.controller;
 
 import org.apache.commons.lang.time.DateFormatUtils;
+import org.openmrs.Patient;
 import org.openmrs.module.appui.UiSessionContext;
 import org.openmrs.module.emrapi.patient.PatientDomainWrapper;
 import org.openmrs.module.radiologyapp.RadiologyReport;
@@ -14,6 +15,7 @@ import org.openmrs.ui.framework.fragment.FragmentModel;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class RadiologyTabFragmentController {
@@ -30,8 +32,30 @@ public class RadiologyTabFragmentController {
                                                        @RequestParam("studyOrderNumber") String studyOrderNumber,
                                                        UiUtils uiUtils, UiSessionContext uiSessionContext) {
 
+        return toSimpleObject(radiologyService.getRadiologyStudyByOrderNumber(studyOrderNumber), uiUtils,
+                uiSessionContext);
+    }
+
+    /**
+     * Fetches the details of several of a patient's studies at once, so that the tab can prefetch the studies listed
+     * rather than ask for each one as it is clicked
+     */
+    public List<SimpleObject> getRadiologyStudiesByOrderNumbers(@SpringBean("radiologyService") RadiologyService radiologyService,
+                                                                @RequestParam("patientId") Patient patient,
+                                                                @RequestParam("orderNumbers") List<String> orderNumbers,
+                                                                UiUtils uiUtils, UiSessionContext uiSessionContext) {
+
+        List<SimpleObject> simpleRadiologyStudies = new ArrayList<SimpleObject>();
+        for (RadiologyStudy radiologyStudy : radiologyService.getRadiologyStudiesByOrderNumbers(patient, orderNumbers)) {
+            simpleRadiologyStudies.add(toSimpleObject(radiologyStudy, uiUtils, uiSessionContext));
+        }
+        return simpleRadiologyStudies;
+    }
+
+    private SimpleObject toSimpleObject(RadiologyStudy radiologyStudy, UiUtils uiUtils,
+                                        UiSessionContext uiSessionContext) {
+
         // add the study
-        RadiologyStudy radiologyStudy = radiologyService.getRadiologyStudyByOrderNumber(studyOrderNumber);
         SimpleObject simpleObject =  SimpleObject.fromObject(radiologyStudy, uiUtils, "procedure", "orderNumber",
                 "technician", "imagesAvailable");
 
@@ -39,11 +63,11 @@ public class RadiologyTabFragmentController {
                 "dd MMM yyyy hh:mm a", uiSessionContext.getLocale()));
 
 
-        // add any associated reports
-        List<RadiologyReport> radiologyReports = radiologyService.getRadiologyReportsByOrderNumber(studyOrderNumber);
+        // add any associated reports (these are fetched along with the study)
         List<SimpleObject> simpleRadiologyReports = new ArrayList<SimpleObject>();
 
-        for (RadiologyReport radiologyReport : radiologyReports) {
+        for (RadiologyReport radiologyReport : radiologyStudy.getReports() != null ?
+                radiologyStudy.getReports() : Collections.<RadiologyReport>emptyList()) {
             SimpleObject simpleRadiologyReport = SimpleObject.fromObject(radiologyReport,uiUtils, "reportType",
                     "reportBody", "principalResultsInterpreter");
             simpleRadiologyReport.put("reportDate", DateFormatUtils.format(radiologyReport.getReportDate(),
@@ -0,0 +1,94 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.fragment.controller;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.openmrs.Location;
+import org.openmrs.Order;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.appui.UiSessionContext;
+import org.openmrs.module.radiologyapp.RadiologyConstants;
+import org.openmrs.module.radiologyapp.RadiologyOrder;
+import org.openmrs.module.radiologyapp.RadiologyProperties;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.openmrs.module.radiologyapp.RadiologyWorklistQuery;
+import org.openmrs.ui.framework.SimpleObject;
+import org.openmrs.ui.framework.UiUtils;
+import org.openmrs.ui.framework.annotation.SpringBean;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Fragment actions for the radiology worklist page, e.g.
+ * /openmrs/radiologyapp/radiologyWorklist/getWorklist.action?modality=CT&urgency=STAT
+ */
+public class RadiologyWorklistFragmentController {
+
+    /**
+     * Fetches one page of the worklist, with only the fields the page displays so that it's cheap to poll
+     *
+     * @return the orders, and the cursor to fetch the next page with (or null if this is the last page)
+     */
+    public SimpleObject getWorklist(@SpringBean("radiologyService") RadiologyService radiologyService,
+                                    @SpringBean("radiologyProperties") RadiologyProperties radiologyProperties,
+                                    @RequestParam(value = "modality", required = false) String modality,
+                                    @RequestParam(value = "examLocation", required = false) Location examLocation,
+                                    @RequestParam(value = "urgency", required = false) String urgency,
+                                    @RequestParam(value = "fromDate", required = false) Date fromDate,
+                                    @RequestParam(value = "toDate", required = false) Date toDate,
+                                    @RequestParam(value = "cursor", required = false) String cursor,
+                                    @RequestParam(value = "limit", required = false) Integer limit,
+                                    UiUtils ui, UiSessionContext uiSessionContext) {
+
+        Context.requirePrivilege(RadiologyConstants.PRIVILEGE_WORKLIST);
+
+        RadiologyWorklistQuery query = new RadiologyWorklistQuery();
+        query.setModality(radiologyProperties.getOrderablesConcept(modality));
+        query.setExamLocation(examLocation);
+        query.setUrgency(StringUtils.isNotBlank(urgency) ? Order.Urgency.valueOf(urgency) : null);
+        query.setFromDate(fromDate);
+        query.setToDate(toDate);
+        query.setCursor(cursor);
+        if (limit != null) {
+            query.setLimit(limit);
+        }
+
+        List<RadiologyOrder> orders = radiologyService.getRadiologyWorklist(query);
+
+        List<SimpleObject> simpleOrders = new ArrayList<SimpleObject>();
+        for (RadiologyOrder order : orders) {
+            SimpleObject simpleOrder = SimpleObject.create("orderNumber", order.getOrderNumber(),
+                    "patientUuid", order.getPatient().getUuid(),
+                    "patient", ui.format(order.getPatient()),
+                    "procedure", ui.format(order.getConcept()),
+                    "urgency", order.getUrgency().name(),
+                    "examLocation", order.getExamLocation() != null ? ui.format(order.getExamLocation()) : null);
+            simpleOrder.put("dateActivated", DateFormatUtils.format(order.getDateActivated(),
+                    "dd MMM yyyy hh:mm a", uiSessionContext.getLocale()));
+            simpleOrders.add(simpleOrder);
+        }
+
+        String nextCursor = orders.size() == query.getLimit() ?
+                RadiologyWorklistQuery.getCursor(orders.get(orders.size() - 1)) : null;
+
+        return SimpleObject.create("orders", simpleOrders, "cursor", nextCursor);
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.page.controller;
+
+import org.openmrs.Location;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.emrapi.EmrApiProperties;
+import org.openmrs.module.radiologyapp.RadiologyConstants;
+import org.openmrs.module.radiologyapp.RadiologyExportQuery;
+import org.openmrs.ui.framework.SimpleObject;
+import org.openmrs.ui.framework.UiUtils;
+import org.openmrs.ui.framework.annotation.SpringBean;
+import org.openmrs.ui.framework.page.PageModel;
+import org.openmrs.ui.framework.page.Redirect;
+import org.openmrs.ui.util.ByFormattedObjectComparator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The form to download an export of the radiology studies and reports with; the export itself is streamed by
+ * {@link org.openmrs.module.radiologyapp.web.controller.RadiologyExportController}
+ */
+public class RadiologyExportPageController {
+
+    public Object controller(@SpringBean("locationService") LocationService locationService,
+                             @SpringBean("emrApiProperties") EmrApiProperties emrApiProperties,
+                             UiUtils ui,
+                             PageModel model) {
+
+        if (!Context.hasPrivilege(RadiologyConstants.PRIVILEGE_EXPORT)) {
+            return new Redirect("coreapps", "noAccess", "");
+        }
+
+        model.addAttribute("formats", RadiologyExportQuery.Format.values());
+
+        List<SimpleObject> modalities = new ArrayList<SimpleObject>();
+        for (String modality : new String[] { RadiologyConstants.XRAY_MODALITY_CODE,
+                RadiologyConstants.CT_SCAN_MODALITY_CODE, RadiologyConstants.ULTRASOUND_MODALITY_CODE }) {
+            modalities.add(SimpleObject.create("value", modality, "label", ui.message("radiologyapp.modality." + modality)));
+        }
+        model.addAttribute("modalities", modalities);
+
+        List<Location> locations = locationService.getLocationsByTag(emrApiProperties.getSupportsLoginLocationTag());
+        Collections.sort(locations, new ByFormattedObjectComparator(ui));
+        List<SimpleObject> exportLocations = new ArrayList<SimpleObject>();
+        for (Location location : locations) {
+            exportLocations.add(SimpleObject.create("value", location.getLocationId(), "label", ui.format(location)));
+        }
+        model.addAttribute("locations", exportLocations);
+
+        return null;
+    }
+
+}
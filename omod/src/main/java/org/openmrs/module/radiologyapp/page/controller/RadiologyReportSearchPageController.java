@@ -0,0 +1,58 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.page.controller;
+
+import org.openmrs.Concept;
+import org.openmrs.ConceptAnswer;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.radiologyapp.RadiologyConceptSetRegistry;
+import org.openmrs.module.radiologyapp.RadiologyConstants;
+import org.openmrs.ui.framework.SimpleObject;
+import org.openmrs.ui.framework.UiUtils;
+import org.openmrs.ui.framework.annotation.SpringBean;
+import org.openmrs.ui.framework.page.PageModel;
+import org.openmrs.ui.framework.page.Redirect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Full text search of the radiology reports of all patients; the reports themselves are fetched by the page through
+ * {@link org.openmrs.module.radiologyapp.fragment.controller.RadiologyReportSearchFragmentController}
+ */
+public class RadiologyReportSearchPageController {
+
+    public Object controller(@SpringBean("radiologyConceptSetRegistry") RadiologyConceptSetRegistry conceptSetRegistry,
+                             UiUtils ui,
+                             PageModel model) {
+
+        if (!Context.hasPrivilege(RadiologyConstants.PRIVILEGE_SEARCH_REPORTS)) {
+            return new Redirect("coreapps", "noAccess", "");
+        }
+
+        // the report types are the answers of the report type question (e.g. preliminary, final, correction)
+        List<SimpleObject> reportTypes = new ArrayList<SimpleObject>();
+        Concept reportTypeConcept = conceptSetRegistry.getRadiologyReportConceptSet().getReportTypeConcept();
+        for (ConceptAnswer answer : reportTypeConcept.getAnswers(false)) {
+            reportTypes.add(SimpleObject.create("value", answer.getAnswerConcept().getConceptId(),
+                    "label", ui.format(answer.getAnswerConcept())));
+        }
+        model.addAttribute("reportTypes", reportTypes);
+
+        return null;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+
+package org.openmrs.module.radiologyapp.web.controller;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.DateUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Location;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.radiologyapp.RadiologyConstants;
+import org.openmrs.module.radiologyapp.RadiologyExportQuery;
+import org.openmrs.module.radiologyapp.RadiologyProperties;
+import org.openmrs.module.radiologyapp.RadiologyService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * Streams an export of the radiology studies and reports straight to the response, e.g.
+ * /openmrs/module/radiologyapp/export.form?format=CSV&modality=CT&fromDate=2026-09-01&toDate=2026-10-01
+ * <p>
+ * This is a plain Spring MVC controller rather than a UI framework one, as those buffer what they return.
+ */
+@Controller
+public class RadiologyExportController {
+
+    private static final Log log = LogFactory.getLog(RadiologyExportController.class);
+
+    private static final String[] DATE_PATTERNS = { "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "yyyy-MM-dd'T'HH:mm:ss",
+            "yyyy-MM-dd'T'HH:mm", "yyyy-MM-dd" };
+
+    @Autowired
+    @Qualifier("radiologyService")
+    private RadiologyService radiologyService;
+
+    @Autowired
+    @Qualifier("radiologyProperties")
+    private RadiologyProperties radiologyProperties;
+
+    @Autowired
+    @Qualifier("locationService")
+    private LocationService locationService;
+
+    @RequestMapping(value = "/module/radiologyapp/export.form", method = RequestMethod.GET)
+    public void export(@RequestParam(value = "format", required = false) String format,
+                       @RequestParam(value = "modality", required = false) String modality,
+                       @RequestParam(value = "location", required = false) Integer location,
+                       @RequestParam(value = "fromDate", required = false) String fromDate,
+                       @RequestParam(value = "toDate", required = false) String toDate,
+                       @RequestParam(value = "changedSince", required = false) String changedSince,
+                       HttpServletResponse response) throws IOException {
+
+        Context.requirePrivilege(RadiologyConstants.PRIVILEGE_EXPORT);
+
+        RadiologyExportQuery query = new RadiologyExportQuery();
+        try {
+            if (StringUtils.isNotBlank(format)) {
+                query.setFormat(RadiologyExportQuery.Format.valueOf(format.toUpperCase()));
+            }
+            query.setModality(radiologyProperties.getOrderablesConcept(modality));
+            if (location != null) {
+                Location exportLocation = locationService.getLocation(location);
+                if (exportLocation == null) {
+                    throw new IllegalArgumentException("No location with id " + location);
+                }
+                query.setLocation(exportLocation);
+            }
+            query.setFromDate(parseDate(fromDate));
+            query.setToDate(parseDate(toDate));
+            query.setChangedSince(parseDate(changedSince));
+        }
+        catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        response.setContentType(query.getFormat().getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"radiology-"
+                + DateFormatUtils.format(new Date(), "yyyyMMdd-HHmmss") + "." + query.getFormat().getFileExtension() + "\"");
+
+        int count = radiologyService.exportRadiologyStudiesAndReports(query, response.getOutputStream());
+        log.info("Exported " + count + " radiology studies and reports");
+    }
+
+    private Date parseDate(String date) {
+        if (StringUtils.isBlank(date)) {
+            return null;
+        }
+        try {
+            return DateUtils.parseDate(date, DATE_PATTERNS);
+        }
+        catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+    }
+
+}
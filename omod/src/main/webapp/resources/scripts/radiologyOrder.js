@@ -183,3 +183,34 @@ ko.bindingHandlers.autocomplete = {
         $(element).val("");
     }
 };
+
+// looks up providers as the user types, and sets the observable to the id of the one picked
+ko.bindingHandlers.providerSearch = {
+    init: function(element, valueAccessor) {
+        var providerId = valueAccessor();
+
+        $(element).autocomplete({
+            minLength: 2,
+            delay: 200,
+            source: function( request, response ) {
+                $.getJSON(emr.fragmentActionLink("radiologyapp", "radiologyProviderSearch", "search"), { q: request.term })
+                    .success(response)
+                    .error(function() { response([]); });
+            },
+            focus: function( event, ui ) {
+                $(this).val(ui.item.label);
+                return false;
+            },
+            select: function( event, ui ) {
+                $(this).val(ui.item.label);
+                providerId(String(ui.item.value));
+                return false;
+            }
+        });
+
+        // the provider has to be picked again once the name is edited
+        $(element).on('input', function() {
+            providerId(null);
+        });
+    }
+};
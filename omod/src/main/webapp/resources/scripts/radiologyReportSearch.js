@@ -0,0 +1,62 @@
+function loadRadiologyReportSearch(patientPageLink, countMessage) {
+
+    var PAGE_SIZE = 25;
+
+    var resultTemplate = _.template(jq('#radiologyReportSearchResultTemplate').html());
+    var results = jq('#radiology-report-search-results tbody');
+    var moreButton = jq('#radiology-report-search-more');
+    var form = jq('#radiology-report-search-form');
+
+    var params = null;
+    var offset = 0;
+    var loading = false;
+
+    // fetches the next page of the current search, or starts a new search (replacing the results) if there is none
+    function loadPage(newSearch) {
+        if (loading) {
+            return;
+        }
+        loading = true;
+
+        if (newSearch) {
+            params = {};
+            _.each(form.serializeArray(), function(field) {
+                if (field.value) {
+                    params[field.name] = field.value;
+                }
+            });
+            offset = 0;
+        }
+
+        jq.getJSON(
+            emr.fragmentActionLink("radiologyapp", "radiologyReportSearch", "search",
+                _.extend({ offset: offset, limit: PAGE_SIZE }, params))
+        ).success(function(data) {
+            if (newSearch) {
+                results.empty();
+            }
+            _.each(data.reports, function(report) {
+                report.patientLink = patientPageLink + (patientPageLink.indexOf('?') < 0 ? '?' : '&')
+                    + 'patientId=' + report.patientUuid;
+                results.append(resultTemplate(report));
+            });
+            offset += PAGE_SIZE;
+            moreButton.toggle(offset < data.totalCount);
+            jq('#radiology-report-search-count').text(countMessage.replace("{0}", data.totalCount));
+        }).error(function(err) {
+            emr.errorMessage(err);
+        }).complete(function() {
+            loading = false;
+        });
+    }
+
+    form.submit(function() {
+        loadPage(true);
+        return false;
+    });
+
+    moreButton.click(function() {
+        loadPage(false);
+        return false;
+    });
+}
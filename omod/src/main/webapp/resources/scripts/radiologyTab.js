@@ -1,28 +1,68 @@
+function loadRadiologyTemplates(displayStudyOrderNumber, patientId) {
 
-function loadRadiologyTemplates(displayStudyOrderNumber) {
+    // how many studies to fetch the details of in one request
+    var PREFETCH_SIZE = 20;
 
     var radiologyStudyDetailsTemplate= _.template(jq('#radiologyStudyDetailsTemplate').html());
 
     var radiologyStudyDetailsSection = $('#study-details');
 
+    // the details of the studies fetched so far, by order number; they don't change while the tab is open
+    var studiesByOrderNumber = {};
+
+    // the order number of the study that was clicked last, so that a slow response doesn't replace a later click
+    var selectedOrderNumber = null;
+
+    var orderNumbers = $('.viewRadiologyStudyDetails').map(function() {
+        return $(this).attr('studyOrderNumber');
+    }).get();
+
+    // fetches the details of the given study, along with those of the next few listed that haven't been fetched yet
+    function fetchStudies(studyOrderNumber) {
+        var batch = [ studyOrderNumber ];
+        for (var i = _.indexOf(orderNumbers, studyOrderNumber) + 1; i < orderNumbers.length && batch.length < PREFETCH_SIZE; i++) {
+            if (!studiesByOrderNumber[orderNumbers[i]]) {
+                batch.push(orderNumbers[i]);
+            }
+        }
+
+        return $.ajax({
+            url: emr.fragmentActionLink("radiologyapp", "radiologyTab", "getRadiologyStudiesByOrderNumbers"),
+            data: { patientId: patientId, orderNumbers: batch },
+            traditional: true,
+            dataType: 'json'
+        }).success(function(data) {
+            _.each(data, function(study) {
+                studiesByOrderNumber[study.orderNumber] = study;
+            });
+        });
+    }
+
+    function showStudy(studyElement, study) {
+        $('.viewRadiologyStudyDetails').removeClass('selected');
+        studyElement.addClass('selected');
+
+        radiologyStudyDetailsSection.html(radiologyStudyDetailsTemplate(study));
+        radiologyStudyDetailsSection.show();
+    }
+
     function loadRadiologyStudy(studyElement) {
         var studyOrderNumber = studyElement.attr('studyOrderNumber');
 
         if (studyOrderNumber != undefined) {
-            radiologyStudyDetailsSection.html("<i class=\"icon-spinner icon-spin icon-2x pull-left\"></i>");
-
-            $.getJSON(
-                emr.fragmentActionLink("radiologyapp", "radiologyTab", "getRadiologyStudyByOrderNumber", {
-                    studyOrderNumber: studyOrderNumber
-                })
-            ).success(function(data) {
+            selectedOrderNumber = studyOrderNumber;
 
-                $('.viewRadiologyStudyDetails').removeClass('selected');
-                studyElement.addClass('selected');
+            if (studiesByOrderNumber[studyOrderNumber]) {
+                showStudy(studyElement, studiesByOrderNumber[studyOrderNumber]);
+                return;
+            }
 
-                radiologyStudyDetailsSection.html(radiologyStudyDetailsTemplate(data));
-                radiologyStudyDetailsSection.show();
+            radiologyStudyDetailsSection.html("<i class=\"icon-spinner icon-spin icon-2x pull-left\"></i>");
 
+            fetchStudies(studyOrderNumber).success(function() {
+                if (selectedOrderNumber == studyOrderNumber && studiesByOrderNumber[studyOrderNumber]) {
+                    showStudy(studyElement, studiesByOrderNumber[studyOrderNumber]);
+                }
             }).error(function(err) {
                 emr.errorMessage(err)
             });
@@ -45,4 +85,4 @@ function loadRadiologyTemplates(displayStudyOrderNumber) {
         loadRadiologyStudy($(this));
         return false;
     });
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+function loadRadiologyWorklist(patientPageLink) {
+
+    // how often to refresh the first page of the worklist, while it is visible
+    var POLL_INTERVAL = 30000;
+
+    var rowTemplate = _.template(jq('#radiologyWorklistRowTemplate').html());
+    var worklist = jq('#radiology-worklist tbody');
+    var moreButton = jq('#radiology-worklist-more');
+
+    var cursor = null;
+    var pagesLoaded = 0;
+    // the request in flight, if any
+    var request = null;
+
+    function getFilters() {
+        var filters = {};
+        _.each(jq('#radiology-worklist-filters').serializeArray(), function(field) {
+            if (field.value) {
+                filters[field.name] = field.value;
+            }
+        });
+        return filters;
+    }
+
+    // fetches the page after the given cursor, or the first page (replacing what is displayed) if there is none; a
+    // first page supersedes any request in flight, since the filters may have changed since it was sent
+    function loadPage(after) {
+        if (request) {
+            if (after) {
+                return;
+            }
+            request.abort();
+        }
+
+        var params = getFilters();
+        if (after) {
+            params.cursor = after;
+        }
+
+        var thisRequest = jq.getJSON(emr.fragmentActionLink("radiologyapp", "radiologyWorklist", "getWorklist", params));
+        request = thisRequest;
+        thisRequest.success(function(data) {
+            if (!after) {
+                worklist.empty();
+                pagesLoaded = 0;
+            }
+            pagesLoaded++;
+            _.each(data.orders, function(order) {
+                order.patientLink = patientPageLink + (patientPageLink.indexOf('?') < 0 ? '?' : '&')
+                    + 'patientId=' + order.patientUuid;
+                worklist.append(rowTemplate(order));
+            });
+            cursor = data.cursor;
+            moreButton.toggle(cursor != null);
+            jq('#radiology-worklist-empty').toggle(worklist.children().length == 0);
+        }).error(function(err, status) {
+            if (status != 'abort') {
+                emr.errorMessage(err);
+            }
+        }).complete(function() {
+            if (request === thisRequest) {
+                request = null;
+            }
+        });
+    }
+
+    function refresh() {
+        // don't poll while the page is in a background tab, don't throw away further pages the user has loaded, and
+        // don't get in the way of what the user asked for
+        if (!document.hidden && pagesLoaded <= 1 && !request) {
+            loadPage(null);
+        }
+    }
+
+    jq('#radiology-worklist-filters').on('change', 'select, input', function() {
+        loadPage(null);
+    });
+
+    moreButton.click(function() {
+        loadPage(cursor);
+        return false;
+    });
+
+    jq(document).on('visibilitychange', function() {
+        if (!document.hidden) {
+            refresh();
+        }
+    });
+
+    loadPage(null);
+    setInterval(refresh, POLL_INTERVAL);
+}